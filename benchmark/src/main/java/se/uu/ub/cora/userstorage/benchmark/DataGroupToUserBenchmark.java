@@ -0,0 +1,93 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUser;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUserImp;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUserSinglePass;
+import se.uu.ub.cora.userstorage.convert.UserProjection;
+
+/**
+ * DataGroupToUserBenchmark compares the time per conversion of {@link DataGroupToUserImp} and
+ * {@link DataGroupToUserSinglePass} for users with a growing number of roles and permission units.
+ * Each converter is run with the full conversion and with the smaller {@link UserProjection}
+ * profiles. Run with "-prof gc" to also compare allocations per conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataGroupToUserBenchmark {
+
+	@Param({ "0", "10", "100", "500" })
+	public int rolesAndPermissionUnits;
+
+	@Param({ "FULL", "AUTHORIZATION", "ACTIVE_STATUS" })
+	public String projectionName;
+
+	private DataRecordGroup userRecord;
+	private UserProjection projection;
+	private DataGroupToUser dataGroupToUserImp;
+	private DataGroupToUser dataGroupToUserSinglePass;
+
+	@Setup
+	public void setUp() {
+		userRecord = UserRecords.createUserRecord("someUserId", "someLoginId",
+				rolesAndPermissionUnits, rolesAndPermissionUnits);
+		dataGroupToUserImp = new DataGroupToUserImp();
+		dataGroupToUserSinglePass = new DataGroupToUserSinglePass();
+		projection = getProjection(projectionName);
+	}
+
+	private UserProjection getProjection(String name) {
+		return switch (name) {
+			case "AUTHORIZATION" -> UserProjection.AUTHORIZATION;
+			case "ACTIVE_STATUS" -> UserProjection.ACTIVE_STATUS;
+			default -> UserProjection.FULL;
+		};
+	}
+
+	@Benchmark
+	public User groupToUserImp() {
+		return dataGroupToUserImp.groupToUser(userRecord, projection);
+	}
+
+	@Benchmark
+	public User groupToUserSinglePass() {
+		return dataGroupToUserSinglePass.groupToUser(userRecord, projection);
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataChild;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.data.DataRecordLink;
+
+/**
+ * InMemoryData creates read only data elements for the benchmarks without depending on a data
+ * implementation. The elements are dynamic proxies that answer the read methods used by
+ * userstorage by scanning their children, the same way a list backed data implementation does.
+ * Any other method throws an {@link UnsupportedOperationException}.
+ */
+public final class InMemoryData {
+
+	private InMemoryData() {
+	}
+
+	public static DataRecordGroup createRecordGroup(String type, String id,
+			List<DataChild> children) {
+		return createProxy(DataRecordGroup.class, new DataElement(type, type, id, null, null,
+				null, List.copyOf(children)));
+	}
+
+	public static DataGroup createGroup(String nameInData, DataChild... children) {
+		return createProxy(DataGroup.class,
+				new DataElement(nameInData, null, null, null, null, null, List.of(children)));
+	}
+
+	public static DataAtomic createAtomic(String nameInData, String value) {
+		return createProxy(DataAtomic.class,
+				new DataElement(nameInData, null, null, value, null, null, List.of()));
+	}
+
+	public static DataRecordLink createLink(String nameInData, String linkedRecordType,
+			String linkedRecordId) {
+		return createProxy(DataRecordLink.class, new DataElement(nameInData, null, null, null,
+				linkedRecordType, linkedRecordId, List.of()));
+	}
+
+	private static <T> T createProxy(Class<T> dataInterface, DataElement element) {
+		return dataInterface.cast(Proxy.newProxyInstance(InMemoryData.class.getClassLoader(),
+				new Class<?>[] { dataInterface }, element));
+	}
+
+	private record DataElement(String nameInData, String type, String id, String value,
+			String linkedRecordType, String linkedRecordId, List<DataChild> children)
+			implements InvocationHandler {
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			return switch (method.getName()) {
+				case "getNameInData" -> nameInData;
+				case "getType" -> type;
+				case "getId" -> id;
+				case "getValue" -> value;
+				case "getLinkedRecordType" -> linkedRecordType;
+				case "getLinkedRecordId" -> linkedRecordId;
+				case "getChildren" -> children;
+				case "containsChildWithNameInData" -> findFirst(DataChild.class, args[0]) != null;
+				case "getFirstAtomicValueWithNameInData" -> getFirstAtomicValue(args[0]);
+				case "getFirstGroupWithNameInData" -> getFirstOrThrow(DataGroup.class, args[0]);
+				case "getAllGroupsWithNameInData" -> findAll(DataGroup.class, args[0]);
+				case "containsChildOfTypeAndName" -> findFirst((Class<?>) args[0], args[1]) != null;
+				case "getFirstChildOfTypeAndName" -> getFirstOrThrow((Class<?>) args[0], args[1]);
+				case "getChildrenOfTypeAndName" -> findAll((Class<?>) args[0], args[1]);
+				case "hashCode" -> System.identityHashCode(proxy);
+				case "equals" -> proxy == args[0];
+				case "toString" -> nameInData;
+				default -> throw new UnsupportedOperationException(method.getName());
+			};
+		}
+
+		private String getFirstAtomicValue(Object name) {
+			return getFirstOrThrow(DataAtomic.class, name).getValue();
+		}
+
+		private <T> T getFirstOrThrow(Class<T> childType, Object name) {
+			T child = findFirst(childType, name);
+			if (child == null) {
+				throw new IllegalArgumentException("No child found with name: " + name);
+			}
+			return child;
+		}
+
+		private <T> T findFirst(Class<T> childType, Object name) {
+			for (DataChild child : children) {
+				if (isOfTypeAndName(child, childType, name)) {
+					return childType.cast(child);
+				}
+			}
+			return null;
+		}
+
+		private <T> List<T> findAll(Class<T> childType, Object name) {
+			return children.stream().filter(child -> isOfTypeAndName(child, childType, name))
+					.map(childType::cast).toList();
+		}
+
+		private boolean isOfTypeAndName(DataChild child, Class<?> childType, Object name) {
+			return childType.isInstance(child) && child.getNameInData().equals(name);
+		}
+	}
+}
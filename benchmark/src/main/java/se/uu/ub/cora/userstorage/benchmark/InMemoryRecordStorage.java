@@ -0,0 +1,146 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.benchmark;
+
+import static se.uu.ub.cora.userstorage.benchmark.InMemoryData.createAtomic;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.storage.Condition;
+import se.uu.ub.cora.storage.Filter;
+import se.uu.ub.cora.storage.Part;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+import se.uu.ub.cora.storage.RecordStorage;
+import se.uu.ub.cora.storage.StorageReadResult;
+
+/**
+ * InMemoryRecordStorage is a {@link RecordStorage} stand-in for the benchmarks, holding users,
+ * appTokens and systemSecrets in memory. It answers read, and readList for users filtered on
+ * loginId, which are the calls made by userstorage. Any other method throws an
+ * {@link UnsupportedOperationException}.
+ * <p>
+ * Lookups are map lookups, so that the benchmarks measure userstorage and not the storage.
+ */
+public final class InMemoryRecordStorage implements InvocationHandler {
+	private static final String USER = "user";
+	private Map<String, Map<String, DataRecordGroup>> recordsByType = new ConcurrentHashMap<>();
+	private Map<String, DataRecordGroup> usersByLoginId = new ConcurrentHashMap<>();
+
+	/**
+	 * createFilledWithUsers creates a storage with users named user0 to user(numberOfUsers - 1),
+	 * with loginIds login0 and onwards. Each user has the given number of roles and permission
+	 * units, and appTokens and a password that are stored as well.
+	 */
+	public static RecordStorage createFilledWithUsers(int numberOfUsers,
+			int rolesAndPermissionUnits) {
+		InMemoryRecordStorage storage = new InMemoryRecordStorage();
+		for (int i = 0; i < numberOfUsers; i++) {
+			storage.addUser(userIdForNumber(i), loginIdForNumber(i), rolesAndPermissionUnits);
+		}
+		return (RecordStorage) Proxy.newProxyInstance(InMemoryRecordStorage.class.getClassLoader(),
+				new Class<?>[] { RecordStorage.class }, storage);
+	}
+
+	public static String userIdForNumber(int userNumber) {
+		return "user" + userNumber;
+	}
+
+	public static String loginIdForNumber(int userNumber) {
+		return "login" + userNumber;
+	}
+
+	private InMemoryRecordStorage() {
+	}
+
+	private void addUser(String userId, String loginId, int rolesAndPermissionUnits) {
+		DataRecordGroup user = UserRecords.createUserRecord(userId, loginId,
+				rolesAndPermissionUnits, rolesAndPermissionUnits);
+		addRecord(USER, userId, user);
+		usersByLoginId.put(loginId, user);
+		addAppTokens(userId);
+		addPassword(userId);
+	}
+
+	private void addAppTokens(String userId) {
+		for (int i = 0; i < UserRecords.NUMBER_OF_APP_TOKENS; i++) {
+			String appTokenId = UserRecords.appTokenIdForUser(userId, i);
+			addRecord("appToken", appTokenId, InMemoryData.createRecordGroup("appToken",
+					appTokenId, List.of(createAtomic("token", "tokenValue" + appTokenId))));
+		}
+	}
+
+	private void addPassword(String userId) {
+		String passwordId = UserRecords.passwordIdForUser(userId);
+		addRecord("systemSecret", passwordId, InMemoryData.createRecordGroup("systemSecret",
+				passwordId, List.of(createAtomic("secret", "hashOf" + passwordId))));
+	}
+
+	private void addRecord(String type, String id, DataRecordGroup dataRecordGroup) {
+		recordsByType.computeIfAbsent(type, key -> new ConcurrentHashMap<>()).put(id,
+				dataRecordGroup);
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) {
+		return switch (method.getName()) {
+			case "read" -> read((String) args[0], (String) args[1]);
+			case "readList" -> readList((String) args[0], (Filter) args[1]);
+			case "hashCode" -> System.identityHashCode(proxy);
+			case "equals" -> proxy == args[0];
+			case "toString" -> "InMemoryRecordStorage";
+			default -> throw new UnsupportedOperationException(method.getName());
+		};
+	}
+
+	private DataRecordGroup read(String type, String id) {
+		DataRecordGroup dataRecordGroup = recordsByType.getOrDefault(type, Map.of()).get(id);
+		if (dataRecordGroup == null) {
+			throw RecordNotFoundException
+					.withMessage("No record exists with type: " + type + " and id: " + id);
+		}
+		return dataRecordGroup;
+	}
+
+	private StorageReadResult readList(String type, Filter filter) {
+		StorageReadResult readResult = new StorageReadResult();
+		DataRecordGroup user = USER.equals(type) ? findUserUsingLoginIdFilter(filter) : null;
+		if (user != null) {
+			readResult.listOfDataRecordGroups.add(user);
+		}
+		readResult.totalNumberOfMatches = readResult.listOfDataRecordGroups.size();
+		return readResult;
+	}
+
+	private DataRecordGroup findUserUsingLoginIdFilter(Filter filter) {
+		for (Part part : filter.include) {
+			for (Condition condition : part.conditions) {
+				if ("loginId".equals(condition.key())) {
+					return usersByLoginId.get(condition.value());
+				}
+			}
+		}
+		return null;
+	}
+}
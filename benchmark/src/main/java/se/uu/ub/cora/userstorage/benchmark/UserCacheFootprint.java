@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.time.Duration;
+import java.util.Locale;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.userstorage.cache.BoundedTtlCache;
+import se.uu.ub.cora.userstorage.cache.OffHeapUserCache;
+import se.uu.ub.cora.userstorage.cache.TtlCache;
+import se.uu.ub.cora.userstorage.convert.AuthorizationDictionary;
+import se.uu.ub.cora.userstorage.convert.CompactUserCodec;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUser;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUserImp;
+import se.uu.ub.cora.userstorage.convert.DictionaryDataGroupToUser;
+
+/**
+ * UserCacheFootprint compares the memory used by a user cache kept on the heap, by a
+ * {@link BoundedTtlCache}, with one kept outside of it, by an {@link OffHeapUserCache}, for users
+ * with a growing number of roles and permission units.
+ * <p>
+ * It is not a JMH benchmark, as it measures memory and not time. Run it with the benchmark jar on
+ * the class path and optionally the number of users as argument:
+ * 
+ * <pre>
+ * java -cp target/benchmarks.jar se.uu.ub.cora.userstorage.benchmark.UserCacheFootprint 100000
+ * </pre>
+ * 
+ * Heap usage is measured after requesting garbage collection, so the numbers are approximate.
+ * Users are converted as by the instance provider, with ids shared through an
+ * {@link AuthorizationDictionary}, so the on heap numbers already include that saving.
+ */
+public final class UserCacheFootprint {
+	private static final int DEFAULT_NUMBER_OF_USERS = 100000;
+	private static final int[] ROLES_AND_PERMISSION_UNITS = { 0, 10, 100 };
+	private static final int NUMBER_OF_GC_RUNS = 3;
+	private static final Duration TIME_TO_LIVE = Duration.ofHours(1);
+
+	private UserCacheFootprint() {
+	}
+
+	public static void main(String[] args) {
+		int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0])
+				: DEFAULT_NUMBER_OF_USERS;
+		System.out.println("users, roles and units, cache, heap bytes per user, "
+				+ "off heap bytes per user");
+		for (int rolesAndPermissionUnits : ROLES_AND_PERMISSION_UNITS) {
+			measureOnHeap(numberOfUsers, rolesAndPermissionUnits);
+			measureOffHeap(numberOfUsers, rolesAndPermissionUnits);
+		}
+	}
+
+	private static void measureOnHeap(int numberOfUsers, int rolesAndPermissionUnits) {
+		AuthorizationDictionary dictionary = new AuthorizationDictionary();
+		long heapBefore = usedHeapAfterGc();
+		TtlCache<String, User> userCache = BoundedTtlCache
+				.usingMaxSizeAndTimeToLive(numberOfUsers, TIME_TO_LIVE);
+		fillCache(userCache, dictionary, numberOfUsers, rolesAndPermissionUnits);
+		long heapAfter = usedHeapAfterGc();
+		report(numberOfUsers, rolesAndPermissionUnits, "onHeap", heapAfter - heapBefore, 0);
+		Reference.reachabilityFence(userCache);
+	}
+
+	private static void measureOffHeap(int numberOfUsers, int rolesAndPermissionUnits) {
+		AuthorizationDictionary dictionary = new AuthorizationDictionary();
+		long heapBefore = usedHeapAfterGc();
+		OffHeapUserCache userCache = OffHeapUserCache.usingCodecMaxSizeTimeToLiveAndStaleWindow(
+				CompactUserCodec.usingDictionary(dictionary), numberOfUsers, TIME_TO_LIVE,
+				Duration.ZERO);
+		fillCache(userCache, dictionary, numberOfUsers, rolesAndPermissionUnits);
+		long heapAfter = usedHeapAfterGc();
+		report(numberOfUsers, rolesAndPermissionUnits, "offHeap", heapAfter - heapBefore,
+				userCache.getOffHeapAllocatedBytes());
+		Reference.reachabilityFence(userCache);
+	}
+
+	private static void fillCache(TtlCache<String, User> userCache,
+			AuthorizationDictionary dictionary, int numberOfUsers, int rolesAndPermissionUnits) {
+		DataGroupToUser dataGroupToUser = DictionaryDataGroupToUser
+				.usingDataGroupToUserAndDictionary(new DataGroupToUserImp(), dictionary);
+		for (int userNumber = 0; userNumber < numberOfUsers; userNumber++) {
+			String userId = InMemoryRecordStorage.userIdForNumber(userNumber);
+			User user = dataGroupToUser.groupToUser(UserRecords.createUserRecord(userId,
+					InMemoryRecordStorage.loginIdForNumber(userNumber), rolesAndPermissionUnits,
+					rolesAndPermissionUnits));
+			userCache.put(userId, user);
+		}
+	}
+
+	private static long usedHeapAfterGc() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < NUMBER_OF_GC_RUNS; i++) {
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	private static void report(int numberOfUsers, int rolesAndPermissionUnits, String cache,
+			long heapBytes, long offHeapBytes) {
+		System.out.println(String.format(Locale.ROOT, "%d, %d, %s, %d, %d", numberOfUsers,
+				rolesAndPermissionUnits, cache, heapBytes / numberOfUsers,
+				offHeapBytes / numberOfUsers));
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.benchmark;
+
+import static se.uu.ub.cora.userstorage.benchmark.InMemoryData.createAtomic;
+import static se.uu.ub.cora.userstorage.benchmark.InMemoryData.createGroup;
+import static se.uu.ub.cora.userstorage.benchmark.InMemoryData.createLink;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import se.uu.ub.cora.data.DataChild;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataRecordGroup;
+
+/**
+ * UserRecords creates user records shaped like the ones stored by Cora, with a configurable number
+ * of roles and permission units.
+ */
+public final class UserRecords {
+	public static final int NUMBER_OF_APP_TOKENS = 2;
+
+	private UserRecords() {
+	}
+
+	public static DataRecordGroup createUserRecord(String userId, String loginId,
+			int numberOfRoles, int numberOfPermissionUnits) {
+		List<DataChild> children = new ArrayList<>();
+		children.add(createRecordInfo(userId));
+		children.add(createAtomic("loginId", loginId));
+		children.add(createAtomic("userFirstname", "First " + userId));
+		children.add(createAtomic("userLastname", "Last " + userId));
+		addRoles(children, numberOfRoles);
+		children.add(createAtomic("activeStatus", "active"));
+		children.add(createAppTokens(userId));
+		children.add(createLink("passwordLink", "systemSecret", passwordIdForUser(userId)));
+		addPermissionUnits(children, numberOfPermissionUnits);
+		return InMemoryData.createRecordGroup("user", userId, children);
+	}
+
+	private static DataGroup createRecordInfo(String userId) {
+		return createGroup("recordInfo", createAtomic("id", userId),
+				createLink("type", "recordType", "user"),
+				createLink("dataDivider", "system", "cora"),
+				createAtomic("tsCreated", "2026-01-01T00:00:00.000000Z"));
+	}
+
+	private static void addRoles(List<DataChild> children, int numberOfRoles) {
+		for (int i = 0; i < numberOfRoles; i++) {
+			children.add(createGroup("userRole", createLink("userRole", "permissionRole",
+					"role" + i)));
+		}
+	}
+
+	private static DataGroup createAppTokens(String userId) {
+		DataChild[] appTokens = new DataChild[NUMBER_OF_APP_TOKENS];
+		for (int i = 0; i < NUMBER_OF_APP_TOKENS; i++) {
+			appTokens[i] = createGroup("appToken",
+					createLink("appTokenLink", "appToken", appTokenIdForUser(userId, i)),
+					createAtomic("note", "token " + i));
+		}
+		return createGroup("appTokens", appTokens);
+	}
+
+	private static void addPermissionUnits(List<DataChild> children,
+			int numberOfPermissionUnits) {
+		for (int i = 0; i < numberOfPermissionUnits; i++) {
+			children.add(createLink("permissionUnit", "permissionUnit", "unit" + i));
+		}
+	}
+
+	public static String appTokenIdForUser(String userId, int tokenNumber) {
+		return userId + "AppToken" + tokenNumber;
+	}
+
+	public static String passwordIdForUser(String userId) {
+		return userId + "Password";
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.storage.RecordStorage;
+import se.uu.ub.cora.userstorage.ExtendedUserStorageView;
+import se.uu.ub.cora.userstorage.UserStorageViewImp;
+import se.uu.ub.cora.userstorage.cache.BoundedTtlCache;
+import se.uu.ub.cora.userstorage.cache.CachingUserStorageView;
+import se.uu.ub.cora.userstorage.cache.KnownLoginIds;
+import se.uu.ub.cora.userstorage.cache.LoginIdIndex;
+import se.uu.ub.cora.userstorage.cache.SecretCache;
+import se.uu.ub.cora.userstorage.cache.UserAuthorizations;
+import se.uu.ub.cora.userstorage.cache.UserReplica;
+import se.uu.ub.cora.userstorage.cache.UserSnapshot;
+import se.uu.ub.cora.userstorage.cache.UserStorageCaches;
+import se.uu.ub.cora.userstorage.convert.AuthorizationDictionary;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUserImp;
+
+/**
+ * UserStorageViewBenchmark measures the lookups made on login against an
+ * {@link InMemoryRecordStorage}, for the plain {@link UserStorageViewImp} and for the
+ * {@link CachingUserStorageView} wrapping it, across user record sizes.
+ * <p>
+ * Each thread walks through all stored users in turn, so that lookups are spread over the users
+ * as they are in production. This class runs single threaded, see
+ * {@link UserStorageViewContendedBenchmark} for the same benchmarks run by many threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class UserStorageViewBenchmark {
+	private static final int NUMBER_OF_USERS = 1000;
+
+	@Param({ "0", "10", "100", "500" })
+	public int rolesAndPermissionUnits;
+
+	@Param({ "imp", "caching" })
+	public String view;
+
+	private ExtendedUserStorageView userStorageView;
+	private CachingUserStorageView cachingView;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		RecordStorage recordStorage = InMemoryRecordStorage
+				.createFilledWithUsers(NUMBER_OF_USERS, rolesAndPermissionUnits);
+		UserStorageViewImp imp = UserStorageViewImp
+				.usingRecordStorageAndRecordTypeHandlerFactory(recordStorage,
+						new DataGroupToUserImp());
+		userStorageView = "caching".equals(view) ? createAndStartCachingView(imp) : imp;
+	}
+
+	private ExtendedUserStorageView createAndStartCachingView(UserStorageViewImp imp) {
+		UserStorageCaches caches = new UserStorageCaches(
+				BoundedTtlCache.usingMaxSizeAndTimeToLive(NUMBER_OF_USERS, Duration.ofMinutes(1)),
+				LoginIdIndex.usingMaxSizeAndTimeToLive(NUMBER_OF_USERS, Duration.ofMinutes(1)),
+				BoundedTtlCache.usingMaxSizeAndTimeToLive(NUMBER_OF_USERS,
+						Duration.ofSeconds(15)),
+				SecretCache.usingMaxSizeAndTimeToLive(NUMBER_OF_USERS, Duration.ofSeconds(30)),
+				KnownLoginIds.disabled(),
+				UserAuthorizations.usingDictionaryMaxSizeAndTimeToLive(
+						new AuthorizationDictionary(), NUMBER_OF_USERS, Duration.ofMinutes(1)),
+				UserSnapshot.empty(), UserReplica.disabled());
+		cachingView = CachingUserStorageView.usingUserStorageViewAndCaches(imp, caches);
+		cachingView.start();
+		return cachingView;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (cachingView != null) {
+			cachingView.close();
+			cachingView = null;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class UserNumbers {
+		private int nextUserNumber = 0;
+
+		int next() {
+			int userNumber = nextUserNumber;
+			nextUserNumber = (nextUserNumber + 1) % NUMBER_OF_USERS;
+			return userNumber;
+		}
+	}
+
+	@Benchmark
+	public User getUserById(UserNumbers userNumbers) {
+		return userStorageView
+				.getUserById(InMemoryRecordStorage.userIdForNumber(userNumbers.next()));
+	}
+
+	@Benchmark
+	public User getUserByLoginId(UserNumbers userNumbers) {
+		return userStorageView
+				.getUserByLoginId(InMemoryRecordStorage.loginIdForNumber(userNumbers.next()));
+	}
+
+	@Benchmark
+	public AppToken getAppTokenById(UserNumbers userNumbers) {
+		String userId = InMemoryRecordStorage.userIdForNumber(userNumbers.next());
+		return userStorageView.getAppTokenById(UserRecords.appTokenIdForUser(userId, 0));
+	}
+
+	@Benchmark
+	public String getSystemSecretById(UserNumbers userNumbers) {
+		String userId = InMemoryRecordStorage.userIdForNumber(userNumbers.next());
+		return userStorageView.getSystemSecretById(UserRecords.passwordIdForUser(userId));
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * UserStorageViewContendedBenchmark runs the benchmarks in {@link UserStorageViewBenchmark} with
+ * as many threads as there are processors, all sharing one view. Use the JMH option -t to run with
+ * another number of threads.
+ */
+@Threads(Threads.MAX)
+public class UserStorageViewContendedBenchmark extends UserStorageViewBenchmark {
+}
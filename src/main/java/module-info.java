@@ -6,5 +6,9 @@ module se.uu.ub.cora.userstorage {
 	requires transitive se.uu.ub.cora.storage;
 	requires transitive se.uu.ub.cora.gatekeeper;
 
+	exports se.uu.ub.cora.userstorage;
+	exports se.uu.ub.cora.userstorage.circuit;
+	exports se.uu.ub.cora.userstorage.metrics;
+
 	provides UserStorageViewInstanceProvider with UserStorageViewInstanceProviderImp;
 }
\ No newline at end of file
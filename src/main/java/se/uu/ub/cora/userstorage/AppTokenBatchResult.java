@@ -0,0 +1,38 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import java.util.Map;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+
+/**
+ * AppTokenBatchResult is the result of looking up many appTokens at once. Every requested
+ * appTokenId is in exactly one of the maps.
+ *
+ * @param appTokens
+ *            the found appTokens, by appTokenId
+ * @param errors
+ *            the exception for each appTokenId that could not be read, the same exception as
+ *            {@link ExtendedUserStorageView#getAppTokenById(String)} would throw for it
+ */
+public record AppTokenBatchResult(Map<String, AppToken> appTokens,
+		Map<String, UserStorageViewException> errors) {
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import java.util.concurrent.CompletableFuture;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageView;
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * AsyncUserStorageView has non blocking variants of the lookups in {@link UserStorageView}.
+ * <p>
+ * Each method returns at once with a {@link CompletableFuture} that is completed with the same
+ * result as the blocking lookup would return. If the blocking lookup would throw a
+ * {@link UserStorageViewException}, the future is completed exceptionally with that exception.
+ */
+public interface AsyncUserStorageView {
+
+	CompletableFuture<User> getUserByIdAsync(String userId);
+
+	CompletableFuture<User> getUserByLoginIdAsync(String loginId);
+
+	CompletableFuture<AppToken> getAppTokenByIdAsync(String appTokenId);
+
+	CompletableFuture<String> getSystemSecretByIdAsync(String systemSecretId);
+}
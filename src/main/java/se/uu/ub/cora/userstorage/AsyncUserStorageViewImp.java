@@ -0,0 +1,150 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageView;
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * AsyncUserStorageViewImp runs the lookups of a {@link UserStorageView} on virtual threads, so
+ * that callers are not blocked while storage is read.
+ * <p>
+ * Each lookup gets its own virtual thread, but at most the configured number of lookups run
+ * against the wrapped view at once, the rest wait in line without holding a platform thread.
+ * Failures are reported as the {@link UserStorageViewException} thrown by the wrapped view. Any
+ * other exception is wrapped in a {@link UserStorageViewException}, so that callers only need to
+ * handle one exception type.
+ * <p>
+ * Cancelling a returned future does not interrupt the lookup, as it might be read on behalf of
+ * other callers as well. A cancelled lookup that has not started is skipped when its turn comes,
+ * and a running lookup finishes and gives back its place in line.
+ * <p>
+ * The virtual threads are started by an executor that is shut down by {@link #close()}.
+ */
+public class AsyncUserStorageViewImp implements AsyncUserStorageView, AutoCloseable {
+	private static final String THREAD_NAME_PREFIX = "userstorage-async-";
+	private final UserStorageView userStorageView;
+	private final int maxConcurrentLookups;
+	private final Semaphore concurrentLookups;
+	private final ExecutorService executor = Executors
+			.newThreadPerTaskExecutor(Thread.ofVirtual().name(THREAD_NAME_PREFIX, 0).factory());
+
+	public static AsyncUserStorageViewImp usingUserStorageViewAndMaxConcurrentLookups(
+			UserStorageView userStorageView, int maxConcurrentLookups) {
+		return new AsyncUserStorageViewImp(userStorageView, maxConcurrentLookups);
+	}
+
+	private AsyncUserStorageViewImp(UserStorageView userStorageView, int maxConcurrentLookups) {
+		this.userStorageView = userStorageView;
+		this.maxConcurrentLookups = maxConcurrentLookups;
+		this.concurrentLookups = new Semaphore(maxConcurrentLookups);
+	}
+
+	@Override
+	public CompletableFuture<User> getUserByIdAsync(String userId) {
+		return runAsync(() -> userStorageView.getUserById(userId));
+	}
+
+	@Override
+	public CompletableFuture<User> getUserByLoginIdAsync(String loginId) {
+		return runAsync(() -> userStorageView.getUserByLoginId(loginId));
+	}
+
+	@Override
+	public CompletableFuture<AppToken> getAppTokenByIdAsync(String appTokenId) {
+		return runAsync(() -> userStorageView.getAppTokenById(appTokenId));
+	}
+
+	@Override
+	public CompletableFuture<String> getSystemSecretByIdAsync(String systemSecretId) {
+		return runAsync(() -> userStorageView.getSystemSecretById(systemSecretId));
+	}
+
+	private <T> CompletableFuture<T> runAsync(Supplier<T> lookup) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			Future<?> task = executor.submit(() -> runLookupWhenAllowed(lookup, future));
+			future.whenComplete((result, error) -> possiblyCancelLookup(future, task));
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(UserStorageViewException
+					.usingMessageAndException("Lookup rejected, the view is closed.", e));
+		}
+		return future;
+	}
+
+	private <T> void possiblyCancelLookup(CompletableFuture<T> future, Future<?> task) {
+		if (future.isCancelled()) {
+			task.cancel(false);
+		}
+	}
+
+	private <T> void runLookupWhenAllowed(Supplier<T> lookup, CompletableFuture<T> future) {
+		try {
+			concurrentLookups.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(UserStorageViewException
+					.usingMessageAndException("Lookup interrupted while waiting to run.", e));
+			return;
+		}
+		try {
+			possiblyRunLookup(lookup, future);
+		} catch (UserStorageViewException e) {
+			future.completeExceptionally(e);
+		} catch (Exception e) {
+			future.completeExceptionally(
+					UserStorageViewException.usingMessageAndException("Lookup failed.", e));
+		} finally {
+			concurrentLookups.release();
+		}
+	}
+
+	private <T> void possiblyRunLookup(Supplier<T> lookup, CompletableFuture<T> future) {
+		if (!future.isDone()) {
+			future.complete(lookup.get());
+		}
+	}
+
+	/**
+	 * close shuts down the executor of the lookups. Running lookups and lookups waiting in line are
+	 * interrupted, and lookups started after close fail.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	public UserStorageView onlyForTestGetUserStorageView() {
+		return userStorageView;
+	}
+
+	public int onlyForTestGetMaxConcurrentLookups() {
+		return maxConcurrentLookups;
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+/**
+ * BackgroundWorker is work that runs in the background for as long as a
+ * {@link ManagedUserStorageView} is running, such as refreshing or preloading cached data.
+ */
+public interface BackgroundWorker {
+
+	/**
+	 * start is called once when the view the worker belongs to is started. Implementations must
+	 * not block, long running work should be done on threads owned by the worker.
+	 */
+	void start();
+
+	/**
+	 * stop is called once when the view the worker belongs to is closed. Implementations should
+	 * stop all threads owned by the worker.
+	 */
+	void stop();
+
+	/**
+	 * isReady returns true when the worker has done the work that must be done before the view
+	 * should be reported as ready, such as warming up caches. Workers without such work are always
+	 * ready.
+	 * 
+	 * @return true if the worker is ready
+	 */
+	default boolean isReady() {
+		return true;
+	}
+}
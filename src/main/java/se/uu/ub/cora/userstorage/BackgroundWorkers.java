@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BackgroundWorkers keeps the {@link BackgroundWorker}s of a {@link ManagedUserStorageView} and
+ * makes sure that each worker is started at most once and stopped at most once.
+ */
+public class BackgroundWorkers {
+	private enum State {
+		NEW, RUNNING, CLOSED
+	}
+
+	private final List<BackgroundWorker> workers = new ArrayList<>();
+	private State state = State.NEW;
+
+	public synchronized void add(BackgroundWorker backgroundWorker) {
+		if (state == State.CLOSED) {
+			return;
+		}
+		workers.add(backgroundWorker);
+		if (state == State.RUNNING) {
+			backgroundWorker.start();
+		}
+	}
+
+	public synchronized void start() {
+		if (state != State.NEW) {
+			return;
+		}
+		state = State.RUNNING;
+		for (BackgroundWorker worker : workers) {
+			worker.start();
+		}
+	}
+
+	public synchronized void stop() {
+		State previousState = state;
+		state = State.CLOSED;
+		if (previousState == State.RUNNING) {
+			stopAllWorkers();
+		}
+	}
+
+	private void stopAllWorkers() {
+		for (BackgroundWorker worker : workers) {
+			worker.stop();
+		}
+	}
+
+	public synchronized boolean isRunning() {
+		return state == State.RUNNING;
+	}
+
+	/**
+	 * isReady returns true if the workers are running and all of them report that they are ready.
+	 * 
+	 * @return true if running and all workers are ready
+	 */
+	public synchronized boolean isReady() {
+		return state == State.RUNNING && workers.stream().allMatch(BackgroundWorker::isReady);
+	}
+
+	public synchronized List<BackgroundWorker> onlyForTestGetWorkers() {
+		return List.copyOf(workers);
+	}
+}
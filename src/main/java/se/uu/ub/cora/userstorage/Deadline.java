@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Deadline is a point in time when the result of a lookup is no longer useful to the caller.
+ * <p>
+ * A Deadline is created from the time the caller is prepared to wait, counted from when the
+ * deadline is created. The same deadline can be passed on to several lookups made for the same
+ * request, so that they together stay within the time of the request.
+ */
+public final class Deadline {
+	private final long expiresAtNanos;
+	private final LongSupplier nanoTimeSource;
+
+	public static Deadline withTimeout(Duration timeout) {
+		return new Deadline(timeout, System::nanoTime);
+	}
+
+	public static Deadline withTimeoutUsingNanoTimeSource(Duration timeout,
+			LongSupplier nanoTimeSource) {
+		return new Deadline(timeout, nanoTimeSource);
+	}
+
+	private Deadline(Duration timeout, LongSupplier nanoTimeSource) {
+		this.nanoTimeSource = nanoTimeSource;
+		this.expiresAtNanos = nanoTimeSource.getAsLong() + timeout.toNanos();
+	}
+
+	/**
+	 * remainingNanos returns the time left until the deadline, or a negative value if the deadline
+	 * has passed.
+	 * 
+	 * @return the time left in nanoseconds
+	 */
+	public long remainingNanos() {
+		return expiresAtNanos - nanoTimeSource.getAsLong();
+	}
+
+	public boolean hasExpired() {
+		return remainingNanos() <= 0;
+	}
+}
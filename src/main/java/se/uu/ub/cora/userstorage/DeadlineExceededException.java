@@ -0,0 +1,36 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+/**
+ * DeadlineExceededException is used as cause of the
+ * {@link se.uu.ub.cora.gatekeeper.storage.UserStorageViewException} thrown when a lookup made with
+ * a {@link Deadline} does not finish in time.
+ */
+public class DeadlineExceededException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public static DeadlineExceededException withMessage(String message) {
+		return new DeadlineExceededException(message);
+	}
+
+	private DeadlineExceededException(String message) {
+		super(message);
+	}
+}
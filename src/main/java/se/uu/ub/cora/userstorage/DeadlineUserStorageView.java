@@ -0,0 +1,44 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageView;
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * DeadlineUserStorageView has variants of the lookups in {@link UserStorageView} that give up
+ * when a {@link Deadline} is reached.
+ * <p>
+ * Each method returns the same result as the lookup without deadline would. If the result is not
+ * available before the deadline, or if too little time is left to start the lookup, the caller
+ * gets a {@link UserStorageViewException} with a {@link DeadlineExceededException} as cause and is
+ * free to go on, while the lookup itself may finish in the background.
+ */
+public interface DeadlineUserStorageView {
+
+	User getUserById(String userId, Deadline deadline);
+
+	User getUserByLoginId(String loginId, Deadline deadline);
+
+	AppToken getAppTokenById(String appTokenId, Deadline deadline);
+
+	String getSystemSecretById(String systemSecretId, Deadline deadline);
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * DeadlineUserStorageViewImp implements the lookups with deadline by starting the lookup on an
+ * {@link AsyncUserStorageView} and waiting for its result no longer than the time left until the
+ * deadline.
+ * <p>
+ * Lookups are not started if less than the minimum remaining time is left before the deadline, as
+ * they would not be able to finish in time anyway. A lookup that has not finished at the deadline
+ * is cancelled without being interrupted, so that a lookup that has not started is skipped and a
+ * running lookup, that might be shared with other callers, finishes.
+ */
+public class DeadlineUserStorageViewImp implements DeadlineUserStorageView {
+	private static final String ERROR_MESSAGE = "Error reading {0} with id: {1} from storage.";
+	private final AsyncUserStorageView asyncView;
+	private final long minRemainingNanos;
+
+	public static DeadlineUserStorageViewImp usingAsyncViewAndMinRemainingTime(
+			AsyncUserStorageView asyncView, Duration minRemainingTime) {
+		return new DeadlineUserStorageViewImp(asyncView, minRemainingTime);
+	}
+
+	private DeadlineUserStorageViewImp(AsyncUserStorageView asyncView,
+			Duration minRemainingTime) {
+		this.asyncView = asyncView;
+		this.minRemainingNanos = minRemainingTime.toNanos();
+	}
+
+	@Override
+	public User getUserById(String userId, Deadline deadline) {
+		return awaitWithinDeadline(createErrorMessage("user", userId), deadline,
+				() -> asyncView.getUserByIdAsync(userId));
+	}
+
+	private String createErrorMessage(String type, String id) {
+		return MessageFormat.format(ERROR_MESSAGE, type, id);
+	}
+
+	@Override
+	public User getUserByLoginId(String loginId, Deadline deadline) {
+		return awaitWithinDeadline(
+				"Error reading user with login id: " + loginId + " from storage.", deadline,
+				() -> asyncView.getUserByLoginIdAsync(loginId));
+	}
+
+	@Override
+	public AppToken getAppTokenById(String appTokenId, Deadline deadline) {
+		return awaitWithinDeadline(createErrorMessage("appToken", appTokenId), deadline,
+				() -> asyncView.getAppTokenByIdAsync(appTokenId));
+	}
+
+	@Override
+	public String getSystemSecretById(String systemSecretId, Deadline deadline) {
+		return awaitWithinDeadline(createErrorMessage("systemSecret", systemSecretId), deadline,
+				() -> asyncView.getSystemSecretByIdAsync(systemSecretId));
+	}
+
+	private <T> T awaitWithinDeadline(String errorMessage, Deadline deadline,
+			Supplier<CompletableFuture<T>> lookup) {
+		long remainingNanos = deadline.remainingNanos();
+		if (remainingNanos < minRemainingNanos) {
+			throw createDeadlineException(errorMessage,
+					"Too little time left before the deadline to start the lookup.");
+		}
+		return awaitResult(errorMessage, lookup.get(), remainingNanos);
+	}
+
+	private UserStorageViewException createDeadlineException(String errorMessage,
+			String reason) {
+		return UserStorageViewException.usingMessageAndException(errorMessage,
+				DeadlineExceededException.withMessage(reason));
+	}
+
+	private <T> T awaitResult(String errorMessage, CompletableFuture<T> result,
+			long remainingNanos) {
+		try {
+			return result.get(remainingNanos, TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			result.cancel(false);
+			throw createDeadlineException(errorMessage,
+					"The lookup did not finish before the deadline.");
+		} catch (ExecutionException e) {
+			throw toUserStorageViewException(errorMessage, e.getCause());
+		} catch (InterruptedException e) {
+			result.cancel(false);
+			Thread.currentThread().interrupt();
+			throw UserStorageViewException.usingMessageAndException(errorMessage, e);
+		}
+	}
+
+	private UserStorageViewException toUserStorageViewException(String errorMessage,
+			Throwable cause) {
+		if (cause instanceof UserStorageViewException userStorageViewException) {
+			return userStorageViewException;
+		}
+		Exception exception = cause instanceof Exception e ? e : new RuntimeException(cause);
+		return UserStorageViewException.usingMessageAndException(errorMessage, exception);
+	}
+
+	public AsyncUserStorageView onlyForTestGetAsyncView() {
+		return asyncView;
+	}
+
+	public Duration onlyForTestGetMinRemainingTime() {
+		return Duration.ofNanos(minRemainingNanos);
+	}
+}
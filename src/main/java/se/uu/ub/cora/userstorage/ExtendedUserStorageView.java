@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import java.util.Collection;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageView;
+
+/**
+ * ExtendedUserStorageView adds lookups to {@link UserStorageView} that are not part of the
+ * gatekeeper interface, for callers that need to read more than one user at a time.
+ * <p>
+ * A view is also a {@link RecordInvalidationListener}, so that what it holds for a record can be
+ * dropped when the record is changed in storage.
+ */
+public interface ExtendedUserStorageView extends UserStorageView, RecordInvalidationListener {
+
+	/**
+	 * getUsersByIds looks up many users at once. Ids that do not exist in storage are reported in
+	 * the result instead of causing an exception. Requesting the same id more than once gives one
+	 * entry in the result.
+	 * 
+	 * @param userIds
+	 *            the ids of the users to look up
+	 * @return a {@link UserBatchResult} with the found users and the missing ids
+	 * @throws se.uu.ub.cora.gatekeeper.storage.UserStorageViewException
+	 *             if a user can not be read for any other reason than it not existing
+	 */
+	UserBatchResult getUsersByIds(Collection<String> userIds);
+
+	/**
+	 * getUserCredentialsByLoginId looks up what is needed to check a password login, the userId,
+	 * if the user is active and the secret of the users password. The password secret is only
+	 * read for active users, for inactive users and users without password it is empty.
+	 * <p>
+	 * Errors are reported the same way as for {@link #getUserByLoginId(String)}.
+	 * 
+	 * @param loginId
+	 *            the loginId of the user
+	 * @return the {@link UserCredentials} of the user
+	 * @throws se.uu.ub.cora.gatekeeper.storage.UserStorageViewException
+	 *             if no user, or more than one user, has the loginId, or if the user or its
+	 *             password can not be read
+	 */
+	UserCredentials getUserCredentialsByLoginId(String loginId);
+
+	/**
+	 * getAppTokensByIds looks up many appTokens at once, typically all appTokens of a user as
+	 * listed in {@link se.uu.ub.cora.gatekeeper.user.User#appTokenIds}. An appToken that can not
+	 * be read does not stop the others from being read, its exception is reported in the result
+	 * instead of being thrown. Requesting the same id more than once gives one entry in the
+	 * result.
+	 * 
+	 * @param appTokenIds
+	 *            the ids of the appTokens to look up
+	 * @return an {@link AppTokenBatchResult} with the found appTokens and the errors by id
+	 */
+	AppTokenBatchResult getAppTokensByIds(Collection<String> appTokenIds);
+}
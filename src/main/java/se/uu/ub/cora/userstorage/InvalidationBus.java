@@ -0,0 +1,69 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+/**
+ * InvalidationBus passes record invalidations on to all subscribed
+ * {@link RecordInvalidationListener}s in the same JVM. A record-update listener calls
+ * {@link #invalidateRecord(String, String)} on the bus from {@link InvalidationBusProvider} after
+ * a record has been written, and the shared user storage view subscribes to it.
+ * <p>
+ * Listeners are called on the calling thread, in the order they subscribed. An exception from one
+ * listener is logged and does not stop the others from being called. The logger is looked up
+ * when a listener fails, as the shared bus may be created before logging is set up.
+ */
+public final class InvalidationBus implements RecordInvalidationListener {
+	private final List<RecordInvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+	public void subscribe(RecordInvalidationListener listener) {
+		listeners.add(listener);
+	}
+
+	public void unsubscribe(RecordInvalidationListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public void invalidateRecord(String recordType, String recordId) {
+		for (RecordInvalidationListener listener : listeners) {
+			tryToInvalidateRecord(listener, recordType, recordId);
+		}
+	}
+
+	private void tryToInvalidateRecord(RecordInvalidationListener listener, String recordType,
+			String recordId) {
+		try {
+			listener.invalidateRecord(recordType, recordId);
+		} catch (RuntimeException e) {
+			Logger log = LoggerProvider.getLoggerForClass(InvalidationBus.class);
+			log.logErrorUsingMessageAndException("Invalidating " + recordType + " with id: "
+					+ recordId + " failed.", e);
+		}
+	}
+
+	public List<RecordInvalidationListener> onlyForTestGetListeners() {
+		return listeners;
+	}
+}
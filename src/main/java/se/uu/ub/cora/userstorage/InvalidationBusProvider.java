@@ -0,0 +1,36 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+/**
+ * InvalidationBusProvider gives access to the {@link InvalidationBus} shared by everything in the
+ * JVM that needs to tell user storage views about changed records.
+ */
+public final class InvalidationBusProvider {
+	private static final InvalidationBus INVALIDATION_BUS = new InvalidationBus();
+
+	private InvalidationBusProvider() {
+		// not called
+		throw new UnsupportedOperationException();
+	}
+
+	public static InvalidationBus getInvalidationBus() {
+		return INVALIDATION_BUS;
+	}
+}
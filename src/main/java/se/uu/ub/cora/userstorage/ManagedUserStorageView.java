@@ -0,0 +1,71 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+/**
+ * ManagedUserStorageView is an {@link ExtendedUserStorageView} that is shared between threads and
+ * requests, and that has a lifecycle.
+ * <p>
+ * {@link BackgroundWorker}s added to the view are started when the view is started and stopped
+ * when the view is closed. Lookups can be made before the view is started and after it is closed,
+ * but then without any background work.
+ * <p>
+ * The view can also be used asynchronously through the methods from {@link AsyncUserStorageView},
+ * and with a time limit through the methods from {@link DeadlineUserStorageView}.
+ */
+public interface ManagedUserStorageView extends ExtendedUserStorageView, AsyncUserStorageView,
+		DeadlineUserStorageView, AutoCloseable {
+
+	/**
+	 * addBackgroundWorker adds a worker that should run while the view is started. Workers added
+	 * after the view has been started are started directly.
+	 * 
+	 * @param backgroundWorker
+	 *            the {@link BackgroundWorker} to add
+	 */
+	void addBackgroundWorker(BackgroundWorker backgroundWorker);
+
+	/**
+	 * start starts all added {@link BackgroundWorker}s. Calling start on a view that is already
+	 * started or that has been closed does nothing.
+	 */
+	void start();
+
+	/**
+	 * close stops all added {@link BackgroundWorker}s. Calling close more than once does nothing.
+	 */
+	@Override
+	void close();
+
+	/**
+	 * isRunning returns true if the view has been started and not yet closed.
+	 * 
+	 * @return true if the view is running
+	 */
+	boolean isRunning();
+
+	/**
+	 * isReady returns true if the view is running and all its {@link BackgroundWorker}s report
+	 * that they are ready, for example that a cache warm-up has finished. It is meant to be used
+	 * for readiness checks.
+	 * 
+	 * @return true if the view is ready
+	 */
+	boolean isReady();
+}
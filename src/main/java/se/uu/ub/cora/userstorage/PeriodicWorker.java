@@ -0,0 +1,127 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+/**
+ * PeriodicWorker is a {@link BackgroundWorker} that runs a task at a fixed interval on its own
+ * daemon thread. Exceptions from the task are logged and do not stop later runs.
+ */
+public final class PeriodicWorker implements BackgroundWorker {
+	private final Logger log = LoggerProvider.getLoggerForClass(PeriodicWorker.class);
+	private final String name;
+	private final Duration initialDelay;
+	private final Duration interval;
+	private final Runnable task;
+	private ScheduledExecutorService executor;
+
+	/**
+	 * usingNameIntervalAndTask creates a worker that runs the task every interval, starting one
+	 * interval after the worker is started.
+	 * 
+	 * @param name
+	 *            the name of the thread running the task, also used in log messages
+	 * @param interval
+	 *            the time between the start of two runs
+	 * @param task
+	 *            the task to run
+	 * @return a new PeriodicWorker
+	 */
+	public static PeriodicWorker usingNameIntervalAndTask(String name, Duration interval,
+			Runnable task) {
+		return new PeriodicWorker(name, interval, interval, task);
+	}
+
+	/**
+	 * usingNameInitialDelayIntervalAndTask creates a worker that runs the task every interval,
+	 * starting initial delay after the worker is started.
+	 * 
+	 * @param name
+	 *            the name of the thread running the task, also used in log messages
+	 * @param initialDelay
+	 *            the time from start until the first run
+	 * @param interval
+	 *            the time between the start of two runs
+	 * @param task
+	 *            the task to run
+	 * @return a new PeriodicWorker
+	 */
+	public static PeriodicWorker usingNameInitialDelayIntervalAndTask(String name,
+			Duration initialDelay, Duration interval, Runnable task) {
+		return new PeriodicWorker(name, initialDelay, interval, task);
+	}
+
+	private PeriodicWorker(String name, Duration initialDelay, Duration interval, Runnable task) {
+		this.name = name;
+		this.initialDelay = initialDelay;
+		this.interval = interval;
+		this.task = task;
+	}
+
+	@Override
+	public synchronized void start() {
+		executor = Executors.newSingleThreadScheduledExecutor(
+				Thread.ofPlatform().name(name).daemon().factory());
+		executor.scheduleAtFixedRate(this::runTask, initialDelay.toMillis(), interval.toMillis(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	void runTask() {
+		try {
+			task.run();
+		} catch (Exception e) {
+			log.logErrorUsingMessageAndException("Periodic task " + name + " failed.", e);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	public String onlyForTestGetName() {
+		return name;
+	}
+
+	public Duration onlyForTestGetInitialDelay() {
+		return initialDelay;
+	}
+
+	public Duration onlyForTestGetInterval() {
+		return interval;
+	}
+
+	public Runnable onlyForTestGetTask() {
+		return task;
+	}
+
+	public boolean onlyForTestIsScheduled() {
+		return executor != null && !executor.isShutdown();
+	}
+}
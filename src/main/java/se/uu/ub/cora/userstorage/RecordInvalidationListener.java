@@ -0,0 +1,38 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+/**
+ * RecordInvalidationListener is told when a record that a user storage view might hold has been
+ * changed or deleted in storage, so that it can drop what it holds for the record and for the
+ * entries that depend on it.
+ */
+public interface RecordInvalidationListener {
+	/**
+	 * invalidateRecord drops what is held for the record, so that the next lookup reads it from
+	 * storage. Record types that are not held are ignored.
+	 * 
+	 * @param recordType
+	 *            the type of the changed record, such as {@link RecordTypes#USER},
+	 *            {@link RecordTypes#APP_TOKEN} or {@link RecordTypes#SYSTEM_SECRET}
+	 * @param recordId
+	 *            the id of the changed record
+	 */
+	void invalidateRecord(String recordType, String recordId);
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+/**
+ * RecordTypes holds the types of the records that a user storage view reads from storage and that
+ * can be invalidated through a {@link RecordInvalidationListener}.
+ */
+public final class RecordTypes {
+	public static final String USER = "user";
+	public static final String APP_TOKEN = "appToken";
+	public static final String SYSTEM_SECRET = "systemSecret";
+
+	private RecordTypes() {
+	}
+}
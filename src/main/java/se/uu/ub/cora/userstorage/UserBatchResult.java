@@ -0,0 +1,35 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import java.util.Map;
+import java.util.Set;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * UserBatchResult is the result of looking up many users at once.
+ *
+ * @param users
+ *            the found users, by userId
+ * @param missingIds
+ *            the requested userIds for which no user exists in storage
+ */
+public record UserBatchResult(Map<String, User> users, Set<String> missingIds) {
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2022, 2024, 2025 Uppsala University Library
+ * Copyright 2022, 2024, 2025, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -18,60 +18,313 @@
  */
 package se.uu.ub.cora.userstorage;
 
+import static se.uu.ub.cora.userstorage.RecordTypes.APP_TOKEN;
+import static se.uu.ub.cora.userstorage.RecordTypes.SYSTEM_SECRET;
+import static se.uu.ub.cora.userstorage.RecordTypes.USER;
+
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import se.uu.ub.cora.data.DataRecordGroup;
-import se.uu.ub.cora.gatekeeper.storage.UserStorageView;
 import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
 import se.uu.ub.cora.gatekeeper.user.AppToken;
 import se.uu.ub.cora.gatekeeper.user.User;
 import se.uu.ub.cora.storage.Condition;
 import se.uu.ub.cora.storage.Filter;
 import se.uu.ub.cora.storage.Part;
+import se.uu.ub.cora.storage.RecordNotFoundException;
 import se.uu.ub.cora.storage.RecordStorage;
 import se.uu.ub.cora.storage.RelationalOperator;
 import se.uu.ub.cora.storage.StorageReadResult;
+import se.uu.ub.cora.userstorage.circuit.CircuitBreaker;
+import se.uu.ub.cora.userstorage.circuit.CircuitOpenException;
+import se.uu.ub.cora.userstorage.circuit.LastKnownGoodUsers;
+import se.uu.ub.cora.userstorage.coalesce.RequestCoalescer;
 import se.uu.ub.cora.userstorage.convert.DataGroupToUser;
+import se.uu.ub.cora.userstorage.convert.UserProjection;
+import se.uu.ub.cora.userstorage.metrics.CoalescingStatistics;
+import se.uu.ub.cora.userstorage.metrics.MethodMetrics;
+import se.uu.ub.cora.userstorage.metrics.StatisticsSource;
+import se.uu.ub.cora.userstorage.metrics.UserStorageViewMetrics;
 
-public class UserStorageViewImp implements UserStorageView {
-	private static final String USER = "user";
-	private static final String APP_TOKEN = "appToken";
+/**
+ * UserStorageViewImp reads users, appTokens and systemSecrets from {@link RecordStorage}.
+ * <p>
+ * Concurrent lookups of the same user, by userId or by loginId, are coalesced using
+ * {@link RequestCoalescer}s, so that only one of them reads from storage and converts the result,
+ * and all of them get that result. If the lookup fails, each of them gets its own exception with
+ * the same message and cause.
+ * <p>
+ * Batch lookups of users and appTokens by id are done as parallel reads, with at most
+ * {@value #MAX_PARALLEL_READS} reads in progress at once for each batch.
+ * <p>
+ * All public lookup methods are measured into a {@link UserStorageViewMetrics}, recording call
+ * latency, errors by cause, and the time spent reading from storage and converting the result.
+ * <p>
+ * Credentials for a password login are read with {@link #getUserCredentialsByLoginId(String)},
+ * converting only the fields of {@link UserProjection#CREDENTIALS}, and the password secret is only
+ * read for active users that have a password.
+ * <p>
+ * Calls to storage go through a {@link CircuitBreaker}. While it rejects calls, lookups of users
+ * return the {@link LastKnownGoodUsers last known good user}, if one is remembered, and other
+ * lookups fail without calling storage, with a {@link CircuitOpenException} as cause. Both are
+ * disabled unless given when the view is created. Each public call asks the circuit breaker for
+ * permission once, also when it reads both a user and its password secret, so that such a call
+ * can be the one trial call let through while the circuit is half open. A storage call that is
+ * interrupted is not counted as a failure, its thread is left interrupted and its failure is not
+ * shared with coalesced callers, as it says nothing about storage.
+ */
+public class UserStorageViewImp implements ExtendedUserStorageView, StatisticsSource {
+	static final int MAX_PARALLEL_READS = 16;
 	private static final String ERROR_MESSAGE = "Error reading {0} with id: {1} from storage.";
 	private static final String ERROR_MESSAGE_LOGIN_ID = "Error reading user with login id: {0} from storage.";
+	private static final String ERROR_MESSAGE_BATCH = "Error reading users with ids: {0} from storage.";
+	private static final String ERROR_MESSAGE_PASSWORD = "Error reading password for user with login id: {0} from storage.";
 
 	private RecordStorage recordStorage;
 	protected List<String> userRecordTypeNames = new ArrayList<>();
 	private DataGroupToUser dataGroupToUser;
+	private RequestCoalescer<String, User> userIdCoalescer = RequestCoalescer
+			.usingExceptionCopier(this::copyExceptionForWaitingCaller);
+	private RequestCoalescer<String, User> loginIdCoalescer = RequestCoalescer
+			.usingExceptionCopier(this::copyExceptionForWaitingCaller);
+	private int maxParallelReads = MAX_PARALLEL_READS;
+	private CircuitBreaker circuitBreaker;
+	private LastKnownGoodUsers lastKnownGoodUsers;
+	private UserStorageViewMetrics metrics = new UserStorageViewMetrics();
+	private MethodMetrics userByIdMetrics = metrics
+			.forMethod(UserStorageViewMetrics.GET_USER_BY_ID);
+	private MethodMetrics userByLoginIdMetrics = metrics
+			.forMethod(UserStorageViewMetrics.GET_USER_BY_LOGIN_ID);
+	private MethodMetrics usersByIdsMetrics = metrics
+			.forMethod(UserStorageViewMetrics.GET_USERS_BY_IDS);
+	private MethodMetrics credentialsMetrics = metrics
+			.forMethod(UserStorageViewMetrics.GET_USER_CREDENTIALS_BY_LOGIN_ID);
+	private MethodMetrics appTokenMetrics = metrics
+			.forMethod(UserStorageViewMetrics.GET_APP_TOKEN_BY_ID);
+	private MethodMetrics appTokensMetrics = metrics
+			.forMethod(UserStorageViewMetrics.GET_APP_TOKENS_BY_IDS);
+	private MethodMetrics systemSecretMetrics = metrics
+			.forMethod(UserStorageViewMetrics.GET_SYSTEM_SECRET_BY_ID);
 
 	public static UserStorageViewImp usingRecordStorageAndRecordTypeHandlerFactory(
 			RecordStorage recordStorage, DataGroupToUser dataGroupToUser) {
-		return new UserStorageViewImp(recordStorage, dataGroupToUser);
+		return new UserStorageViewImp(recordStorage, dataGroupToUser, CircuitBreaker.disabled(),
+				LastKnownGoodUsers.disabled());
 	}
 
-	private UserStorageViewImp(RecordStorage recordStorage, DataGroupToUser dataGroupToUser) {
+	public static UserStorageViewImp usingRecordStorageConverterCircuitBreakerAndLastKnownGood(
+			RecordStorage recordStorage, DataGroupToUser dataGroupToUser,
+			CircuitBreaker circuitBreaker, LastKnownGoodUsers lastKnownGoodUsers) {
+		return new UserStorageViewImp(recordStorage, dataGroupToUser, circuitBreaker,
+				lastKnownGoodUsers);
+	}
+
+	private UserStorageViewImp(RecordStorage recordStorage, DataGroupToUser dataGroupToUser,
+			CircuitBreaker circuitBreaker, LastKnownGoodUsers lastKnownGoodUsers) {
 		this.recordStorage = recordStorage;
 		this.dataGroupToUser = dataGroupToUser;
+		this.circuitBreaker = circuitBreaker;
+		this.lastKnownGoodUsers = lastKnownGoodUsers;
 	}
 
 	@Override
 	public User getUserById(String userId) {
+		return measureCall(userByIdMetrics,
+				() -> userIdCoalescer.coalesce(userId, () -> readUserById(userId)));
+	}
+
+	private <T> T measureCall(MethodMetrics methodMetrics, Supplier<T> call) {
+		long start = metrics.nanoTime();
+		try {
+			T result = call.get();
+			methodMetrics.recordCall(metrics.nanoTime() - start);
+			return result;
+		} catch (RuntimeException e) {
+			methodMetrics.recordFailedCall(metrics.nanoTime() - start, e);
+			throw e;
+		}
+	}
+
+	private RuntimeException copyExceptionForWaitingCaller(RuntimeException exception) {
+		if (exception.getCause() instanceof Exception cause) {
+			return UserStorageViewException.usingMessageAndException(exception.getMessage(), cause);
+		}
+		return UserStorageViewException.usingMessage(exception.getMessage());
+	}
+
+	private User readUserById(String userId) {
 		try {
-			return tryToGetUserById(userId);
+			return tryToGetUserById(userByIdMetrics, userId);
 		} catch (Exception e) {
 			String formatErrorMessage = MessageFormat.format(ERROR_MESSAGE, USER, userId);
 			throw UserStorageViewException.usingMessageAndException(formatErrorMessage, e);
 		}
 	}
 
-	private User tryToGetUserById(String userId) {
-		var userDataGroup = recordStorage.read("user", userId);
-		return dataGroupToUser.groupToUser(userDataGroup);
+	private User tryToGetUserById(MethodMetrics methodMetrics, String userId) {
+		if (!circuitBreaker.tryAcquirePermission()) {
+			return getLastKnownGoodUser(lastKnownGoodUsers.findUserById(userId));
+		}
+		try {
+			return readAndConvertUserById(methodMetrics, userId);
+		} catch (RecordNotFoundException e) {
+			lastKnownGoodUsers.forgetUser(userId);
+			throw e;
+		}
+	}
+
+	private User getLastKnownGoodUser(Optional<User> lastKnownGoodUser) {
+		if (lastKnownGoodUser.isEmpty()) {
+			throw createCircuitOpenException();
+		}
+		circuitBreaker.recordFallback();
+		return lastKnownGoodUser.get();
+	}
+
+	private CircuitOpenException createCircuitOpenException() {
+		return CircuitOpenException.withMessage("Storage is unavailable, circuit breaker is open.");
+	}
+
+	private User readAndConvertUserById(MethodMetrics methodMetrics, String userId) {
+		DataRecordGroup userDataGroup = readAndMeasure(methodMetrics,
+				() -> recordStorage.read(USER, userId));
+		User user = convertAndMeasure(methodMetrics,
+				() -> dataGroupToUser.groupToUser(userDataGroup));
+		lastKnownGoodUsers.rememberUser(user);
+		return user;
+	}
+
+	private <T> T readAndMeasure(MethodMetrics methodMetrics, Supplier<T> storageRead) {
+		long start = metrics.nanoTime();
+		try {
+			T result = storageRead.get();
+			recordStorageRead(methodMetrics, start);
+			return result;
+		} catch (RecordNotFoundException e) {
+			recordStorageRead(methodMetrics, start);
+			throw e;
+		} catch (RuntimeException | Error e) {
+			recordFailedStorageRead(methodMetrics, start, e);
+			throw e;
+		}
+	}
+
+	private void recordStorageRead(MethodMetrics methodMetrics, long start) {
+		long duration = metrics.nanoTime() - start;
+		methodMetrics.recordStorageRead(duration);
+		circuitBreaker.recordSuccess(duration);
+	}
+
+	private void recordFailedStorageRead(MethodMetrics methodMetrics, long start,
+			Throwable exception) {
+		methodMetrics.recordStorageRead(metrics.nanoTime() - start);
+		if (isInterruption(exception)) {
+			Thread.currentThread().interrupt();
+			circuitBreaker.recordInterruptedCall();
+		} else {
+			circuitBreaker.recordFailure();
+		}
+	}
+
+	private boolean isInterruption(Throwable exception) {
+		Throwable cause = exception;
+		while (cause != null) {
+			if (cause instanceof InterruptedException || cause instanceof InterruptedIOException
+					|| cause instanceof ClosedByInterruptException
+					|| cause instanceof CancellationException) {
+				return true;
+			}
+			cause = cause.getCause();
+		}
+		return Thread.currentThread().isInterrupted();
+	}
+
+	private <T> T convertAndMeasure(MethodMetrics methodMetrics, Supplier<T> conversion) {
+		long start = metrics.nanoTime();
+		try {
+			return conversion.get();
+		} finally {
+			methodMetrics.recordConversion(metrics.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public UserBatchResult getUsersByIds(Collection<String> userIds) {
+		return measureCall(usersByIdsMetrics, () -> readUsersByIds(userIds));
+	}
+
+	private UserBatchResult readUsersByIds(Collection<String> userIds) {
+		Map<String, User> users = new ConcurrentHashMap<>();
+		Set<String> missingIds = ConcurrentHashMap.newKeySet();
+		Map<String, Exception> errors = new ConcurrentHashMap<>();
+		readInParallel(userIds,
+				userId -> readUserIntoResult(userId, users, missingIds, errors));
+		throwIfAnyReadFailed(errors);
+		return new UserBatchResult(users, missingIds);
+	}
+
+	private void readInParallel(Collection<String> ids, Consumer<String> readIntoResult) {
+		Semaphore parallelReads = new Semaphore(maxParallelReads);
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (String id : new LinkedHashSet<>(ids)) {
+				parallelReads.acquireUninterruptibly();
+				executor.execute(() -> {
+					try {
+						readIntoResult.accept(id);
+					} finally {
+						parallelReads.release();
+					}
+				});
+			}
+		}
+	}
+
+	private void readUserIntoResult(String userId, Map<String, User> users,
+			Set<String> missingIds, Map<String, Exception> errors) {
+		try {
+			users.put(userId, tryToGetUserById(usersByIdsMetrics, userId));
+		} catch (RecordNotFoundException e) {
+			missingIds.add(userId);
+		} catch (Exception e) {
+			errors.put(userId, e);
+		}
+	}
+
+	private void throwIfAnyReadFailed(Map<String, Exception> errors) {
+		if (!errors.isEmpty()) {
+			String formatErrorMessage = MessageFormat.format(ERROR_MESSAGE_BATCH,
+					new TreeSet<>(errors.keySet()));
+			Exception firstError = errors.values().iterator().next();
+			throw UserStorageViewException.usingMessageAndException(formatErrorMessage,
+					firstError);
+		}
 	}
 
 	@Override
 	public User getUserByLoginId(String loginId) {
+		return measureCall(userByLoginIdMetrics,
+				() -> loginIdCoalescer.coalesce(loginId, () -> readUserByLoginId(loginId)));
+	}
+
+	private User readUserByLoginId(String loginId) {
 		try {
 			return tryToGetUserByLoginId(loginId);
 		} catch (UserStorageViewException e) {
@@ -83,22 +336,54 @@ public class UserStorageViewImp implements UserStorageView {
 	}
 
 	private User tryToGetUserByLoginId(String loginId) {
+		if (!circuitBreaker.tryAcquirePermission()) {
+			return getLastKnownGoodUser(lastKnownGoodUsers.findUserByLoginId(loginId));
+		}
+		DataRecordGroup recordGroup = readUserRecordByLoginId(userByLoginIdMetrics, loginId);
+		User user = convertAndMeasure(userByLoginIdMetrics,
+				() -> dataGroupToUser.groupToUser(recordGroup));
+		lastKnownGoodUsers.rememberUser(user);
+		return user;
+	}
+
+	private DataRecordGroup readUserRecordByLoginId(MethodMetrics methodMetrics, String loginId) {
 		Filter filter = createFilter(loginId);
-		StorageReadResult usersList = recordStorage.readList("user", filter);
+		StorageReadResult usersList = readAndMeasure(methodMetrics,
+				() -> recordStorage.readList(USER, filter));
+		possiblyForgetLoginId(usersList, loginId);
 		assertOnlyOneUserFound(usersList, loginId);
-		DataRecordGroup recordGroup = usersList.listOfDataRecordGroups.get(0);
-		return dataGroupToUser.groupToUser(recordGroup);
+		return usersList.listOfDataRecordGroups.get(0);
+	}
+
+	private void possiblyForgetLoginId(StorageReadResult usersList, String loginId) {
+		if (foundNoUser(usersList)) {
+			lastKnownGoodUsers.forgetLoginId(loginId);
+		}
 	}
 
 	private void assertOnlyOneUserFound(StorageReadResult userReadResult, String loginId) {
-		if (foundNoneOrMultipleUsers(userReadResult)) {
+		if (foundNoUser(userReadResult)) {
+			throw createNoUserFoundException(loginId);
+		}
+		if (foundMultipleUsers(userReadResult)) {
 			String formatErrorMessage = MessageFormat.format(ERROR_MESSAGE_LOGIN_ID, loginId);
 			throw UserStorageViewException.usingMessage(formatErrorMessage);
 		}
 	}
 
-	private boolean foundNoneOrMultipleUsers(StorageReadResult userReadResult) {
-		return userReadResult.totalNumberOfMatches != 1;
+	private boolean foundNoUser(StorageReadResult userReadResult) {
+		return userReadResult.totalNumberOfMatches == 0;
+	}
+
+	private UserStorageViewException createNoUserFoundException(String loginId) {
+		String formatErrorMessage = MessageFormat.format(ERROR_MESSAGE_LOGIN_ID, loginId);
+		RecordNotFoundException notFound = RecordNotFoundException
+				.withMessage("No user found with login id: " + loginId);
+		return UserStorageViewException.usingMessageAndException(formatErrorMessage, notFound);
+	}
+
+	private boolean foundMultipleUsers(StorageReadResult userReadResult) {
+		return userReadResult.totalNumberOfMatches > 1;
 	}
 
 	private Filter createFilter(String loginId) {
@@ -110,20 +395,95 @@ public class UserStorageViewImp implements UserStorageView {
 		return filter;
 	}
 
+	@Override
+	public UserCredentials getUserCredentialsByLoginId(String loginId) {
+		return measureCall(credentialsMetrics, () -> readUserCredentialsByLoginId(loginId));
+	}
+
+	private UserCredentials readUserCredentialsByLoginId(String loginId) {
+		try {
+			return tryToGetUserCredentialsByLoginId(loginId);
+		} catch (UserStorageViewException e) {
+			throw e;
+		} catch (Exception e) {
+			String formatErrorMessage = MessageFormat.format(ERROR_MESSAGE_LOGIN_ID, loginId);
+			throw UserStorageViewException.usingMessageAndException(formatErrorMessage, e);
+		}
+	}
+
+	private UserCredentials tryToGetUserCredentialsByLoginId(String loginId) {
+		throwIfCircuitIsOpen();
+		DataRecordGroup recordGroup = readUserRecordByLoginId(credentialsMetrics, loginId);
+		User user = convertAndMeasure(credentialsMetrics,
+				() -> dataGroupToUser.groupToUser(recordGroup, UserProjection.CREDENTIALS));
+		Optional<String> passwordSecret = user.active
+				? user.passwordId.map(passwordId -> readPasswordSecret(passwordId, loginId))
+				: Optional.empty();
+		return new UserCredentials(user.id, user.active, passwordSecret);
+	}
+
+	private String readPasswordSecret(String passwordId, String loginId) {
+		try {
+			return readSystemSecretByIdUsingAcquiredPermission(credentialsMetrics, passwordId);
+		} catch (UserStorageViewException e) {
+			String formatErrorMessage = MessageFormat.format(ERROR_MESSAGE_PASSWORD, loginId);
+			throw UserStorageViewException.usingMessageAndException(formatErrorMessage, e);
+		}
+	}
+
 	@Override
 	public AppToken getAppTokenById(String appTokenId) {
+		return measureCall(appTokenMetrics, () -> readAppTokenById(appTokenMetrics, appTokenId));
+	}
+
+	private AppToken readAppTokenById(MethodMetrics methodMetrics, String appTokenId) {
 		try {
-			return tryToGetAppTokenById(appTokenId);
+			return tryToGetAppTokenById(methodMetrics, appTokenId);
 		} catch (Exception e) {
 			String formatErrorMessage = MessageFormat.format(ERROR_MESSAGE, APP_TOKEN, appTokenId);
 			throw UserStorageViewException.usingMessageAndException(formatErrorMessage, e);
 		}
 	}
 
-	private AppToken tryToGetAppTokenById(String appTokenId) {
-		DataRecordGroup appToken = recordStorage.read(APP_TOKEN, appTokenId);
-		String tokenValue = appToken.getFirstAtomicValueWithNameInData("token");
-		return new AppToken(appTokenId, tokenValue);
+	private AppToken tryToGetAppTokenById(MethodMetrics methodMetrics, String appTokenId) {
+		throwIfCircuitIsOpen();
+		DataRecordGroup appToken = readAndMeasure(methodMetrics,
+				() -> recordStorage.read(APP_TOKEN, appTokenId));
+		return convertAndMeasure(methodMetrics, () -> new AppToken(appTokenId,
+				appToken.getFirstAtomicValueWithNameInData("token")));
+	}
+
+	@Override
+	public AppTokenBatchResult getAppTokensByIds(Collection<String> appTokenIds) {
+		return measureCall(appTokensMetrics, () -> readAppTokensByIds(appTokenIds));
+	}
+
+	private AppTokenBatchResult readAppTokensByIds(Collection<String> appTokenIds) {
+		Map<String, AppToken> appTokens = new ConcurrentHashMap<>();
+		Map<String, UserStorageViewException> errors = new ConcurrentHashMap<>();
+		readInParallel(appTokenIds,
+				appTokenId -> readAppTokenIntoResult(appTokenId, appTokens, errors));
+		return new AppTokenBatchResult(appTokens, errors);
+	}
+
+	private void readAppTokenIntoResult(String appTokenId, Map<String, AppToken> appTokens,
+			Map<String, UserStorageViewException> errors) {
+		try {
+			appTokens.put(appTokenId, readAppTokenById(appTokensMetrics, appTokenId));
+		} catch (UserStorageViewException e) {
+			errors.put(appTokenId, e);
+		}
+	}
+
+	/**
+	 * invalidateRecord forgets the last known good version of a changed user, so that it is not
+	 * returned while the circuit breaker is open. Nothing else is held by this view.
+	 */
+	@Override
+	public void invalidateRecord(String recordType, String recordId) {
+		if (USER.equals(recordType)) {
+			lastKnownGoodUsers.forgetUser(recordId);
+		}
 	}
 
 	public RecordStorage onlyForTestGetRecordStorage() {
@@ -134,18 +494,110 @@ public class UserStorageViewImp implements UserStorageView {
 		return dataGroupToUser;
 	}
 
+	/**
+	 * getUserIdCoalescingStatistics returns how many lookups by userId have been run against
+	 * storage and how many calls shared the result of a lookup already in progress.
+	 * 
+	 * @return a {@link CoalescingStatistics} for lookups by userId
+	 */
+	public CoalescingStatistics getUserIdCoalescingStatistics() {
+		return userIdCoalescer.getStatistics();
+	}
+
+	/**
+	 * getLoginIdCoalescingStatistics returns how many lookups by loginId have been run against
+	 * storage and how many calls shared the result of a lookup already in progress.
+	 * 
+	 * @return a {@link CoalescingStatistics} for lookups by loginId
+	 */
+	public CoalescingStatistics getLoginIdCoalescingStatistics() {
+		return loginIdCoalescer.getStatistics();
+	}
+
+	@Override
+	public Map<String, Record> getStatistics() {
+		Map<String, Record> statistics = new LinkedHashMap<>();
+		statistics.put("userIdCoalescing", getUserIdCoalescingStatistics());
+		statistics.put("loginIdCoalescing", getLoginIdCoalescingStatistics());
+		return statistics;
+	}
+
+	/**
+	 * getMetrics returns the metrics for the lookups made through this view. Use
+	 * {@link UserStorageViewMetrics#createSnapshot()} to read them.
+	 * 
+	 * @return the {@link UserStorageViewMetrics} of this view
+	 */
+	public UserStorageViewMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * getCircuitBreaker returns the circuit breaker guarding the calls to storage made by this
+	 * view. Use {@link CircuitBreaker#getStatistics()} to read its state.
+	 * 
+	 * @return the {@link CircuitBreaker} of this view
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public LastKnownGoodUsers onlyForTestGetLastKnownGoodUsers() {
+		return lastKnownGoodUsers;
+	}
+
+	public void onlyForTestSetMaxParallelReads(int maxParallelReads) {
+		this.maxParallelReads = maxParallelReads;
+	}
+
+	public RequestCoalescer<String, User> onlyForTestGetUserIdCoalescer() {
+		return userIdCoalescer;
+	}
+
+	public RequestCoalescer<String, User> onlyForTestGetLoginIdCoalescer() {
+		return loginIdCoalescer;
+	}
+
 	@Override
 	public String getSystemSecretById(String systemSecretId) {
+		return measureCall(systemSecretMetrics,
+				() -> readSystemSecretById(systemSecretMetrics, systemSecretId));
+	}
+
+	private String readSystemSecretById(MethodMetrics methodMetrics, String systemSecretId) {
 		try {
-			return tryToReadSystemSecretById(systemSecretId);
+			throwIfCircuitIsOpen();
+			return tryToReadSystemSecretById(methodMetrics, systemSecretId);
 		} catch (Exception e) {
-			throw UserStorageViewException.usingMessageAndException(
-					"Error reading systemSecret with id: " + systemSecretId + " from storage.", e);
+			throw createSystemSecretException(systemSecretId, e);
+		}
+	}
+
+	private String readSystemSecretByIdUsingAcquiredPermission(MethodMetrics methodMetrics,
+			String systemSecretId) {
+		try {
+			return tryToReadSystemSecretById(methodMetrics, systemSecretId);
+		} catch (Exception e) {
+			throw createSystemSecretException(systemSecretId, e);
+		}
+	}
+
+	private UserStorageViewException createSystemSecretException(String systemSecretId,
+			Exception e) {
+		return UserStorageViewException.usingMessageAndException(
+				"Error reading systemSecret with id: " + systemSecretId + " from storage.", e);
+	}
+
+	private void throwIfCircuitIsOpen() {
+		if (!circuitBreaker.tryAcquirePermission()) {
+			throw createCircuitOpenException();
 		}
 	}
 
-	private String tryToReadSystemSecretById(String systemSecretId) {
-		DataRecordGroup systemSecret = recordStorage.read("systemSecret", systemSecretId);
-		return systemSecret.getFirstAtomicValueWithNameInData("secret");
+	private String tryToReadSystemSecretById(MethodMetrics methodMetrics, String systemSecretId) {
+		DataRecordGroup systemSecret = readAndMeasure(methodMetrics,
+				() -> recordStorage.read(SYSTEM_SECRET, systemSecretId));
+		return convertAndMeasure(methodMetrics,
+				() -> systemSecret.getFirstAtomicValueWithNameInData("secret"));
 	}
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 Uppsala University Library
+ * Copyright 2022, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -18,26 +18,381 @@
  */
 package se.uu.ub.cora.userstorage;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
+
 import se.uu.ub.cora.gatekeeper.storage.UserStorageView;
 import se.uu.ub.cora.gatekeeper.storage.UserStorageViewInstanceProvider;
+import se.uu.ub.cora.gatekeeper.user.User;
 import se.uu.ub.cora.storage.RecordStorage;
 import se.uu.ub.cora.storage.RecordStorageProvider;
+import se.uu.ub.cora.userstorage.cache.BoundedTtlCache;
+import se.uu.ub.cora.userstorage.cache.CachingUserStorageView;
+import se.uu.ub.cora.userstorage.cache.KnownLoginIds;
+import se.uu.ub.cora.userstorage.cache.KnownLoginIdsRebuilder;
+import se.uu.ub.cora.userstorage.cache.LoginIdIndex;
+import se.uu.ub.cora.userstorage.cache.NotFound;
+import se.uu.ub.cora.userstorage.cache.NotFoundKey;
+import se.uu.ub.cora.userstorage.cache.OffHeapUserCache;
+import se.uu.ub.cora.userstorage.cache.RefreshAhead;
+import se.uu.ub.cora.userstorage.cache.SecretCache;
+import se.uu.ub.cora.userstorage.cache.TtlCache;
+import se.uu.ub.cora.userstorage.cache.UserAuthorizations;
+import se.uu.ub.cora.userstorage.cache.UserCachePreloader;
+import se.uu.ub.cora.userstorage.cache.UserReplica;
+import se.uu.ub.cora.userstorage.cache.UserReplicaSynchronizer;
+import se.uu.ub.cora.userstorage.cache.UserSnapshot;
+import se.uu.ub.cora.userstorage.cache.UserSnapshotFile;
+import se.uu.ub.cora.userstorage.cache.UserStorageCaches;
+import se.uu.ub.cora.userstorage.circuit.CircuitBreaker;
+import se.uu.ub.cora.userstorage.circuit.LastKnownGoodUsers;
+import se.uu.ub.cora.userstorage.convert.AuthorizationDictionary;
+import se.uu.ub.cora.userstorage.convert.CompactUserCodec;
 import se.uu.ub.cora.userstorage.convert.DataGroupToUser;
-import se.uu.ub.cora.userstorage.convert.DataGroupToUserImp;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUserSinglePass;
+import se.uu.ub.cora.userstorage.convert.DictionaryDataGroupToUser;
+import se.uu.ub.cora.userstorage.metrics.MetricsLogger;
 
+/**
+ * UserStorageViewInstanceProviderImp hands out one shared {@link ManagedUserStorageView}, created
+ * on first use and configured from the system properties named by the <code>_PROPERTY</code>
+ * constants.
+ */
 public class UserStorageViewInstanceProviderImp implements UserStorageViewInstanceProvider {
+	static final int USER_CACHE_MAX_SIZE = 10000;
+	static final String USER_CACHE_TIME_TO_LIVE_PROPERTY = "cora.userstorage.userCacheTimeToLive";
+	static final Duration USER_CACHE_TIME_TO_LIVE = Duration.ofSeconds(60);
+	static final String USER_CACHE_STALE_WINDOW_PROPERTY = "cora.userstorage.userCacheStaleWindow";
+	static final Duration USER_CACHE_STALE_WINDOW = Duration.ofSeconds(10);
+	static final String USER_REFRESH_AFTER_PROPERTY = "cora.userstorage.userRefreshAfter";
+	static final Duration USER_REFRESH_AFTER = Duration.ofSeconds(45);
+	static final int MAX_CONCURRENT_USER_REFRESHES = 32;
+	static final int NOT_FOUND_CACHE_MAX_SIZE = 10000;
+	static final String NOT_FOUND_CACHE_TIME_TO_LIVE_PROPERTY =
+			"cora.userstorage.notFoundCacheTimeToLive";
+	static final Duration NOT_FOUND_CACHE_TIME_TO_LIVE = Duration.ofSeconds(15);
+	static final int SECRET_CACHE_MAX_SIZE = 10000;
+	static final String SECRET_CACHE_TIME_TO_LIVE_PROPERTY =
+			"cora.userstorage.secretCacheTimeToLive";
+	static final Duration SECRET_CACHE_TIME_TO_LIVE = Duration.ofSeconds(30);
+	static final int MAX_CONCURRENT_ASYNC_LOOKUPS = 64;
+	static final String CIRCUIT_FAILURE_THRESHOLD_PROPERTY =
+			"cora.userstorage.circuitFailureThreshold";
+	static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+	static final String CIRCUIT_SLOW_CALL_THRESHOLD_PROPERTY =
+			"cora.userstorage.circuitSlowCallThreshold";
+	static final Duration CIRCUIT_SLOW_CALL_THRESHOLD = Duration.ofSeconds(2);
+	static final String CIRCUIT_OPEN_DURATION_PROPERTY = "cora.userstorage.circuitOpenDuration";
+	static final Duration CIRCUIT_OPEN_DURATION = Duration.ofSeconds(10);
+	static final int LAST_KNOWN_GOOD_MAX_SIZE = 10000;
+	static final String LAST_KNOWN_GOOD_USERS_PROPERTY = "cora.userstorage.lastKnownGoodUsers";
+	static final String LAST_KNOWN_GOOD_MAX_AGE_PROPERTY = "cora.userstorage.lastKnownGoodMaxAge";
+	static final Duration METRICS_LOG_INTERVAL = Duration.ofMinutes(5);
+	static final String PRELOAD_USERS_PROPERTY = "cora.userstorage.preloadUsers";
+	static final int PRELOAD_PAGE_SIZE = 500;
+	static final String KNOWN_LOGIN_IDS_PROPERTY = "cora.userstorage.knownLoginIdsFilter";
+	static final int KNOWN_LOGIN_IDS_EXPECTED = 100000;
+	static final double KNOWN_LOGIN_IDS_FALSE_POSITIVE_RATE = 0.01;
+	static final Duration KNOWN_LOGIN_IDS_REBUILD_INTERVAL = Duration.ofMinutes(15);
+	static final int KNOWN_LOGIN_IDS_PAGE_SIZE = 1000;
+	static final String OFF_HEAP_USER_CACHE_PROPERTY = "cora.userstorage.offHeapUserCache";
+	static final String USER_SNAPSHOT_FILE_PROPERTY = "cora.userstorage.userSnapshotFile";
+	static final String USER_REPLICA_PROPERTY = "cora.userstorage.userReplica";
+	static final Duration USER_REPLICA_SYNC_INTERVAL = Duration.ofSeconds(30);
+	static final Duration USER_REPLICA_MAX_STALENESS = Duration.ofMinutes(2);
+	static final Duration USER_REPLICA_FULL_SYNC_INTERVAL = Duration.ofHours(1);
+	static final int USER_REPLICA_PAGE_SIZE = 500;
+
+	private volatile ManagedUserStorageView sharedView;
+	private Thread shutdownHook;
+	private Duration userCacheTimeToLive;
+	private Duration userCacheStaleWindow;
+	private Duration userRefreshAfter;
+	private Duration notFoundCacheTimeToLive;
+	private Duration secretCacheTimeToLive;
+	private int circuitFailureThreshold;
+	private Duration circuitSlowCallThreshold;
+	private Duration circuitOpenDuration;
 
 	@Override
 	public UserStorageView getStorageView() {
-		DataGroupToUser dataGroupToUser = new DataGroupToUserImp();
+		ManagedUserStorageView view = sharedView;
+		if (view == null) {
+			return createAndStartSharedViewIfMissing();
+		}
+		return view;
+	}
+
+	private synchronized ManagedUserStorageView createAndStartSharedViewIfMissing() {
+		if (sharedView == null) {
+			ManagedUserStorageView view = createStorageView();
+			view.start();
+			closeViewOnShutdown(view);
+			InvalidationBusProvider.getInvalidationBus().subscribe(view);
+			sharedView = view;
+		}
+		return sharedView;
+	}
+
+	private ManagedUserStorageView createStorageView() {
+		readSettings();
 		RecordStorage recordStorage = RecordStorageProvider.getRecordStorage();
-		return UserStorageViewImp.usingRecordStorageAndRecordTypeHandlerFactory(recordStorage,
-				dataGroupToUser);
+		AuthorizationDictionary authorizationDictionary = new AuthorizationDictionary();
+		DataGroupToUser dataGroupToUser = DictionaryDataGroupToUser
+				.usingDataGroupToUserAndDictionary(new DataGroupToUserSinglePass(),
+						authorizationDictionary);
+		UserStorageViewImp userStorageView = UserStorageViewImp
+				.usingRecordStorageConverterCircuitBreakerAndLastKnownGood(recordStorage,
+						dataGroupToUser, createCircuitBreaker(), createLastKnownGoodUsers());
+		Optional<UserSnapshotFile> snapshotFile = createUserSnapshotFile();
+		UserStorageCaches caches = createCaches(createKnownLoginIds(), authorizationDictionary,
+				openUserSnapshot(snapshotFile));
+		RefreshAhead<String> userRefreshAhead = RefreshAhead
+				.usingRefreshAfterAndMaxConcurrentRefreshes(userRefreshAfter,
+						MAX_CONCURRENT_USER_REFRESHES);
+		CachingUserStorageView view = CachingUserStorageView
+				.usingUserStorageViewCachesMaxAsyncLookupsAndRefreshAhead(userStorageView, caches,
+						MAX_CONCURRENT_ASYNC_LOOKUPS, userRefreshAhead);
+		view.addBackgroundWorker(MetricsLogger
+				.usingMetricsCircuitBreakerStatisticsSourcesAndInterval(
+						userStorageView.getMetrics(), userStorageView.getCircuitBreaker(),
+						List.of(userStorageView, view), METRICS_LOG_INTERVAL));
+		view.addBackgroundWorker(PeriodicWorker.usingNameIntervalAndTask(
+				"userstorage-secret-expiry", secretCacheTimeToLive,
+				caches.secretCache()::removeExpired));
+		possiblyAddUserExpiry(view, caches.userCache());
+		possiblyAddPreloader(view, recordStorage, dataGroupToUser, caches);
+		possiblyAddUserSnapshotWriter(view, snapshotFile, caches);
+		possiblyAddKnownLoginIdsRebuilder(view, recordStorage, caches.knownLoginIds());
+		possiblyAddUserReplicaSynchronizer(view, recordStorage, dataGroupToUser, caches);
+		return view;
+	}
+
+	private void readSettings() {
+		userCacheTimeToLive = readPositiveDuration(USER_CACHE_TIME_TO_LIVE_PROPERTY,
+				USER_CACHE_TIME_TO_LIVE);
+		userCacheStaleWindow = readDuration(USER_CACHE_STALE_WINDOW_PROPERTY,
+				USER_CACHE_STALE_WINDOW);
+		userRefreshAfter = readPositiveDuration(USER_REFRESH_AFTER_PROPERTY, USER_REFRESH_AFTER);
+		notFoundCacheTimeToLive = readPositiveDuration(NOT_FOUND_CACHE_TIME_TO_LIVE_PROPERTY,
+				NOT_FOUND_CACHE_TIME_TO_LIVE);
+		secretCacheTimeToLive = readPositiveDuration(SECRET_CACHE_TIME_TO_LIVE_PROPERTY,
+				SECRET_CACHE_TIME_TO_LIVE);
+		circuitFailureThreshold = readPositiveInt(CIRCUIT_FAILURE_THRESHOLD_PROPERTY,
+				CIRCUIT_FAILURE_THRESHOLD);
+		circuitSlowCallThreshold = readPositiveDuration(CIRCUIT_SLOW_CALL_THRESHOLD_PROPERTY,
+				CIRCUIT_SLOW_CALL_THRESHOLD);
+		circuitOpenDuration = readPositiveDuration(CIRCUIT_OPEN_DURATION_PROPERTY,
+				CIRCUIT_OPEN_DURATION);
+	}
+
+	private Duration readPositiveDuration(String property, Duration defaultValue) {
+		Duration duration = readDuration(property, defaultValue);
+		if (duration.isZero()) {
+			throw createInvalidPropertyException(property, "a positive duration");
+		}
+		return duration;
+	}
+
+	private Duration readDuration(String property, Duration defaultValue) {
+		String value = System.getProperty(property);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			Duration duration = Duration.parse(value);
+			if (!duration.isNegative()) {
+				return duration;
+			}
+		} catch (DateTimeParseException e) {
+			// reported below together with negative durations
+		}
+		throw createInvalidPropertyException(property, "an ISO-8601 duration, such as PT30S");
+	}
+
+	private int readPositiveInt(String property, int defaultValue) {
+		String value = System.getProperty(property);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			int number = Integer.parseInt(value);
+			if (number > 0) {
+				return number;
+			}
+		} catch (NumberFormatException e) {
+			// reported below together with numbers that are not positive
+		}
+		throw createInvalidPropertyException(property, "a positive integer");
+	}
+
+	private IllegalArgumentException createInvalidPropertyException(String property,
+			String expected) {
+		return new IllegalArgumentException("System property " + property + " must be "
+				+ expected + ", but was: " + System.getProperty(property));
+	}
+
+	private void possiblyAddUserExpiry(ManagedUserStorageView view,
+			TtlCache<String, User> userCache) {
+		if (userCache instanceof OffHeapUserCache) {
+			view.addBackgroundWorker(PeriodicWorker.usingNameIntervalAndTask(
+					"userstorage-user-expiry", userCacheTimeToLive, userCache::removeExpired));
+		}
+	}
+
+	private Optional<UserSnapshotFile> createUserSnapshotFile() {
+		String snapshotPath = System.getProperty(USER_SNAPSHOT_FILE_PROPERTY);
+		if (snapshotPath == null) {
+			return Optional.empty();
+		}
+		return Optional.of(UserSnapshotFile.usingPathAndMaxAge(Path.of(snapshotPath),
+				userCacheTimeToLive.multipliedBy(2)));
+	}
+
+	private UserSnapshot openUserSnapshot(Optional<UserSnapshotFile> snapshotFile) {
+		return snapshotFile.map(UserSnapshotFile::open).orElseGet(UserSnapshot::empty);
+	}
+
+	private void possiblyAddUserSnapshotWriter(ManagedUserStorageView view,
+			Optional<UserSnapshotFile> snapshotFile, UserStorageCaches caches) {
+		snapshotFile.ifPresent(file -> view.addBackgroundWorker(
+				PeriodicWorker.usingNameIntervalAndTask("userstorage-user-snapshot",
+						userCacheTimeToLive, () -> writeSnapshotUnlessWarmingUp(file, caches))));
+	}
+
+	private void writeSnapshotUnlessWarmingUp(UserSnapshotFile file, UserStorageCaches caches) {
+		if (!caches.userSnapshot().isOpen()) {
+			file.write(caches.userCache());
+		}
+	}
+
+	private KnownLoginIds createKnownLoginIds() {
+		if (Boolean.getBoolean(KNOWN_LOGIN_IDS_PROPERTY)) {
+			return KnownLoginIds.usingExpectedLoginIdsAndFalsePositiveRate(
+					KNOWN_LOGIN_IDS_EXPECTED, KNOWN_LOGIN_IDS_FALSE_POSITIVE_RATE);
+		}
+		return KnownLoginIds.disabled();
+	}
+
+	private void possiblyAddKnownLoginIdsRebuilder(ManagedUserStorageView view,
+			RecordStorage recordStorage, KnownLoginIds knownLoginIds) {
+		if (knownLoginIds.isEnabled()) {
+			KnownLoginIdsRebuilder rebuilder = KnownLoginIdsRebuilder
+					.usingRecordStorageKnownLoginIdsAndPageSize(recordStorage, knownLoginIds,
+							KNOWN_LOGIN_IDS_PAGE_SIZE);
+			view.addBackgroundWorker(PeriodicWorker.usingNameInitialDelayIntervalAndTask(
+					"userstorage-known-loginids", Duration.ZERO,
+					KNOWN_LOGIN_IDS_REBUILD_INTERVAL, rebuilder));
+		}
+	}
+
+	private UserReplica createUserReplica() {
+		if (Boolean.getBoolean(USER_REPLICA_PROPERTY)) {
+			return UserReplica.usingMaxStalenessAndFullSyncInterval(USER_REPLICA_MAX_STALENESS,
+					USER_REPLICA_FULL_SYNC_INTERVAL);
+		}
+		return UserReplica.disabled();
+	}
+
+	private void possiblyAddUserReplicaSynchronizer(ManagedUserStorageView view,
+			RecordStorage recordStorage, DataGroupToUser dataGroupToUser,
+			UserStorageCaches caches) {
+		if (caches.userReplica().isEnabled()) {
+			UserReplicaSynchronizer synchronizer = UserReplicaSynchronizer
+					.usingRecordStorageConverterCachesAndPageSize(recordStorage, dataGroupToUser,
+							caches, USER_REPLICA_PAGE_SIZE);
+			view.addBackgroundWorker(PeriodicWorker.usingNameInitialDelayIntervalAndTask(
+					"userstorage-user-replica", Duration.ZERO, USER_REPLICA_SYNC_INTERVAL,
+					synchronizer));
+		}
+	}
+
+	private CircuitBreaker createCircuitBreaker() {
+		return CircuitBreaker.usingFailureThresholdSlowCallThresholdAndOpenDuration(
+				circuitFailureThreshold, circuitSlowCallThreshold, circuitOpenDuration);
+	}
+
+	private LastKnownGoodUsers createLastKnownGoodUsers() {
+		if (Boolean.getBoolean(LAST_KNOWN_GOOD_USERS_PROPERTY)) {
+			return LastKnownGoodUsers.usingMaxSizeAndMaxAge(LAST_KNOWN_GOOD_MAX_SIZE,
+					readPositiveDuration(LAST_KNOWN_GOOD_MAX_AGE_PROPERTY, userCacheTimeToLive));
+		}
+		return LastKnownGoodUsers.disabled();
+	}
+
+	private void possiblyAddPreloader(ManagedUserStorageView view, RecordStorage recordStorage,
+			DataGroupToUser dataGroupToUser, UserStorageCaches caches) {
+		if (Boolean.getBoolean(PRELOAD_USERS_PROPERTY) || caches.userSnapshot().isOpen()) {
+			view.addBackgroundWorker(
+					UserCachePreloader.usingRecordStorageConverterCachesAndPageSize(recordStorage,
+							dataGroupToUser, caches, PRELOAD_PAGE_SIZE));
+		}
+	}
+
+	private UserStorageCaches createCaches(KnownLoginIds knownLoginIds,
+			AuthorizationDictionary authorizationDictionary, UserSnapshot userSnapshot) {
+		TtlCache<String, User> userCache = createUserCache(authorizationDictionary);
+		LoginIdIndex loginIdIndex = LoginIdIndex.usingMaxSizeAndTimeToLive(USER_CACHE_MAX_SIZE,
+				userCacheTimeToLive);
+		BoundedTtlCache<NotFoundKey, NotFound> notFoundCache = BoundedTtlCache
+				.usingMaxSizeAndTimeToLive(NOT_FOUND_CACHE_MAX_SIZE, notFoundCacheTimeToLive);
+		SecretCache secretCache = SecretCache.usingMaxSizeAndTimeToLive(SECRET_CACHE_MAX_SIZE,
+				secretCacheTimeToLive);
+		UserAuthorizations userAuthorizations = UserAuthorizations
+				.usingDictionaryMaxSizeAndTimeToLive(authorizationDictionary, USER_CACHE_MAX_SIZE,
+						userCacheTimeToLive.plus(userCacheStaleWindow));
+		return new UserStorageCaches(userCache, loginIdIndex, notFoundCache, secretCache,
+				knownLoginIds, userAuthorizations, userSnapshot, createUserReplica());
+	}
+
+	private TtlCache<String, User> createUserCache(
+			AuthorizationDictionary authorizationDictionary) {
+		if (Boolean.getBoolean(OFF_HEAP_USER_CACHE_PROPERTY)) {
+			return OffHeapUserCache.usingCodecMaxSizeTimeToLiveAndStaleWindow(
+					CompactUserCodec.usingDictionary(authorizationDictionary), USER_CACHE_MAX_SIZE,
+					userCacheTimeToLive, userCacheStaleWindow);
+		}
+		return BoundedTtlCache.usingMaxSizeTimeToLiveAndStaleWindow(USER_CACHE_MAX_SIZE,
+				userCacheTimeToLive, userCacheStaleWindow);
+	}
+
+	private void closeViewOnShutdown(ManagedUserStorageView view) {
+		shutdownHook = new Thread(view::close, "userstorage-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/**
+	 * closeStorageView unsubscribes the shared view from the {@link InvalidationBus}, removes its
+	 * shutdown hook and closes it, if one has been created. The next call to
+	 * {@link #getStorageView()} creates and starts a new view.
+	 */
+	public synchronized void closeStorageView() {
+		if (sharedView != null) {
+			InvalidationBusProvider.getInvalidationBus().unsubscribe(sharedView);
+			removeShutdownHook();
+			sharedView.close();
+			sharedView = null;
+		}
+	}
+
+	private void removeShutdownHook() {
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// the JVM is already shutting down and the hook closes the view
+		}
+		shutdownHook = null;
+	}
+
+	Thread onlyForTestGetShutdownHook() {
+		return shutdownHook;
 	}
 
 	@Override
 	public int getOrderToSelectImplementionsBy() {
 		return 0;
 	}
-
 }
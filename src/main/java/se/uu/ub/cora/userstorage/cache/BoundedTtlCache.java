@@ -0,0 +1,368 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import se.uu.ub.cora.userstorage.metrics.CacheStatistics;
+
+/**
+ * BoundedTtlCache is a thread safe in memory cache with a maximum number of entries and a time to
+ * live for each entry.
+ * <p>
+ * When the cache is full the least recently used entry is evicted. Entries older than the time to
+ * live are never returned and are removed when they are found. Large caches are split into
+ * segments with their own lock and LRU order, so that concurrent lookups of different keys do not
+ * wait for each other.
+ * <p>
+ * A removal listener can be given when the cache is created. It is called with every value that
+ * leaves the cache, by eviction, expiration, invalidation or by being replaced, while the lock for
+ * the segment is held. The listener must therefore be fast and must not use the cache.
+ * <p>
+ * A stale window can also be given when the cache is created. Entries older than the time to live
+ * are then kept for the length of the stale window. They are never returned from
+ * {@link #get(Object)} but can be read, marked as stale, using {@link #getCachedValue(Object)}, so
+ * that a caller can choose to use a stale value while a new one is loaded.
+ */
+public class BoundedTtlCache<K, V> implements TtlCache<K, V> {
+	private static final int MIN_SIZE_FOR_SEGMENTS = 1024;
+	private static final int NUMBER_OF_SEGMENTS = 16;
+
+	private final int maxSize;
+	private final long timeToLiveNanos;
+	private final long removeAfterNanos;
+	private final Segment<K, V>[] segments;
+	private final Consumer<V> removalListener;
+	private LongSupplier nanoTimeSource = System::nanoTime;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+
+	public static <K, V> BoundedTtlCache<K, V> usingMaxSizeAndTimeToLive(int maxSize,
+			Duration timeToLive) {
+		return new BoundedTtlCache<>(maxSize, timeToLive, Duration.ZERO, value -> {
+		});
+	}
+
+	public static <K, V> BoundedTtlCache<K, V> usingMaxSizeTimeToLiveAndStaleWindow(int maxSize,
+			Duration timeToLive, Duration staleWindow) {
+		return new BoundedTtlCache<>(maxSize, timeToLive, staleWindow, value -> {
+		});
+	}
+
+	public static <K, V> BoundedTtlCache<K, V> usingMaxSizeTimeToLiveStaleWindowAndRemovalListener(
+			int maxSize, Duration timeToLive, Duration staleWindow, Consumer<V> removalListener) {
+		return new BoundedTtlCache<>(maxSize, timeToLive, staleWindow, removalListener);
+	}
+
+	public static <K, V> BoundedTtlCache<K, V> usingMaxSizeTimeToLiveAndRemovalListener(
+			int maxSize, Duration timeToLive, Consumer<V> removalListener) {
+		return new BoundedTtlCache<>(maxSize, timeToLive, Duration.ZERO, removalListener);
+	}
+
+	@SuppressWarnings("unchecked")
+	private BoundedTtlCache(int maxSize, Duration timeToLive, Duration staleWindow,
+			Consumer<V> removalListener) {
+		this.maxSize = maxSize;
+		this.timeToLiveNanos = timeToLive.toNanos();
+		this.removeAfterNanos = timeToLiveNanos + staleWindow.toNanos();
+		this.removalListener = removalListener;
+		int numberOfSegments = maxSize < MIN_SIZE_FOR_SEGMENTS ? 1 : NUMBER_OF_SEGMENTS;
+		int maxSizePerSegment = (int) Math.ceil((double) maxSize / numberOfSegments);
+		segments = new Segment[numberOfSegments];
+		for (int i = 0; i < numberOfSegments; i++) {
+			segments[i] = new Segment<>(maxSizePerSegment, evictions, removalListener);
+		}
+	}
+
+	/**
+	 * get returns the value cached for the key, if there is one and it has not expired.
+	 * 
+	 * @param key
+	 *            the key to look up
+	 * @return an Optional with the cached value, or an empty Optional if no usable value exists
+	 */
+	@Override
+	public Optional<V> get(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		long now = nanoTimeSource.getAsLong();
+		synchronized (segment) {
+			CacheEntry<V> entry = getEntryYoungerThan(segment, key, now, timeToLiveNanos);
+			return entry == null ? Optional.empty() : Optional.of(entry.value());
+		}
+	}
+
+	/**
+	 * getCachedValue returns the value cached for the key together with its age, also if the
+	 * value is older than the time to live but still within the stale window of the cache.
+	 * 
+	 * @param key
+	 *            the key to look up
+	 * @return an Optional with the {@link CachedValue}, or an empty Optional if no entry exists
+	 *         within the time to live and stale window
+	 */
+	@Override
+	public Optional<CachedValue<V>> getCachedValue(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		long now = nanoTimeSource.getAsLong();
+		synchronized (segment) {
+			CacheEntry<V> entry = getEntryYoungerThan(segment, key, now, removeAfterNanos);
+			if (entry == null) {
+				return Optional.empty();
+			}
+			long ageNanos = now - entry.loadedAtNanos();
+			return Optional.of(
+					new CachedValue<>(entry.value(), ageNanos, ageNanos >= timeToLiveNanos));
+		}
+	}
+
+	private CacheEntry<V> getEntryYoungerThan(Segment<K, V> segment, K key, long now,
+			long maxAgeNanos) {
+		CacheEntry<V> entry = segment.get(key);
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		if (isExpiredAt(entry, now)) {
+			removeEntry(segment, key);
+			expirations.increment();
+			misses.increment();
+			return null;
+		}
+		if (now - entry.loadedAtNanos() >= maxAgeNanos) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry;
+	}
+
+	private boolean isExpiredAt(CacheEntry<V> entry, long nanoTime) {
+		return nanoTime - entry.loadedAtNanos() >= removeAfterNanos;
+	}
+
+	private void removeEntry(Segment<K, V> segment, K key) {
+		CacheEntry<V> removed = segment.remove(key);
+		if (removed != null) {
+			removalListener.accept(removed.value());
+		}
+	}
+
+	/**
+	 * put adds or replaces the value for the key. If the cache becomes larger than its max size,
+	 * the least recently used entry is evicted.
+	 * 
+	 * @param key
+	 *            the key to cache the value under
+	 * @param value
+	 *            the value to cache
+	 */
+	@Override
+	public void put(K key, V value) {
+		putLoadedAt(key, value, nanoTimeSource.getAsLong());
+	}
+
+	@Override
+	public void putWithAge(K key, V value, Duration age) {
+		putLoadedAt(key, value, nanoTimeSource.getAsLong() - age.toNanos());
+	}
+
+	private void putLoadedAt(K key, V value, long loadedAtNanos) {
+		Segment<K, V> segment = segmentFor(key);
+		CacheEntry<V> entry = new CacheEntry<>(value, loadedAtNanos);
+		synchronized (segment) {
+			CacheEntry<V> replaced = segment.put(key, entry);
+			possiblyNotifyReplaced(replaced, value);
+		}
+	}
+
+	private void possiblyNotifyReplaced(CacheEntry<V> replaced, V value) {
+		if (replaced != null && replaced.value() != value) {
+			removalListener.accept(replaced.value());
+		}
+	}
+
+	/**
+	 * invalidate removes the entry for the key, if it exists.
+	 * 
+	 * @param key
+	 *            the key to remove
+	 */
+	@Override
+	public void invalidate(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			removeEntry(segment, key);
+		}
+	}
+
+	/**
+	 * invalidateAll removes all entries from the cache.
+	 */
+	@Override
+	public void invalidateAll() {
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.values().forEach(entry -> removalListener.accept(entry.value()));
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * removeExpired removes all entries older than the time to live and stale window. Expired
+	 * entries are otherwise only removed when they are looked up or evicted, this method can be
+	 * called periodically to release them earlier.
+	 */
+	@Override
+	public void removeExpired() {
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				removeExpiredFromSegment(segment);
+			}
+		}
+	}
+
+	private void removeExpiredFromSegment(Segment<K, V> segment) {
+		long now = nanoTimeSource.getAsLong();
+		var iterator = segment.values().iterator();
+		while (iterator.hasNext()) {
+			CacheEntry<V> entry = iterator.next();
+			if (isExpiredAt(entry, now)) {
+				iterator.remove();
+				expirations.increment();
+				removalListener.accept(entry.value());
+			}
+		}
+	}
+
+	/**
+	 * forEachValue calls the action with each value that is younger than the time to live. The
+	 * values of a segment are copied while its lock is held, and the action is called without the
+	 * lock, so the action may use the cache.
+	 */
+	@Override
+	public void forEachValue(Consumer<V> action) {
+		for (Segment<K, V> segment : segments) {
+			copyValuesYoungerThanTimeToLive(segment).forEach(action);
+		}
+	}
+
+	private List<V> copyValuesYoungerThanTimeToLive(Segment<K, V> segment) {
+		long now = nanoTimeSource.getAsLong();
+		synchronized (segment) {
+			List<V> values = new ArrayList<>(segment.size());
+			for (CacheEntry<V> entry : segment.values()) {
+				if (now - entry.loadedAtNanos() < timeToLiveNanos) {
+					values.add(entry.value());
+				}
+			}
+			return values;
+		}
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	@Override
+	public Duration getTimeToLive() {
+		return Duration.ofNanos(timeToLiveNanos);
+	}
+
+	@Override
+	public Duration getStaleWindow() {
+		return Duration.ofNanos(removeAfterNanos - timeToLiveNanos);
+	}
+
+	/**
+	 * getStatistics returns a snapshot of the hit, miss, eviction and expiration counters of the
+	 * cache.
+	 * 
+	 * @return a {@link CacheStatistics} with the current counters
+	 */
+	@Override
+	public CacheStatistics getStatistics() {
+		return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(),
+				size());
+	}
+
+	private Segment<K, V> segmentFor(K key) {
+		int hash = key.hashCode();
+		int spreadHash = hash ^ (hash >>> 16);
+		return segments[spreadHash & (segments.length - 1)];
+	}
+
+	public void onlyForTestSetNanoTimeSource(LongSupplier nanoTimeSource) {
+		this.nanoTimeSource = nanoTimeSource;
+	}
+
+	public int onlyForTestGetNumberOfSegments() {
+		return segments.length;
+	}
+
+	private static record CacheEntry<V>(V value, long loadedAtNanos) {
+	}
+
+	private static class Segment<K, V> extends LinkedHashMap<K, CacheEntry<V>> {
+		private static final long serialVersionUID = 1L;
+		private final transient int maxSize;
+		private final transient LongAdder evictions;
+		private final transient Consumer<V> removalListener;
+
+		Segment(int maxSize, LongAdder evictions, Consumer<V> removalListener) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+			this.evictions = evictions;
+			this.removalListener = removalListener;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+			if (size() > maxSize) {
+				evictions.increment();
+				removalListener.accept(eldest.getValue().value());
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+/**
+ * CachedValue is a value read from a {@link BoundedTtlCache} together with its age.
+ *
+ * @param value
+ *            the cached value
+ * @param ageNanos
+ *            the time in nanoseconds since the value was put in the cache
+ * @param stale
+ *            true if the value is older than the time to live of the cache and is only kept
+ *            because of the stale window of the cache
+ */
+public record CachedValue<V>(V value, long ageNanos, boolean stale) {
+}
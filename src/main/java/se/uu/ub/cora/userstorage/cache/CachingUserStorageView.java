@@ -0,0 +1,768 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static se.uu.ub.cora.userstorage.RecordTypes.APP_TOKEN;
+import static se.uu.ub.cora.userstorage.RecordTypes.SYSTEM_SECRET;
+import static se.uu.ub.cora.userstorage.RecordTypes.USER;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+import se.uu.ub.cora.userstorage.AppTokenBatchResult;
+import se.uu.ub.cora.userstorage.AsyncUserStorageViewImp;
+import se.uu.ub.cora.userstorage.BackgroundWorker;
+import se.uu.ub.cora.userstorage.BackgroundWorkers;
+import se.uu.ub.cora.userstorage.Deadline;
+import se.uu.ub.cora.userstorage.DeadlineUserStorageViewImp;
+import se.uu.ub.cora.userstorage.ExtendedUserStorageView;
+import se.uu.ub.cora.userstorage.ManagedUserStorageView;
+import se.uu.ub.cora.userstorage.UserBatchResult;
+import se.uu.ub.cora.userstorage.UserCredentials;
+import se.uu.ub.cora.userstorage.convert.UserAuthorization;
+import se.uu.ub.cora.userstorage.metrics.CacheStatistics;
+import se.uu.ub.cora.userstorage.metrics.KnownLoginIdsStatistics;
+import se.uu.ub.cora.userstorage.metrics.RefreshStatistics;
+import se.uu.ub.cora.userstorage.metrics.StatisticsSource;
+
+/**
+ * CachingUserStorageView is a thread safe read through cache in front of another
+ * {@link ExtendedUserStorageView}, using the caches in {@link UserStorageCaches}, and is meant to
+ * be shared by all requests.
+ */
+public class CachingUserStorageView implements ManagedUserStorageView, StatisticsSource {
+	static final int DEFAULT_MAX_CONCURRENT_ASYNC_LOOKUPS = 64;
+	static final Duration MIN_REMAINING_TIME_FOR_LOOKUP = Duration.ofMillis(1);
+
+	private BackgroundWorkers backgroundWorkers = new BackgroundWorkers();
+	private ExtendedUserStorageView userStorageView;
+	private UserStorageCaches caches;
+	private TtlCache<String, User> userCache;
+	private LoginIdIndex loginIdIndex;
+	private BoundedTtlCache<NotFoundKey, NotFound> notFoundCache;
+	private SecretCache secretCache;
+	private KnownLoginIds knownLoginIds;
+	private UserAuthorizations userAuthorizations;
+	private UserSnapshot userSnapshot;
+	private UserReplica userReplica;
+	private AsyncUserStorageViewImp asyncView;
+	private DeadlineUserStorageViewImp deadlineView;
+	private RefreshAhead<String> userRefreshAhead;
+	private InvalidationGenerations<Object> generations;
+
+	public static CachingUserStorageView usingUserStorageViewAndCaches(
+			ExtendedUserStorageView userStorageView, UserStorageCaches caches) {
+		return new CachingUserStorageView(userStorageView, caches,
+				DEFAULT_MAX_CONCURRENT_ASYNC_LOOKUPS, RefreshAhead.disabled());
+	}
+
+	public static CachingUserStorageView usingUserStorageViewCachesAndMaxAsyncLookups(
+			ExtendedUserStorageView userStorageView, UserStorageCaches caches,
+			int maxConcurrentAsyncLookups) {
+		return new CachingUserStorageView(userStorageView, caches, maxConcurrentAsyncLookups,
+				RefreshAhead.disabled());
+	}
+
+	public static CachingUserStorageView usingUserStorageViewCachesMaxAsyncLookupsAndRefreshAhead(
+			ExtendedUserStorageView userStorageView, UserStorageCaches caches,
+			int maxConcurrentAsyncLookups, RefreshAhead<String> userRefreshAhead) {
+		return new CachingUserStorageView(userStorageView, caches, maxConcurrentAsyncLookups,
+				userRefreshAhead);
+	}
+
+	private CachingUserStorageView(ExtendedUserStorageView userStorageView,
+			UserStorageCaches caches, int maxConcurrentAsyncLookups,
+			RefreshAhead<String> userRefreshAhead) {
+		this.userStorageView = userStorageView;
+		this.userRefreshAhead = userRefreshAhead;
+		this.caches = caches;
+		this.userCache = caches.userCache();
+		this.loginIdIndex = caches.loginIdIndex();
+		this.notFoundCache = caches.notFoundCache();
+		this.secretCache = caches.secretCache();
+		this.knownLoginIds = caches.knownLoginIds();
+		this.userAuthorizations = caches.userAuthorizations();
+		this.userSnapshot = caches.userSnapshot();
+		this.userReplica = caches.userReplica();
+		this.generations = caches.generations();
+		this.asyncView = AsyncUserStorageViewImp
+				.usingUserStorageViewAndMaxConcurrentLookups(this, maxConcurrentAsyncLookups);
+		this.deadlineView = DeadlineUserStorageViewImp.usingAsyncViewAndMinRemainingTime(asyncView,
+				MIN_REMAINING_TIME_FOR_LOOKUP);
+	}
+
+	@Override
+	public User getUserById(String userId) {
+		Optional<User> cachedUser = possiblyGetCachedUser(userId);
+		if (cachedUser.isPresent()) {
+			return cachedUser.get();
+		}
+		NotFoundKey notFoundKey = new NotFoundKey(NotFoundKey.USER, userId);
+		throwIfKnownToBeNotFound(notFoundKey);
+		return readAndCacheUserById(userId, notFoundKey);
+	}
+
+	private Optional<User> possiblyGetCachedUser(String userId) {
+		Optional<CachedValue<User>> cachedValue = userCache.getCachedValue(userId);
+		if (cachedValue.isPresent()) {
+			return possiblyUseCachedValue(userId, cachedValue.get());
+		}
+		Optional<User> replicatedUser = userReplica.findUserById(userId);
+		if (replicatedUser.isPresent()) {
+			return replicatedUser;
+		}
+		return userSnapshot.findUserById(userId);
+	}
+
+	private Optional<User> possiblyUseCachedValue(String userId, CachedValue<User> cachedValue) {
+		if (!userRefreshAhead.needsRefresh(cachedValue)) {
+			return Optional.of(cachedValue.value());
+		}
+		boolean refreshInFlight = userRefreshAhead.refreshInBackground(userId,
+				() -> refreshUser(userId));
+		if (!cachedValue.stale()) {
+			return Optional.of(cachedValue.value());
+		}
+		if (refreshInFlight) {
+			userRefreshAhead.recordStaleHit();
+			return Optional.of(cachedValue.value());
+		}
+		return Optional.empty();
+	}
+
+	private void refreshUser(String userId) {
+		long generation = generations.getGeneration(userId);
+		try {
+			cacheUserIfNotInvalidatedSince(userStorageView.getUserById(userId), generation);
+		} catch (UserStorageViewException e) {
+			possiblyRemoveUserNotFound(userId, generation, e);
+			throw e;
+		}
+	}
+
+	private void cacheUserIfNotInvalidatedSince(User user, long generation) {
+		if (generations.isInvalidatedSince(user.id, generation)) {
+			return;
+		}
+		cacheUser(user);
+		if (generations.isInvalidatedSince(user.id, generation)) {
+			userCache.invalidate(user.id);
+		}
+	}
+
+	private void possiblyRemoveUserNotFound(String userId, long generation,
+			UserStorageViewException e) {
+		if (e.getCause() instanceof RecordNotFoundException notFound
+				&& !generations.isInvalidatedSince(userId, generation)) {
+			userCache.invalidate(userId);
+			notFoundCache.put(new NotFoundKey(NotFoundKey.USER, userId),
+					new NotFound(e.getMessage(), notFound));
+		}
+	}
+
+	private void throwIfKnownToBeNotFound(NotFoundKey notFoundKey) {
+		Optional<NotFound> notFound = notFoundCache.get(notFoundKey);
+		if (notFound.isPresent()) {
+			throw notFound.get().createException();
+		}
+	}
+
+	private User readAndCacheUserById(String userId, NotFoundKey notFoundKey) {
+		long generation = generations.getGeneration(userId);
+		try {
+			User user = userStorageView.getUserById(userId);
+			cacheUserIfNotInvalidatedSince(user, generation);
+			return user;
+		} catch (UserStorageViewException e) {
+			possiblyRememberUserNotFound(notFoundKey, generation, e);
+			throw e;
+		}
+	}
+
+	private void possiblyRememberUserNotFound(NotFoundKey notFoundKey, long generation,
+			UserStorageViewException e) {
+		if (!generations.isInvalidatedSince(notFoundKey.id(), generation)) {
+			possiblyRememberNotFound(notFoundKey, e);
+		}
+	}
+
+	private void possiblyRememberNotFound(NotFoundKey notFoundKey, UserStorageViewException e) {
+		if (e.getCause() instanceof RecordNotFoundException notFound) {
+			notFoundCache.put(notFoundKey, new NotFound(e.getMessage(), notFound));
+		}
+	}
+
+	private void cacheUser(User user) {
+		userCache.put(user.id, user);
+		knownLoginIds.add(user.loginId);
+	}
+
+	@Override
+	public UserBatchResult getUsersByIds(Collection<String> userIds) {
+		Map<String, User> users = new LinkedHashMap<>();
+		Set<String> missingIds = new LinkedHashSet<>();
+		List<String> idsToRead = new ArrayList<>();
+		for (String userId : new LinkedHashSet<>(userIds)) {
+			sortByCacheContent(userId, users, missingIds, idsToRead);
+		}
+		if (!idsToRead.isEmpty()) {
+			readAndCacheUsers(idsToRead, users, missingIds);
+		}
+		return new UserBatchResult(users, missingIds);
+	}
+
+	private void sortByCacheContent(String userId, Map<String, User> users,
+			Set<String> missingIds, List<String> idsToRead) {
+		Optional<User> cachedUser = possiblyGetCachedUser(userId);
+		if (cachedUser.isPresent()) {
+			users.put(userId, cachedUser.get());
+		} else if (isKnownToBeNotFound(new NotFoundKey(NotFoundKey.USER, userId))) {
+			missingIds.add(userId);
+		} else {
+			idsToRead.add(userId);
+		}
+	}
+
+	private boolean isKnownToBeNotFound(NotFoundKey notFoundKey) {
+		return notFoundCache.get(notFoundKey).isPresent();
+	}
+
+	private void readAndCacheUsers(List<String> idsToRead, Map<String, User> users,
+			Set<String> missingIds) {
+		Map<String, Long> userGenerations = new HashMap<>();
+		for (String userId : idsToRead) {
+			userGenerations.put(userId, generations.getGeneration(userId));
+		}
+		UserBatchResult readResult = userStorageView.getUsersByIds(idsToRead);
+		for (User user : readResult.users().values()) {
+			possiblyCacheReadUser(userGenerations, user);
+			users.put(user.id, user);
+		}
+		missingIds.addAll(readResult.missingIds());
+	}
+
+	private void possiblyCacheReadUser(Map<String, Long> userGenerations, User user) {
+		Long generation = userGenerations.get(user.id);
+		if (generation != null) {
+			cacheUserIfNotInvalidatedSince(user, generation);
+		}
+	}
+
+	@Override
+	public User getUserByLoginId(String loginId) {
+		Optional<User> indexedUser = possiblyGetUserUsingLoginIdIndex(loginId);
+		if (indexedUser.isPresent()) {
+			return indexedUser.get();
+		}
+		NotFoundKey notFoundKey = new NotFoundKey(NotFoundKey.LOGIN_ID, loginId);
+		throwIfKnownToBeNotFound(notFoundKey);
+		throwIfLoginIdIsKnownNotToExist(loginId);
+		return readAndCacheUserByLoginId(loginId, notFoundKey);
+	}
+
+	private void throwIfLoginIdIsKnownNotToExist(String loginId) {
+		if (!knownLoginIds.mightExist(loginId)) {
+			RecordNotFoundException notFound = RecordNotFoundException
+					.withMessage("No user found with login id: " + loginId);
+			throw UserStorageViewException.usingMessageAndException(
+					"Error reading user with login id: " + loginId + " from storage.", notFound);
+		}
+	}
+
+	private Optional<User> possiblyGetUserUsingLoginIdIndex(String loginId) {
+		Optional<String> userId = loginIdIndex.findUserIdForLoginId(loginId);
+		if (userId.isPresent()) {
+			return possiblyGetIndexedUser(loginId, userId.get());
+		}
+		Optional<User> replicatedUser = userReplica.findUserByLoginId(loginId);
+		if (replicatedUser.isPresent()) {
+			return replicatedUser;
+		}
+		return userSnapshot.findUserByLoginId(loginId);
+	}
+
+	private Optional<User> possiblyGetIndexedUser(String loginId, String userId) {
+		Optional<User> user = tryToGetIndexedUser(userId);
+		if (user.isPresent() && loginId.equals(user.get().loginId)) {
+			return user;
+		}
+		loginIdIndex.removeLoginId(loginId);
+		return Optional.empty();
+	}
+
+	private Optional<User> tryToGetIndexedUser(String userId) {
+		try {
+			return Optional.of(getUserById(userId));
+		} catch (UserStorageViewException e) {
+			return Optional.empty();
+		}
+	}
+
+	private User readAndCacheUserByLoginId(String loginId, NotFoundKey notFoundKey) {
+		long generationOfAll = generations.getGenerationOfAllKeys();
+		try {
+			User user = userStorageView.getUserByLoginId(loginId);
+			cacheAndIndexUserIfNoneInvalidatedSince(user, generationOfAll);
+			return user;
+		} catch (UserStorageViewException e) {
+			possiblyRememberLoginIdNotFound(notFoundKey, generationOfAll, e);
+			throw e;
+		}
+	}
+
+	private void cacheAndIndexUserIfNoneInvalidatedSince(User user, long generationOfAll) {
+		if (generations.isAnyInvalidatedSince(generationOfAll)) {
+			return;
+		}
+		cacheUser(user);
+		loginIdIndex.indexUser(user);
+		if (generations.isAnyInvalidatedSince(generationOfAll)) {
+			userCache.invalidate(user.id);
+			loginIdIndex.removeUser(user.id);
+		}
+	}
+
+	private void possiblyRememberLoginIdNotFound(NotFoundKey notFoundKey, long generationOfAll,
+			UserStorageViewException e) {
+		if (!generations.isAnyInvalidatedSince(generationOfAll)) {
+			possiblyRememberNotFound(notFoundKey, e);
+		}
+	}
+
+	@Override
+	public UserCredentials getUserCredentialsByLoginId(String loginId) {
+		Optional<User> indexedUser = possiblyGetUserUsingLoginIdIndex(loginId);
+		if (indexedUser.isPresent()) {
+			return createCredentialsForUser(indexedUser.get());
+		}
+		NotFoundKey notFoundKey = new NotFoundKey(NotFoundKey.LOGIN_ID, loginId);
+		throwIfKnownToBeNotFound(notFoundKey);
+		throwIfLoginIdIsKnownNotToExist(loginId);
+		return readUserCredentialsByLoginId(loginId, notFoundKey);
+	}
+
+	private UserCredentials createCredentialsForUser(User user) {
+		Optional<String> passwordSecret = Optional.empty();
+		if (user.active && user.passwordId.isPresent()) {
+			passwordSecret = Optional.of(getSystemSecretById(user.passwordId.get()));
+		}
+		return new UserCredentials(user.id, user.active, passwordSecret);
+	}
+
+	private UserCredentials readUserCredentialsByLoginId(String loginId,
+			NotFoundKey notFoundKey) {
+		long generationOfAll = generations.getGenerationOfAllKeys();
+		try {
+			return userStorageView.getUserCredentialsByLoginId(loginId);
+		} catch (UserStorageViewException e) {
+			possiblyRememberLoginIdNotFound(notFoundKey, generationOfAll, e);
+			throw e;
+		}
+	}
+
+	@Override
+	public AppToken getAppTokenById(String appTokenId) {
+		SecretKey secretKey = new SecretKey(SecretKey.APP_TOKEN, appTokenId);
+		Optional<String> cachedToken = secretCache.get(secretKey);
+		if (cachedToken.isPresent()) {
+			return new AppToken(appTokenId, cachedToken.get());
+		}
+		NotFoundKey notFoundKey = new NotFoundKey(NotFoundKey.APP_TOKEN, appTokenId);
+		throwIfKnownToBeNotFound(notFoundKey);
+		return readAndCacheAppToken(appTokenId, secretKey, notFoundKey);
+	}
+
+	private AppToken readAndCacheAppToken(String appTokenId, SecretKey secretKey,
+			NotFoundKey notFoundKey) {
+		long generation = generations.getGeneration(secretKey);
+		try {
+			AppToken appToken = userStorageView.getAppTokenById(appTokenId);
+			cacheSecretIfNotInvalidatedSince(secretKey, appToken.tokenString, generation);
+			return appToken;
+		} catch (UserStorageViewException e) {
+			possiblyRememberAppTokenNotFound(secretKey, generation, e);
+			throw e;
+		}
+	}
+
+	private void cacheSecretIfNotInvalidatedSince(SecretKey secretKey, String secret,
+			long generation) {
+		if (generations.isInvalidatedSince(secretKey, generation)) {
+			return;
+		}
+		secretCache.put(secretKey, secret);
+		if (generations.isInvalidatedSince(secretKey, generation)) {
+			secretCache.invalidate(secretKey);
+		}
+	}
+
+	private void possiblyRememberAppTokenNotFound(SecretKey secretKey, long generation,
+			UserStorageViewException e) {
+		if (!generations.isInvalidatedSince(secretKey, generation)) {
+			possiblyRememberNotFound(new NotFoundKey(NotFoundKey.APP_TOKEN, secretKey.id()), e);
+		}
+	}
+
+	@Override
+	public AppTokenBatchResult getAppTokensByIds(Collection<String> appTokenIds) {
+		Map<String, AppToken> appTokens = new LinkedHashMap<>();
+		Map<String, UserStorageViewException> errors = new LinkedHashMap<>();
+		List<String> idsToRead = new ArrayList<>();
+		for (String appTokenId : new LinkedHashSet<>(appTokenIds)) {
+			sortAppTokenByCacheContent(appTokenId, appTokens, errors, idsToRead);
+		}
+		if (!idsToRead.isEmpty()) {
+			readAndCacheAppTokens(idsToRead, appTokens, errors);
+		}
+		return new AppTokenBatchResult(appTokens, errors);
+	}
+
+	private void sortAppTokenByCacheContent(String appTokenId, Map<String, AppToken> appTokens,
+			Map<String, UserStorageViewException> errors, List<String> idsToRead) {
+		Optional<String> cachedToken = secretCache
+				.get(new SecretKey(SecretKey.APP_TOKEN, appTokenId));
+		Optional<NotFound> notFound = notFoundCache
+				.get(new NotFoundKey(NotFoundKey.APP_TOKEN, appTokenId));
+		if (cachedToken.isPresent()) {
+			appTokens.put(appTokenId, new AppToken(appTokenId, cachedToken.get()));
+		} else if (notFound.isPresent()) {
+			errors.put(appTokenId, notFound.get().createException());
+		} else {
+			idsToRead.add(appTokenId);
+		}
+	}
+
+	private void readAndCacheAppTokens(List<String> idsToRead, Map<String, AppToken> appTokens,
+			Map<String, UserStorageViewException> errors) {
+		Map<String, Long> appTokenGenerations = new HashMap<>();
+		for (String appTokenId : idsToRead) {
+			appTokenGenerations.put(appTokenId,
+					generations.getGeneration(new SecretKey(SecretKey.APP_TOKEN, appTokenId)));
+		}
+		AppTokenBatchResult readResult = userStorageView.getAppTokensByIds(idsToRead);
+		for (AppToken appToken : readResult.appTokens().values()) {
+			possiblyCacheReadAppToken(appTokenGenerations, appToken);
+			appTokens.put(appToken.id, appToken);
+		}
+		readResult.errors().forEach((appTokenId, error) -> {
+			possiblyRememberReadAppTokenNotFound(appTokenGenerations, appTokenId, error);
+			errors.put(appTokenId, error);
+		});
+	}
+
+	private void possiblyCacheReadAppToken(Map<String, Long> appTokenGenerations,
+			AppToken appToken) {
+		Long generation = appTokenGenerations.get(appToken.id);
+		if (generation != null) {
+			cacheSecretIfNotInvalidatedSince(new SecretKey(SecretKey.APP_TOKEN, appToken.id),
+					appToken.tokenString, generation);
+		}
+	}
+
+	private void possiblyRememberReadAppTokenNotFound(Map<String, Long> appTokenGenerations,
+			String appTokenId, UserStorageViewException error) {
+		Long generation = appTokenGenerations.get(appTokenId);
+		if (generation != null) {
+			possiblyRememberAppTokenNotFound(new SecretKey(SecretKey.APP_TOKEN, appTokenId),
+					generation, error);
+		}
+	}
+
+	@Override
+	public String getSystemSecretById(String systemSecretId) {
+		SecretKey secretKey = new SecretKey(SecretKey.SYSTEM_SECRET, systemSecretId);
+		Optional<String> cachedSecret = secretCache.get(secretKey);
+		if (cachedSecret.isPresent()) {
+			return cachedSecret.get();
+		}
+		long generation = generations.getGeneration(secretKey);
+		String secret = userStorageView.getSystemSecretById(systemSecretId);
+		cacheSecretIfNotInvalidatedSince(secretKey, secret, generation);
+		return secret;
+	}
+
+	@Override
+	public CompletableFuture<User> getUserByIdAsync(String userId) {
+		return asyncView.getUserByIdAsync(userId);
+	}
+
+	@Override
+	public CompletableFuture<User> getUserByLoginIdAsync(String loginId) {
+		return asyncView.getUserByLoginIdAsync(loginId);
+	}
+
+	@Override
+	public CompletableFuture<AppToken> getAppTokenByIdAsync(String appTokenId) {
+		return asyncView.getAppTokenByIdAsync(appTokenId);
+	}
+
+	@Override
+	public CompletableFuture<String> getSystemSecretByIdAsync(String systemSecretId) {
+		return asyncView.getSystemSecretByIdAsync(systemSecretId);
+	}
+
+	@Override
+	public User getUserById(String userId, Deadline deadline) {
+		Optional<User> cachedUser = possiblyGetCachedUser(userId);
+		if (cachedUser.isPresent()) {
+			return cachedUser.get();
+		}
+		return deadlineView.getUserById(userId, deadline);
+	}
+
+	@Override
+	public User getUserByLoginId(String loginId, Deadline deadline) {
+		return deadlineView.getUserByLoginId(loginId, deadline);
+	}
+
+	@Override
+	public AppToken getAppTokenById(String appTokenId, Deadline deadline) {
+		return deadlineView.getAppTokenById(appTokenId, deadline);
+	}
+
+	@Override
+	public String getSystemSecretById(String systemSecretId, Deadline deadline) {
+		return deadlineView.getSystemSecretById(systemSecretId, deadline);
+	}
+
+	/**
+	 * invalidateRecord drops what the view holds for a changed user, appToken or systemSecret, and
+	 * passes the invalidation on to the wrapped view.
+	 * <p>
+	 * For a user, the entries that depend on it are dropped as well: its loginId in the loginId
+	 * index and the not found cache, the tokens of its appTokens and its password secret. They are
+	 * found from the versions of the user held by the user cache, the replica and the snapshot. The
+	 * user is left out of the replica until the next synchronization reads it again, and the
+	 * snapshot stops finding it. If {@link KnownLoginIds} is enabled, the user is then read from
+	 * the wrapped view to add its current loginId.
+	 */
+	@Override
+	public void invalidateRecord(String recordType, String recordId) {
+		if (USER.equals(recordType)) {
+			invalidateUser(recordId);
+		} else if (APP_TOKEN.equals(recordType)) {
+			invalidateAppToken(recordId);
+		} else if (SYSTEM_SECRET.equals(recordType)) {
+			invalidateSecret(new SecretKey(SecretKey.SYSTEM_SECRET, recordId));
+		}
+		userStorageView.invalidateRecord(recordType, recordId);
+		if (USER.equals(recordType)) {
+			possiblyAddLoginIdOfChangedUser(recordId);
+		}
+	}
+
+	private void invalidateUser(String userId) {
+		generations.invalidate(userId);
+		for (User user : findHeldVersionsOfUser(userId)) {
+			invalidateEntriesDependingOnUser(user);
+		}
+		userCache.invalidate(userId);
+		loginIdIndex.removeUser(userId);
+		notFoundCache.invalidate(new NotFoundKey(NotFoundKey.USER, userId));
+		userAuthorizations.invalidate(userId);
+		userReplica.removeUser(userId);
+		userSnapshot.invalidateUser(userId);
+	}
+
+	private void possiblyAddLoginIdOfChangedUser(String userId) {
+		if (knownLoginIds.isEnabled()) {
+			tryToAddLoginIdOfChangedUser(userId);
+		}
+	}
+
+	private void tryToAddLoginIdOfChangedUser(String userId) {
+		try {
+			knownLoginIds.add(userStorageView.getUserById(userId).loginId);
+		} catch (UserStorageViewException e) {
+			if (!(e.getCause() instanceof RecordNotFoundException)) {
+				knownLoginIds.forgetFilter();
+			}
+		}
+	}
+
+	private List<User> findHeldVersionsOfUser(String userId) {
+		List<User> users = new ArrayList<>();
+		userCache.getCachedValue(userId).map(CachedValue::value).ifPresent(users::add);
+		userReplica.findUserById(userId).ifPresent(users::add);
+		userSnapshot.findUserById(userId).ifPresent(users::add);
+		return users;
+	}
+
+	private void invalidateEntriesDependingOnUser(User user) {
+		knownLoginIds.add(user.loginId);
+		if (user.loginId != null) {
+			loginIdIndex.removeLoginId(user.loginId);
+			notFoundCache.invalidate(new NotFoundKey(NotFoundKey.LOGIN_ID, user.loginId));
+		}
+		for (String appTokenId : user.appTokenIds) {
+			invalidateAppToken(appTokenId);
+		}
+		user.passwordId.ifPresent(
+				passwordId -> invalidateSecret(new SecretKey(SecretKey.SYSTEM_SECRET, passwordId)));
+	}
+
+	private void invalidateAppToken(String appTokenId) {
+		invalidateSecret(new SecretKey(SecretKey.APP_TOKEN, appTokenId));
+		notFoundCache.invalidate(new NotFoundKey(NotFoundKey.APP_TOKEN, appTokenId));
+	}
+
+	private void invalidateSecret(SecretKey secretKey) {
+		generations.invalidate(secretKey);
+		secretCache.invalidate(secretKey);
+	}
+
+	@Override
+	public void addBackgroundWorker(BackgroundWorker backgroundWorker) {
+		backgroundWorkers.add(backgroundWorker);
+	}
+
+	@Override
+	public void start() {
+		backgroundWorkers.start();
+	}
+
+	@Override
+	public void close() {
+		backgroundWorkers.stop();
+		asyncView.close();
+		secretCache.invalidateAll();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return backgroundWorkers.isRunning();
+	}
+
+	@Override
+	public boolean isReady() {
+		return backgroundWorkers.isReady();
+	}
+
+	/**
+	 * getUserAuthorizationById returns the active status, roles and permission units of the user
+	 * as a {@link UserAuthorization}, for authorization checks that do not allocate. The user is
+	 * looked up as by {@link #getUserById(String)}, and the authorization is kept for as long as
+	 * the same user is cached.
+	 * 
+	 * @param userId
+	 *            the id of the user
+	 * @return the {@link UserAuthorization} of the user
+	 * @throws UserStorageViewException
+	 *             if the user can not be read
+	 */
+	public UserAuthorization getUserAuthorizationById(String userId) {
+		return userAuthorizations.getAuthorizationForUser(getUserById(userId));
+	}
+
+	/**
+	 * getUserCacheStatistics returns the hit and miss counters of the user cache.
+	 * 
+	 * @return a {@link CacheStatistics} for the user cache
+	 */
+	public CacheStatistics getUserCacheStatistics() {
+		return userCache.getStatistics();
+	}
+
+	/**
+	 * getKnownLoginIdsStatistics returns the size and false positive rate of the filter of known
+	 * loginIds, and the number of lookups it has rejected.
+	 * 
+	 * @return a {@link KnownLoginIdsStatistics} for the known loginIds
+	 */
+	public KnownLoginIdsStatistics getKnownLoginIdsStatistics() {
+		return knownLoginIds.getStatistics();
+	}
+
+	/**
+	 * getUserRefreshStatistics returns the counters of the background refreshes of cached users.
+	 * 
+	 * @return a {@link RefreshStatistics} for the user cache
+	 */
+	public RefreshStatistics getUserRefreshStatistics() {
+		return userRefreshAhead.getStatistics();
+	}
+
+	/**
+	 * getNotFoundCacheStatistics returns the hit and miss counters of the not found cache.
+	 * 
+	 * @return a {@link CacheStatistics} for the not found cache
+	 */
+	public CacheStatistics getNotFoundCacheStatistics() {
+		return notFoundCache.getStatistics();
+	}
+
+	/**
+	 * getSecretCacheStatistics returns the hit and miss counters of the secret cache.
+	 * 
+	 * @return a {@link CacheStatistics} for the secret cache
+	 */
+	public CacheStatistics getSecretCacheStatistics() {
+		return secretCache.getStatistics();
+	}
+
+	@Override
+	public Map<String, Record> getStatistics() {
+		Map<String, Record> statistics = new LinkedHashMap<>();
+		statistics.put("userCache", getUserCacheStatistics());
+		statistics.put("userRefresh", getUserRefreshStatistics());
+		statistics.put("notFoundCache", getNotFoundCacheStatistics());
+		statistics.put("secretCache", getSecretCacheStatistics());
+		if (knownLoginIds.isEnabled()) {
+			statistics.put("knownLoginIds", getKnownLoginIdsStatistics());
+		}
+		return statistics;
+	}
+
+	public ExtendedUserStorageView onlyForTestGetUserStorageView() {
+		return userStorageView;
+	}
+
+	public BackgroundWorkers onlyForTestGetBackgroundWorkers() {
+		return backgroundWorkers;
+	}
+
+	public AsyncUserStorageViewImp onlyForTestGetAsyncView() {
+		return asyncView;
+	}
+
+	public RefreshAhead<String> onlyForTestGetUserRefreshAhead() {
+		return userRefreshAhead;
+	}
+
+	public DeadlineUserStorageViewImp onlyForTestGetDeadlineView() {
+		return deadlineView;
+	}
+
+	public UserStorageCaches onlyForTestGetCaches() {
+		return caches;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * InvalidationGenerations lets a load that runs at the same time as an invalidation of its key
+ * find out that its result may be older than the invalidation, so that the result is not cached.
+ * <p>
+ * A load reads the generation of its key with {@link #getGeneration(Object)} before it reads from
+ * storage, and checks {@link #isInvalidatedSince(Object, long)} before and after caching the
+ * result. An invalidation calls {@link #invalidate(Object)} before it removes the cached entries.
+ * A load that does not know its key before it reads from storage, such as a load of a user by
+ * loginId, uses {@link #getGenerationOfAllKeys()} and {@link #isAnyInvalidatedSince(long)}
+ * instead, and skips caching its result if any key has been invalidated during the load.
+ * <p>
+ * Keys share a fixed number of generation counters by their hash, so memory use does not grow with
+ * the number of keys. An invalidation of one key can therefore make a load of another key skip
+ * caching its result, which only costs another read from storage.
+ */
+public final class InvalidationGenerations<K> {
+	private static final int NUMBER_OF_COUNTERS = 1024;
+	private final AtomicLongArray generations = new AtomicLongArray(NUMBER_OF_COUNTERS);
+	private final AtomicLong generationOfAllKeys = new AtomicLong();
+
+	long getGeneration(K key) {
+		return generations.get(indexFor(key));
+	}
+
+	long getGenerationOfAllKeys() {
+		return generationOfAllKeys.get();
+	}
+
+	void invalidate(K key) {
+		generations.incrementAndGet(indexFor(key));
+		generationOfAllKeys.incrementAndGet();
+	}
+
+	boolean isInvalidatedSince(K key, long generation) {
+		return getGeneration(key) != generation;
+	}
+
+	boolean isAnyInvalidatedSince(long generationOfAll) {
+		return generationOfAllKeys.get() != generationOfAll;
+	}
+
+	private int indexFor(K key) {
+		int hash = key.hashCode();
+		return (hash ^ (hash >>> 16)) & (NUMBER_OF_COUNTERS - 1);
+	}
+}
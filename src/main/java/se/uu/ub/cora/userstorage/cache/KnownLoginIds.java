@@ -0,0 +1,186 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.userstorage.metrics.KnownLoginIdsStatistics;
+
+/**
+ * KnownLoginIds keeps a {@link LoginIdBloomFilter} of all loginIds in storage, so that lookups of
+ * loginIds that do not exist can be rejected without searching storage.
+ * <p>
+ * Until a filter has been built, and while a rebuild is in progress, every loginId might exist. A
+ * filter is built by calling {@link #startRebuild(long)}, adding all loginIds in storage to the
+ * returned filter, and then calling {@link #finishRebuild(LoginIdBloomFilter)}. LoginIds added
+ * using {@link #add(String)} while a rebuild is in progress are added to the current filter and
+ * remembered, and the remembered loginIds are added to the new filter before it is used, so that
+ * users written or read during a rebuild are not lost. Rebuilding periodically removes deleted
+ * loginIds from the filter.
+ * <p>
+ * A loginId must be added when a user is created or gets a new loginId, otherwise lookups of it
+ * are rejected until the next rebuild. If the loginId of a changed user can not be found out,
+ * {@link #forgetFilter()} stops all rejections until the next rebuild has finished. A disabled
+ * KnownLoginIds never rejects a loginId.
+ */
+public final class KnownLoginIds {
+	private final boolean enabled;
+	private final long expectedLoginIds;
+	private final double falsePositiveRate;
+	private volatile LoginIdBloomFilter currentFilter;
+	private volatile LoginIdBloomFilter filterBeingBuilt;
+	private final Set<String> loginIdsAddedDuringRebuild = new HashSet<>();
+	private final LongAdder rejectedLookups = new LongAdder();
+	private final LongAdder rebuilds = new LongAdder();
+
+	public static KnownLoginIds usingExpectedLoginIdsAndFalsePositiveRate(long expectedLoginIds,
+			double falsePositiveRate) {
+		return new KnownLoginIds(true, expectedLoginIds, falsePositiveRate);
+	}
+
+	public static KnownLoginIds disabled() {
+		return new KnownLoginIds(false, 0, 1);
+	}
+
+	private KnownLoginIds(boolean enabled, long expectedLoginIds, double falsePositiveRate) {
+		this.enabled = enabled;
+		this.expectedLoginIds = expectedLoginIds;
+		this.falsePositiveRate = falsePositiveRate;
+	}
+
+	/**
+	 * mightExist returns false only if a filter has been built, no rebuild is in progress and the
+	 * loginId is definitely not in the filter. Returning false is counted as a rejected lookup.
+	 * 
+	 * @param loginId
+	 *            the loginId to check
+	 * @return false if the loginId is known not to exist in storage
+	 */
+	public boolean mightExist(String loginId) {
+		LoginIdBloomFilter filter = currentFilter;
+		if (filter == null || filterBeingBuilt != null || filter.mightContain(loginId)) {
+			return true;
+		}
+		rejectedLookups.increment();
+		return false;
+	}
+
+	/**
+	 * add adds a loginId to the current filter. While a rebuild is in progress the loginId is also
+	 * remembered until the rebuild finishes, and then added to the new filter.
+	 * 
+	 * @param loginId
+	 *            the loginId of a user written to or read from storage
+	 */
+	public synchronized void add(String loginId) {
+		if (!enabled || loginId == null) {
+			return;
+		}
+		if (currentFilter != null) {
+			currentFilter.add(loginId);
+		}
+		if (filterBeingBuilt != null) {
+			loginIdsAddedDuringRebuild.add(loginId);
+		}
+	}
+
+	/**
+	 * startRebuild creates a new filter large enough for the expected number of loginIds, or the
+	 * given number if that is larger. The new filter is not used until
+	 * {@link #finishRebuild(LoginIdBloomFilter)} is called.
+	 * 
+	 * @param numberOfLoginIdsInStorage
+	 *            the number of loginIds the new filter will hold, if known, otherwise 0
+	 * @return the new filter to add all loginIds in storage to
+	 */
+	public synchronized LoginIdBloomFilter startRebuild(long numberOfLoginIdsInStorage) {
+		long size = Math.max(expectedLoginIds, numberOfLoginIdsInStorage);
+		filterBeingBuilt = LoginIdBloomFilter.usingExpectedLoginIdsAndFalsePositiveRate(size,
+				falsePositiveRate);
+		loginIdsAddedDuringRebuild.clear();
+		return filterBeingBuilt;
+	}
+
+	/**
+	 * finishRebuild adds the loginIds added since the rebuild started to the rebuilt filter and
+	 * starts using it. It is ignored if the filter is not the one returned from the latest call to
+	 * {@link #startRebuild(long)}.
+	 * 
+	 * @param rebuiltFilter
+	 *            the filter with all loginIds in storage
+	 */
+	public synchronized void finishRebuild(LoginIdBloomFilter rebuiltFilter) {
+		if (enabled && rebuiltFilter == filterBeingBuilt) {
+			loginIdsAddedDuringRebuild.forEach(rebuiltFilter::add);
+			loginIdsAddedDuringRebuild.clear();
+			currentFilter = rebuiltFilter;
+			filterBeingBuilt = null;
+			rebuilds.increment();
+		}
+	}
+
+	/**
+	 * abortRebuild drops the filter being built, the current filter is kept.
+	 */
+	public synchronized void abortRebuild() {
+		filterBeingBuilt = null;
+		loginIdsAddedDuringRebuild.clear();
+	}
+
+	/**
+	 * forgetFilter drops the current filter and the filter being built, so that no lookup is
+	 * rejected until the next rebuild has finished. It is used when a loginId that might have been
+	 * written to storage can not be added.
+	 */
+	public synchronized void forgetFilter() {
+		currentFilter = null;
+		abortRebuild();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public long getExpectedLoginIds() {
+		return expectedLoginIds;
+	}
+
+	public double getFalsePositiveRate() {
+		return falsePositiveRate;
+	}
+
+	/**
+	 * getStatistics returns a snapshot of the size and false positive rate of the current filter,
+	 * and of the number of rejected lookups and rebuilds.
+	 * 
+	 * @return a {@link KnownLoginIdsStatistics} with the current values
+	 */
+	public KnownLoginIdsStatistics getStatistics() {
+		LoginIdBloomFilter filter = currentFilter;
+		if (filter == null) {
+			return new KnownLoginIdsStatistics(false, 0, 0, 0, 1, rejectedLookups.sum(),
+					rebuilds.sum());
+		}
+		return new KnownLoginIdsStatistics(true, filter.getApproximateNumberOfLoginIds(),
+				filter.getBitSize(), filter.getMemoryInBytes(),
+				filter.getExpectedFalsePositiveRate(), rejectedLookups.sum(), rebuilds.sum());
+	}
+}
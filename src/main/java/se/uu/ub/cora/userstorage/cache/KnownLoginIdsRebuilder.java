@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.storage.Filter;
+import se.uu.ub.cora.storage.RecordStorage;
+import se.uu.ub.cora.storage.StorageReadResult;
+
+/**
+ * KnownLoginIdsRebuilder builds a new filter for {@link KnownLoginIds} by reading all user records
+ * from storage, page by page, and adding their loginIds. It is meant to be run periodically, for
+ * instance by a {@link se.uu.ub.cora.userstorage.PeriodicWorker}.
+ * <p>
+ * Users written while the pages are read can move records between pages, so a page can miss
+ * loginIds. LoginIds of users read or invalidated during the rebuild are added to the new filter by
+ * {@link KnownLoginIds} before it is used.
+ * <p>
+ * If reading storage fails the rebuild is aborted and the current filter is kept.
+ */
+public class KnownLoginIdsRebuilder implements Runnable {
+	private static final String USER = "user";
+	private static final String LOGIN_ID = "loginId";
+	private Logger log = LoggerProvider.getLoggerForClass(KnownLoginIdsRebuilder.class);
+	private final RecordStorage recordStorage;
+	private final KnownLoginIds knownLoginIds;
+	private final int pageSize;
+
+	public static KnownLoginIdsRebuilder usingRecordStorageKnownLoginIdsAndPageSize(
+			RecordStorage recordStorage, KnownLoginIds knownLoginIds, int pageSize) {
+		return new KnownLoginIdsRebuilder(recordStorage, knownLoginIds, pageSize);
+	}
+
+	private KnownLoginIdsRebuilder(RecordStorage recordStorage, KnownLoginIds knownLoginIds,
+			int pageSize) {
+		this.recordStorage = recordStorage;
+		this.knownLoginIds = knownLoginIds;
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public void run() {
+		long startTime = System.nanoTime();
+		try {
+			LoginIdBloomFilter filter = readAllLoginIds();
+			knownLoginIds.finishRebuild(filter);
+			log.logInfoUsingMessage(createFinishedMessage(filter, startTime));
+		} catch (RuntimeException e) {
+			knownLoginIds.abortRebuild();
+			throw e;
+		}
+	}
+
+	private LoginIdBloomFilter readAllLoginIds() {
+		StorageReadResult page = readPage(1);
+		LoginIdBloomFilter filter = knownLoginIds.startRebuild(page.totalNumberOfMatches);
+		addLoginIds(filter, page);
+		long fromNo = 1 + pageSize;
+		while (page.listOfDataRecordGroups.size() == pageSize
+				&& fromNo <= page.totalNumberOfMatches) {
+			page = readPage(fromNo);
+			addLoginIds(filter, page);
+			fromNo += pageSize;
+		}
+		return filter;
+	}
+
+	private StorageReadResult readPage(long fromNo) {
+		Filter filter = new Filter();
+		filter.fromNo = fromNo;
+		filter.toNo = fromNo + pageSize - 1;
+		return recordStorage.readList(USER, filter);
+	}
+
+	private void addLoginIds(LoginIdBloomFilter filter, StorageReadResult page) {
+		for (DataRecordGroup userRecord : page.listOfDataRecordGroups) {
+			if (userRecord.containsChildWithNameInData(LOGIN_ID)) {
+				filter.add(userRecord.getFirstAtomicValueWithNameInData(LOGIN_ID));
+			}
+		}
+	}
+
+	private String createFinishedMessage(LoginIdBloomFilter filter, long startTime) {
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		return "Rebuilt known loginIds, loginIds: " + filter.getApproximateNumberOfLoginIds()
+				+ ", bits: " + filter.getBitSize() + ", memory: " + filter.getMemoryInBytes()
+				+ " bytes, expected false positive rate: "
+				+ String.format(Locale.ROOT, "%.4f", filter.getExpectedFalsePositiveRate())
+				+ ", time: " + elapsedMillis + " ms.";
+	}
+
+	public RecordStorage onlyForTestGetRecordStorage() {
+		return recordStorage;
+	}
+
+	public KnownLoginIds onlyForTestGetKnownLoginIds() {
+		return knownLoginIds;
+	}
+
+	public int onlyForTestGetPageSize() {
+		return pageSize;
+	}
+}
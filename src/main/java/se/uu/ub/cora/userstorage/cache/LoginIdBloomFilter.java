@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoginIdBloomFilter is a thread safe Bloom filter of loginIds.
+ * <p>
+ * {@link #mightContain(String)} never returns false for an added loginId, but can return true for
+ * a loginId that was never added. The size of the filter and the number of hash functions are
+ * chosen from the expected number of loginIds and the wanted false positive rate. Adding more
+ * loginIds than expected raises the false positive rate, which is reported by
+ * {@link #getExpectedFalsePositiveRate()}.
+ * <p>
+ * LoginIds can not be removed, a filter is instead replaced by a newly built one.
+ */
+public final class LoginIdBloomFilter {
+	private static final int MIN_BIT_SIZE = 64;
+	private static final double LN2 = Math.log(2);
+	private final AtomicLongArray words;
+	private final long bitSize;
+	private final int numberOfHashFunctions;
+	private final LongAdder setBits = new LongAdder();
+
+	public static LoginIdBloomFilter usingExpectedLoginIdsAndFalsePositiveRate(
+			long expectedLoginIds, double falsePositiveRate) {
+		long expected = Math.max(1, expectedLoginIds);
+		long bitSize = Math.max(MIN_BIT_SIZE,
+				(long) Math.ceil(-expected * Math.log(falsePositiveRate) / (LN2 * LN2)));
+		int numberOfHashFunctions = (int) Math.max(1,
+				Math.round((double) bitSize / expected * LN2));
+		return new LoginIdBloomFilter(bitSize, numberOfHashFunctions);
+	}
+
+	private LoginIdBloomFilter(long bitSize, int numberOfHashFunctions) {
+		int numberOfWords = (int) ((bitSize + 63) >>> 6);
+		this.bitSize = (long) numberOfWords << 6;
+		this.numberOfHashFunctions = numberOfHashFunctions;
+		this.words = new AtomicLongArray(numberOfWords);
+	}
+
+	public void add(String loginId) {
+		long hash = hash(loginId);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+		for (int i = 1; i <= numberOfHashFunctions; i++) {
+			setBit(bitIndex(hash1, hash2, i));
+		}
+	}
+
+	private long bitIndex(int hash1, int hash2, int i) {
+		return Math.floorMod(hash1 + (long) i * hash2, bitSize);
+	}
+
+	private void setBit(long bitIndex) {
+		int word = (int) (bitIndex >>> 6);
+		long mask = 1L << bitIndex;
+		long current;
+		do {
+			current = words.get(word);
+			if ((current & mask) != 0) {
+				return;
+			}
+		} while (!words.compareAndSet(word, current, current | mask));
+		setBits.increment();
+	}
+
+	public boolean mightContain(String loginId) {
+		long hash = hash(loginId);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+		for (int i = 1; i <= numberOfHashFunctions; i++) {
+			if (!isBitSet(bitIndex(hash1, hash2, i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isBitSet(long bitIndex) {
+		return (words.get((int) (bitIndex >>> 6)) & (1L << bitIndex)) != 0;
+	}
+
+	private static long hash(String loginId) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < loginId.length(); i++) {
+			hash ^= loginId.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	private static long mix(long hash) {
+		long mixed = hash;
+		mixed ^= mixed >>> 33;
+		mixed *= 0xff51afd7ed558ccdL;
+		mixed ^= mixed >>> 33;
+		mixed *= 0xc4ceb9fe1a85ec53L;
+		mixed ^= mixed >>> 33;
+		return mixed;
+	}
+
+	/**
+	 * getExpectedFalsePositiveRate returns the probability that {@link #mightContain(String)}
+	 * returns true for a loginId that has not been added, calculated from the share of bits set.
+	 * 
+	 * @return the false positive rate as a value between 0 and 1
+	 */
+	public double getExpectedFalsePositiveRate() {
+		double shareOfBitsSet = (double) setBits.sum() / bitSize;
+		return Math.pow(shareOfBitsSet, numberOfHashFunctions);
+	}
+
+	/**
+	 * getApproximateNumberOfLoginIds returns an estimate of the number of different loginIds
+	 * added, calculated from the share of bits set.
+	 * 
+	 * @return the estimated number of loginIds
+	 */
+	public long getApproximateNumberOfLoginIds() {
+		double shareOfBitsUnset = 1 - (double) setBits.sum() / bitSize;
+		return Math.round(-((double) bitSize / numberOfHashFunctions) * Math.log(shareOfBitsUnset));
+	}
+
+	public long getBitSize() {
+		return bitSize;
+	}
+
+	public int getNumberOfHashFunctions() {
+		return numberOfHashFunctions;
+	}
+
+	public long getMemoryInBytes() {
+		return (long) words.length() * Long.BYTES;
+	}
+}
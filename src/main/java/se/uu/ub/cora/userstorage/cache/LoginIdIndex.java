@@ -0,0 +1,189 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * LoginIdIndex keeps a mapping from loginId to userId for users that have been read, so that a
+ * user can be looked up by loginId using a read by id instead of a search.
+ * <p>
+ * The index only holds loginIds that are known to belong to exactly one user. If two different
+ * users are indexed with the same loginId, the loginId is removed from the index and is not
+ * indexed again until the conflict has expired, so lookups for it must fall back to searching in
+ * storage, where the uniqueness of the loginId is checked again. When a user is indexed with a new
+ * loginId, the previous loginId of the user is removed.
+ * <p>
+ * Entries are kept with a maximum size and a time to live, in the same way as cached users. When
+ * the index is full the least recently used loginId is evicted, and a loginId is no longer found
+ * once it is older than the time to live, so that a loginId that has since been given to another
+ * user is checked against storage again.
+ * <p>
+ * Lookups only lock the part of the index they read, changes to the index are serialized.
+ */
+public class LoginIdIndex {
+	private final BoundedTtlCache<String, String> userIdByLoginId;
+	private final BoundedTtlCache<String, String> loginIdByUserId;
+	private final BoundedTtlCache<String, String> conflictingLoginIds;
+	private final LongAdder conflicts = new LongAdder();
+
+	public static LoginIdIndex usingMaxSizeAndTimeToLive(int maxSize, Duration timeToLive) {
+		return new LoginIdIndex(maxSize, timeToLive);
+	}
+
+	private LoginIdIndex(int maxSize, Duration timeToLive) {
+		userIdByLoginId = BoundedTtlCache.usingMaxSizeAndTimeToLive(maxSize, timeToLive);
+		loginIdByUserId = BoundedTtlCache.usingMaxSizeAndTimeToLive(maxSize, timeToLive);
+		conflictingLoginIds = BoundedTtlCache.usingMaxSizeAndTimeToLive(maxSize, timeToLive);
+	}
+
+	/**
+	 * findUserIdForLoginId returns the id of the user that has the loginId, if the loginId is
+	 * indexed and has not expired.
+	 * 
+	 * @param loginId
+	 *            the loginId to look up
+	 * @return an Optional with the userId, or an empty Optional if the loginId is not indexed
+	 */
+	public Optional<String> findUserIdForLoginId(String loginId) {
+		return userIdByLoginId.get(loginId);
+	}
+
+	/**
+	 * indexUser adds the loginId of the user to the index, replacing any previous loginId for the
+	 * same user. Users without loginId are ignored, as are loginIds with a recent conflict. When
+	 * the index is full the least recently used loginId is evicted.
+	 * 
+	 * @param user
+	 *            the user to index
+	 */
+	public synchronized void indexUser(User user) {
+		if (user.loginId == null) {
+			return;
+		}
+		removePreviousLoginIdIfChanged(user);
+		if (conflictingLoginIds.get(user.loginId).isPresent()) {
+			return;
+		}
+		Optional<String> indexedUserId = userIdByLoginId.get(user.loginId);
+		if (indexedUserId.isEmpty() || indexedUserId.get().equals(user.id)) {
+			addToIndex(user);
+		} else {
+			removeConflictingLoginId(user.loginId, indexedUserId.get());
+		}
+	}
+
+	private void removePreviousLoginIdIfChanged(User user) {
+		Optional<String> previousLoginId = loginIdByUserId.get(user.id);
+		if (previousLoginId.isPresent() && !previousLoginId.get().equals(user.loginId)) {
+			removeLoginIdIfIndexedForUser(previousLoginId.get(), user.id);
+			loginIdByUserId.invalidate(user.id);
+		}
+	}
+
+	private void removeLoginIdIfIndexedForUser(String loginId, String userId) {
+		if (userIdByLoginId.get(loginId).filter(userId::equals).isPresent()) {
+			userIdByLoginId.invalidate(loginId);
+		}
+	}
+
+	private void addToIndex(User user) {
+		userIdByLoginId.put(user.loginId, user.id);
+		loginIdByUserId.put(user.id, user.loginId);
+	}
+
+	private void removeConflictingLoginId(String loginId, String indexedUserId) {
+		conflicts.increment();
+		conflictingLoginIds.put(loginId, indexedUserId);
+		userIdByLoginId.invalidate(loginId);
+		loginIdByUserId.invalidate(indexedUserId);
+	}
+
+	/**
+	 * removeLoginId removes the loginId from the index.
+	 * 
+	 * @param loginId
+	 *            the loginId to remove
+	 */
+	public synchronized void removeLoginId(String loginId) {
+		Optional<String> userId = userIdByLoginId.get(loginId);
+		userIdByLoginId.invalidate(loginId);
+		userId.ifPresent(indexedUserId -> removeUserIfIndexedWithLoginId(indexedUserId, loginId));
+	}
+
+	private void removeUserIfIndexedWithLoginId(String userId, String loginId) {
+		if (loginIdByUserId.get(userId).filter(loginId::equals).isPresent()) {
+			loginIdByUserId.invalidate(userId);
+		}
+	}
+
+	/**
+	 * removeUser removes the loginId of the user from the index.
+	 * 
+	 * @param userId
+	 *            the id of the user to remove
+	 */
+	public synchronized void removeUser(String userId) {
+		Optional<String> loginId = loginIdByUserId.get(userId);
+		loginIdByUserId.invalidate(userId);
+		loginId.ifPresent(indexedLoginId -> removeLoginIdIfIndexedForUser(indexedLoginId, userId));
+	}
+
+	/**
+	 * clear removes all loginIds and conflicts from the index.
+	 */
+	public synchronized void clear() {
+		userIdByLoginId.invalidateAll();
+		loginIdByUserId.invalidateAll();
+		conflictingLoginIds.invalidateAll();
+	}
+
+	public int size() {
+		return userIdByLoginId.size();
+	}
+
+	public int getMaxSize() {
+		return userIdByLoginId.getMaxSize();
+	}
+
+	public Duration getTimeToLive() {
+		return userIdByLoginId.getTimeToLive();
+	}
+
+	/**
+	 * getNumberOfConflicts returns how many times the same loginId has been found for two
+	 * different users.
+	 * 
+	 * @return the number of detected loginId conflicts
+	 */
+	public long getNumberOfConflicts() {
+		return conflicts.sum();
+	}
+
+	void onlyForTestSetNanoTimeSource(LongSupplier nanoTimeSource) {
+		userIdByLoginId.onlyForTestSetNanoTimeSource(nanoTimeSource);
+		loginIdByUserId.onlyForTestSetNanoTimeSource(nanoTimeSource);
+		conflictingLoginIds.onlyForTestSetNanoTimeSource(nanoTimeSource);
+	}
+}
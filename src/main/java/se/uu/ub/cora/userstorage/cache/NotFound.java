@@ -0,0 +1,44 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+
+/**
+ * NotFound remembers that a lookup did not match anything in storage. Exceptions are not shared
+ * between callers, each caller gets a new {@link UserStorageViewException} from
+ * {@link #createException()}.
+ *
+ * @param message
+ *            the message of the exception the lookup failed with
+ * @param cause
+ *            the {@link RecordNotFoundException} the lookup failed with
+ */
+public record NotFound(String message, RecordNotFoundException cause) {
+
+	/**
+	 * createException creates a new exception with the message and cause of the failed lookup.
+	 * 
+	 * @return a new {@link UserStorageViewException}
+	 */
+	public UserStorageViewException createException() {
+		return UserStorageViewException.usingMessageAndException(message, cause);
+	}
+}
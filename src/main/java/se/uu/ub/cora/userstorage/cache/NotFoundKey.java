@@ -0,0 +1,33 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+/**
+ * NotFoundKey identifies a lookup that has been found not to match anything in storage.
+ *
+ * @param lookupType
+ *            what was looked up, {@link #USER}, {@link #LOGIN_ID} or {@link #APP_TOKEN}
+ * @param id
+ *            the id or loginId that was looked up
+ */
+public record NotFoundKey(String lookupType, String id) {
+	public static final String USER = "user";
+	public static final String LOGIN_ID = "loginId";
+	public static final String APP_TOKEN = "appToken";
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * OffHeapByteStore keeps byte arrays in direct memory, outside of the heap, and gives out a long
+ * address for each stored array.
+ * <p>
+ * Memory is taken from the operating system in pages of a fixed size, and arrays are appended to
+ * the current page until it is full. An array larger than a page gets a page of its own. Stored
+ * arrays are never moved or overwritten, freeing an array only lowers the number of live bytes of
+ * its page. A page is reused when all arrays in it have been freed. Pages are never given back to
+ * the operating system, so the memory used is bounded by the largest amount of live bytes held at
+ * once, plus the pages that are kept alive by a few remaining arrays. For a cache with a time to
+ * live every array is freed within the time to live, so no page is kept alive for longer than
+ * that.
+ * <p>
+ * Reads do not take a lock. Each page has a generation that is increased when the page is reused,
+ * and an address holds the generation of its page when it was given out. A read of an address
+ * whose page has been reused is detected, using a {@link StampedLock}, and returns an empty
+ * Optional instead of the new content of the page.
+ */
+public final class OffHeapByteStore {
+	private static final int LENGTH_HEADER_SIZE = Integer.BYTES;
+	private static final int MAX_NUMBER_OF_PAGES = 1 << 16;
+	private static final int GENERATION_MASK = 0xFFFF;
+	private static final long OFFSET_MASK = 0xFFFFFFFFL;
+
+	private final int pageSize;
+	private final StampedLock reuseLock = new StampedLock();
+	private volatile Page[] pages = new Page[0];
+	private final Deque<Integer> reusablePages = new ArrayDeque<>();
+	private Page currentPage;
+	private long liveBytes;
+
+	public static OffHeapByteStore usingPageSize(int pageSize) {
+		return new OffHeapByteStore(pageSize);
+	}
+
+	private OffHeapByteStore(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * write copies the bytes into off heap memory.
+	 * 
+	 * @param bytes
+	 *            the bytes to store
+	 * @return the address of the stored bytes, to be used with {@link #read(long, Function)} and
+	 *         {@link #free(long)}
+	 */
+	public synchronized long write(byte[] bytes) {
+		int size = LENGTH_HEADER_SIZE + bytes.length;
+		Page page = pageWithRoomFor(size);
+		int offset = page.writePosition;
+		page.buffer.putInt(offset, bytes.length);
+		page.buffer.put(offset + LENGTH_HEADER_SIZE, bytes);
+		page.writePosition += size;
+		page.liveBytes += size;
+		liveBytes += size;
+		return toAddress(page, offset);
+	}
+
+	private Page pageWithRoomFor(int size) {
+		if (size > pageSize) {
+			return takePage(size);
+		}
+		if (currentPage == null || currentPage.writePosition + size > pageSize) {
+			replaceCurrentPage();
+		}
+		return currentPage;
+	}
+
+	private void replaceCurrentPage() {
+		Page previousPage = currentPage;
+		currentPage = takePage(pageSize);
+		if (previousPage != null) {
+			previousPage.current = false;
+			possiblyReuse(previousPage);
+		}
+	}
+
+	private Page takePage(int size) {
+		if (size == pageSize && !reusablePages.isEmpty()) {
+			Page page = pages[reusablePages.pop()];
+			page.current = true;
+			return page;
+		}
+		return addPage(size);
+	}
+
+	private Page addPage(int size) {
+		int index = indexForNewPage();
+		int generation = index < pages.length ? pages[index].generation : 0;
+		Page page = new Page(index, generation, ByteBuffer.allocateDirect(size));
+		page.current = size == pageSize;
+		Page[] newPages = Arrays.copyOf(pages, Math.max(pages.length, index + 1));
+		newPages[index] = page;
+		pages = newPages;
+		return page;
+	}
+
+	private int indexForNewPage() {
+		for (int i = 0; i < pages.length; i++) {
+			if (pages[i].released) {
+				return i;
+			}
+		}
+		if (pages.length == MAX_NUMBER_OF_PAGES) {
+			throw new IllegalStateException(
+					"Off heap store is full, it can not hold more than "
+							+ MAX_NUMBER_OF_PAGES + " pages");
+		}
+		return pages.length;
+	}
+
+	private long toAddress(Page page, int offset) {
+		return ((long) page.index << 48) | ((long) (page.generation & GENERATION_MASK) << 32)
+				| offset;
+	}
+
+	/**
+	 * read gives the bytes stored at the address to the reader, as a read only buffer positioned
+	 * at the first byte and limited to the stored bytes.
+	 * <p>
+	 * The reader is called without a lock, and is called a second time, holding a lock, if the
+	 * page of the address was reused while it read. It must therefore not have side effects. An
+	 * exception thrown by the reader while the page is reused is ignored, other exceptions are
+	 * thrown from this method.
+	 * 
+	 * @param address
+	 *            an address given out by {@link #write(byte[])}
+	 * @param reader
+	 *            a function creating a value from the stored bytes
+	 * @return an Optional with the value created by the reader, or an empty Optional if the page
+	 *         of the address has been reused
+	 */
+	public <T> Optional<T> read(long address, Function<ByteBuffer, T> reader) {
+		long stamp = reuseLock.tryOptimisticRead();
+		try {
+			Optional<T> value = readFromPage(address, reader);
+			if (reuseLock.validate(stamp)) {
+				return value;
+			}
+		} catch (RuntimeException e) {
+			if (reuseLock.validate(stamp)) {
+				throw e;
+			}
+		}
+		return readWithLock(address, reader);
+	}
+
+	private <T> Optional<T> readWithLock(long address, Function<ByteBuffer, T> reader) {
+		long stamp = reuseLock.readLock();
+		try {
+			return readFromPage(address, reader);
+		} finally {
+			reuseLock.unlockRead(stamp);
+		}
+	}
+
+	private <T> Optional<T> readFromPage(long address, Function<ByteBuffer, T> reader) {
+		Page page = pages[pageIndexOf(address)];
+		if (page.generation != generationOf(address)) {
+			return Optional.empty();
+		}
+		int offset = offsetOf(address);
+		int length = page.buffer.getInt(offset);
+		ByteBuffer bytes = page.buffer.slice(offset + LENGTH_HEADER_SIZE, length)
+				.asReadOnlyBuffer();
+		return Optional.of(reader.apply(bytes));
+	}
+
+	private int pageIndexOf(long address) {
+		return (int) (address >>> 48);
+	}
+
+	private int generationOf(long address) {
+		return (int) (address >>> 32) & GENERATION_MASK;
+	}
+
+	private int offsetOf(long address) {
+		return (int) (address & OFFSET_MASK);
+	}
+
+	/**
+	 * free marks the bytes stored at the address as no longer used. The page holding them is
+	 * reused once all bytes stored in it are freed.
+	 * 
+	 * @param address
+	 *            an address given out by {@link #write(byte[])}, that has not been freed
+	 */
+	public synchronized void free(long address) {
+		Page page = pages[pageIndexOf(address)];
+		if (page.generation != generationOf(address)) {
+			return;
+		}
+		int size = LENGTH_HEADER_SIZE + page.buffer.getInt(offsetOf(address));
+		page.liveBytes -= size;
+		liveBytes -= size;
+		possiblyReuse(page);
+	}
+
+	private void possiblyReuse(Page page) {
+		if (page.current || page.liveBytes > 0) {
+			return;
+		}
+		long stamp = reuseLock.writeLock();
+		try {
+			page.generation = (page.generation + 1) & GENERATION_MASK;
+			page.writePosition = 0;
+		} finally {
+			reuseLock.unlockWrite(stamp);
+		}
+		releaseOrKeepForReuse(page);
+	}
+
+	private void releaseOrKeepForReuse(Page page) {
+		if (page.buffer.capacity() == pageSize) {
+			reusablePages.push(page.index);
+		} else {
+			page.released = true;
+		}
+	}
+
+	/**
+	 * getAllocatedBytes returns the number of bytes of off heap memory held by the store,
+	 * including pages that are kept for reuse.
+	 * 
+	 * @return the number of allocated bytes
+	 */
+	public synchronized long getAllocatedBytes() {
+		long allocatedBytes = 0;
+		for (Page page : pages) {
+			allocatedBytes += page.released ? 0 : page.buffer.capacity();
+		}
+		return allocatedBytes;
+	}
+
+	/**
+	 * getLiveBytes returns the number of bytes, including a small header for each array, of the
+	 * arrays that are stored and not yet freed.
+	 * 
+	 * @return the number of live bytes
+	 */
+	public synchronized long getLiveBytes() {
+		return liveBytes;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	private static final class Page {
+		private final int index;
+		private final ByteBuffer buffer;
+		private volatile int generation;
+		private int writePosition;
+		private int liveBytes;
+		private boolean current;
+		private boolean released;
+
+		Page(int index, int generation, ByteBuffer buffer) {
+			this.index = index;
+			this.generation = generation;
+			this.buffer = buffer;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.userstorage.convert.CompactUserCodec;
+import se.uu.ub.cora.userstorage.metrics.CacheStatistics;
+
+/**
+ * OffHeapUserCache is a user cache that keeps the users outside of the heap, encoded by a
+ * {@link CompactUserCodec} and stored in an {@link OffHeapByteStore}.
+ * <p>
+ * Only the userId and the address of the encoded user are kept on the heap, in a
+ * {@link BoundedTtlCache} that handles max size, time to live, stale window and statistics in the
+ * same way as for an on heap user cache. The encoded user is freed when its entry leaves that
+ * cache. As the off heap memory of expired entries is only freed when the entries are removed,
+ * {@link #removeExpired()} should be called periodically.
+ * <p>
+ * Users are decoded on each lookup, so every lookup returns a new {@link User} instance. Values
+ * kept for an instance of a cached user, such as the authorizations in
+ * {@link UserAuthorizations}, are therefore created again for each lookup.
+ */
+public final class OffHeapUserCache implements TtlCache<String, User> {
+	static final int PAGE_SIZE = 1 << 20;
+
+	private final CompactUserCodec codec;
+	private final OffHeapByteStore store;
+	private final BoundedTtlCache<String, Long> addressCache;
+
+	public static OffHeapUserCache usingCodecMaxSizeTimeToLiveAndStaleWindow(
+			CompactUserCodec codec, int maxSize, Duration timeToLive, Duration staleWindow) {
+		return new OffHeapUserCache(codec, maxSize, timeToLive, staleWindow);
+	}
+
+	private OffHeapUserCache(CompactUserCodec codec, int maxSize, Duration timeToLive,
+			Duration staleWindow) {
+		this.codec = codec;
+		store = OffHeapByteStore.usingPageSize(PAGE_SIZE);
+		addressCache = BoundedTtlCache.usingMaxSizeTimeToLiveStaleWindowAndRemovalListener(
+				maxSize, timeToLive, staleWindow, store::free);
+	}
+
+	@Override
+	public Optional<User> get(String userId) {
+		return addressCache.get(userId).flatMap(this::readUser);
+	}
+
+	private Optional<User> readUser(long address) {
+		return store.read(address, codec::decode);
+	}
+
+	@Override
+	public Optional<CachedValue<User>> getCachedValue(String userId) {
+		return addressCache.getCachedValue(userId).flatMap(this::readCachedUser);
+	}
+
+	private Optional<CachedValue<User>> readCachedUser(CachedValue<Long> cachedAddress) {
+		return readUser(cachedAddress.value()).map(user -> new CachedValue<>(user,
+				cachedAddress.ageNanos(), cachedAddress.stale()));
+	}
+
+	@Override
+	public void put(String userId, User user) {
+		long address = store.write(codec.encode(user));
+		addressCache.put(userId, address);
+	}
+
+	@Override
+	public void putWithAge(String userId, User user, Duration age) {
+		long address = store.write(codec.encode(user));
+		addressCache.putWithAge(userId, address, age);
+	}
+
+	@Override
+	public void invalidate(String userId) {
+		addressCache.invalidate(userId);
+	}
+
+	@Override
+	public void invalidateAll() {
+		addressCache.invalidateAll();
+	}
+
+	@Override
+	public void removeExpired() {
+		addressCache.removeExpired();
+	}
+
+	@Override
+	public void forEachValue(Consumer<User> action) {
+		addressCache.forEachValue(address -> readUser(address).ifPresent(action));
+	}
+
+	@Override
+	public int size() {
+		return addressCache.size();
+	}
+
+	@Override
+	public int getMaxSize() {
+		return addressCache.getMaxSize();
+	}
+
+	@Override
+	public Duration getTimeToLive() {
+		return addressCache.getTimeToLive();
+	}
+
+	@Override
+	public Duration getStaleWindow() {
+		return addressCache.getStaleWindow();
+	}
+
+	@Override
+	public CacheStatistics getStatistics() {
+		return addressCache.getStatistics();
+	}
+
+	/**
+	 * getOffHeapAllocatedBytes returns the number of bytes of off heap memory held by the cache.
+	 * 
+	 * @return the number of allocated off heap bytes
+	 */
+	public long getOffHeapAllocatedBytes() {
+		return store.getAllocatedBytes();
+	}
+
+	/**
+	 * getOffHeapLiveBytes returns the number of off heap bytes used by the users in the cache.
+	 * 
+	 * @return the number of live off heap bytes
+	 */
+	public long getOffHeapLiveBytes() {
+		return store.getLiveBytes();
+	}
+
+	public CompactUserCodec onlyForTestGetCodec() {
+		return codec;
+	}
+
+	public void onlyForTestSetNanoTimeSource(LongSupplier nanoTimeSource) {
+		addressCache.onlyForTestSetNanoTimeSource(nanoTimeSource);
+	}
+}
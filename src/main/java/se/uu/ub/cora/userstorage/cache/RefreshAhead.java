@@ -0,0 +1,163 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.userstorage.metrics.RefreshStatistics;
+
+/**
+ * RefreshAhead decides when cached values should be reloaded and runs the reloads in the
+ * background.
+ * <p>
+ * A cached value older than the refresh after time, or a stale value, needs a refresh. Only one
+ * refresh is run at a time for each key and at most max concurrent refreshes are run in total,
+ * refreshes that would go above that are skipped and tried again on a later lookup. The limit is
+ * kept by a {@link Semaphore}, so concurrent callers can not together start more refreshes than
+ * allowed. Refreshes are run on virtual threads, so callers are never blocked by them.
+ * <p>
+ * A disabled RefreshAhead never starts a refresh, which makes callers treat stale values as
+ * missing.
+ */
+public class RefreshAhead<K> {
+	private static final String THREAD_NAME_PREFIX = "userstorage-refresh-";
+	private static final long NEVER = Long.MAX_VALUE;
+
+	private Logger log = LoggerProvider.getLoggerForClass(RefreshAhead.class);
+	private final long refreshAfterNanos;
+	private final int maxConcurrentRefreshes;
+	private final Set<K> inFlight = ConcurrentHashMap.newKeySet();
+	private final Semaphore refreshPermits;
+	private Executor executor = Executors
+			.newThreadPerTaskExecutor(Thread.ofVirtual().name(THREAD_NAME_PREFIX, 0).factory());
+
+	private final LongAdder started = new LongAdder();
+	private final LongAdder succeeded = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+	private final LongAdder staleHits = new LongAdder();
+
+	public static <K> RefreshAhead<K> usingRefreshAfterAndMaxConcurrentRefreshes(
+			Duration refreshAfter, int maxConcurrentRefreshes) {
+		return new RefreshAhead<>(refreshAfter.toNanos(), maxConcurrentRefreshes);
+	}
+
+	public static <K> RefreshAhead<K> disabled() {
+		return new RefreshAhead<>(NEVER, 0);
+	}
+
+	private RefreshAhead(long refreshAfterNanos, int maxConcurrentRefreshes) {
+		this.refreshAfterNanos = refreshAfterNanos;
+		this.maxConcurrentRefreshes = maxConcurrentRefreshes;
+		this.refreshPermits = new Semaphore(maxConcurrentRefreshes);
+	}
+
+	/**
+	 * needsRefresh returns true if the cached value is stale or older than the refresh after time.
+	 * 
+	 * @param cachedValue
+	 *            the value read from the cache
+	 * @return true if the value should be refreshed
+	 */
+	public boolean needsRefresh(CachedValue<?> cachedValue) {
+		return cachedValue.stale() || cachedValue.ageNanos() >= refreshAfterNanos;
+	}
+
+	/**
+	 * refreshInBackground starts the refresh for the key, unless a refresh for the key is already
+	 * running or too many refreshes are in flight.
+	 * 
+	 * @param key
+	 *            the key to refresh
+	 * @param refresh
+	 *            the Runnable that reloads and caches the value for the key
+	 * @return true if a refresh for the key is in flight when the method returns, false if no
+	 *         refresh was started
+	 */
+	public boolean refreshInBackground(K key, Runnable refresh) {
+		if (inFlight.contains(key)) {
+			return true;
+		}
+		if (!refreshPermits.tryAcquire()) {
+			skipped.increment();
+			return false;
+		}
+		if (!inFlight.add(key)) {
+			refreshPermits.release();
+			return true;
+		}
+		started.increment();
+		executor.execute(() -> runRefresh(key, refresh));
+		return true;
+	}
+
+	private void runRefresh(K key, Runnable refresh) {
+		try {
+			refresh.run();
+			succeeded.increment();
+		} catch (RuntimeException e) {
+			failed.increment();
+			log.logErrorUsingMessageAndException("Refresh of " + key + " failed.", e);
+		} finally {
+			inFlight.remove(key);
+			refreshPermits.release();
+		}
+	}
+
+	/**
+	 * recordStaleHit counts a lookup answered with a stale value.
+	 */
+	public void recordStaleHit() {
+		staleHits.increment();
+	}
+
+	public boolean isEnabled() {
+		return refreshAfterNanos != NEVER;
+	}
+
+	public Duration getRefreshAfter() {
+		return Duration.ofNanos(refreshAfterNanos);
+	}
+
+	public int getMaxConcurrentRefreshes() {
+		return maxConcurrentRefreshes;
+	}
+
+	/**
+	 * getStatistics returns a snapshot of the refresh counters.
+	 * 
+	 * @return a {@link RefreshStatistics} with the current counters
+	 */
+	public RefreshStatistics getStatistics() {
+		return new RefreshStatistics(started.sum(), succeeded.sum(), failed.sum(), skipped.sum(),
+				staleHits.sum(), inFlight.size());
+	}
+
+	public void onlyForTestSetExecutor(Executor executor) {
+		this.executor = executor;
+	}
+}
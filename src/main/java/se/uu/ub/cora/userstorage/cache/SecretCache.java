@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import se.uu.ub.cora.userstorage.metrics.CacheStatistics;
+
+/**
+ * SecretCache is a size bounded cache with a short time to live for appToken tokens and
+ * systemSecret secrets.
+ * <p>
+ * Secrets are kept as the Strings they are read and returned as, since the gatekeeper API hands
+ * them out as Strings. They can therefore not be overwritten in memory, the cache only limits for
+ * how long it holds on to them. Expired secrets are otherwise only dropped when they are looked
+ * up, call {@link #removeExpired()} periodically to drop them in time.
+ */
+public class SecretCache {
+	private BoundedTtlCache<SecretKey, String> cache;
+
+	public static SecretCache usingMaxSizeAndTimeToLive(int maxSize, Duration timeToLive) {
+		return new SecretCache(maxSize, timeToLive);
+	}
+
+	private SecretCache(int maxSize, Duration timeToLive) {
+		cache = BoundedTtlCache.usingMaxSizeAndTimeToLive(maxSize, timeToLive);
+	}
+
+	/**
+	 * get returns the cached secret for the key, if there is one and it has not expired.
+	 * 
+	 * @param key
+	 *            the {@link SecretKey} to look up
+	 * @return an Optional with the secret, or an empty Optional if no usable secret exists
+	 */
+	public Optional<String> get(SecretKey key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * put caches the secret under the key, replacing any secret cached for it.
+	 * 
+	 * @param key
+	 *            the {@link SecretKey} to cache the secret under
+	 * @param secret
+	 *            the secret to cache
+	 */
+	public void put(SecretKey key, String secret) {
+		cache.put(key, secret);
+	}
+
+	public void invalidate(SecretKey key) {
+		cache.invalidate(key);
+	}
+
+	/**
+	 * invalidateAll removes all cached secrets.
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * removeExpired removes all secrets older than the time to live.
+	 */
+	public void removeExpired() {
+		cache.removeExpired();
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public int getMaxSize() {
+		return cache.getMaxSize();
+	}
+
+	public Duration getTimeToLive() {
+		return cache.getTimeToLive();
+	}
+
+	public CacheStatistics getStatistics() {
+		return cache.getStatistics();
+	}
+
+	BoundedTtlCache<SecretKey, String> onlyForTestGetCache() {
+		return cache;
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+/**
+ * SecretKey identifies a secret kept in a {@link SecretCache}, by the type of record the secret
+ * was read from and the id of that record.
+ *
+ * @param secretType
+ *            the type of record the secret was read from, {@link #APP_TOKEN} or
+ *            {@link #SYSTEM_SECRET}
+ * @param id
+ *            the id of the record
+ */
+public record SecretKey(String secretType, String id) {
+	public static final String APP_TOKEN = "appToken";
+	public static final String SYSTEM_SECRET = "systemSecret";
+}
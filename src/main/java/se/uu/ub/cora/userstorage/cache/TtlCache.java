@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import se.uu.ub.cora.userstorage.metrics.CacheStatistics;
+
+/**
+ * TtlCache is a cache with a maximum number of entries and a time to live for each entry, see
+ * {@link BoundedTtlCache} for how entries are evicted and expired.
+ * <p>
+ * It lets the user cache of a {@link CachingUserStorageView} be kept either on the heap, by a
+ * {@link BoundedTtlCache}, or outside of it, by an {@link OffHeapUserCache}.
+ */
+public interface TtlCache<K, V> {
+
+	Optional<V> get(K key);
+
+	Optional<CachedValue<V>> getCachedValue(K key);
+
+	void put(K key, V value);
+
+	/**
+	 * putWithAge adds or replaces the value for the key as if it had been loaded the given time
+	 * ago, so that it expires that much earlier than a value put now. Values put together can
+	 * then be given different ages, so that they do not all expire at the same time.
+	 * 
+	 * @param key
+	 *            the key to cache the value under
+	 * @param value
+	 *            the value to cache
+	 * @param age
+	 *            how long ago the value is treated as loaded
+	 */
+	void putWithAge(K key, V value, Duration age);
+
+	void invalidate(K key);
+
+	void invalidateAll();
+
+	void removeExpired();
+
+	/**
+	 * forEachValue calls the action with each value in the cache that is younger than the time to
+	 * live. Lookups made this way are not counted as hits or misses.
+	 * 
+	 * @param action
+	 *            the action to call with each value
+	 */
+	void forEachValue(Consumer<V> action);
+
+	int size();
+
+	int getMaxSize();
+
+	Duration getTimeToLive();
+
+	Duration getStaleWindow();
+
+	CacheStatistics getStatistics();
+}
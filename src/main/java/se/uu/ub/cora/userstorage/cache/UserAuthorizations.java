@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.userstorage.convert.AuthorizationDictionary;
+import se.uu.ub.cora.userstorage.convert.UserAuthorization;
+
+/**
+ * UserAuthorizations keeps the {@link UserAuthorization} of users, created using a shared
+ * {@link AuthorizationDictionary}, so that authorization checks for a cached user do not convert
+ * its roles and permission units again.
+ * <p>
+ * A kept authorization is only used for the same {@link User} instance it was created from. When
+ * the user is read again and cached as a new instance, a new authorization is created on the next
+ * request.
+ */
+public final class UserAuthorizations {
+	private final AuthorizationDictionary dictionary;
+	private final BoundedTtlCache<String, AuthorizationOfUser> authorizationCache;
+
+	public static UserAuthorizations usingDictionaryMaxSizeAndTimeToLive(
+			AuthorizationDictionary dictionary, int maxSize, Duration timeToLive) {
+		return new UserAuthorizations(dictionary, maxSize, timeToLive);
+	}
+
+	private UserAuthorizations(AuthorizationDictionary dictionary, int maxSize,
+			Duration timeToLive) {
+		this.dictionary = dictionary;
+		authorizationCache = BoundedTtlCache.usingMaxSizeAndTimeToLive(maxSize, timeToLive);
+	}
+
+	/**
+	 * getAuthorizationForUser returns the kept authorization for the user, or creates and keeps a
+	 * new one if none is kept for this instance of the user.
+	 * 
+	 * @param user
+	 *            the user to get the authorization for
+	 * @return the {@link UserAuthorization} of the user
+	 */
+	public UserAuthorization getAuthorizationForUser(User user) {
+		Optional<AuthorizationOfUser> kept = authorizationCache.get(user.id);
+		if (kept.isPresent() && kept.get().user() == user) {
+			return kept.get().authorization();
+		}
+		UserAuthorization authorization = dictionary.createAuthorization(user);
+		authorizationCache.put(user.id, new AuthorizationOfUser(user, authorization));
+		return authorization;
+	}
+
+	public void invalidate(String userId) {
+		authorizationCache.invalidate(userId);
+	}
+
+	public void invalidateAll() {
+		authorizationCache.invalidateAll();
+	}
+
+	public AuthorizationDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public BoundedTtlCache<String, ?> onlyForTestGetCache() {
+		return authorizationCache;
+	}
+
+	private record AuthorizationOfUser(User user, UserAuthorization authorization) {
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.storage.Filter;
+import se.uu.ub.cora.storage.RecordStorage;
+import se.uu.ub.cora.storage.StorageReadResult;
+import se.uu.ub.cora.userstorage.BackgroundWorker;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUser;
+
+/**
+ * UserCachePreloader is a {@link BackgroundWorker} that warms up the user cache and the loginId
+ * index when the view is started, so that a newly started node does not send all its first user
+ * lookups to storage.
+ * <p>
+ * Users are read from storage one page at a time, and the users on a page are converted in
+ * parallel before the next page is read, so only one page is held in memory at once. Only active
+ * users are cached, and loading stops when the user cache is full. The loginIds of all users read
+ * are indexed and added to the {@link KnownLoginIds}, also of inactive users, so that two users
+ * with the same loginId are found as a conflict by the {@link LoginIdIndex}.
+ * <p>
+ * Preloaded users are cached with a random age of up to half the time to live of the user cache,
+ * so that they expire, and are refreshed, spread over time instead of all at once. The users of a
+ * page are neither cached nor indexed if any user has been invalidated while the page was read,
+ * see {@link InvalidationGenerations}.
+ * <p>
+ * The preloader reports itself as ready when loading has finished, failed or been stopped. A
+ * failed preload is logged, lookups then read from storage as usual.
+ * <p>
+ * If the caches hold an open {@link UserSnapshot}, the preloader reports itself as ready at once,
+ * as lookups can be answered by the snapshot. Every user read from storage, also inactive ones, is
+ * invalidated in the snapshot, so that the snapshot does not answer for a user that has been read.
+ * The snapshot is closed when loading has finished, failed or been stopped, so that users from the
+ * snapshot are not used after that.
+ */
+public class UserCachePreloader implements BackgroundWorker {
+	private static final String THREAD_NAME = "userstorage-preload";
+	private final Logger log = LoggerProvider.getLoggerForClass(UserCachePreloader.class);
+	private final RecordStorage recordStorage;
+	private final DataGroupToUser dataGroupToUser;
+	private final UserStorageCaches caches;
+	private final int pageSize;
+	private final int parallelism;
+	private final CountDownLatch finished = new CountDownLatch(1);
+	private final AtomicLong cachedUsers = new AtomicLong();
+	private final AtomicLong failedConversions = new AtomicLong();
+	private volatile boolean stopped = false;
+	private Thread preloadThread;
+
+	public static UserCachePreloader usingRecordStorageConverterCachesAndPageSize(
+			RecordStorage recordStorage, DataGroupToUser dataGroupToUser,
+			UserStorageCaches caches, int pageSize) {
+		return new UserCachePreloader(recordStorage, dataGroupToUser, caches, pageSize);
+	}
+
+	private UserCachePreloader(RecordStorage recordStorage, DataGroupToUser dataGroupToUser,
+			UserStorageCaches caches, int pageSize) {
+		this.recordStorage = recordStorage;
+		this.dataGroupToUser = dataGroupToUser;
+		this.caches = caches;
+		this.pageSize = pageSize;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public synchronized void start() {
+		preloadThread = Thread.ofPlatform().name(THREAD_NAME).daemon().start(this::preload);
+	}
+
+	void preload() {
+		long startTime = System.nanoTime();
+		log.logInfoUsingMessage("Preloading users into cache.");
+		try {
+			loadAllPages(startTime);
+			log.logInfoUsingMessage(createProgressMessage("Preloading users finished", startTime));
+		} catch (Exception e) {
+			log.logErrorUsingMessageAndException(
+					createProgressMessage("Preloading users failed", startTime), e);
+		} finally {
+			possiblyCloseSnapshot();
+			finished.countDown();
+		}
+	}
+
+	private void possiblyCloseSnapshot() {
+		UserSnapshot userSnapshot = caches.userSnapshot();
+		if (userSnapshot.isOpen()) {
+			userSnapshot.close();
+			log.logInfoUsingMessage("Closed user snapshot, lookups answered by it: "
+					+ userSnapshot.getNumberOfHits() + ".");
+		}
+	}
+
+	private void loadAllPages(long startTime) {
+		try (ExecutorService converters = Executors.newFixedThreadPool(parallelism,
+				Thread.ofPlatform().name(THREAD_NAME + "-convert-", 0).daemon().factory())) {
+			long fromNo = 1;
+			boolean morePages = true;
+			while (morePages && shouldContinue()) {
+				long generationOfAll = caches.generations().getGenerationOfAllKeys();
+				StorageReadResult page = readPage(fromNo);
+				List<DataRecordGroup> records = page.listOfDataRecordGroups;
+				convertAndCacheInParallel(records, converters, generationOfAll);
+				fromNo += pageSize;
+				morePages = records.size() == pageSize && fromNo <= page.totalNumberOfMatches;
+				log.logInfoUsingMessage(createProgressMessage(
+						"Preloaded page of users, total in storage: " + page.totalNumberOfMatches,
+						startTime));
+			}
+		}
+	}
+
+	private boolean shouldContinue() {
+		return !stopped && cachedUsers.get() < caches.userCache().getMaxSize();
+	}
+
+	private StorageReadResult readPage(long fromNo) {
+		Filter filter = new Filter();
+		filter.fromNo = fromNo;
+		filter.toNo = fromNo + pageSize - 1;
+		return recordStorage.readList("user", filter);
+	}
+
+	private void convertAndCacheInParallel(List<DataRecordGroup> records,
+			ExecutorService converters, long generationOfAll) {
+		List<Callable<Void>> conversions = new ArrayList<>(records.size());
+		for (DataRecordGroup userRecord : records) {
+			conversions.add(() -> {
+				convertAndPossiblyCache(userRecord, generationOfAll);
+				return null;
+			});
+		}
+		invokeAllOrStop(converters, conversions);
+	}
+
+	private void invokeAllOrStop(ExecutorService converters, List<Callable<Void>> conversions) {
+		try {
+			converters.invokeAll(conversions);
+		} catch (InterruptedException e) {
+			stopped = true;
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void convertAndPossiblyCache(DataRecordGroup userRecord, long generationOfAll) {
+		try {
+			User user = dataGroupToUser.groupToUser(userRecord);
+			possiblyCacheUser(user, generationOfAll);
+		} catch (Exception e) {
+			failedConversions.incrementAndGet();
+		}
+	}
+
+	private void possiblyCacheUser(User user, long generationOfAll) {
+		caches.userSnapshot().invalidateUser(user.id);
+		caches.knownLoginIds().add(user.loginId);
+		InvalidationGenerations<Object> generations = caches.generations();
+		if (generations.isAnyInvalidatedSince(generationOfAll)) {
+			return;
+		}
+		indexAndPossiblyCacheUser(user);
+		if (generations.isAnyInvalidatedSince(generationOfAll)) {
+			caches.userCache().invalidate(user.id);
+			caches.loginIdIndex().removeUser(user.id);
+		}
+	}
+
+	private void indexAndPossiblyCacheUser(User user) {
+		caches.loginIdIndex().indexUser(user);
+		if (user.active) {
+			caches.userCache().putWithAge(user.id, user, createRandomAge());
+			cachedUsers.incrementAndGet();
+		}
+	}
+
+	private Duration createRandomAge() {
+		long maxAgeNanos = caches.userCache().getTimeToLive().toNanos() / 2;
+		return Duration.ofNanos(ThreadLocalRandom.current().nextLong(maxAgeNanos + 1));
+	}
+
+	private String createProgressMessage(String message, long startTime) {
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		return message + ", cached users: " + cachedUsers.get() + ", failed conversions: "
+				+ failedConversions.get() + ", time: " + elapsedMillis + " ms.";
+	}
+
+	@Override
+	public synchronized void stop() {
+		stopped = true;
+		if (preloadThread != null) {
+			preloadThread.interrupt();
+		}
+	}
+
+	@Override
+	public boolean isReady() {
+		return finished.getCount() == 0 || caches.userSnapshot().isOpen();
+	}
+
+	/**
+	 * awaitReady waits until the preload has finished, failed or been stopped, or until the
+	 * timeout has passed.
+	 * 
+	 * @param timeout
+	 *            the longest time to wait
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return true if the preloader is ready
+	 * @throws InterruptedException
+	 *             if the waiting thread is interrupted
+	 */
+	public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+		return finished.await(timeout, unit);
+	}
+
+	public long getNumberOfCachedUsers() {
+		return cachedUsers.get();
+	}
+
+	public long getNumberOfFailedConversions() {
+		return failedConversions.get();
+	}
+
+	public RecordStorage onlyForTestGetRecordStorage() {
+		return recordStorage;
+	}
+
+	public DataGroupToUser onlyForTestGetDataGroupToUser() {
+		return dataGroupToUser;
+	}
+
+	public UserStorageCaches onlyForTestGetCaches() {
+		return caches;
+	}
+
+	public int onlyForTestGetPageSize() {
+		return pageSize;
+	}
+}
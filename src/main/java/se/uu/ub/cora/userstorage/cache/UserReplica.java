@@ -0,0 +1,247 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * UserReplica is an in-memory copy of all users in storage, kept up to date by a
+ * {@link UserReplicaSynchronizer} that reads only the user records changed since its last run.
+ * <p>
+ * The replica only answers lookups while it is fresh, that is while the last successful
+ * synchronization started at most the max staleness ago. A user changed in storage is therefore
+ * found as it was for at most the max staleness. A replica that is disabled, not yet synchronized
+ * or whose synchronizations fail finds no users, and lookups then use the caches and storage as
+ * usual. A loginId held by more than one user in the replica finds no user, so that the lookup in
+ * storage reports the conflict.
+ * <p>
+ * Deleted users are not seen by an incremental synchronization, they are removed by
+ * {@link #removeUser(String)} when the deletion is announced on this node, and otherwise when the
+ * synchronizer finds fewer users in storage than it expects and reads all users again. Lookups
+ * use the replica only for users the caches can not answer.
+ */
+public final class UserReplica {
+	private final boolean enabled;
+	private final Duration maxStaleness;
+	private final Duration fullSyncInterval;
+	private volatile Users users = new Users();
+	private Set<String> userIdsRemovedWhileReplacing;
+	private volatile boolean synchronizedOnce = false;
+	private volatile long synchronizedAtNanos;
+	private final LongAdder hits = new LongAdder();
+	private LongSupplier nanoTimeSource = System::nanoTime;
+
+	public static UserReplica usingMaxStalenessAndFullSyncInterval(Duration maxStaleness,
+			Duration fullSyncInterval) {
+		return new UserReplica(true, maxStaleness, fullSyncInterval);
+	}
+
+	public static UserReplica disabled() {
+		return new UserReplica(false, Duration.ZERO, Duration.ZERO);
+	}
+
+	private UserReplica(boolean enabled, Duration maxStaleness, Duration fullSyncInterval) {
+		this.enabled = enabled;
+		this.maxStaleness = maxStaleness;
+		this.fullSyncInterval = fullSyncInterval;
+	}
+
+	public Optional<User> findUserById(String userId) {
+		if (!isFresh()) {
+			return Optional.empty();
+		}
+		return countIfFound(users.usersById.get(userId));
+	}
+
+	private Optional<User> countIfFound(User user) {
+		if (user == null) {
+			return Optional.empty();
+		}
+		hits.increment();
+		return Optional.of(user);
+	}
+
+	public Optional<User> findUserByLoginId(String loginId) {
+		if (!isFresh()) {
+			return Optional.empty();
+		}
+		Users currentUsers = users;
+		Set<String> userIds = currentUsers.userIdsByLoginId.getOrDefault(loginId, Set.of());
+		Iterator<String> userIdIterator = userIds.iterator();
+		if (!userIdIterator.hasNext()) {
+			return Optional.empty();
+		}
+		User user = currentUsers.usersById.get(userIdIterator.next());
+		if (userIdIterator.hasNext()) {
+			return Optional.empty();
+		}
+		return countIfFound(user != null && loginId.equals(user.loginId) ? user : null);
+	}
+
+	/**
+	 * isFresh returns true if the replica is enabled and the last successful synchronization
+	 * started at most the max staleness ago.
+	 * 
+	 * @return true if the replica answers lookups
+	 */
+	public boolean isFresh() {
+		return synchronizedOnce
+				&& nanoTimeSource.getAsLong() - synchronizedAtNanos <= maxStaleness.toNanos();
+	}
+
+	/**
+	 * startReplacingUsers is called before all users are read from storage, so that users removed
+	 * while they are read are not put back by {@link #replaceUsers(Collection)}.
+	 */
+	synchronized void startReplacingUsers() {
+		userIdsRemovedWhileReplacing = new HashSet<>();
+	}
+
+	/**
+	 * replaceUsers replaces all users in the replica, used when all users have been read from
+	 * storage. Users removed since {@link #startReplacingUsers()} was called are left out, as they
+	 * might have been read before they were changed or deleted.
+	 * 
+	 * @param allUsers
+	 *            all users in storage
+	 * @return the ids of the users that were left out
+	 */
+	synchronized Set<String> replaceUsers(Collection<User> allUsers) {
+		Set<String> removedUserIds = Objects.requireNonNullElse(userIdsRemovedWhileReplacing,
+				Set.of());
+		userIdsRemovedWhileReplacing = null;
+		Set<String> leftOutUserIds = new HashSet<>();
+		Users newUsers = new Users();
+		for (User user : allUsers) {
+			if (removedUserIds.contains(user.id)) {
+				leftOutUserIds.add(user.id);
+			} else {
+				newUsers.put(user);
+			}
+		}
+		users = newUsers;
+		return leftOutUserIds;
+	}
+
+	synchronized void updateUser(User user) {
+		users.put(user);
+	}
+
+	synchronized void removeUser(String userId) {
+		users.remove(userId);
+		if (userIdsRemovedWhileReplacing != null) {
+			userIdsRemovedWhileReplacing.add(userId);
+		}
+	}
+
+	/**
+	 * markSynchronized makes the replica fresh until the max staleness has passed since the
+	 * synchronization started, as changes made after that might not have been read.
+	 * 
+	 * @param startedAtNanos
+	 *            the time the synchronization started, from {@link #nanoTime()}
+	 */
+	void markSynchronized(long startedAtNanos) {
+		if (enabled) {
+			synchronizedAtNanos = startedAtNanos;
+			synchronizedOnce = true;
+		}
+	}
+
+	long nanoTime() {
+		return nanoTimeSource.getAsLong();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public Duration getMaxStaleness() {
+		return maxStaleness;
+	}
+
+	public Duration getFullSyncInterval() {
+		return fullSyncInterval;
+	}
+
+	public int getNumberOfUsers() {
+		return users.usersById.size();
+	}
+
+	/**
+	 * getNumberOfHits returns the number of lookups that found a user in the replica.
+	 * 
+	 * @return the number of hits
+	 */
+	public long getNumberOfHits() {
+		return hits.sum();
+	}
+
+	public void onlyForTestSetNanoTimeSource(LongSupplier nanoTimeSource) {
+		this.nanoTimeSource = nanoTimeSource;
+	}
+
+	private static final class Users {
+		private final Map<String, User> usersById = new ConcurrentHashMap<>();
+		private final Map<String, Set<String>> userIdsByLoginId = new ConcurrentHashMap<>();
+
+		private void put(User user) {
+			User previousUser = usersById.put(user.id, user);
+			if (previousUser != null && !Objects.equals(previousUser.loginId, user.loginId)) {
+				removeLoginId(previousUser);
+			}
+			if (user.loginId != null) {
+				userIdsByLoginId
+						.computeIfAbsent(user.loginId, loginId -> ConcurrentHashMap.newKeySet())
+						.add(user.id);
+			}
+		}
+
+		private void removeLoginId(User user) {
+			if (user.loginId != null) {
+				userIdsByLoginId.computeIfPresent(user.loginId,
+						(loginId, userIds) -> removeUserId(userIds, user.id));
+			}
+		}
+
+		private Set<String> removeUserId(Set<String> userIds, String userId) {
+			userIds.remove(userId);
+			return userIds.isEmpty() ? null : userIds;
+		}
+
+		private void remove(String userId) {
+			User previousUser = usersById.remove(userId);
+			if (previousUser != null) {
+				removeLoginId(previousUser);
+			}
+		}
+	}
+}
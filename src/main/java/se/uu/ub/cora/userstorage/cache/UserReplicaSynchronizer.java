@@ -0,0 +1,295 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.storage.Condition;
+import se.uu.ub.cora.storage.Filter;
+import se.uu.ub.cora.storage.Part;
+import se.uu.ub.cora.storage.RecordStorage;
+import se.uu.ub.cora.storage.RelationalOperator;
+import se.uu.ub.cora.storage.StorageReadResult;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUser;
+
+/**
+ * UserReplicaSynchronizer keeps the {@link UserReplica} in the caches up to date with the user
+ * records in storage. It is meant to be run periodically, for instance by a
+ * {@link se.uu.ub.cora.userstorage.PeriodicWorker}.
+ * <p>
+ * The first run, and the first run after each full sync interval of the replica, reads all user
+ * records and replaces the users in the replica. The other runs read, page by page, only the
+ * records updated since the latest updated timestamp seen so far, the watermark, and apply them to
+ * the replica. The watermark is taken from the updated timestamps storage has written, never from
+ * the clock of this node, and the records are read from {@link #WATERMARK_OVERLAP} before it, as a
+ * record written with an earlier timestamp can become visible after a later one has been read.
+ * Records read again are applied again, which does no harm. Timestamps are compared as strings, as
+ * storage writes them in one fixed width format. Each changed user is also removed from the user
+ * cache, the not found cache and the loginId index, and its loginId is added to the known
+ * loginIds, so that no cache hides the change. The loginId is not indexed, as the next lookup by
+ * loginId must check in storage that no other user has been given the same loginId.
+ * <p>
+ * Records that can not be converted are counted, and a changed record that can not be converted
+ * is removed from the replica so that it is read from storage instead. If reading storage fails
+ * the exception is thrown, the watermark is kept and the replica is not marked as synchronized,
+ * so it stops answering lookups when its max staleness has passed.
+ * <p>
+ * Deleted users are not seen by the reads of changed records. They are removed from the replica
+ * when the deletion is announced through the {@link se.uu.ub.cora.userstorage.InvalidationBus}.
+ * To find users deleted on other nodes, each incremental run ends by asking storage for the number
+ * of user records, and if storage holds fewer users than the replica and the records it could not
+ * convert, all users are read again. Users removed from the replica while all users are read are
+ * not put back, as they might have been read before they were changed or deleted, they are read
+ * from storage until they are read into the replica again.
+ */
+public class UserReplicaSynchronizer implements Runnable {
+	static final String UPDATED = "tsUpdated";
+	static final Duration WATERMARK_OVERLAP = Duration.ofMinutes(1);
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter
+			.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z'").withZone(ZoneOffset.UTC);
+	private static final String USER = "user";
+	private Logger log = LoggerProvider.getLoggerForClass(UserReplicaSynchronizer.class);
+	private final RecordStorage recordStorage;
+	private final DataGroupToUser dataGroupToUser;
+	private final UserStorageCaches caches;
+	private final UserReplica userReplica;
+	private final int pageSize;
+	private String watermark;
+	private long fullSyncStartedAtNanos;
+	private int readRecords;
+	private int failedConversions;
+	private Set<String> userIdsNotInReplica = new HashSet<>();
+
+	public static UserReplicaSynchronizer usingRecordStorageConverterCachesAndPageSize(
+			RecordStorage recordStorage, DataGroupToUser dataGroupToUser,
+			UserStorageCaches caches, int pageSize) {
+		return new UserReplicaSynchronizer(recordStorage, dataGroupToUser, caches, pageSize);
+	}
+
+	private UserReplicaSynchronizer(RecordStorage recordStorage, DataGroupToUser dataGroupToUser,
+			UserStorageCaches caches, int pageSize) {
+		this.recordStorage = recordStorage;
+		this.dataGroupToUser = dataGroupToUser;
+		this.caches = caches;
+		this.userReplica = caches.userReplica();
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public synchronized void run() {
+		long startedAtNanos = userReplica.nanoTime();
+		if (isFullSyncDue(startedAtNanos)) {
+			runFullSync(startedAtNanos);
+		} else {
+			runIncrementalSync(startedAtNanos);
+		}
+		userReplica.markSynchronized(startedAtNanos);
+	}
+
+	private boolean isFullSyncDue(long startedAtNanos) {
+		long fullSyncIntervalNanos = userReplica.getFullSyncInterval().toNanos();
+		return watermark == null
+				|| startedAtNanos - fullSyncStartedAtNanos >= fullSyncIntervalNanos;
+	}
+
+	private void runFullSync(long startedAtNanos) {
+		resetCounters();
+		userIdsNotInReplica = new HashSet<>();
+		userReplica.startReplacingUsers();
+		List<User> users = new ArrayList<>();
+		String newWatermark = readAllPages(Filter::new, userRecord -> addUser(users, userRecord));
+		userIdsNotInReplica.addAll(userReplica.replaceUsers(users));
+		watermark = newWatermark;
+		fullSyncStartedAtNanos = startedAtNanos;
+		log.logInfoUsingMessage("Read all users into replica, users: " + users.size()
+				+ createResultMessage(startedAtNanos));
+	}
+
+	private void addUser(List<User> users, DataRecordGroup userRecord) {
+		User user = dataGroupToUser.groupToUser(userRecord);
+		users.add(user);
+		caches.knownLoginIds().add(user.loginId);
+	}
+
+	private String createResultMessage(long startedAtNanos) {
+		long elapsedMillis = TimeUnit.NANOSECONDS
+				.toMillis(userReplica.nanoTime() - startedAtNanos);
+		return ", failed conversions: " + failedConversions + ", watermark: " + watermark
+				+ ", time: " + elapsedMillis + " ms.";
+	}
+
+	private void resetCounters() {
+		readRecords = 0;
+		failedConversions = 0;
+	}
+
+	private void runIncrementalSync(long startedAtNanos) {
+		resetCounters();
+		String newWatermark = readAllPages(this::createUpdatedSinceWatermarkFilter,
+				this::applyChangedUser);
+		watermark = newWatermark;
+		if (readRecords > 0) {
+			log.logInfoUsingMessage("Applied changed users to replica, changed users: "
+					+ readRecords + createResultMessage(startedAtNanos));
+		}
+		possiblyRunFullSyncForDeletedUsers(startedAtNanos);
+	}
+
+	private void possiblyRunFullSyncForDeletedUsers(long startedAtNanos) {
+		long usersInStorage = countUsersInStorage();
+		long expectedUsers = (long) userReplica.getNumberOfUsers() + userIdsNotInReplica.size();
+		if (usersInStorage < expectedUsers) {
+			log.logInfoUsingMessage("Users deleted from storage, users in storage: "
+					+ usersInStorage + ", expected users: " + expectedUsers + ".");
+			runFullSync(startedAtNanos);
+		}
+	}
+
+	private long countUsersInStorage() {
+		Filter filter = new Filter();
+		filter.fromNo = 1;
+		filter.toNo = 1;
+		return recordStorage.readList(USER, filter).totalNumberOfMatches;
+	}
+
+	private Filter createUpdatedSinceWatermarkFilter() {
+		Part part = new Part();
+		part.conditions.add(
+				new Condition(UPDATED, RelationalOperator.GREATER_THAN_OR_EQUAL_TO,
+						subtractOverlapFromWatermark()));
+		Filter filter = new Filter();
+		filter.include.add(part);
+		return filter;
+	}
+
+	private String subtractOverlapFromWatermark() {
+		try {
+			Instant updated = Instant.parse(watermark);
+			return TIMESTAMP_FORMAT.format(updated.minus(WATERMARK_OVERLAP));
+		} catch (DateTimeParseException e) {
+			return watermark;
+		}
+	}
+
+	private void applyChangedUser(DataRecordGroup userRecord) {
+		String userId = userRecord.getId();
+		try {
+			User user = dataGroupToUser.groupToUser(userRecord);
+			userReplica.updateUser(user);
+			removeUserFromCaches(userId);
+			caches.loginIdIndex().removeUser(userId);
+			caches.knownLoginIds().add(user.loginId);
+			possiblyForgetLoginId(user.loginId);
+			userIdsNotInReplica.remove(userId);
+		} catch (RuntimeException e) {
+			userReplica.removeUser(userId);
+			removeUserFromCaches(userId);
+			caches.loginIdIndex().removeUser(userId);
+			throw e;
+		}
+	}
+
+	private void removeUserFromCaches(String userId) {
+		caches.userCache().invalidate(userId);
+		caches.notFoundCache().invalidate(new NotFoundKey(NotFoundKey.USER, userId));
+	}
+
+	private void possiblyForgetLoginId(String loginId) {
+		if (loginId != null) {
+			caches.loginIdIndex().removeLoginId(loginId);
+			caches.notFoundCache().invalidate(new NotFoundKey(NotFoundKey.LOGIN_ID, loginId));
+		}
+	}
+
+	private String readAllPages(Supplier<Filter> filterFactory,
+			Consumer<DataRecordGroup> applyRecord) {
+		String newWatermark = watermark;
+		long fromNo = 1;
+		boolean morePages = true;
+		while (morePages) {
+			StorageReadResult page = readPage(filterFactory.get(), fromNo);
+			for (DataRecordGroup userRecord : page.listOfDataRecordGroups) {
+				newWatermark = latestOf(newWatermark, userRecord.getLatestTsUpdated());
+				readRecords++;
+				tryToApply(applyRecord, userRecord);
+			}
+			fromNo += pageSize;
+			morePages = page.listOfDataRecordGroups.size() == pageSize
+					&& fromNo <= page.totalNumberOfMatches;
+		}
+		return newWatermark;
+	}
+
+	private StorageReadResult readPage(Filter filter, long fromNo) {
+		filter.fromNo = fromNo;
+		filter.toNo = fromNo + pageSize - 1;
+		return recordStorage.readList(USER, filter);
+	}
+
+	private String latestOf(String currentWatermark, String updated) {
+		if (currentWatermark == null || updated.compareTo(currentWatermark) > 0) {
+			return updated;
+		}
+		return currentWatermark;
+	}
+
+	private void tryToApply(Consumer<DataRecordGroup> applyRecord, DataRecordGroup userRecord) {
+		try {
+			applyRecord.accept(userRecord);
+		} catch (RuntimeException e) {
+			userIdsNotInReplica.add(userRecord.getId());
+			failedConversions++;
+		}
+	}
+
+	public RecordStorage onlyForTestGetRecordStorage() {
+		return recordStorage;
+	}
+
+	public DataGroupToUser onlyForTestGetDataGroupToUser() {
+		return dataGroupToUser;
+	}
+
+	public UserStorageCaches onlyForTestGetCaches() {
+		return caches;
+	}
+
+	public int onlyForTestGetPageSize() {
+		return pageSize;
+	}
+
+	String onlyForTestGetWatermark() {
+		return watermark;
+	}
+}
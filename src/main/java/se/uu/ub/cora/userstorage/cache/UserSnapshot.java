@@ -0,0 +1,181 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static se.uu.ub.cora.userstorage.cache.UserSnapshotFile.CREATED_POSITION;
+import static se.uu.ub.cora.userstorage.cache.UserSnapshotFile.EMPTY_ENTRY;
+import static se.uu.ub.cora.userstorage.cache.UserSnapshotFile.LOGIN_ID_TABLE_POSITION;
+import static se.uu.ub.cora.userstorage.cache.UserSnapshotFile.NUMBER_OF_USERS_POSITION;
+import static se.uu.ub.cora.userstorage.cache.UserSnapshotFile.TABLE_ENTRY_SIZE;
+import static se.uu.ub.cora.userstorage.cache.UserSnapshotFile.USER_ID_TABLE_POSITION;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.userstorage.convert.CompactUserCodec;
+
+/**
+ * UserSnapshot answers user lookups from a memory mapped snapshot file, written and opened by
+ * {@link UserSnapshotFile}.
+ * <p>
+ * A snapshot holds the users as they were when it was written, so it is only meant to be used
+ * while a newly started node warms up its user cache from storage. It is closed when the warm-up
+ * has finished, after which it finds no users. Lookups read the users directly from the mapped
+ * file, decoding one user for each matching hash, and keep nothing on the heap.
+ * <p>
+ * Inactive users are never found, so that a user deactivated after the snapshot was written can
+ * not be let in using an old active version, and a user that was inactive then is read from
+ * storage. A loginId held by more than one user in the snapshot finds no user, so that the lookup
+ * in storage reports the conflict.
+ */
+public final class UserSnapshot {
+	private volatile ByteBuffer buffer;
+	private final CompactUserCodec codec;
+	private final int tableSize;
+	private final LongAdder hits = new LongAdder();
+	private final Set<String> invalidatedUserIds = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * empty returns a closed snapshot that finds no users, to be used when there is no snapshot
+	 * to read from.
+	 * 
+	 * @return a new closed UserSnapshot
+	 */
+	public static UserSnapshot empty() {
+		return new UserSnapshot(null, null, 0);
+	}
+
+	static UserSnapshot usingBufferCodecAndTableSize(ByteBuffer buffer, CompactUserCodec codec,
+			int tableSize) {
+		return new UserSnapshot(buffer, codec, tableSize);
+	}
+
+	private UserSnapshot(ByteBuffer buffer, CompactUserCodec codec, int tableSize) {
+		this.buffer = buffer;
+		this.codec = codec;
+		this.tableSize = tableSize;
+	}
+
+	public Optional<User> findUserById(String userId) {
+		return find(USER_ID_TABLE_POSITION, userId, user -> userId.equals(user.id));
+	}
+
+	public Optional<User> findUserByLoginId(String loginId) {
+		return find(LOGIN_ID_TABLE_POSITION, loginId, user -> loginId.equals(user.loginId));
+	}
+
+	private Optional<User> find(int tablePositionInHeader, String id, Predicate<User> matches) {
+		ByteBuffer snapshot = buffer;
+		if (snapshot == null) {
+			return Optional.empty();
+		}
+		int tablePosition = snapshot.getInt(tablePositionInHeader);
+		int hash = UserSnapshotFile.hashOf(id);
+		int slot = hash & (tableSize - 1);
+		User foundUser = null;
+		for (int probes = 0; probes < tableSize; probes++) {
+			int entryPosition = tablePosition + slot * TABLE_ENTRY_SIZE;
+			int userPosition = snapshot.getInt(entryPosition + Integer.BYTES);
+			if (userPosition == EMPTY_ENTRY) {
+				return countIfValid(foundUser);
+			}
+			if (snapshot.getInt(entryPosition) == hash) {
+				User user = decodeUserAt(snapshot, userPosition);
+				if (matches.test(user)) {
+					if (foundUser != null) {
+						return Optional.empty();
+					}
+					foundUser = user;
+				}
+			}
+			slot = (slot + 1) & (tableSize - 1);
+		}
+		return countIfValid(foundUser);
+	}
+
+	private Optional<User> countIfValid(User user) {
+		if (user == null || !user.active || invalidatedUserIds.contains(user.id)) {
+			return Optional.empty();
+		}
+		hits.increment();
+		return Optional.of(user);
+	}
+
+	private User decodeUserAt(ByteBuffer snapshot, int userPosition) {
+		int length = snapshot.getInt(userPosition);
+		return codec.decode(snapshot.slice(userPosition + Integer.BYTES, length));
+	}
+
+	/**
+	 * invalidateUser stops the snapshot from finding the user, as it has been changed since the
+	 * snapshot was written.
+	 * 
+	 * @param userId
+	 *            the id of the changed user
+	 */
+	public void invalidateUser(String userId) {
+		if (isOpen()) {
+			invalidatedUserIds.add(userId);
+		}
+	}
+
+	public boolean isOpen() {
+		return buffer != null;
+	}
+
+	/**
+	 * close stops the snapshot from finding users. The mapped file is released when the snapshot
+	 * is no longer referenced.
+	 */
+	public void close() {
+		buffer = null;
+		invalidatedUserIds.clear();
+	}
+
+	public int getNumberOfUsers() {
+		ByteBuffer snapshot = buffer;
+		return snapshot == null ? 0 : snapshot.getInt(NUMBER_OF_USERS_POSITION);
+	}
+
+	/**
+	 * getCreated returns the time the snapshot was written.
+	 * 
+	 * @return the time the snapshot was written, or {@link Instant#EPOCH} if it is closed
+	 */
+	public Instant getCreated() {
+		ByteBuffer snapshot = buffer;
+		return snapshot == null ? Instant.EPOCH
+				: Instant.ofEpochMilli(snapshot.getLong(CREATED_POSITION));
+	}
+
+	/**
+	 * getNumberOfHits returns the number of lookups that found a user in the snapshot.
+	 * 
+	 * @return the number of hits
+	 */
+	public long getNumberOfHits() {
+		return hits.sum();
+	}
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.userstorage.convert.AuthorizationDictionary;
+import se.uu.ub.cora.userstorage.convert.CompactUserCodec;
+
+/**
+ * UserSnapshotFile writes the users of a user cache to a local file, and opens that file as a
+ * memory mapped {@link UserSnapshot}, so that a restarted node can answer user lookups before its
+ * cache has been warmed up from storage.
+ * <p>
+ * The file starts with a header holding a magic number, the format version, the time the snapshot
+ * was created, the positions of the sections of the file and a CRC32C checksum of everything in
+ * the file except the checksum itself. The header is followed by the users, each encoded by a
+ * {@link CompactUserCodec} and prefixed with its length, the role and permission unit ids of the
+ * dictionary used to encode them, and two open addressing hash tables, from userId and from
+ * loginId, holding the hash of the id and the position of the user for each entry.
+ * <p>
+ * A snapshot is written to a temporary file that then replaces the old file, so a snapshot that
+ * is opened is never half written. A snapshot that has the wrong format version, is older than the
+ * max age, or is corrupt is logged, deleted and not used.
+ */
+public final class UserSnapshotFile {
+	static final int MAGIC = 0x43555331;
+	static final int FORMAT_VERSION = 1;
+	static final int MAGIC_POSITION = 0;
+	static final int VERSION_POSITION = 4;
+	static final int CREATED_POSITION = 8;
+	static final int NUMBER_OF_USERS_POSITION = 16;
+	static final int TABLE_SIZE_POSITION = 20;
+	static final int DICTIONARY_POSITION = 24;
+	static final int USER_ID_TABLE_POSITION = 28;
+	static final int LOGIN_ID_TABLE_POSITION = 32;
+	static final int FILE_LENGTH_POSITION = 36;
+	static final int CHECKSUM_POSITION = 40;
+	static final int HEADER_SIZE = 48;
+	static final int TABLE_ENTRY_SIZE = 2 * Integer.BYTES;
+	static final int EMPTY_ENTRY = 0;
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	private final Logger log = LoggerProvider.getLoggerForClass(UserSnapshotFile.class);
+	private final Path path;
+	private final Duration maxAge;
+	private LongSupplier currentTimeMillis = System::currentTimeMillis;
+
+	public static UserSnapshotFile usingPathAndMaxAge(Path path, Duration maxAge) {
+		return new UserSnapshotFile(path, maxAge);
+	}
+
+	private UserSnapshotFile(Path path, Duration maxAge) {
+		this.path = path;
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * write writes the users in the user cache to the snapshot file, replacing any earlier
+	 * snapshot.
+	 * 
+	 * @param userCache
+	 *            the cache to write the users of
+	 * @throws UncheckedIOException
+	 *             if the snapshot could not be written
+	 */
+	public void write(TtlCache<String, User> userCache) {
+		long startTime = System.nanoTime();
+		Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try {
+			SnapshotWriter writer = writeToTemporaryFile(userCache, temporaryPath);
+			Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			log.logInfoUsingMessage("Wrote user snapshot " + path + ", users: "
+					+ writer.numberOfUsers + ", bytes: " + writer.fileLength + ", time: "
+					+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms.");
+		} catch (IOException e) {
+			deleteQuietly(temporaryPath);
+			throw new UncheckedIOException("Could not write user snapshot " + path, e);
+		} catch (RuntimeException e) {
+			deleteQuietly(temporaryPath);
+			throw e;
+		}
+	}
+
+	private SnapshotWriter writeToTemporaryFile(TtlCache<String, User> userCache,
+			Path temporaryPath) throws IOException {
+		try (SnapshotWriter writer = new SnapshotWriter(temporaryPath,
+				currentTimeMillis.getAsLong(), userCache.size())) {
+			userCache.forEachValue(writer::writeUser);
+			writer.finish();
+			return writer;
+		}
+	}
+
+	private void deleteQuietly(Path pathToDelete) {
+		try {
+			Files.deleteIfExists(pathToDelete);
+		} catch (IOException e) {
+			log.logWarnUsingMessageAndException("Could not delete " + pathToDelete, e);
+		}
+	}
+
+	/**
+	 * open memory maps the snapshot file and returns it as an open {@link UserSnapshot}. If there
+	 * is no snapshot file, or it can not be used, an empty snapshot is returned.
+	 * 
+	 * @return an open {@link UserSnapshot} or {@link UserSnapshot#empty()}
+	 */
+	public UserSnapshot open() {
+		if (!Files.exists(path)) {
+			log.logInfoUsingMessage("No user snapshot found at " + path + ".");
+			return UserSnapshot.empty();
+		}
+		try {
+			UserSnapshot snapshot = mapAndValidate();
+			log.logInfoUsingMessage("Opened user snapshot " + path + ", users: "
+					+ snapshot.getNumberOfUsers() + ", created: " + snapshot.getCreated() + ".");
+			return snapshot;
+		} catch (InvalidSnapshotException | IOException | RuntimeException e) {
+			log.logWarnUsingMessage(
+					"Discarded user snapshot " + path + ": " + e.getMessage() + ".");
+			deleteQuietly(path);
+			return UserSnapshot.empty();
+		}
+	}
+
+	private UserSnapshot mapAndValidate() throws IOException, InvalidSnapshotException {
+		ByteBuffer buffer = map();
+		validateHeader(buffer);
+		validateChecksum(buffer);
+		int tableSize = buffer.getInt(TABLE_SIZE_POSITION);
+		validateSections(buffer, tableSize);
+		AuthorizationDictionary dictionary = readDictionary(buffer);
+		return UserSnapshot.usingBufferCodecAndTableSize(buffer,
+				CompactUserCodec.usingDictionary(dictionary), tableSize);
+	}
+
+	private ByteBuffer map() throws IOException, InvalidSnapshotException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+				throw new InvalidSnapshotException("wrong file size: " + size);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			return buffer.asReadOnlyBuffer();
+		}
+	}
+
+	private void validateHeader(ByteBuffer buffer) throws InvalidSnapshotException {
+		if (buffer.getInt(MAGIC_POSITION) != MAGIC) {
+			throw new InvalidSnapshotException("not a user snapshot");
+		}
+		int version = buffer.getInt(VERSION_POSITION);
+		if (version != FORMAT_VERSION) {
+			throw new InvalidSnapshotException("unsupported format version: " + version);
+		}
+		if (buffer.getInt(FILE_LENGTH_POSITION) != buffer.capacity()) {
+			throw new InvalidSnapshotException("file is truncated");
+		}
+		long ageMillis = currentTimeMillis.getAsLong() - buffer.getLong(CREATED_POSITION);
+		if (ageMillis < 0 || ageMillis > maxAge.toMillis()) {
+			throw new InvalidSnapshotException("snapshot is too old, created: "
+					+ Instant.ofEpochMilli(buffer.getLong(CREATED_POSITION)));
+		}
+	}
+
+	private void validateChecksum(ByteBuffer buffer) throws InvalidSnapshotException {
+		if (buffer.getLong(CHECKSUM_POSITION) != calculateChecksum(buffer)) {
+			throw new InvalidSnapshotException("wrong checksum");
+		}
+	}
+
+	static long calculateChecksum(ByteBuffer buffer) {
+		CRC32C checksum = new CRC32C();
+		checksum.update(buffer.slice(0, CHECKSUM_POSITION));
+		checksum.update(buffer.slice(HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+		return checksum.getValue();
+	}
+
+	private void validateSections(ByteBuffer buffer, int tableSize)
+			throws InvalidSnapshotException {
+		int dictionaryPosition = buffer.getInt(DICTIONARY_POSITION);
+		int userIdTablePosition = buffer.getInt(USER_ID_TABLE_POSITION);
+		int loginIdTablePosition = buffer.getInt(LOGIN_ID_TABLE_POSITION);
+		long tableLength = (long) tableSize * TABLE_ENTRY_SIZE;
+		boolean valid = Integer.bitCount(tableSize) == 1 && dictionaryPosition >= HEADER_SIZE
+				&& dictionaryPosition <= userIdTablePosition
+				&& userIdTablePosition + tableLength == loginIdTablePosition
+				&& loginIdTablePosition + tableLength == buffer.capacity();
+		if (!valid) {
+			throw new InvalidSnapshotException("sections do not match file");
+		}
+	}
+
+	private AuthorizationDictionary readDictionary(ByteBuffer buffer) {
+		ByteBuffer input = buffer.duplicate().position(buffer.getInt(DICTIONARY_POSITION));
+		AuthorizationDictionary dictionary = new AuthorizationDictionary();
+		int numberOfRoles = input.getInt();
+		for (int i = 0; i < numberOfRoles; i++) {
+			dictionary.roleIndexFor(readString(input));
+		}
+		int numberOfPermissionUnits = input.getInt();
+		for (int i = 0; i < numberOfPermissionUnits; i++) {
+			dictionary.permissionUnitIndexFor(readString(input));
+		}
+		return dictionary;
+	}
+
+	private String readString(ByteBuffer input) {
+		byte[] bytes = new byte[input.getInt()];
+		input.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	static int hashOf(String id) {
+		int hash = id.hashCode();
+		return hash ^ (hash >>> 16);
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public Duration getMaxAge() {
+		return maxAge;
+	}
+
+	public void onlyForTestSetCurrentTimeMillis(LongSupplier currentTimeMillis) {
+		this.currentTimeMillis = currentTimeMillis;
+	}
+
+	private static final class InvalidSnapshotException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		InvalidSnapshotException(String message) {
+			super(message);
+		}
+	}
+
+	private static final class SnapshotWriter implements AutoCloseable {
+		private final FileChannel channel;
+		private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+		private final AuthorizationDictionary dictionary = new AuthorizationDictionary();
+		private final CompactUserCodec codec = CompactUserCodec.usingDictionary(dictionary);
+		private final long createdMillis;
+		private final int tableSize;
+		private final int[] userIdTable;
+		private final int[] loginIdTable;
+		private long position = HEADER_SIZE;
+		private int numberOfUsers;
+		private int fileLength;
+
+		SnapshotWriter(Path temporaryPath, long createdMillis, int expectedNumberOfUsers)
+				throws IOException {
+			channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			this.createdMillis = createdMillis;
+			tableSize = tableSizeFor(expectedNumberOfUsers);
+			userIdTable = new int[2 * tableSize];
+			loginIdTable = new int[2 * tableSize];
+			channel.position(HEADER_SIZE);
+		}
+
+		private static int tableSizeFor(int expectedNumberOfUsers) {
+			int minimumSize = Math.max(2, 2 * expectedNumberOfUsers);
+			return Integer.highestOneBit(minimumSize - 1) << 1;
+		}
+
+		void writeUser(User user) {
+			if (numberOfUsers == tableSize / 2) {
+				return;
+			}
+			byte[] encoded = codec.encode(user);
+			int userPosition = toIntPosition(position);
+			putInt(encoded.length);
+			putBytes(encoded);
+			addToTable(userIdTable, user.id, userPosition);
+			if (user.loginId != null) {
+				addToTable(loginIdTable, user.loginId, userPosition);
+			}
+			numberOfUsers++;
+		}
+
+		private int toIntPosition(long positionToConvert) {
+			if (positionToConvert > Integer.MAX_VALUE) {
+				throw new IllegalStateException("User snapshot is larger than 2 GB");
+			}
+			return (int) positionToConvert;
+		}
+
+		private void addToTable(int[] table, String id, int userPosition) {
+			int hash = hashOf(id);
+			int slot = hash & (tableSize - 1);
+			while (table[2 * slot + 1] != EMPTY_ENTRY) {
+				slot = (slot + 1) & (tableSize - 1);
+			}
+			table[2 * slot] = hash;
+			table[2 * slot + 1] = userPosition;
+		}
+
+		void finish() throws IOException {
+			int dictionaryPosition = toIntPosition(position);
+			writeDictionary();
+			int userIdTablePosition = toIntPosition(position);
+			writeTable(userIdTable);
+			int loginIdTablePosition = toIntPosition(position);
+			writeTable(loginIdTable);
+			fileLength = toIntPosition(position);
+			flush();
+			writeHeader(dictionaryPosition, userIdTablePosition, loginIdTablePosition);
+			channel.force(true);
+		}
+
+		private void writeDictionary() {
+			putInt(dictionary.getNumberOfRoles());
+			for (int i = 0; i < dictionary.getNumberOfRoles(); i++) {
+				putString(dictionary.roleIdAt(i));
+			}
+			putInt(dictionary.getNumberOfPermissionUnits());
+			for (int i = 0; i < dictionary.getNumberOfPermissionUnits(); i++) {
+				putString(dictionary.permissionUnitIdAt(i));
+			}
+		}
+
+		private void putString(String value) {
+			byte[] bytes = value.getBytes(UTF_8);
+			putInt(bytes.length);
+			putBytes(bytes);
+		}
+
+		private void writeTable(int[] table) {
+			for (int value : table) {
+				putInt(value);
+			}
+		}
+
+		private void writeHeader(int dictionaryPosition, int userIdTablePosition,
+				int loginIdTablePosition) throws IOException {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC_POSITION, MAGIC);
+			header.putInt(VERSION_POSITION, FORMAT_VERSION);
+			header.putLong(CREATED_POSITION, createdMillis);
+			header.putInt(NUMBER_OF_USERS_POSITION, numberOfUsers);
+			header.putInt(TABLE_SIZE_POSITION, tableSize);
+			header.putInt(DICTIONARY_POSITION, dictionaryPosition);
+			header.putInt(USER_ID_TABLE_POSITION, userIdTablePosition);
+			header.putInt(LOGIN_ID_TABLE_POSITION, loginIdTablePosition);
+			header.putInt(FILE_LENGTH_POSITION, fileLength);
+			channel.write(header, 0);
+			MappedByteBuffer written = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					fileLength);
+			written.putLong(CHECKSUM_POSITION, calculateChecksum(written));
+			written.force();
+		}
+
+		private void putInt(int value) {
+			ensureRoom(Integer.BYTES);
+			writeBuffer.putInt(value);
+			position += Integer.BYTES;
+		}
+
+		private void putBytes(byte[] bytes) {
+			int written = 0;
+			while (written < bytes.length) {
+				ensureRoom(1);
+				int length = Math.min(writeBuffer.remaining(), bytes.length - written);
+				writeBuffer.put(bytes, written, length);
+				written += length;
+			}
+			position += bytes.length;
+		}
+
+		private void ensureRoom(int size) {
+			if (writeBuffer.remaining() < size) {
+				flush();
+			}
+		}
+
+		private void flush() {
+			writeBuffer.flip();
+			try {
+				while (writeBuffer.hasRemaining()) {
+					channel.write(writeBuffer);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			writeBuffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
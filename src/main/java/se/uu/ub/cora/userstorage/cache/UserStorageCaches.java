@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * UserStorageCaches holds the caches and indexes used by a {@link CachingUserStorageView}, so that
+ * they can be shared between views.
+ *
+ * @param userCache
+ *            cache of users by userId, kept on the heap by a {@link BoundedTtlCache} or outside of
+ *            it by an {@link OffHeapUserCache}
+ * @param loginIdIndex
+ *            index from loginId to userId
+ * @param notFoundCache
+ *            cache of lookups that did not find anything in storage, as {@link NotFound}s
+ * @param secretCache
+ *            cache of appToken tokens and systemSecret secrets
+ * @param knownLoginIds
+ *            filter of the loginIds that exist in storage
+ * @param userAuthorizations
+ *            the roles and permission units of cached users, as bits
+ * @param userSnapshot
+ *            users written before the last restart, used while the user cache is warmed up
+ * @param userReplica
+ *            copy of all users in storage, kept up to date from the records changed in storage
+ * @param generations
+ *            invalidation generations of userIds and {@link SecretKey}s, so that a load that ran
+ *            while its key was invalidated does not fill any of the caches
+ */
+public record UserStorageCaches(TtlCache<String, User> userCache,
+		LoginIdIndex loginIdIndex,
+		BoundedTtlCache<NotFoundKey, NotFound> notFoundCache,
+		SecretCache secretCache, KnownLoginIds knownLoginIds,
+		UserAuthorizations userAuthorizations, UserSnapshot userSnapshot,
+		UserReplica userReplica, InvalidationGenerations<Object> generations) {
+
+	public UserStorageCaches(TtlCache<String, User> userCache, LoginIdIndex loginIdIndex,
+			BoundedTtlCache<NotFoundKey, NotFound> notFoundCache, SecretCache secretCache,
+			KnownLoginIds knownLoginIds, UserAuthorizations userAuthorizations,
+			UserSnapshot userSnapshot, UserReplica userReplica) {
+		this(userCache, loginIdIndex, notFoundCache, secretCache, knownLoginIds,
+				userAuthorizations, userSnapshot, userReplica, new InvalidationGenerations<>());
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.circuit;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * CircuitBreaker keeps track of failing and slow calls to storage and stops calls to storage while
+ * it is considered unavailable.
+ * <p>
+ * Calls that throw an error, other than a not found error, and calls that take longer than the
+ * slow call threshold are failures. When failure threshold failures have happened in a row the
+ * circuit opens, and {@link #tryAcquirePermission()} returns false for all calls during the open
+ * duration. After that one trial call is let through. If it succeeds the circuit closes, if it
+ * fails the circuit opens again. Calls that are interrupted are neither successes nor failures.
+ * <p>
+ * A disabled CircuitBreaker never opens.
+ */
+public final class CircuitBreaker {
+	private final boolean enabled;
+	private final int failureThreshold;
+	private final long slowCallNanos;
+	private final long openNanos;
+	private LongSupplier nanoTimeSource = System::nanoTime;
+
+	private CircuitState state = CircuitState.CLOSED;
+	private int consecutiveFailures;
+	private long openedAtNanos;
+
+	private final LongAdder timesOpened = new LongAdder();
+	private final LongAdder rejectedCalls = new LongAdder();
+	private final LongAdder fallbacks = new LongAdder();
+
+	public static CircuitBreaker usingFailureThresholdSlowCallThresholdAndOpenDuration(
+			int failureThreshold, Duration slowCallThreshold, Duration openDuration) {
+		return new CircuitBreaker(true, failureThreshold, slowCallThreshold, openDuration);
+	}
+
+	public static CircuitBreaker disabled() {
+		return new CircuitBreaker(false, Integer.MAX_VALUE, Duration.ZERO, Duration.ZERO);
+	}
+
+	private CircuitBreaker(boolean enabled, int failureThreshold, Duration slowCallThreshold,
+			Duration openDuration) {
+		this.enabled = enabled;
+		this.failureThreshold = failureThreshold;
+		this.slowCallNanos = slowCallThreshold.toNanos();
+		this.openNanos = openDuration.toNanos();
+	}
+
+	/**
+	 * tryAcquirePermission returns true if a call to storage may be made. While the circuit is
+	 * open false is returned until the open duration has passed, then true is returned for one
+	 * trial call.
+	 * 
+	 * @return true if the call may be made, false if it is rejected
+	 */
+	public synchronized boolean tryAcquirePermission() {
+		if (state == CircuitState.CLOSED) {
+			return true;
+		}
+		if (state == CircuitState.OPEN && openDurationHasPassed()) {
+			state = CircuitState.HALF_OPEN;
+			return true;
+		}
+		rejectedCalls.increment();
+		return false;
+	}
+
+	private boolean openDurationHasPassed() {
+		return nanoTimeSource.getAsLong() - openedAtNanos >= openNanos;
+	}
+
+	/**
+	 * recordSuccess records a call to storage that returned, or that failed because nothing was
+	 * found. A call slower than the slow call threshold is recorded as a failure.
+	 * 
+	 * @param durationNanos
+	 *            the duration of the call in nanoseconds
+	 */
+	public synchronized void recordSuccess(long durationNanos) {
+		if (!enabled || state == CircuitState.OPEN) {
+			return;
+		}
+		if (durationNanos >= slowCallNanos) {
+			recordFailure();
+			return;
+		}
+		consecutiveFailures = 0;
+		state = CircuitState.CLOSED;
+	}
+
+	/**
+	 * recordFailure records a call to storage that failed.
+	 */
+	public synchronized void recordFailure() {
+		if (!enabled || state == CircuitState.OPEN) {
+			return;
+		}
+		consecutiveFailures++;
+		if (state == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			open();
+		}
+	}
+
+	/**
+	 * recordInterruptedCall records a call to storage that was interrupted before storage
+	 * answered. It says nothing about storage, so it is neither a success nor a failure, but if it
+	 * was the trial call the next call is let through as the trial call instead.
+	 */
+	public synchronized void recordInterruptedCall() {
+		if (state == CircuitState.HALF_OPEN) {
+			state = CircuitState.OPEN;
+		}
+	}
+
+	private void open() {
+		state = CircuitState.OPEN;
+		openedAtNanos = nanoTimeSource.getAsLong();
+		consecutiveFailures = 0;
+		timesOpened.increment();
+	}
+
+	/**
+	 * recordFallback counts a rejected call that was answered with a last known good value.
+	 */
+	public void recordFallback() {
+		fallbacks.increment();
+	}
+
+	public synchronized CircuitState getState() {
+		return state;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	public Duration getSlowCallThreshold() {
+		return Duration.ofNanos(slowCallNanos);
+	}
+
+	public Duration getOpenDuration() {
+		return Duration.ofNanos(openNanos);
+	}
+
+	/**
+	 * getStatistics returns a snapshot of the state and counters of the circuit breaker.
+	 * 
+	 * @return a {@link CircuitBreakerStatistics} with the current state and counters
+	 */
+	public CircuitBreakerStatistics getStatistics() {
+		return new CircuitBreakerStatistics(getState(), timesOpened.sum(), rejectedCalls.sum(),
+				fallbacks.sum());
+	}
+
+	public void onlyForTestSetNanoTimeSource(LongSupplier nanoTimeSource) {
+		this.nanoTimeSource = nanoTimeSource;
+	}
+}
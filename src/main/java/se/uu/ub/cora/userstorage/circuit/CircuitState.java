@@ -0,0 +1,37 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.circuit;
+
+/**
+ * CircuitState is the state of a {@link CircuitBreaker}.
+ */
+public enum CircuitState {
+	/**
+	 * Calls to storage are made as usual.
+	 */
+	CLOSED,
+	/**
+	 * Storage is considered unavailable, calls to storage are rejected.
+	 */
+	OPEN,
+	/**
+	 * One trial call to storage is in progress, other calls are rejected until it has finished.
+	 */
+	HALF_OPEN
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.circuit;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.userstorage.cache.BoundedTtlCache;
+import se.uu.ub.cora.userstorage.cache.LoginIdIndex;
+
+/**
+ * LastKnownGoodUsers remembers the users last read from storage, so that they can be returned
+ * while a {@link CircuitBreaker} rejects calls to storage.
+ * <p>
+ * Users are remembered for at most max age, older users are not returned. A user found to be
+ * removed from storage is forgotten. A disabled LastKnownGoodUsers remembers nothing.
+ */
+public final class LastKnownGoodUsers {
+	private final boolean enabled;
+	private final BoundedTtlCache<String, User> users;
+	private final LoginIdIndex loginIdIndex;
+
+	public static LastKnownGoodUsers usingMaxSizeAndMaxAge(int maxSize, Duration maxAge) {
+		return new LastKnownGoodUsers(true, maxSize, maxAge);
+	}
+
+	public static LastKnownGoodUsers disabled() {
+		return new LastKnownGoodUsers(false, 1, Duration.ZERO);
+	}
+
+	private LastKnownGoodUsers(boolean enabled, int maxSize, Duration maxAge) {
+		this.enabled = enabled;
+		users = BoundedTtlCache.usingMaxSizeAndTimeToLive(maxSize, maxAge);
+		loginIdIndex = LoginIdIndex.usingMaxSizeAndTimeToLive(maxSize, maxAge);
+	}
+
+	public void rememberUser(User user) {
+		if (enabled) {
+			users.put(user.id, user);
+			loginIdIndex.indexUser(user);
+		}
+	}
+
+	public void forgetUser(String userId) {
+		if (enabled) {
+			users.invalidate(userId);
+			loginIdIndex.removeUser(userId);
+		}
+	}
+
+	public void forgetLoginId(String loginId) {
+		if (enabled) {
+			loginIdIndex.removeLoginId(loginId);
+		}
+	}
+
+	/**
+	 * findUserById returns the last known good user with the id, if one younger than max age is
+	 * remembered.
+	 * 
+	 * @param userId
+	 *            the id of the user
+	 * @return an Optional with the user, or an empty Optional
+	 */
+	public Optional<User> findUserById(String userId) {
+		if (!enabled) {
+			return Optional.empty();
+		}
+		return users.get(userId);
+	}
+
+	/**
+	 * findUserByLoginId returns the last known good user with the loginId, if one younger than max
+	 * age is remembered and it still has the loginId.
+	 * 
+	 * @param loginId
+	 *            the loginId of the user
+	 * @return an Optional with the user, or an empty Optional
+	 */
+	public Optional<User> findUserByLoginId(String loginId) {
+		if (!enabled) {
+			return Optional.empty();
+		}
+		return loginIdIndex.findUserIdForLoginId(loginId).flatMap(users::get)
+				.filter(user -> loginId.equals(user.loginId));
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public int getMaxSize() {
+		return users.getMaxSize();
+	}
+
+	public Duration getMaxAge() {
+		return users.getTimeToLive();
+	}
+
+	public BoundedTtlCache<String, User> onlyForTestGetUsers() {
+		return users;
+	}
+}
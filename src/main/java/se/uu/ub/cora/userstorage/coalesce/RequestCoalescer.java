@@ -0,0 +1,158 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.coalesce;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import se.uu.ub.cora.userstorage.metrics.CoalescingStatistics;
+
+/**
+ * RequestCoalescer collapses concurrent lookups of the same key into one.
+ * <p>
+ * The first caller for a key runs the lookup, callers for the same key that arrive while that
+ * lookup is in progress wait for it and get the same result instead of running the lookup
+ * themselves. Once a lookup is finished the next call for the key runs a new lookup, no results are
+ * kept.
+ * <p>
+ * If the lookup fails, the caller that ran it gets the exception, and each waiting caller gets its
+ * own exception created from it by the exception copier, so that no exception instance is thrown
+ * in more than one thread. A lookup that fails while the thread running it is interrupted, or that
+ * is cancelled, says nothing about the key, so the waiting callers then coalesce again instead.
+ */
+public class RequestCoalescer<K, V> {
+	private static final RuntimeException INTERRUPTED_LOOKUP = new InterruptedLookupException();
+	private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder executed = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final UnaryOperator<RuntimeException> exceptionCopier;
+	private Runnable coalescedListener = () -> {
+	};
+
+	/**
+	 * usingExceptionCopier creates a RequestCoalescer that gives waiting callers the exception
+	 * returned by the exceptionCopier when a lookup fails.
+	 * 
+	 * @param exceptionCopier
+	 *            creates a new exception for a waiting caller from the exception of the lookup
+	 * @return a new RequestCoalescer
+	 */
+	public static <K, V> RequestCoalescer<K, V> usingExceptionCopier(
+			UnaryOperator<RuntimeException> exceptionCopier) {
+		return new RequestCoalescer<>(exceptionCopier);
+	}
+
+	private RequestCoalescer(UnaryOperator<RuntimeException> exceptionCopier) {
+		this.exceptionCopier = exceptionCopier;
+	}
+
+	/**
+	 * coalesce returns the result of the lookup for the key, either by running the lookup or by
+	 * waiting for a lookup of the same key that is already in progress.
+	 * 
+	 * @param key
+	 *            the key identifying the lookup
+	 * @param lookup
+	 *            the lookup to run if no lookup for the key is in progress
+	 * @return the result of the lookup
+	 */
+	public V coalesce(K key, Supplier<V> lookup) {
+		CompletableFuture<V> ownLookup = new CompletableFuture<>();
+		CompletableFuture<V> lookupInProgress = inFlight.putIfAbsent(key, ownLookup);
+		if (lookupInProgress != null) {
+			coalesced.increment();
+			coalescedListener.run();
+			return waitForLookupInProgress(key, lookup, lookupInProgress);
+		}
+		return runLookup(key, lookup, ownLookup);
+	}
+
+	private V runLookup(K key, Supplier<V> lookup, CompletableFuture<V> ownLookup) {
+		executed.increment();
+		try {
+			V value = lookup.get();
+			ownLookup.complete(value);
+			return value;
+		} catch (Throwable t) {
+			ownLookup.completeExceptionally(isInterruption(t) ? INTERRUPTED_LOOKUP : t);
+			throw t;
+		} finally {
+			inFlight.remove(key, ownLookup);
+		}
+	}
+
+	private boolean isInterruption(Throwable t) {
+		return Thread.currentThread().isInterrupted() || t instanceof CancellationException;
+	}
+
+	private V waitForLookupInProgress(K key, Supplier<V> lookup,
+			CompletableFuture<V> lookupInProgress) {
+		try {
+			return lookupInProgress.join();
+		} catch (CompletionException e) {
+			if (e.getCause() == INTERRUPTED_LOOKUP) {
+				return coalesce(key, lookup);
+			}
+			throw rethrowableCause(e);
+		}
+	}
+
+	private RuntimeException rethrowableCause(CompletionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof RuntimeException runtimeException) {
+			return exceptionCopier.apply(runtimeException);
+		}
+		if (cause instanceof Error error) {
+			throw error;
+		}
+		return e;
+	}
+
+	/**
+	 * getStatistics returns how many lookups have been run and how many calls have shared the
+	 * result of another call.
+	 * 
+	 * @return a {@link CoalescingStatistics} with the current counters
+	 */
+	public CoalescingStatistics getStatistics() {
+		return new CoalescingStatistics(executed.sum(), coalesced.sum());
+	}
+
+	public void onlyForTestSetCoalescedListener(Runnable coalescedListener) {
+		this.coalescedListener = coalescedListener;
+	}
+
+	public int onlyForTestGetNumberOfLookupsInProgress() {
+		return inFlight.size();
+	}
+
+	private static final class InterruptedLookupException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private InterruptedLookupException() {
+			super("Lookup interrupted.", null, false, false);
+		}
+	}
+}
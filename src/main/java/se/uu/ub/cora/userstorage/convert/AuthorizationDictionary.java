@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * AuthorizationDictionary maps the ids of roles and permission units to small ints, using one
+ * {@link IdDictionary} for roles and one for permission units. It is meant to be shared by all
+ * users, so that all users with the same role refer to the same role id string, and so that the
+ * roles and permission units of a user can be kept as a {@link UserAuthorization} of bits.
+ * <p>
+ * The dictionary is thread safe.
+ */
+public final class AuthorizationDictionary {
+	private final IdDictionary roleDictionary = new IdDictionary();
+	private final IdDictionary permissionUnitDictionary = new IdDictionary();
+
+	public int roleIndexFor(String roleId) {
+		return roleDictionary.indexFor(roleId);
+	}
+
+	/**
+	 * findRoleIndex returns the index of the role without adding it, a role that no user has been
+	 * seen with has no index.
+	 * 
+	 * @param roleId
+	 *            the id of the role
+	 * @return the index of the role, or {@link IdDictionary#NOT_FOUND}
+	 */
+	public int findRoleIndex(String roleId) {
+		return roleDictionary.findIndex(roleId);
+	}
+
+	public String roleIdAt(int roleIndex) {
+		return roleDictionary.idAt(roleIndex);
+	}
+
+	public int permissionUnitIndexFor(String permissionUnitId) {
+		return permissionUnitDictionary.indexFor(permissionUnitId);
+	}
+
+	/**
+	 * findPermissionUnitIndex returns the index of the permission unit without adding it.
+	 * 
+	 * @param permissionUnitId
+	 *            the id of the permission unit
+	 * @return the index of the permission unit, or {@link IdDictionary#NOT_FOUND}
+	 */
+	public int findPermissionUnitIndex(String permissionUnitId) {
+		return permissionUnitDictionary.findIndex(permissionUnitId);
+	}
+
+	public String permissionUnitIdAt(int permissionUnitIndex) {
+		return permissionUnitDictionary.idAt(permissionUnitIndex);
+	}
+
+	/**
+	 * rolesAsBits returns the roles as bits, to be used for checks against many
+	 * {@link UserAuthorization}s. Roles are added to the dictionary if needed.
+	 * 
+	 * @param roleIds
+	 *            the ids of the roles
+	 * @return a new BitSet with the bits of the roles set
+	 */
+	public BitSet rolesAsBits(Collection<String> roleIds) {
+		return toBits(roleDictionary, roleIds);
+	}
+
+	/**
+	 * permissionUnitsAsBits returns the permission units as bits, to be used for checks against
+	 * many {@link UserAuthorization}s. Permission units are added to the dictionary if needed.
+	 * 
+	 * @param permissionUnitIds
+	 *            the ids of the permission units
+	 * @return a new BitSet with the bits of the permission units set
+	 */
+	public BitSet permissionUnitsAsBits(Collection<String> permissionUnitIds) {
+		return toBits(permissionUnitDictionary, permissionUnitIds);
+	}
+
+	private BitSet toBits(IdDictionary dictionary, Collection<String> ids) {
+		BitSet bits = new BitSet(dictionary.size());
+		for (String id : ids) {
+			bits.set(dictionary.indexFor(id));
+		}
+		return bits;
+	}
+
+	/**
+	 * createAuthorization returns the active status, roles and permission units of the user as a
+	 * {@link UserAuthorization}.
+	 * 
+	 * @param user
+	 *            the user to create the authorization for
+	 * @return a new {@link UserAuthorization} for the user
+	 */
+	public UserAuthorization createAuthorization(User user) {
+		return UserAuthorization.usingUserIdActiveRolesAndPermissionUnits(user.id, user.active,
+				rolesAsBits(user.roles), permissionUnitsAsBits(user.permissionUnitIds));
+	}
+
+	/**
+	 * useSharedIds replaces the role and permission unit ids of the user with the instances kept
+	 * by this dictionary, so that the strings are shared with all other users that have the same
+	 * roles and permission units.
+	 * 
+	 * @param user
+	 *            the user to update
+	 */
+	public void useSharedIds(User user) {
+		user.roles = toSharedIds(roleDictionary, user.roles);
+		user.permissionUnitIds = toSharedIds(permissionUnitDictionary, user.permissionUnitIds);
+	}
+
+	private Set<String> toSharedIds(IdDictionary dictionary, Set<String> ids) {
+		Set<String> sharedIds = new LinkedHashSet<>(ids.size());
+		for (String id : ids) {
+			sharedIds.add(dictionary.sharedInstanceOf(id));
+		}
+		return sharedIds;
+	}
+
+	public int getNumberOfRoles() {
+		return roleDictionary.size();
+	}
+
+	public int getNumberOfPermissionUnits() {
+		return permissionUnitDictionary.size();
+	}
+}
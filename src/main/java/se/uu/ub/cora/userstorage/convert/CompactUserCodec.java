@@ -0,0 +1,281 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * CompactUserCodec encodes a {@link User} into a compact binary form and decodes it again, so that
+ * users can be kept outside of the heap.
+ * <p>
+ * Numbers are written as unsigned varints and strings as their UTF-8 bytes prefixed with their
+ * length. Roles and permission units are written as their index in an
+ * {@link AuthorizationDictionary}, and decoded users hold the shared id strings of the
+ * dictionary. The same dictionary must therefore be used to decode a user as was used to encode
+ * it.
+ * <p>
+ * The encoded form is:
+ * 
+ * <pre>
+ * flags (active), id, loginId, firstName, lastName, passwordId,
+ * number of appTokenIds, appTokenIds,
+ * number of roles, role indexes,
+ * number of permission units, permission unit indexes
+ * </pre>
+ * 
+ * where the nullable strings loginId, firstName, lastName and passwordId are written with their
+ * length plus one, and a null as zero.
+ */
+public final class CompactUserCodec {
+	private static final int ACTIVE_FLAG = 1;
+	private static final int NULL_STRING = 0;
+	private static final int INITIAL_BUFFER_SIZE = 128;
+
+	private final AuthorizationDictionary dictionary;
+
+	public static CompactUserCodec usingDictionary(AuthorizationDictionary dictionary) {
+		return new CompactUserCodec(dictionary);
+	}
+
+	private CompactUserCodec(AuthorizationDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * encode returns the user in its compact binary form.
+	 * 
+	 * @param user
+	 *            the user to encode
+	 * @return a new array with the encoded user
+	 */
+	public byte[] encode(User user) {
+		Output output = new Output();
+		output.writeVarint(user.active ? ACTIVE_FLAG : 0);
+		output.writeNullableString(user.id);
+		output.writeNullableString(user.loginId);
+		output.writeNullableString(user.firstName);
+		output.writeNullableString(user.lastName);
+		output.writeNullableString(user.passwordId.orElse(null));
+		writeAppTokenIds(output, user.appTokenIds);
+		writeRoles(output, user.roles);
+		writePermissionUnits(output, user.permissionUnitIds);
+		return output.toByteArray();
+	}
+
+	private void writeAppTokenIds(Output output, List<String> appTokenIds) {
+		output.writeVarint(appTokenIds.size());
+		for (String appTokenId : appTokenIds) {
+			output.writeString(appTokenId);
+		}
+	}
+
+	private void writeRoles(Output output, Set<String> roles) {
+		output.writeVarint(roles.size());
+		for (String role : roles) {
+			output.writeVarint(dictionary.roleIndexFor(role));
+		}
+	}
+
+	private void writePermissionUnits(Output output, Set<String> permissionUnitIds) {
+		output.writeVarint(permissionUnitIds.size());
+		for (String permissionUnitId : permissionUnitIds) {
+			output.writeVarint(dictionary.permissionUnitIndexFor(permissionUnitId));
+		}
+	}
+
+	/**
+	 * decode reads one user in its compact binary form from the current position of the buffer,
+	 * and leaves the position of the buffer after the user.
+	 * 
+	 * @param buffer
+	 *            the buffer to read the user from
+	 * @return a new {@link User}
+	 * @throws IllegalArgumentException
+	 *             if the buffer does not hold an encoded user
+	 */
+	public User decode(ByteBuffer buffer) {
+		Input input = new Input(buffer);
+		int flags = input.readVarint();
+		User user = new User(input.readNullableString());
+		user.active = (flags & ACTIVE_FLAG) != 0;
+		user.loginId = input.readNullableString();
+		user.firstName = input.readNullableString();
+		user.lastName = input.readNullableString();
+		user.passwordId = Optional.ofNullable(input.readNullableString());
+		user.appTokenIds = readAppTokenIds(input);
+		user.roles = readRoles(input);
+		user.permissionUnitIds = readPermissionUnits(input);
+		return user;
+	}
+
+	private List<String> readAppTokenIds(Input input) {
+		int numberOfAppTokenIds = input.readCount();
+		List<String> appTokenIds = new ArrayList<>(numberOfAppTokenIds);
+		for (int i = 0; i < numberOfAppTokenIds; i++) {
+			appTokenIds.add(input.readString());
+		}
+		return appTokenIds;
+	}
+
+	private Set<String> readRoles(Input input) {
+		int numberOfRoles = input.readCount();
+		Set<String> roles = new LinkedHashSet<>(capacityFor(numberOfRoles));
+		for (int i = 0; i < numberOfRoles; i++) {
+			roles.add(dictionary.roleIdAt(input.readVarint()));
+		}
+		return roles;
+	}
+
+	private Set<String> readPermissionUnits(Input input) {
+		int numberOfPermissionUnits = input.readCount();
+		Set<String> permissionUnitIds = new LinkedHashSet<>(capacityFor(numberOfPermissionUnits));
+		for (int i = 0; i < numberOfPermissionUnits; i++) {
+			permissionUnitIds.add(dictionary.permissionUnitIdAt(input.readVarint()));
+		}
+		return permissionUnitIds;
+	}
+
+	private int capacityFor(int numberOfElements) {
+		return (int) Math.ceil(numberOfElements / 0.75);
+	}
+
+	public AuthorizationDictionary getDictionary() {
+		return dictionary;
+	}
+
+	private static final class Output {
+		private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+		private int size;
+
+		void writeVarint(int value) {
+			int remaining = value;
+			while ((remaining & ~0x7F) != 0) {
+				writeByte((remaining & 0x7F) | 0x80);
+				remaining >>>= 7;
+			}
+			writeByte(remaining);
+		}
+
+		private void writeByte(int value) {
+			ensureCapacity(1);
+			bytes[size++] = (byte) value;
+		}
+
+		void writeNullableString(String value) {
+			if (value == null) {
+				writeVarint(NULL_STRING);
+				return;
+			}
+			byte[] stringBytes = value.getBytes(UTF_8);
+			writeVarint(stringBytes.length + 1);
+			writeBytes(stringBytes);
+		}
+
+		void writeString(String value) {
+			byte[] stringBytes = value.getBytes(UTF_8);
+			writeVarint(stringBytes.length);
+			writeBytes(stringBytes);
+		}
+
+		private void writeBytes(byte[] source) {
+			ensureCapacity(source.length);
+			System.arraycopy(source, 0, bytes, size, source.length);
+			size += source.length;
+		}
+
+		private void ensureCapacity(int extra) {
+			if (size + extra > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+			}
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(bytes, size);
+		}
+	}
+
+	private static final class Input {
+		private static final int MAX_VARINT_SHIFT = 28;
+		private final ByteBuffer buffer;
+
+		Input(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		int readVarint() {
+			int value = 0;
+			for (int shift = 0; shift <= MAX_VARINT_SHIFT; shift += 7) {
+				byte current = readByte();
+				value |= (current & 0x7F) << shift;
+				if (current >= 0) {
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("Varint is too long");
+		}
+
+		private byte readByte() {
+			if (!buffer.hasRemaining()) {
+				throw new IllegalArgumentException("Encoded user ended unexpectedly");
+			}
+			return buffer.get();
+		}
+
+		int readCount() {
+			int count = readVarint();
+			ensureRemaining(count);
+			return count;
+		}
+
+		private void ensureRemaining(int length) {
+			if (length < 0 || length > buffer.remaining()) {
+				throw new IllegalArgumentException("Encoded user ended unexpectedly");
+			}
+		}
+
+		String readNullableString() {
+			int lengthPlusOne = readVarint();
+			if (lengthPlusOne == NULL_STRING) {
+				return null;
+			}
+			return readStringOfLength(lengthPlusOne - 1);
+		}
+
+		String readString() {
+			return readStringOfLength(readVarint());
+		}
+
+		private String readStringOfLength(int length) {
+			ensureRemaining(length);
+			byte[] stringBytes = new byte[length];
+			buffer.get(stringBytes);
+			return new String(stringBytes, UTF_8);
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2022, 2024, 2025 Uppsala University Library
+ * Copyright 2022, 2024, 2025, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -35,5 +35,22 @@ public interface DataGroupToUser {
 	 *            the {@link DataRecordGroup} to convert to a {@link User}
 	 * @return the representation of userDataRecordGroup as a {@link User}
 	 */
-	User groupToUser(DataRecordGroup userDataRecordGroup);
+	default User groupToUser(DataRecordGroup userDataRecordGroup) {
+		return groupToUser(userDataRecordGroup, UserProjection.FULL);
+	}
+
+	/**
+	 * groupToUser converts a {@link DataRecordGroup} to a {@link User} object, filling only the
+	 * fields in the given {@link UserProjection}. The id of the user is always set. Fields not in
+	 * the projection keep the default value of a new {@link User}, and the children of the record
+	 * they would be read from are not read.
+	 * 
+	 * @param userDataRecordGroup
+	 *            the {@link DataRecordGroup} to convert to a {@link User}
+	 * @param projection
+	 *            the {@link UserProjection} with the fields to fill
+	 * @return the representation of userDataRecordGroup as a {@link User}, with the projected
+	 *         fields filled
+	 */
+	User groupToUser(DataRecordGroup userDataRecordGroup, UserProjection projection);
 }
\ No newline at end of file
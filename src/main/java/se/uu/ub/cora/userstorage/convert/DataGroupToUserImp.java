@@ -1,5 +1,5 @@
 /*
- * Copyright 2022, 2024 Uppsala University Library
+ * Copyright 2022, 2024, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -27,36 +27,54 @@ import se.uu.ub.cora.data.DataRecordGroup;
 import se.uu.ub.cora.data.DataRecordLink;
 import se.uu.ub.cora.gatekeeper.user.User;
 
+/**
+ * DataGroupToUserImp is stateless, all state for a conversion is kept on the stack of the calling
+ * thread. One instance can therefore be shared by all threads.
+ * <p>
+ * Each field is read from the record with its own lookup, so fields left out of the
+ * {@link UserProjection} are never looked up.
+ */
 public class DataGroupToUserImp implements DataGroupToUser {
 
 	private static final String PASSWORD_LINK_NAME_IN_DATA = "passwordLink";
-	private DataRecordGroup userRecordGroup;
-	private User user;
 
 	@Override
-	public User groupToUser(DataRecordGroup dataGroup) {
-		userRecordGroup = dataGroup;
-		user = createUserAndSetUserId();
-		setActiveStatus();
-		setAppTokenLinkIds();
-		addLoginId();
-		setNames();
-		setRoleIds();
-		setPassword();
-		setPermissionUnitIds();
+	public User groupToUser(DataRecordGroup userRecordGroup, UserProjection projection) {
+		User user = createUserAndSetUserId(userRecordGroup);
+		if (projection.includes(UserField.ACTIVE_STATUS)) {
+			setActiveStatus(userRecordGroup, user);
+		}
+		if (projection.includes(UserField.APP_TOKEN_IDS)) {
+			setAppTokenLinkIds(userRecordGroup, user);
+		}
+		if (projection.includes(UserField.LOGIN_ID)) {
+			addLoginId(userRecordGroup, user);
+		}
+		if (projection.includes(UserField.NAMES)) {
+			setNames(userRecordGroup, user);
+		}
+		if (projection.includes(UserField.ROLES)) {
+			setRoleIds(userRecordGroup, user);
+		}
+		if (projection.includes(UserField.PASSWORD_ID)) {
+			setPassword(userRecordGroup, user);
+		}
+		if (projection.includes(UserField.PERMISSION_UNIT_IDS)) {
+			setPermissionUnitIds(userRecordGroup, user);
+		}
 		return user;
 	}
 
-	private User createUserAndSetUserId() {
+	private User createUserAndSetUserId(DataRecordGroup userRecordGroup) {
 		return new User(userRecordGroup.getId());
 	}
 
-	private void setActiveStatus() {
+	private void setActiveStatus(DataRecordGroup userRecordGroup, User user) {
 		user.active = "active"
 				.equals(userRecordGroup.getFirstAtomicValueWithNameInData("activeStatus"));
 	}
 
-	private void setAppTokenLinkIds() {
+	private void setAppTokenLinkIds(DataRecordGroup userRecordGroup, User user) {
 		if (userRecordGroup.containsChildWithNameInData("appTokens")) {
 			DataGroup appTokensGroup = userRecordGroup.getFirstGroupWithNameInData("appTokens");
 			addAllSystemSecretsIdToUserAppTokens(user, appTokensGroup);
@@ -77,28 +95,28 @@ public class DataGroupToUserImp implements DataGroupToUser {
 		return systemSecretLink.getLinkedRecordId();
 	}
 
-	private void setNames() {
-		possiblySetFirstname(user);
-		possiblySetLastname(user);
+	private void setNames(DataRecordGroup userRecordGroup, User user) {
+		possiblySetFirstname(userRecordGroup, user);
+		possiblySetLastname(userRecordGroup, user);
 	}
 
-	private void addLoginId() {
+	private void addLoginId(DataRecordGroup userRecordGroup, User user) {
 		user.loginId = userRecordGroup.getFirstAtomicValueWithNameInData("loginId");
 	}
 
-	private void possiblySetFirstname(User user) {
+	private void possiblySetFirstname(DataRecordGroup userRecordGroup, User user) {
 		if (userRecordGroup.containsChildWithNameInData("userFirstname")) {
 			user.firstName = userRecordGroup.getFirstAtomicValueWithNameInData("userFirstname");
 		}
 	}
 
-	private void possiblySetLastname(User user) {
+	private void possiblySetLastname(DataRecordGroup userRecordGroup, User user) {
 		if (userRecordGroup.containsChildWithNameInData("userLastname")) {
 			user.lastName = userRecordGroup.getFirstAtomicValueWithNameInData("userLastname");
 		}
 	}
 
-	private void setRoleIds() {
+	private void setRoleIds(DataRecordGroup userRecordGroup, User user) {
 		List<DataGroup> roleGroups = userRecordGroup.getAllGroupsWithNameInData("userRole");
 		getRolesForRolesGroups(user, roleGroups);
 	}
@@ -115,40 +133,40 @@ public class DataGroupToUserImp implements DataGroupToUser {
 				.getLinkedRecordId();
 	}
 
-	private void setPassword() {
-		if (hasPassword()) {
-			String systemSecretId = getPasswordRecordLinkId();
+	private void setPassword(DataRecordGroup userRecordGroup, User user) {
+		if (hasPassword(userRecordGroup)) {
+			String systemSecretId = getPasswordRecordLinkId(userRecordGroup);
 			user.passwordId = Optional.of(systemSecretId);
 		}
 	}
 
-	private boolean hasPassword() {
+	private boolean hasPassword(DataRecordGroup userRecordGroup) {
 		return userRecordGroup.containsChildOfTypeAndName(DataRecordLink.class,
 				PASSWORD_LINK_NAME_IN_DATA);
 	}
 
-	private String getPasswordRecordLinkId() {
+	private String getPasswordRecordLinkId(DataRecordGroup userRecordGroup) {
 		DataRecordLink passwordLink = userRecordGroup
 				.getFirstChildOfTypeAndName(DataRecordLink.class, PASSWORD_LINK_NAME_IN_DATA);
 		return passwordLink.getLinkedRecordId();
 	}
 
-	private void setPermissionUnitIds() {
-		if (hasPermissionUnits()) {
-			addPermissionsUnitsToUserFromRecord(user);
+	private void setPermissionUnitIds(DataRecordGroup userRecordGroup, User user) {
+		if (hasPermissionUnits(userRecordGroup)) {
+			addPermissionsUnitsToUserFromRecord(userRecordGroup, user);
 		}
 	}
 
-	private boolean hasPermissionUnits() {
+	private boolean hasPermissionUnits(DataRecordGroup userRecordGroup) {
 		return userRecordGroup.containsChildWithNameInData("permissionUnit");
 	}
 
-	private void addPermissionsUnitsToUserFromRecord(User user) {
-		var permissionUnitLinks = readPermissionUnitsFromRecord();
+	private void addPermissionsUnitsToUserFromRecord(DataRecordGroup userRecordGroup, User user) {
+		var permissionUnitLinks = readPermissionUnitsFromRecord(userRecordGroup);
 		addPermissionUnitsToUser(user, permissionUnitLinks);
 	}
 
-	private List<DataRecordLink> readPermissionUnitsFromRecord() {
+	private List<DataRecordLink> readPermissionUnitsFromRecord(DataRecordGroup userRecordGroup) {
 		return userRecordGroup.getChildrenOfTypeAndName(DataRecordLink.class, "permissionUnit");
 	}
 
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import java.util.Map;
+import java.util.Optional;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataChild;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataMissingException;
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.data.DataRecordLink;
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * DataGroupToUserSinglePass converts a user record to a {@link User} by walking the children of
+ * the record once, and handing each child to the setter for its nameInData.
+ * <p>
+ * {@link DataGroupToUserImp} asks the record for each field separately, and each question scans
+ * the children of the record again. For users with many roles and permission units this converter
+ * does the same work with one scan.
+ * <p>
+ * The converter fills the same fields as {@link DataGroupToUserImp}. If a record holds more than
+ * one child with a name that is expected once, the first one is used. As with
+ * {@link DataGroupToUserImp} a {@link DataMissingException} is thrown if activeStatus or loginId is
+ * part of the projection but missing in the record.
+ * <p>
+ * Children for fields left out of the {@link UserProjection} are skipped by their nameInData
+ * without being converted, and a projection without fields does not read the children at all.
+ * <p>
+ * The converter is stateless and can be shared by all threads.
+ */
+public class DataGroupToUserSinglePass implements DataGroupToUser {
+	private static final Map<String, UserField> FIELD_BY_NAME_IN_DATA = Map.of("activeStatus",
+			UserField.ACTIVE_STATUS, "loginId", UserField.LOGIN_ID, "userFirstname",
+			UserField.NAMES, "userLastname", UserField.NAMES, "appTokens",
+			UserField.APP_TOKEN_IDS, "userRole", UserField.ROLES, "passwordLink",
+			UserField.PASSWORD_ID, "permissionUnit", UserField.PERMISSION_UNIT_IDS);
+
+	@Override
+	public User groupToUser(DataRecordGroup userRecordGroup, UserProjection projection) {
+		User user = new User(userRecordGroup.getId());
+		if (projection.isEmpty()) {
+			return user;
+		}
+		UserFields userFields = new UserFields();
+		for (DataChild child : userRecordGroup.getChildren()) {
+			possiblySetFieldFromChild(user, userFields, projection, child);
+		}
+		throwIfRequiredFieldIsMissing(user, userFields, projection);
+		return user;
+	}
+
+	private void possiblySetFieldFromChild(User user, UserFields userFields,
+			UserProjection projection, DataChild child) {
+		UserField field = FIELD_BY_NAME_IN_DATA.get(child.getNameInData());
+		if (field != null && projection.includes(field)) {
+			setFieldFromChild(user, userFields, child);
+		}
+	}
+
+	private void setFieldFromChild(User user, UserFields userFields, DataChild child) {
+		switch (child.getNameInData()) {
+			case "activeStatus" -> possiblySetActiveStatus(user, userFields, child);
+			case "loginId" -> possiblySetLoginId(user, child);
+			case "userFirstname" -> possiblySetFirstname(user, child);
+			case "userLastname" -> possiblySetLastname(user, child);
+			case "appTokens" -> possiblyAddAppTokenIds(user, userFields, child);
+			case "userRole" -> possiblyAddRoleId(user, child);
+			case "passwordLink" -> possiblySetPasswordId(user, child);
+			case "permissionUnit" -> possiblyAddPermissionUnitId(user, child);
+			default -> {
+				// other children are not part of the user
+			}
+		}
+	}
+
+	private void throwIfRequiredFieldIsMissing(User user, UserFields userFields,
+			UserProjection projection) {
+		if (projection.includes(UserField.ACTIVE_STATUS) && !userFields.activeStatusSet) {
+			throw createDataMissingException("activeStatus");
+		}
+		if (projection.includes(UserField.LOGIN_ID) && user.loginId == null) {
+			throw createDataMissingException("loginId");
+		}
+	}
+
+	private DataMissingException createDataMissingException(String nameInData) {
+		return new DataMissingException("Atomic value not found for childNameInData:" + nameInData);
+	}
+
+	private void possiblySetActiveStatus(User user, UserFields userFields, DataChild child) {
+		if (!userFields.activeStatusSet && child instanceof DataAtomic atomic) {
+			user.active = "active".equals(atomic.getValue());
+			userFields.activeStatusSet = true;
+		}
+	}
+
+	private void possiblySetLoginId(User user, DataChild child) {
+		if (user.loginId == null && child instanceof DataAtomic atomic) {
+			user.loginId = atomic.getValue();
+		}
+	}
+
+	private void possiblySetFirstname(User user, DataChild child) {
+		if (user.firstName == null && child instanceof DataAtomic atomic) {
+			user.firstName = atomic.getValue();
+		}
+	}
+
+	private void possiblySetLastname(User user, DataChild child) {
+		if (user.lastName == null && child instanceof DataAtomic atomic) {
+			user.lastName = atomic.getValue();
+		}
+	}
+
+	private void possiblyAddAppTokenIds(User user, UserFields userFields, DataChild child) {
+		if (!userFields.appTokensSet && child instanceof DataGroup appTokensGroup) {
+			addAppTokenIds(user, appTokensGroup);
+			userFields.appTokensSet = true;
+		}
+	}
+
+	private void addAppTokenIds(User user, DataGroup appTokensGroup) {
+		for (DataChild appTokenChild : appTokensGroup.getChildren()) {
+			if (isAppTokenGroup(appTokenChild)) {
+				DataRecordLink appTokenLink = ((DataGroup) appTokenChild)
+						.getFirstChildOfTypeAndName(DataRecordLink.class, "appTokenLink");
+				user.appTokenIds.add(appTokenLink.getLinkedRecordId());
+			}
+		}
+	}
+
+	private boolean isAppTokenGroup(DataChild appTokenChild) {
+		return appTokenChild instanceof DataGroup
+				&& "appToken".equals(appTokenChild.getNameInData());
+	}
+
+	private void possiblyAddRoleId(User user, DataChild child) {
+		if (child instanceof DataGroup roleGroup) {
+			DataRecordLink roleLink = roleGroup.getFirstChildOfTypeAndName(DataRecordLink.class,
+					"userRole");
+			user.roles.add(roleLink.getLinkedRecordId());
+		}
+	}
+
+	private void possiblySetPasswordId(User user, DataChild child) {
+		if (user.passwordId.isEmpty() && child instanceof DataRecordLink passwordLink) {
+			user.passwordId = Optional.of(passwordLink.getLinkedRecordId());
+		}
+	}
+
+	private void possiblyAddPermissionUnitId(User user, DataChild child) {
+		if (child instanceof DataRecordLink permissionUnitLink) {
+			user.permissionUnitIds.add(permissionUnitLink.getLinkedRecordId());
+		}
+	}
+
+	private static class UserFields {
+		boolean activeStatusSet = false;
+		boolean appTokensSet = false;
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * DictionaryDataGroupToUser converts user records using another {@link DataGroupToUser} and then
+ * lets the converted user refer to the role and permission unit id strings kept by an
+ * {@link AuthorizationDictionary}, so that cached users do not each hold their own copies of the
+ * same ids. The roles and permission units met are added to the dictionary.
+ */
+public final class DictionaryDataGroupToUser implements DataGroupToUser {
+	private final DataGroupToUser dataGroupToUser;
+	private final AuthorizationDictionary dictionary;
+
+	public static DictionaryDataGroupToUser usingDataGroupToUserAndDictionary(
+			DataGroupToUser dataGroupToUser, AuthorizationDictionary dictionary) {
+		return new DictionaryDataGroupToUser(dataGroupToUser, dictionary);
+	}
+
+	private DictionaryDataGroupToUser(DataGroupToUser dataGroupToUser,
+			AuthorizationDictionary dictionary) {
+		this.dataGroupToUser = dataGroupToUser;
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public User groupToUser(DataRecordGroup userDataRecordGroup, UserProjection projection) {
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup, projection);
+		dictionary.useSharedIds(user);
+		return user;
+	}
+
+	public DataGroupToUser onlyForTestGetDataGroupToUser() {
+		return dataGroupToUser;
+	}
+
+	public AuthorizationDictionary getDictionary() {
+		return dictionary;
+	}
+}
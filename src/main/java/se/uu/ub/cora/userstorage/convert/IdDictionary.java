@@ -0,0 +1,117 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IdDictionary gives each id it is asked about a small int index, starting at 0 and increasing by
+ * one for each new id. An id keeps its index for the life of the dictionary, and the dictionary
+ * keeps one shared instance of each id string.
+ * <p>
+ * Lookups do not lock, adding new ids is serialized. Ids are never removed, so a dictionary is only
+ * meant for ids from a limited set, such as the ids of roles and permission units.
+ */
+public final class IdDictionary {
+	public static final int NOT_FOUND = -1;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final Map<String, Integer> indexById = new ConcurrentHashMap<>();
+	private volatile String[] idsByIndex = new String[INITIAL_CAPACITY];
+	private int size;
+
+	/**
+	 * indexFor returns the index of the id, adding the id to the dictionary if it is not already
+	 * in it.
+	 * 
+	 * @param id
+	 *            the id to get the index for
+	 * @return the index of the id
+	 */
+	public int indexFor(String id) {
+		Integer index = indexById.get(id);
+		if (index != null) {
+			return index;
+		}
+		return addId(id);
+	}
+
+	private synchronized int addId(String id) {
+		Integer index = indexById.get(id);
+		if (index != null) {
+			return index;
+		}
+		ensureCapacity();
+		idsByIndex[size] = id;
+		indexById.put(id, size);
+		return size++;
+	}
+
+	private void ensureCapacity() {
+		if (size == idsByIndex.length) {
+			idsByIndex = Arrays.copyOf(idsByIndex, size * 2);
+		}
+	}
+
+	/**
+	 * findIndex returns the index of the id without adding it.
+	 * 
+	 * @param id
+	 *            the id to look up
+	 * @return the index of the id, or {@link #NOT_FOUND} if the id is not in the dictionary
+	 */
+	public int findIndex(String id) {
+		return indexById.getOrDefault(id, NOT_FOUND);
+	}
+
+	/**
+	 * idAt returns the id with the given index.
+	 * 
+	 * @param index
+	 *            an index given out by this dictionary
+	 * @return the id with the index
+	 * @throws IndexOutOfBoundsException
+	 *             if no id has the index
+	 */
+	public String idAt(int index) {
+		String[] ids = idsByIndex;
+		if (index < 0 || index >= ids.length || ids[index] == null) {
+			throw new IndexOutOfBoundsException("No id with index: " + index);
+		}
+		return ids[index];
+	}
+
+	/**
+	 * sharedInstanceOf returns the instance of the id kept by the dictionary, adding the id if it
+	 * is not already in it, so that equal ids held in many places can share one string.
+	 * 
+	 * @param id
+	 *            the id to get the shared instance of
+	 * @return the shared instance of the id
+	 */
+	public String sharedInstanceOf(String id) {
+		return idAt(indexFor(id));
+	}
+
+	public int size() {
+		return indexById.size();
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import java.util.BitSet;
+
+/**
+ * UserAuthorization holds the roles and permission units of one user as bits, indexed by the
+ * {@link AuthorizationDictionary} the authorization was created with. Checking membership or
+ * intersection with a set of roles or permission units built from the same dictionary does not
+ * allocate.
+ * <p>
+ * A UserAuthorization is immutable and can be shared by all threads.
+ */
+public final class UserAuthorization {
+	private final String userId;
+	private final boolean active;
+	private final BitSet roles;
+	private final BitSet permissionUnits;
+
+	static UserAuthorization usingUserIdActiveRolesAndPermissionUnits(String userId,
+			boolean active, BitSet roles, BitSet permissionUnits) {
+		return new UserAuthorization(userId, active, roles, permissionUnits);
+	}
+
+	private UserAuthorization(String userId, boolean active, BitSet roles,
+			BitSet permissionUnits) {
+		this.userId = userId;
+		this.active = active;
+		this.roles = (BitSet) roles.clone();
+		this.permissionUnits = (BitSet) permissionUnits.clone();
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public boolean hasRole(int roleIndex) {
+		return roleIndex >= 0 && roles.get(roleIndex);
+	}
+
+	/**
+	 * hasAnyRole returns true if the user has at least one of the roles, see
+	 * {@link AuthorizationDictionary#rolesAsBits(java.util.Collection)}.
+	 * 
+	 * @param roleBits
+	 *            the roles to check, as bits from the same dictionary
+	 * @return true if the user has any of the roles
+	 */
+	public boolean hasAnyRole(BitSet roleBits) {
+		return roles.intersects(roleBits);
+	}
+
+	public boolean hasPermissionUnit(int permissionUnitIndex) {
+		return permissionUnitIndex >= 0 && permissionUnits.get(permissionUnitIndex);
+	}
+
+	/**
+	 * hasAnyPermissionUnit returns true if the user has at least one of the permission units, see
+	 * {@link AuthorizationDictionary#permissionUnitsAsBits(java.util.Collection)}.
+	 * 
+	 * @param permissionUnitBits
+	 *            the permission units to check, as bits from the same dictionary
+	 * @return true if the user has any of the permission units
+	 */
+	public boolean hasAnyPermissionUnit(BitSet permissionUnitBits) {
+		return permissionUnits.intersects(permissionUnitBits);
+	}
+
+	public int getNumberOfRoles() {
+		return roles.cardinality();
+	}
+
+	public int getNumberOfPermissionUnits() {
+		return permissionUnits.cardinality();
+	}
+
+	/**
+	 * getRoleIndexes returns the indexes of the roles of the user, in increasing order.
+	 * 
+	 * @return a new array with the role indexes
+	 */
+	public int[] getRoleIndexes() {
+		return roles.stream().toArray();
+	}
+
+	/**
+	 * getPermissionUnitIndexes returns the indexes of the permission units of the user, in
+	 * increasing order.
+	 * 
+	 * @return a new array with the permission unit indexes
+	 */
+	public int[] getPermissionUnitIndexes() {
+		return permissionUnits.stream().toArray();
+	}
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+/**
+ * UserField names the fields of a {@link se.uu.ub.cora.gatekeeper.user.User} that a
+ * {@link DataGroupToUser} can fill, and that a {@link UserProjection} can select. The id of the
+ * user is always filled and has no field.
+ */
+public enum UserField {
+	ACTIVE_STATUS, LOGIN_ID, NAMES, APP_TOKEN_IDS, ROLES, PASSWORD_ID, PERMISSION_UNIT_IDS
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * UserProjection says which {@link UserField}s a {@link DataGroupToUser} should fill when it
+ * converts a user record. Fields that are not in the projection are left with the default value of
+ * a new {@link se.uu.ub.cora.gatekeeper.user.User}, and the children they are read from are not
+ * read or converted.
+ * <p>
+ * The common profiles are available as constants, other projections can be created using
+ * {@link #withFields(UserField...)}.
+ */
+public final class UserProjection {
+	/**
+	 * FULL fills all fields, the same as converting without a projection.
+	 */
+	public static final UserProjection FULL = new UserProjection(
+			EnumSet.allOf(UserField.class));
+	/**
+	 * ACTIVE_STATUS fills only the id and the active status of the user.
+	 */
+	public static final UserProjection ACTIVE_STATUS = withFields(UserField.ACTIVE_STATUS);
+	/**
+	 * AUTHORIZATION fills what is needed to decide what a user may do, the active status, the
+	 * roles and the permission units.
+	 */
+	public static final UserProjection AUTHORIZATION = withFields(UserField.ACTIVE_STATUS,
+			UserField.ROLES, UserField.PERMISSION_UNIT_IDS);
+	/**
+	 * CREDENTIALS fills what is needed to check a password login, the active status and the id of
+	 * the password.
+	 */
+	public static final UserProjection CREDENTIALS = withFields(UserField.ACTIVE_STATUS,
+			UserField.PASSWORD_ID);
+
+	private final Set<UserField> fields;
+
+	public static UserProjection withFields(UserField... fields) {
+		EnumSet<UserField> fieldSet = EnumSet.noneOf(UserField.class);
+		Collections.addAll(fieldSet, fields);
+		return new UserProjection(fieldSet);
+	}
+
+	private UserProjection(EnumSet<UserField> fields) {
+		this.fields = Collections.unmodifiableSet(fields);
+	}
+
+	public boolean includes(UserField field) {
+		return fields.contains(field);
+	}
+
+	public boolean isEmpty() {
+		return fields.isEmpty();
+	}
+
+	public Set<UserField> getFields() {
+		return fields;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof UserProjection projection && fields.equals(projection.fields);
+	}
+
+	@Override
+	public int hashCode() {
+		return fields.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "UserProjection" + fields;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+/**
+ * CacheStatistics is a point in time snapshot of the counters kept by a
+ * {@link se.uu.ub.cora.userstorage.cache.BoundedTtlCache}.
+ *
+ * @param hits
+ *            number of lookups answered from the cache
+ * @param misses
+ *            number of lookups that did not find a usable entry in the cache
+ * @param evictions
+ *            number of entries removed to keep the cache within its size bound
+ * @param expirations
+ *            number of entries removed because their time to live had passed
+ * @param size
+ *            number of entries currently held in the cache
+ */
+public record CacheStatistics(long hits, long misses, long evictions, long expirations,
+		long size) {
+
+	/**
+	 * hitRate returns the share of lookups that were answered from the cache, as a value between 0
+	 * and 1. If no lookups have been made 0 is returned.
+	 * 
+	 * @return the hit rate of the cache
+	 */
+	public double hitRate() {
+		long lookups = hits + misses;
+		if (lookups == 0) {
+			return 0;
+		}
+		return (double) hits / lookups;
+	}
+}
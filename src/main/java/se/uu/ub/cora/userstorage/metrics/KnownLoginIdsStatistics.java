@@ -0,0 +1,43 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+/**
+ * KnownLoginIdsStatistics is a point in time snapshot of the filter and counters kept by
+ * {@link se.uu.ub.cora.userstorage.cache.KnownLoginIds}.
+ *
+ * @param built
+ *            true if a filter has been built, lookups are not rejected before that
+ * @param approximateLoginIds
+ *            estimated number of loginIds in the filter
+ * @param bitSize
+ *            number of bits in the filter
+ * @param memoryInBytes
+ *            memory used by the bits of the filter
+ * @param expectedFalsePositiveRate
+ *            probability that a loginId that does not exist is not rejected
+ * @param rejectedLookups
+ *            number of lookups rejected because the loginId is known not to exist
+ * @param rebuilds
+ *            number of times the filter has been built
+ */
+public record KnownLoginIdsStatistics(boolean built, long approximateLoginIds, long bitSize,
+		long memoryInBytes, double expectedFalsePositiveRate, long rejectedLookups,
+		long rebuilds) {
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * LatencyHistogram records durations in nanoseconds into log linear buckets, and answers
+ * percentiles from them.
+ * <p>
+ * Durations below {@value #SUB_BUCKETS} ns get a bucket each. Above that each power of two is
+ * split into {@value #SUB_BUCKETS} buckets, so a reported percentile is at most 1/16 above the
+ * recorded duration. Recording is one atomic increment and does not lock, so the histogram can be
+ * shared by all threads and left on at all times.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int NUMBER_OF_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * record adds one duration to the histogram. Negative durations are recorded as zero.
+	 * 
+	 * @param nanos
+	 *            the duration to record in nanoseconds
+	 */
+	public void record(long nanos) {
+		long duration = Math.max(0, nanos);
+		buckets.incrementAndGet(bucketIndexFor(duration));
+		max.accumulate(duration);
+	}
+
+	static int bucketIndexFor(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long highestValueInBucket(int bucketIndex) {
+		if (bucketIndex < SUB_BUCKETS) {
+			return bucketIndex;
+		}
+		int shift = bucketIndex / SUB_BUCKETS - 1;
+		long subBucket = bucketIndex % SUB_BUCKETS;
+		long lowestValue = (SUB_BUCKETS + subBucket) << shift;
+		return lowestValue + (1L << shift) - 1;
+	}
+
+	/**
+	 * createSnapshot returns the number of recorded durations and the 50th, 99th and 99.9th
+	 * percentiles and the max of them. Durations recorded while the snapshot is created might or
+	 * might not be part of it.
+	 * 
+	 * @return a {@link LatencySnapshot} of the histogram
+	 */
+	public LatencySnapshot createSnapshot() {
+		long[] counts = copyBuckets();
+		long count = sum(counts);
+		long maxNanos = max.get();
+		return new LatencySnapshot(count, percentile(counts, count, 0.5, maxNanos),
+				percentile(counts, count, 0.99, maxNanos),
+				percentile(counts, count, 0.999, maxNanos), maxNanos);
+	}
+
+	private long[] copyBuckets() {
+		long[] counts = new long[NUMBER_OF_BUCKETS];
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+		}
+		return counts;
+	}
+
+	private long sum(long[] counts) {
+		long sum = 0;
+		for (long bucketCount : counts) {
+			sum += bucketCount;
+		}
+		return sum;
+	}
+
+	private long percentile(long[] counts, long count, double percentile, long maxNanos) {
+		long rank = (long) Math.ceil(count * percentile);
+		long seen = 0;
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			seen += counts[i];
+			if (seen > 0 && seen >= rank) {
+				return Math.min(highestValueInBucket(i), maxNanos);
+			}
+		}
+		return 0;
+	}
+}
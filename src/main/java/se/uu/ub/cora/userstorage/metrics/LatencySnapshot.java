@@ -0,0 +1,38 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+/**
+ * LatencySnapshot is a point in time snapshot of a {@link LatencyHistogram}. All durations are in
+ * nanoseconds, and all of them are 0 if nothing has been recorded.
+ *
+ * @param count
+ *            number of recorded durations
+ * @param p50Nanos
+ *            the 50th percentile, the median
+ * @param p99Nanos
+ *            the 99th percentile
+ * @param p999Nanos
+ *            the 99.9th percentile
+ * @param maxNanos
+ *            the longest recorded duration
+ */
+public record LatencySnapshot(long count, long p50Nanos, long p99Nanos, long p999Nanos,
+		long maxNanos) {
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+
+/**
+ * MethodMetrics holds the metrics for one method of a view. It counts calls and failed calls by
+ * cause, and records the latency of the calls as well as the time spent reading from storage and
+ * converting what was read.
+ */
+public final class MethodMetrics {
+	private final LongAdder calls = new LongAdder();
+	private final Map<String, LongAdder> errorsByCause = new ConcurrentHashMap<>();
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LatencyHistogram storageRead = new LatencyHistogram();
+	private final LatencyHistogram conversion = new LatencyHistogram();
+
+	public void recordCall(long nanos) {
+		calls.increment();
+		latency.record(nanos);
+	}
+
+	/**
+	 * recordFailedCall records a call that ended with an exception. The error is counted by the
+	 * simple class name of its cause, as a {@link UserStorageViewException} only wraps the
+	 * exception that made the call fail. Exceptions without a cause are counted by their own class
+	 * name.
+	 * 
+	 * @param nanos
+	 *            the duration of the call in nanoseconds
+	 * @param error
+	 *            the exception the call ended with
+	 */
+	public void recordFailedCall(long nanos, Exception error) {
+		recordCall(nanos);
+		errorsByCause.computeIfAbsent(causeName(error), key -> new LongAdder()).increment();
+	}
+
+	private String causeName(Exception error) {
+		Throwable cause = error.getCause() != null ? error.getCause() : error;
+		return cause.getClass().getSimpleName();
+	}
+
+	public void recordStorageRead(long nanos) {
+		storageRead.record(nanos);
+	}
+
+	public void recordConversion(long nanos) {
+		conversion.record(nanos);
+	}
+
+	public MethodMetricsSnapshot createSnapshot() {
+		Map<String, Long> errors = new TreeMap<>();
+		errorsByCause.forEach((cause, count) -> errors.put(cause, count.sum()));
+		return new MethodMetricsSnapshot(calls.sum(), Collections.unmodifiableMap(errors),
+				latency.createSnapshot(), storageRead.createSnapshot(),
+				conversion.createSnapshot());
+	}
+}
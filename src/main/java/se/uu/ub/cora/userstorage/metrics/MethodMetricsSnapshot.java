@@ -0,0 +1,48 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+import java.util.Map;
+
+/**
+ * MethodMetricsSnapshot is a point in time snapshot of a {@link MethodMetrics}.
+ *
+ * @param calls
+ *            number of calls, including failed calls
+ * @param errorsByCause
+ *            number of failed calls by simple class name of the cause of the failure
+ * @param latency
+ *            the duration of the calls, as seen by the caller
+ * @param storageRead
+ *            the time spent reading from storage, one entry for each read
+ * @param conversion
+ *            the time spent converting read records, one entry for each conversion
+ */
+public record MethodMetricsSnapshot(long calls, Map<String, Long> errorsByCause,
+		LatencySnapshot latency, LatencySnapshot storageRead, LatencySnapshot conversion) {
+
+	/**
+	 * errors returns the total number of failed calls.
+	 * 
+	 * @return the number of failed calls
+	 */
+	public long errors() {
+		return errorsByCause.values().stream().mapToLong(Long::longValue).sum();
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+import java.lang.reflect.RecordComponent;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.userstorage.BackgroundWorker;
+import se.uu.ub.cora.userstorage.circuit.CircuitBreaker;
+import se.uu.ub.cora.userstorage.circuit.CircuitBreakerStatistics;
+
+/**
+ * MetricsLogger is a {@link BackgroundWorker} that logs a snapshot of a
+ * {@link UserStorageViewMetrics} at info level at a fixed interval, one line for each method that
+ * has been called. Durations are logged in microseconds.
+ * <p>
+ * If an enabled {@link CircuitBreaker} is given, its state and counters are logged on a line of
+ * their own at the same interval, and so is each statistics snapshot of the given
+ * {@link StatisticsSource}s, with the components of the snapshot as counters.
+ */
+public final class MetricsLogger implements BackgroundWorker {
+	private static final String THREAD_NAME = "userstorage-metrics";
+	private final Logger log = LoggerProvider.getLoggerForClass(MetricsLogger.class);
+	private final UserStorageViewMetrics metrics;
+	private final CircuitBreaker circuitBreaker;
+	private final List<StatisticsSource> statisticsSources;
+	private final Duration interval;
+	private ScheduledExecutorService executor;
+
+	public static MetricsLogger usingMetricsAndInterval(UserStorageViewMetrics metrics,
+			Duration interval) {
+		return new MetricsLogger(metrics, CircuitBreaker.disabled(), List.of(), interval);
+	}
+
+	public static MetricsLogger usingMetricsCircuitBreakerAndInterval(
+			UserStorageViewMetrics metrics, CircuitBreaker circuitBreaker, Duration interval) {
+		return new MetricsLogger(metrics, circuitBreaker, List.of(), interval);
+	}
+
+	public static MetricsLogger usingMetricsCircuitBreakerStatisticsSourcesAndInterval(
+			UserStorageViewMetrics metrics, CircuitBreaker circuitBreaker,
+			List<StatisticsSource> statisticsSources, Duration interval) {
+		return new MetricsLogger(metrics, circuitBreaker, statisticsSources, interval);
+	}
+
+	private MetricsLogger(UserStorageViewMetrics metrics, CircuitBreaker circuitBreaker,
+			List<StatisticsSource> statisticsSources, Duration interval) {
+		this.metrics = metrics;
+		this.circuitBreaker = circuitBreaker;
+		this.statisticsSources = statisticsSources;
+		this.interval = interval;
+	}
+
+	@Override
+	public synchronized void start() {
+		executor = Executors.newSingleThreadScheduledExecutor(
+				Thread.ofPlatform().name(THREAD_NAME).daemon().factory());
+		long intervalInMillis = interval.toMillis();
+		executor.scheduleAtFixedRate(this::logMetrics, intervalInMillis, intervalInMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	void logMetrics() {
+		try {
+			metrics.createSnapshot().forEach(this::possiblyLogMethod);
+			possiblyLogCircuitBreaker();
+			logStatisticsSources();
+		} catch (Exception e) {
+			log.logErrorUsingMessageAndException("Could not log userstorage metrics.", e);
+		}
+	}
+
+	private void possiblyLogMethod(String method, MethodMetricsSnapshot snapshot) {
+		if (snapshot.calls() > 0) {
+			log.logInfoUsingMessage(formatMethod(method, snapshot));
+		}
+	}
+
+	private String formatMethod(String method, MethodMetricsSnapshot snapshot) {
+		return "userstorage " + method + ": calls=" + snapshot.calls() + " errors="
+				+ snapshot.errors() + formatErrorsByCause(snapshot.errorsByCause()) + " latency["
+				+ formatLatency(snapshot.latency()) + "] storageRead["
+				+ formatLatency(snapshot.storageRead()) + "] conversion["
+				+ formatLatency(snapshot.conversion()) + "]";
+	}
+
+	private void possiblyLogCircuitBreaker() {
+		if (circuitBreaker.isEnabled()) {
+			CircuitBreakerStatistics statistics = circuitBreaker.getStatistics();
+			log.logInfoUsingMessage("userstorage circuit: state=" + statistics.state()
+					+ " timesOpened=" + statistics.timesOpened() + " rejectedCalls="
+					+ statistics.rejectedCalls() + " fallbacks=" + statistics.fallbacks());
+		}
+	}
+
+	private void logStatisticsSources() throws ReflectiveOperationException {
+		for (StatisticsSource statisticsSource : statisticsSources) {
+			for (Entry<String, Record> statistics : statisticsSource.getStatistics().entrySet()) {
+				log.logInfoUsingMessage("userstorage " + statistics.getKey() + ":"
+						+ formatCounters(statistics.getValue()));
+			}
+		}
+	}
+
+	private String formatCounters(Record statistics) throws ReflectiveOperationException {
+		StringBuilder counters = new StringBuilder();
+		for (RecordComponent component : statistics.getClass().getRecordComponents()) {
+			counters.append(" ").append(component.getName()).append("=")
+					.append(component.getAccessor().invoke(statistics));
+		}
+		return counters.toString();
+	}
+
+	private String formatErrorsByCause(Map<String, Long> errorsByCause) {
+		if (errorsByCause.isEmpty()) {
+			return "";
+		}
+		return " " + errorsByCause;
+	}
+
+	private String formatLatency(LatencySnapshot latency) {
+		return "count=" + latency.count() + " p50=" + toMicros(latency.p50Nanos()) + "us p99="
+				+ toMicros(latency.p99Nanos()) + "us p999=" + toMicros(latency.p999Nanos())
+				+ "us max=" + toMicros(latency.maxNanos()) + "us";
+	}
+
+	private long toMicros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	public UserStorageViewMetrics onlyForTestGetMetrics() {
+		return metrics;
+	}
+
+	public CircuitBreaker onlyForTestGetCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public List<StatisticsSource> onlyForTestGetStatisticsSources() {
+		return statisticsSources;
+	}
+
+	public Duration onlyForTestGetInterval() {
+		return interval;
+	}
+
+	public boolean onlyForTestIsScheduled() {
+		return executor != null && !executor.isShutdown();
+	}
+}
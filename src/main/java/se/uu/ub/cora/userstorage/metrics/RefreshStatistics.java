@@ -0,0 +1,40 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+/**
+ * RefreshStatistics is a point in time snapshot of the counters kept by a
+ * {@link se.uu.ub.cora.userstorage.cache.RefreshAhead}.
+ *
+ * @param started
+ *            number of background refreshes started
+ * @param succeeded
+ *            number of background refreshes that finished without error
+ * @param failed
+ *            number of background refreshes that failed
+ * @param skipped
+ *            number of refreshes not started because too many refreshes were in flight
+ * @param staleHits
+ *            number of lookups answered with a stale value while a refresh was in flight
+ * @param inFlight
+ *            number of refreshes currently running
+ */
+public record RefreshStatistics(long started, long succeeded, long failed, long skipped,
+		long staleHits, long inFlight) {
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+import java.util.Map;
+
+/**
+ * StatisticsSource is implemented by parts of the user storage that keep statistics of their own,
+ * such as caches and coalescers, so that they can be logged by a {@link MetricsLogger}.
+ */
+public interface StatisticsSource {
+
+	/**
+	 * getStatistics returns a snapshot of the statistics by name, in the order they should be
+	 * logged. Each snapshot is a record whose components are the counters.
+	 * 
+	 * @return the statistics by name
+	 */
+	Map<String, Record> getStatistics();
+}
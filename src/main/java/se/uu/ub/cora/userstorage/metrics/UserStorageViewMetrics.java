@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * UserStorageViewMetrics holds one {@link MethodMetrics} for each public method of a view, and
+ * the clock used to time them.
+ */
+public final class UserStorageViewMetrics {
+	public static final String GET_USER_BY_ID = "getUserById";
+	public static final String GET_USER_BY_LOGIN_ID = "getUserByLoginId";
+	public static final String GET_USERS_BY_IDS = "getUsersByIds";
+	public static final String GET_USER_CREDENTIALS_BY_LOGIN_ID = "getUserCredentialsByLoginId";
+	public static final String GET_APP_TOKEN_BY_ID = "getAppTokenById";
+	public static final String GET_APP_TOKENS_BY_IDS = "getAppTokensByIds";
+	public static final String GET_SYSTEM_SECRET_BY_ID = "getSystemSecretById";
+	private static final List<String> METHODS = List.of(GET_USER_BY_ID, GET_USER_BY_LOGIN_ID,
+			GET_USERS_BY_IDS, GET_USER_CREDENTIALS_BY_LOGIN_ID, GET_APP_TOKEN_BY_ID,
+			GET_APP_TOKENS_BY_IDS, GET_SYSTEM_SECRET_BY_ID);
+
+	private final Map<String, MethodMetrics> metricsByMethod;
+	private LongSupplier nanoTimeSource = System::nanoTime;
+
+	public UserStorageViewMetrics() {
+		Map<String, MethodMetrics> metrics = new LinkedHashMap<>();
+		for (String method : METHODS) {
+			metrics.put(method, new MethodMetrics());
+		}
+		metricsByMethod = Collections.unmodifiableMap(metrics);
+	}
+
+	/**
+	 * forMethod returns the metrics for the named method, one of the method name constants in this
+	 * class.
+	 * 
+	 * @param method
+	 *            the name of the method
+	 * @return the {@link MethodMetrics} for the method
+	 */
+	public MethodMetrics forMethod(String method) {
+		MethodMetrics methodMetrics = metricsByMethod.get(method);
+		if (methodMetrics == null) {
+			throw new IllegalArgumentException("No metrics exists for method: " + method);
+		}
+		return methodMetrics;
+	}
+
+	public long nanoTime() {
+		return nanoTimeSource.getAsLong();
+	}
+
+	/**
+	 * createSnapshot returns a snapshot of the metrics of all methods, in a stable order.
+	 * 
+	 * @return a map from method name to a {@link MethodMetricsSnapshot} for the method
+	 */
+	public Map<String, MethodMetricsSnapshot> createSnapshot() {
+		Map<String, MethodMetricsSnapshot> snapshot = new LinkedHashMap<>();
+		metricsByMethod.forEach((method, metrics) -> snapshot.put(method, metrics.createSnapshot()));
+		return Collections.unmodifiableMap(snapshot);
+	}
+
+	public void onlyForTestSetNanoTimeSource(LongSupplier nanoTimeSource) {
+		this.nanoTimeSource = nanoTimeSource;
+	}
+}
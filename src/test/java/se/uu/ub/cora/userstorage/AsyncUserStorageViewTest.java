@@ -0,0 +1,276 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageView;
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.userstorage.spies.UserStorageViewSpy;
+
+public class AsyncUserStorageViewTest {
+	private UserStorageViewSpy userStorageViewSpy;
+	private AsyncUserStorageViewImp asyncView;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		userStorageViewSpy = new UserStorageViewSpy();
+		asyncView = AsyncUserStorageViewImp
+				.usingUserStorageViewAndMaxConcurrentLookups(userStorageViewSpy, 4);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(asyncView instanceof AsyncUserStorageView);
+		assertSame(asyncView.onlyForTestGetUserStorageView(), userStorageViewSpy);
+		assertEquals(asyncView.onlyForTestGetMaxConcurrentLookups(), 4);
+	}
+
+	@Test
+	public void testGetUserByIdAsync() throws Exception {
+		User user = asyncView.getUserByIdAsync("someUserId").get(5, TimeUnit.SECONDS);
+
+		userStorageViewSpy.MCR.assertParameters("getUserById", 0, "someUserId");
+		userStorageViewSpy.MCR.assertReturn("getUserById", 0, user);
+	}
+
+	@Test
+	public void testGetUserByLoginIdAsync() throws Exception {
+		User user = asyncView.getUserByLoginIdAsync("someLoginId").get(5, TimeUnit.SECONDS);
+
+		userStorageViewSpy.MCR.assertParameters("getUserByLoginId", 0, "someLoginId");
+		userStorageViewSpy.MCR.assertReturn("getUserByLoginId", 0, user);
+	}
+
+	@Test
+	public void testGetAppTokenByIdAsync() throws Exception {
+		AppToken appToken = asyncView.getAppTokenByIdAsync("someAppTokenId").get(5,
+				TimeUnit.SECONDS);
+
+		userStorageViewSpy.MCR.assertParameters("getAppTokenById", 0, "someAppTokenId");
+		userStorageViewSpy.MCR.assertReturn("getAppTokenById", 0, appToken);
+	}
+
+	@Test
+	public void testGetSystemSecretByIdAsync() throws Exception {
+		String secret = asyncView.getSystemSecretByIdAsync("someSecretId").get(5,
+				TimeUnit.SECONDS);
+
+		userStorageViewSpy.MCR.assertParameters("getSystemSecretById", 0, "someSecretId");
+		userStorageViewSpy.MCR.assertReturn("getSystemSecretById", 0, secret);
+	}
+
+	@Test
+	public void testLookupRunsOnVirtualThread() throws Exception {
+		List<Thread> lookupThreads = new ArrayList<>();
+		asyncView = AsyncUserStorageViewImp.usingUserStorageViewAndMaxConcurrentLookups(
+				createUserStorageViewAnswering(() -> {
+					lookupThreads.add(Thread.currentThread());
+					return new User("someUserId");
+				}), 4);
+
+		asyncView.getUserByIdAsync("someUserId").get(5, TimeUnit.SECONDS);
+
+		assertTrue(lookupThreads.get(0).isVirtual());
+		assertTrue(lookupThreads.get(0).getName().startsWith("userstorage-async-"));
+	}
+
+	private UserStorageView createUserStorageViewAnswering(Answer answer) {
+		return (UserStorageView) Proxy.newProxyInstance(UserStorageView.class.getClassLoader(),
+				new Class<?>[] { UserStorageView.class },
+				(proxy, method, args) -> answer.answer());
+	}
+
+	private interface Answer {
+		Object answer() throws Exception;
+	}
+
+	@Test
+	public void testUserStorageViewExceptionIsReportedAsIs() throws Exception {
+		UserStorageViewException error = UserStorageViewException.usingMessage("error from spy");
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserById", error);
+
+		CompletableFuture<User> future = asyncView.getUserByIdAsync("someUserId");
+
+		assertSame(getFailure(future), error);
+	}
+
+	private Throwable getFailure(CompletableFuture<?> future) throws Exception {
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+			return null;
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+	}
+
+	@Test
+	public void testOtherExceptionsAreWrapped() throws Exception {
+		RuntimeException error = new IllegalStateException("error from spy");
+		userStorageViewSpy.MRV.setAlwaysThrowException("getAppTokenById", error);
+
+		CompletableFuture<AppToken> future = asyncView.getAppTokenByIdAsync("someAppTokenId");
+
+		Throwable failure = getFailure(future);
+		assertTrue(failure instanceof UserStorageViewException);
+		assertEquals(failure.getMessage(), "Lookup failed.");
+		assertSame(failure.getCause(), error);
+	}
+
+	@Test
+	public void testCancelledLookupIsNotInterruptedAndGivesBackItsPlace() throws Exception {
+		CountDownLatch lookupStarted = new CountDownLatch(1);
+		CountDownLatch releaseLookup = new CountDownLatch(1);
+		AtomicBoolean lookupInterrupted = new AtomicBoolean();
+		asyncView = AsyncUserStorageViewImp.usingUserStorageViewAndMaxConcurrentLookups(
+				createUserStorageViewAnswering(() -> {
+					if (lookupStarted.getCount() > 0) {
+						lookupStarted.countDown();
+						awaitRelease(releaseLookup, lookupInterrupted);
+					}
+					return new User("someUserId");
+				}), 1);
+		CompletableFuture<User> cancelled = asyncView.getUserByIdAsync("someUserId");
+		assertTrue(lookupStarted.await(5, TimeUnit.SECONDS));
+
+		cancelled.cancel(true);
+		releaseLookup.countDown();
+
+		assertEquals(asyncView.getUserByIdAsync("someUserId").get(5, TimeUnit.SECONDS).id,
+				"someUserId");
+		assertFalse(lookupInterrupted.get());
+	}
+
+	private void awaitRelease(CountDownLatch releaseLookup, AtomicBoolean lookupInterrupted) {
+		try {
+			releaseLookup.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			lookupInterrupted.set(true);
+		}
+	}
+
+	@Test
+	public void testCancelledLookupWaitingInLineIsSkipped() throws Exception {
+		CountDownLatch lookupStarted = new CountDownLatch(1);
+		CountDownLatch releaseLookup = new CountDownLatch(1);
+		UserStorageViewSpy userStorageView = new UserStorageViewSpy();
+		userStorageView.MRV.setSpecificReturnValuesSupplier("getUserById", () -> {
+			lookupStarted.countDown();
+			awaitRelease(releaseLookup, new AtomicBoolean());
+			return new User("blockingUserId");
+		}, "blockingUserId");
+		asyncView = AsyncUserStorageViewImp
+				.usingUserStorageViewAndMaxConcurrentLookups(userStorageView, 1);
+		CompletableFuture<User> blocking = asyncView.getUserByIdAsync("blockingUserId");
+		assertTrue(lookupStarted.await(5, TimeUnit.SECONDS));
+		CompletableFuture<User> cancelled = asyncView.getUserByIdAsync("cancelledUserId");
+
+		cancelled.cancel(false);
+		releaseLookup.countDown();
+
+		blocking.get(5, TimeUnit.SECONDS);
+		asyncView.getUserByIdAsync("someUserId").get(5, TimeUnit.SECONDS);
+		userStorageView.MCR.assertNumberOfCallsToMethod("getUserById", 2);
+		userStorageView.MCR.assertParameters("getUserById", 1, "someUserId");
+	}
+
+	private void waitUntilInterrupted(CountDownLatch lookupInterrupted) {
+		try {
+			new CountDownLatch(1).await();
+		} catch (InterruptedException e) {
+			lookupInterrupted.countDown();
+		}
+	}
+
+	@Test
+	public void testCloseInterruptsRunningLookup() throws Exception {
+		CountDownLatch lookupStarted = new CountDownLatch(1);
+		CountDownLatch lookupInterrupted = new CountDownLatch(1);
+		asyncView = AsyncUserStorageViewImp.usingUserStorageViewAndMaxConcurrentLookups(
+				createUserStorageViewAnswering(() -> {
+					lookupStarted.countDown();
+					waitUntilInterrupted(lookupInterrupted);
+					return new User("someUserId");
+				}), 1);
+		asyncView.getUserByIdAsync("someUserId");
+		assertTrue(lookupStarted.await(5, TimeUnit.SECONDS));
+
+		asyncView.close();
+
+		assertTrue(lookupInterrupted.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testLookupAfterCloseFails() throws Exception {
+		asyncView.close();
+
+		Throwable failure = getFailure(asyncView.getUserByIdAsync("someUserId"));
+
+		assertTrue(failure instanceof UserStorageViewException);
+		assertEquals(failure.getMessage(), "Lookup rejected, the view is closed.");
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserById");
+	}
+
+	@Test
+	public void testNoMoreThanMaxConcurrentLookupsRunAtOnce() throws Exception {
+		CountDownLatch maxLookupsStarted = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		asyncView = AsyncUserStorageViewImp.usingUserStorageViewAndMaxConcurrentLookups(
+				createUserStorageViewAnswering(() -> {
+					maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+					maxLookupsStarted.countDown();
+					release.await(5, TimeUnit.SECONDS);
+					running.decrementAndGet();
+					return new User("someUserId");
+				}), 2);
+
+		List<CompletableFuture<User>> futures = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			futures.add(asyncView.getUserByIdAsync("someUserId" + i));
+		}
+		assertTrue(maxLookupsStarted.await(5, TimeUnit.SECONDS));
+		release.countDown();
+
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5,
+				TimeUnit.SECONDS);
+		assertEquals(maxRunning.get(), 2);
+	}
+}
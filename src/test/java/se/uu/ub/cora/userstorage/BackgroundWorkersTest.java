@@ -0,0 +1,182 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.userstorage.spies.BackgroundWorkerSpy;
+
+public class BackgroundWorkersTest {
+	private BackgroundWorkers backgroundWorkers;
+	private BackgroundWorkerSpy worker;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		backgroundWorkers = new BackgroundWorkers();
+		worker = new BackgroundWorkerSpy();
+	}
+
+	@Test
+	public void testNotRunningBeforeStart() throws Exception {
+		backgroundWorkers.add(worker);
+
+		assertFalse(backgroundWorkers.isRunning());
+		worker.MCR.assertMethodNotCalled("start");
+	}
+
+	@Test
+	public void testStartStartsWorkers() throws Exception {
+		backgroundWorkers.add(worker);
+
+		backgroundWorkers.start();
+
+		assertTrue(backgroundWorkers.isRunning());
+		worker.MCR.assertNumberOfCallsToMethod("start", 1);
+	}
+
+	@Test
+	public void testStartTwiceStartsWorkersOnce() throws Exception {
+		backgroundWorkers.add(worker);
+
+		backgroundWorkers.start();
+		backgroundWorkers.start();
+
+		worker.MCR.assertNumberOfCallsToMethod("start", 1);
+	}
+
+	@Test
+	public void testWorkerAddedWhenRunningIsStarted() throws Exception {
+		backgroundWorkers.start();
+
+		backgroundWorkers.add(worker);
+
+		worker.MCR.assertNumberOfCallsToMethod("start", 1);
+		assertEquals(backgroundWorkers.onlyForTestGetWorkers().size(), 1);
+	}
+
+	@Test
+	public void testStopStopsStartedWorkers() throws Exception {
+		backgroundWorkers.add(worker);
+		backgroundWorkers.start();
+
+		backgroundWorkers.stop();
+
+		assertFalse(backgroundWorkers.isRunning());
+		worker.MCR.assertNumberOfCallsToMethod("stop", 1);
+	}
+
+	@Test
+	public void testStopTwiceStopsWorkersOnce() throws Exception {
+		backgroundWorkers.add(worker);
+		backgroundWorkers.start();
+
+		backgroundWorkers.stop();
+		backgroundWorkers.stop();
+
+		worker.MCR.assertNumberOfCallsToMethod("stop", 1);
+	}
+
+	@Test
+	public void testStopBeforeStartDoesNotStopWorkers() throws Exception {
+		backgroundWorkers.add(worker);
+
+		backgroundWorkers.stop();
+
+		worker.MCR.assertMethodNotCalled("stop");
+	}
+
+	@Test
+	public void testStartAfterStopDoesNothing() throws Exception {
+		backgroundWorkers.add(worker);
+		backgroundWorkers.stop();
+
+		backgroundWorkers.start();
+
+		assertFalse(backgroundWorkers.isRunning());
+		worker.MCR.assertMethodNotCalled("start");
+	}
+
+	@Test
+	public void testWorkerAddedAfterStopIsIgnored() throws Exception {
+		backgroundWorkers.stop();
+
+		backgroundWorkers.add(worker);
+
+		assertEquals(backgroundWorkers.onlyForTestGetWorkers().size(), 0);
+		worker.MCR.assertMethodNotCalled("start");
+	}
+
+	@Test
+	public void testNotReadyBeforeStart() throws Exception {
+		backgroundWorkers.add(worker);
+
+		assertFalse(backgroundWorkers.isReady());
+	}
+
+	@Test
+	public void testReadyWhenStartedAndAllWorkersAreReady() throws Exception {
+		backgroundWorkers.add(worker);
+		backgroundWorkers.start();
+
+		assertTrue(backgroundWorkers.isReady());
+		worker.MCR.assertMethodWasCalled("isReady");
+	}
+
+	@Test
+	public void testNotReadyWhileAWorkerIsNotReady() throws Exception {
+		worker.MRV.setDefaultReturnValuesSupplier("isReady", () -> false);
+		backgroundWorkers.add(new BackgroundWorkerSpy());
+		backgroundWorkers.add(worker);
+		backgroundWorkers.start();
+
+		assertFalse(backgroundWorkers.isReady());
+	}
+
+	@Test
+	public void testNotReadyAfterStop() throws Exception {
+		backgroundWorkers.add(worker);
+		backgroundWorkers.start();
+
+		backgroundWorkers.stop();
+
+		assertFalse(backgroundWorkers.isReady());
+	}
+
+	@Test
+	public void testWorkersAreReadyByDefault() throws Exception {
+		BackgroundWorker workerWithoutReadiness = new BackgroundWorker() {
+			@Override
+			public void start() {
+				// nothing to start
+			}
+
+			@Override
+			public void stop() {
+				// nothing to stop
+			}
+		};
+
+		assertTrue(workerWithoutReadiness.isReady());
+	}
+}
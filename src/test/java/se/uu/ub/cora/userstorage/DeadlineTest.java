@@ -0,0 +1,60 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.testng.annotations.Test;
+
+public class DeadlineTest {
+	private long now = 1000;
+
+	@Test
+	public void testRemainingTime() throws Exception {
+		Deadline deadline = Deadline.withTimeoutUsingNanoTimeSource(Duration.ofNanos(100),
+				() -> now);
+
+		assertEquals(deadline.remainingNanos(), 100);
+		assertFalse(deadline.hasExpired());
+
+		now += 99;
+		assertEquals(deadline.remainingNanos(), 1);
+		assertFalse(deadline.hasExpired());
+
+		now += 2;
+		assertEquals(deadline.remainingNanos(), -1);
+		assertTrue(deadline.hasExpired());
+	}
+
+	@Test
+	public void testWithTimeoutUsesSystemNanoTime() throws Exception {
+		long before = System.nanoTime();
+
+		Deadline deadline = Deadline.withTimeout(Duration.ofMinutes(1));
+
+		long remainingNanos = deadline.remainingNanos();
+		assertTrue(remainingNanos <= Duration.ofMinutes(1).toNanos());
+		assertTrue(remainingNanos > Duration.ofMinutes(1).toNanos() - (System.nanoTime() - before)
+				- Duration.ofSeconds(1).toNanos());
+	}
+}
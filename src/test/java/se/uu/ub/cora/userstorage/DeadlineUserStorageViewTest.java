@@ -0,0 +1,230 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.userstorage.spies.AsyncUserStorageViewSpy;
+import se.uu.ub.cora.userstorage.spies.UserStorageViewSpy;
+
+public class DeadlineUserStorageViewTest {
+	private static final Duration MIN_REMAINING_TIME = Duration.ofMillis(1);
+	private AsyncUserStorageViewSpy asyncView;
+	private DeadlineUserStorageViewImp deadlineView;
+	private Deadline deadline;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		asyncView = new AsyncUserStorageViewSpy();
+		deadlineView = DeadlineUserStorageViewImp.usingAsyncViewAndMinRemainingTime(asyncView,
+				MIN_REMAINING_TIME);
+		deadline = Deadline.withTimeout(Duration.ofSeconds(10));
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(deadlineView instanceof DeadlineUserStorageView);
+		assertSame(deadlineView.onlyForTestGetAsyncView(), asyncView);
+		assertEquals(deadlineView.onlyForTestGetMinRemainingTime(), MIN_REMAINING_TIME);
+	}
+
+	@Test
+	public void testGetUserById() throws Exception {
+		User user = deadlineView.getUserById("someUserId", deadline);
+
+		asyncView.MCR.assertParameters("getUserByIdAsync", 0, "someUserId");
+		assertSame(user, getResultFromFuture("getUserByIdAsync"));
+	}
+
+	private Object getResultFromFuture(String methodName) {
+		CompletableFuture<?> future = (CompletableFuture<?>) asyncView.MCR
+				.getReturnValue(methodName, 0);
+		return future.join();
+	}
+
+	@Test
+	public void testGetUserByLoginId() throws Exception {
+		User user = deadlineView.getUserByLoginId("someLoginId", deadline);
+
+		asyncView.MCR.assertParameters("getUserByLoginIdAsync", 0, "someLoginId");
+		assertSame(user, getResultFromFuture("getUserByLoginIdAsync"));
+	}
+
+	@Test
+	public void testGetAppTokenById() throws Exception {
+		AppToken appToken = deadlineView.getAppTokenById("someAppTokenId", deadline);
+
+		asyncView.MCR.assertParameters("getAppTokenByIdAsync", 0, "someAppTokenId");
+		assertSame(appToken, getResultFromFuture("getAppTokenByIdAsync"));
+	}
+
+	@Test
+	public void testGetSystemSecretById() throws Exception {
+		String secret = deadlineView.getSystemSecretById("someSecretId", deadline);
+
+		asyncView.MCR.assertParameters("getSystemSecretByIdAsync", 0, "someSecretId");
+		assertSame(secret, getResultFromFuture("getSystemSecretByIdAsync"));
+	}
+
+	@Test
+	public void testLookupIsNotStartedWhenTooLittleTimeIsLeft() throws Exception {
+		long[] now = { 0 };
+		Deadline nearDeadline = Deadline.withTimeoutUsingNanoTimeSource(
+				MIN_REMAINING_TIME.minusNanos(1), () -> now[0]);
+
+		try {
+			deadlineView.getUserById("someUserId", nearDeadline);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertEquals(e.getMessage(), "Error reading user with id: someUserId from storage.");
+			assertDeadlineExceeded(e,
+					"Too little time left before the deadline to start the lookup.");
+		}
+		asyncView.MCR.assertMethodNotCalled("getUserByIdAsync");
+	}
+
+	private void assertDeadlineExceeded(UserStorageViewException e, String message) {
+		assertTrue(e.getCause() instanceof DeadlineExceededException);
+		assertEquals(e.getCause().getMessage(), message);
+	}
+
+	@Test
+	public void testCallerStopsWaitingAtDeadline() throws Exception {
+		CompletableFuture<User> neverCompleted = new CompletableFuture<>();
+		asyncView.MRV.setDefaultReturnValuesSupplier("getUserByLoginIdAsync",
+				(Supplier<CompletableFuture<User>>) () -> neverCompleted);
+		Deadline shortDeadline = Deadline.withTimeout(Duration.ofMillis(20));
+
+		try {
+			deadlineView.getUserByLoginId("someLoginId", shortDeadline);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertEquals(e.getMessage(),
+					"Error reading user with login id: someLoginId from storage.");
+			assertDeadlineExceeded(e, "The lookup did not finish before the deadline.");
+		}
+		assertTrue(shortDeadline.hasExpired());
+		assertTrue(neverCompleted.isCancelled());
+	}
+
+	@Test
+	public void testTimedOutLookupIsNotInterruptedAndLookupsAfterItGetToRun() throws Exception {
+		CountDownLatch releaseLookup = new CountDownLatch(1);
+		AtomicBoolean lookupInterrupted = new AtomicBoolean();
+		UserStorageViewSpy userStorageView = new UserStorageViewSpy();
+		userStorageView.MRV.setSpecificReturnValuesSupplier("getUserById",
+				() -> awaitRelease(releaseLookup, lookupInterrupted), "blockedUserId");
+		AsyncUserStorageViewImp oneLookupAtOnce = AsyncUserStorageViewImp
+				.usingUserStorageViewAndMaxConcurrentLookups(userStorageView, 1);
+		deadlineView = DeadlineUserStorageViewImp
+				.usingAsyncViewAndMinRemainingTime(oneLookupAtOnce, MIN_REMAINING_TIME);
+		callAndIgnoreException(() -> deadlineView.getUserById("blockedUserId",
+				Deadline.withTimeout(Duration.ofMillis(20))));
+		releaseLookup.countDown();
+
+		User user = deadlineView.getUserById("someUserId", deadline);
+
+		userStorageView.MCR.assertReturn("getUserById", 1, user);
+		assertFalse(lookupInterrupted.get());
+	}
+
+	private User awaitRelease(CountDownLatch releaseLookup, AtomicBoolean lookupInterrupted) {
+		try {
+			releaseLookup.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			lookupInterrupted.set(true);
+		}
+		return new User("blockedUserId");
+	}
+
+	private void callAndIgnoreException(Runnable call) {
+		try {
+			call.run();
+			fail();
+		} catch (UserStorageViewException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testFailedLookupThrowsErrorFromLookup() throws Exception {
+		UserStorageViewException error = UserStorageViewException.usingMessage("error from spy");
+		asyncView.MRV.setDefaultReturnValuesSupplier("getAppTokenByIdAsync",
+				(Supplier<CompletableFuture<AppToken>>) () -> CompletableFuture
+						.failedFuture(error));
+
+		try {
+			deadlineView.getAppTokenById("someAppTokenId", deadline);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertSame(e, error);
+		}
+	}
+
+	@Test
+	public void testOtherErrorsAreWrapped() throws Exception {
+		RuntimeException error = new RuntimeException("error from spy");
+		asyncView.MRV.setDefaultReturnValuesSupplier("getSystemSecretByIdAsync",
+				(Supplier<CompletableFuture<String>>) () -> CompletableFuture.failedFuture(error));
+
+		try {
+			deadlineView.getSystemSecretById("someSecretId", deadline);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertEquals(e.getMessage(),
+					"Error reading systemSecret with id: someSecretId from storage.");
+			assertSame(e.getCause(), error);
+		}
+	}
+
+	@Test
+	public void testInterruptedCallerStopsWaiting() throws Exception {
+		asyncView.MRV.setDefaultReturnValuesSupplier("getUserByIdAsync",
+				(Supplier<CompletableFuture<User>>) CompletableFuture::new);
+		Thread.currentThread().interrupt();
+
+		try {
+			deadlineView.getUserById("someUserId", deadline);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertTrue(e.getCause() instanceof InterruptedException);
+			assertTrue(Thread.interrupted());
+		}
+		CompletableFuture<?> future = (CompletableFuture<?>) asyncView.MCR
+				.getReturnValue("getUserByIdAsync", 0);
+		assertTrue(future.isCancelled());
+	}
+}
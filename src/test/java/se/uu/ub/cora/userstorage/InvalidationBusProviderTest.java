@@ -0,0 +1,54 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+
+import org.testng.annotations.Test;
+
+public class InvalidationBusProviderTest {
+
+	@Test
+	public void testPrivateConstructor() throws Exception {
+		Constructor<InvalidationBusProvider> constructor = InvalidationBusProvider.class
+				.getDeclaredConstructor();
+		assertSame(Modifier.isPrivate(constructor.getModifiers()), true);
+	}
+
+	@Test(expectedExceptions = InvocationTargetException.class)
+	public void testPrivateConstructorInvoke() throws Exception {
+		Constructor<InvalidationBusProvider> constructor = InvalidationBusProvider.class
+				.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		constructor.newInstance();
+	}
+
+	@Test
+	public void testSameBusIsReturnedForAllCalls() throws Exception {
+		InvalidationBus bus = InvalidationBusProvider.getInvalidationBus();
+
+		assertNotNull(bus);
+		assertSame(InvalidationBusProvider.getInvalidationBus(), bus);
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.logger.spies.LoggerFactorySpy;
+import se.uu.ub.cora.logger.spies.LoggerSpy;
+import se.uu.ub.cora.userstorage.spies.UserStorageViewSpy;
+
+public class InvalidationBusTest {
+	private LoggerFactorySpy loggerFactorySpy;
+	private InvalidationBus bus;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		bus = new InvalidationBus();
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		loggerFactorySpy.MCR.assertMethodNotCalled("factorForClass");
+		assertTrue(bus.onlyForTestGetListeners().isEmpty());
+	}
+
+	@Test
+	public void testSubscribe() throws Exception {
+		UserStorageViewSpy listener = new UserStorageViewSpy();
+
+		bus.subscribe(listener);
+
+		assertEquals(bus.onlyForTestGetListeners(), List.of(listener));
+	}
+
+	@Test
+	public void testUnsubscribe() throws Exception {
+		UserStorageViewSpy listener = new UserStorageViewSpy();
+		bus.subscribe(listener);
+
+		bus.unsubscribe(listener);
+
+		assertTrue(bus.onlyForTestGetListeners().isEmpty());
+	}
+
+	@Test
+	public void testInvalidateRecordIsPassedOnToAllListeners() throws Exception {
+		UserStorageViewSpy listener = new UserStorageViewSpy();
+		UserStorageViewSpy listener2 = new UserStorageViewSpy();
+		bus.subscribe(listener);
+		bus.subscribe(listener2);
+
+		bus.invalidateRecord(RecordTypes.USER, "someUserId");
+
+		listener.MCR.assertParameters("invalidateRecord", 0, RecordTypes.USER,
+				"someUserId");
+		listener2.MCR.assertParameters("invalidateRecord", 0, RecordTypes.USER,
+				"someUserId");
+	}
+
+	@Test
+	public void testInvalidateRecordIsNotPassedOnToUnsubscribedListener() throws Exception {
+		UserStorageViewSpy listener = new UserStorageViewSpy();
+		bus.subscribe(listener);
+		bus.unsubscribe(listener);
+
+		bus.invalidateRecord(RecordTypes.APP_TOKEN, "someAppTokenId");
+
+		listener.MCR.assertMethodNotCalled("invalidateRecord");
+	}
+
+	@Test
+	public void testFailingListenerIsLoggedAndOthersAreStillCalled() throws Exception {
+		RuntimeException error = new RuntimeException("someError");
+		bus.subscribe((recordType, recordId) -> {
+			throw error;
+		});
+		UserStorageViewSpy listener = new UserStorageViewSpy();
+		bus.subscribe(listener);
+
+		bus.invalidateRecord(RecordTypes.SYSTEM_SECRET, "someSecretId");
+
+		loggerFactorySpy.MCR.assertParameters("factorForClass", 0, InvalidationBus.class);
+		LoggerSpy loggerSpy = (LoggerSpy) loggerFactorySpy.MCR.getReturnValue("factorForClass",
+				0);
+		loggerSpy.MCR.assertParameters("logErrorUsingMessageAndException", 0,
+				"Invalidating systemSecret with id: someSecretId failed.", error);
+		listener.MCR.assertParameters("invalidateRecord", 0,
+				RecordTypes.SYSTEM_SECRET, "someSecretId");
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.logger.spies.LoggerFactorySpy;
+import se.uu.ub.cora.logger.spies.LoggerSpy;
+
+public class PeriodicWorkerTest {
+	private LoggerFactorySpy loggerFactorySpy;
+	private PeriodicWorker worker;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		if (worker != null) {
+			worker.stop();
+		}
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		Runnable task = () -> {
+		};
+		worker = PeriodicWorker.usingNameIntervalAndTask("someName", Duration.ofSeconds(5),
+				task);
+
+		loggerFactorySpy.MCR.assertParameters("factorForClass", 0, PeriodicWorker.class);
+		assertEquals(worker.onlyForTestGetName(), "someName");
+		assertEquals(worker.onlyForTestGetInitialDelay(), Duration.ofSeconds(5));
+		assertEquals(worker.onlyForTestGetInterval(), Duration.ofSeconds(5));
+		assertSame(worker.onlyForTestGetTask(), task);
+		assertFalse(worker.onlyForTestIsScheduled());
+	}
+
+	@Test
+	public void testTaskIsRunAfterInitialDelay() throws Exception {
+		CountDownLatch firstRun = new CountDownLatch(1);
+		worker = PeriodicWorker.usingNameInitialDelayIntervalAndTask("someName", Duration.ZERO,
+				Duration.ofHours(1), firstRun::countDown);
+
+		worker.start();
+
+		assertEquals(worker.onlyForTestGetInitialDelay(), Duration.ZERO);
+		assertEquals(worker.onlyForTestGetInterval(), Duration.ofHours(1));
+		assertTrue(firstRun.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testTaskIsRunPeriodicallyUntilStopped() throws Exception {
+		CountDownLatch twoRuns = new CountDownLatch(2);
+		worker = PeriodicWorker.usingNameIntervalAndTask("someName", Duration.ofMillis(5),
+				twoRuns::countDown);
+
+		worker.start();
+
+		assertTrue(worker.onlyForTestIsScheduled());
+		assertTrue(twoRuns.await(5, TimeUnit.SECONDS));
+		worker.stop();
+		assertFalse(worker.onlyForTestIsScheduled());
+	}
+
+	@Test
+	public void testFailingTaskIsLogged() throws Exception {
+		RuntimeException error = new RuntimeException("error from task");
+		worker = PeriodicWorker.usingNameIntervalAndTask("someName", Duration.ofSeconds(5),
+				() -> {
+					throw error;
+				});
+
+		worker.runTask();
+
+		LoggerSpy loggerSpy = (LoggerSpy) loggerFactorySpy.MCR.getReturnValue("factorForClass",
+				0);
+		loggerSpy.MCR.assertParameters("logErrorUsingMessageAndException", 0,
+				"Periodic task someName failed.", error);
+	}
+}
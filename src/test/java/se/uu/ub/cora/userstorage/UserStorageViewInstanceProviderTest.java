@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 Uppsala University Library
+ * Copyright 2022, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -19,23 +19,57 @@
 package se.uu.ub.cora.userstorage;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
-import se.uu.ub.cora.gatekeeper.storage.UserStorageViewInstanceProvider;
+import se.uu.ub.cora.gatekeeper.storage.UserStorageView;
+import se.uu.ub.cora.gatekeeper.user.User;
 import se.uu.ub.cora.logger.LoggerProvider;
 import se.uu.ub.cora.logger.spies.LoggerFactorySpy;
 import se.uu.ub.cora.storage.RecordStorageProvider;
 import se.uu.ub.cora.storage.spies.RecordStorageInstanceProviderSpy;
+import se.uu.ub.cora.userstorage.cache.BoundedTtlCache;
+import se.uu.ub.cora.userstorage.cache.CachingUserStorageView;
+import se.uu.ub.cora.userstorage.cache.KnownLoginIds;
+import se.uu.ub.cora.userstorage.cache.KnownLoginIdsRebuilder;
+import se.uu.ub.cora.userstorage.cache.LoginIdIndex;
+import se.uu.ub.cora.userstorage.cache.NotFound;
+import se.uu.ub.cora.userstorage.cache.NotFoundKey;
+import se.uu.ub.cora.userstorage.cache.OffHeapUserCache;
+import se.uu.ub.cora.userstorage.cache.RefreshAhead;
+import se.uu.ub.cora.userstorage.cache.SecretCache;
+import se.uu.ub.cora.userstorage.cache.TtlCache;
+import se.uu.ub.cora.userstorage.cache.UserAuthorizations;
+import se.uu.ub.cora.userstorage.cache.UserCachePreloader;
+import se.uu.ub.cora.userstorage.cache.UserReplica;
+import se.uu.ub.cora.userstorage.cache.UserReplicaSynchronizer;
+import se.uu.ub.cora.userstorage.cache.UserSnapshotFile;
+import se.uu.ub.cora.userstorage.cache.UserStorageCaches;
+import se.uu.ub.cora.userstorage.circuit.CircuitBreaker;
+import se.uu.ub.cora.userstorage.circuit.LastKnownGoodUsers;
 import se.uu.ub.cora.userstorage.convert.DataGroupToUser;
-import se.uu.ub.cora.userstorage.convert.DataGroupToUserImp;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUserSinglePass;
+import se.uu.ub.cora.userstorage.convert.DictionaryDataGroupToUser;
+import se.uu.ub.cora.userstorage.metrics.MetricsLogger;
 
 public class UserStorageViewInstanceProviderTest {
 	LoggerFactorySpy loggerFactorySpy = new LoggerFactorySpy();
 	RecordStorageInstanceProviderSpy recordStorageInstanceProvider;
-	private UserStorageViewInstanceProvider instanceProvider;
+	private UserStorageViewInstanceProviderImp instanceProvider;
 
 	@BeforeMethod
 	public void beforeMethod() {
@@ -46,22 +80,636 @@ public class UserStorageViewInstanceProviderTest {
 		instanceProvider = new UserStorageViewInstanceProviderImp();
 	}
 
+	@AfterMethod
+	public void afterMethod() {
+		instanceProvider.closeStorageView();
+	}
+
 	@Test
 	public void testGetStorageView() throws Exception {
-		UserStorageViewImp appTokenStorageView = (UserStorageViewImp) instanceProvider
-				.getStorageView();
+		UserStorageViewImp appTokenStorageView = getUserStorageViewImpFromInstanceProvider();
 
 		assertTrue(appTokenStorageView instanceof UserStorageViewImp);
 		recordStorageInstanceProvider.MCR.assertReturn("getRecordStorage", 0,
 				appTokenStorageView.onlyForTestGetRecordStorage());
 	}
 
+	private UserStorageViewImp getUserStorageViewImpFromInstanceProvider() {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+		return (UserStorageViewImp) cachingView.onlyForTestGetUserStorageView();
+	}
+
 	@Test
 	public void testCreatedDataGroupToUser() throws Exception {
-		UserStorageViewImp appTokenStorageView = (UserStorageViewImp) instanceProvider
-				.getStorageView();
+		UserStorageViewImp appTokenStorageView = getUserStorageViewImpFromInstanceProvider();
 		DataGroupToUser dataGroupToUser = appTokenStorageView.onlyForTestGetDataGroupToUser();
-		assertTrue(dataGroupToUser instanceof DataGroupToUserImp);
+		DataGroupToUser wrappedDataGroupToUser = ((DictionaryDataGroupToUser) dataGroupToUser)
+				.onlyForTestGetDataGroupToUser();
+		assertTrue(wrappedDataGroupToUser instanceof DataGroupToUserSinglePass);
+	}
+
+	@Test
+	public void testUserAuthorizationsUseDictionaryOfConverter() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+		UserStorageViewImp userStorageViewImp = getUserStorageViewImpFromInstanceProvider();
+
+		DictionaryDataGroupToUser dataGroupToUser = (DictionaryDataGroupToUser) userStorageViewImp
+				.onlyForTestGetDataGroupToUser();
+		UserAuthorizations userAuthorizations = cachingView.onlyForTestGetCaches()
+				.userAuthorizations();
+		assertSame(userAuthorizations.getDictionary(), dataGroupToUser.getDictionary());
+		assertEquals(userAuthorizations.onlyForTestGetCache().getMaxSize(),
+				UserStorageViewInstanceProviderImp.USER_CACHE_MAX_SIZE);
+		assertEquals(userAuthorizations.onlyForTestGetCache().getTimeToLive(),
+				UserStorageViewInstanceProviderImp.USER_CACHE_TIME_TO_LIVE
+						.plus(UserStorageViewInstanceProviderImp.USER_CACHE_STALE_WINDOW));
+	}
+
+	@Test
+	public void testStorageViewUsesUserCache() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		TtlCache<String, User> userCache = cachingView.onlyForTestGetCaches().userCache();
+		assertTrue(userCache instanceof BoundedTtlCache);
+		assertEquals(userCache.getMaxSize(),
+				UserStorageViewInstanceProviderImp.USER_CACHE_MAX_SIZE);
+		assertEquals(userCache.getTimeToLive(),
+				UserStorageViewInstanceProviderImp.USER_CACHE_TIME_TO_LIVE);
+		assertEquals(userCache.getStaleWindow(),
+				UserStorageViewInstanceProviderImp.USER_CACHE_STALE_WINDOW);
+	}
+
+	@Test
+	public void testStorageViewUsesOffHeapUserCacheWhenEnabled() throws Exception {
+		System.setProperty(UserStorageViewInstanceProviderImp.OFF_HEAP_USER_CACHE_PROPERTY,
+				"true");
+		try {
+			CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+					.getStorageView();
+
+			OffHeapUserCache userCache = (OffHeapUserCache) cachingView.onlyForTestGetCaches()
+					.userCache();
+			assertEquals(userCache.getMaxSize(),
+					UserStorageViewInstanceProviderImp.USER_CACHE_MAX_SIZE);
+			assertEquals(userCache.getTimeToLive(),
+					UserStorageViewInstanceProviderImp.USER_CACHE_TIME_TO_LIVE);
+			assertEquals(userCache.getStaleWindow(),
+					UserStorageViewInstanceProviderImp.USER_CACHE_STALE_WINDOW);
+			assertSame(userCache.onlyForTestGetCodec().getDictionary(),
+					cachingView.onlyForTestGetCaches().userAuthorizations().getDictionary());
+			PeriodicWorker userExpiry = getPeriodicWorkerByName(cachingView,
+					"userstorage-user-expiry");
+			assertEquals(userExpiry.onlyForTestGetInterval(),
+					UserStorageViewInstanceProviderImp.USER_CACHE_TIME_TO_LIVE);
+		} finally {
+			System.clearProperty(UserStorageViewInstanceProviderImp.OFF_HEAP_USER_CACHE_PROPERTY);
+		}
+	}
+
+	private PeriodicWorker getPeriodicWorkerByName(CachingUserStorageView cachingView,
+			String name) {
+		return (PeriodicWorker) cachingView.onlyForTestGetBackgroundWorkers()
+				.onlyForTestGetWorkers().stream()
+				.filter(worker -> worker instanceof PeriodicWorker periodicWorker
+						&& name.equals(periodicWorker.onlyForTestGetName()))
+				.findFirst().get();
+	}
+
+	@Test
+	public void testNoUserExpiryForOnHeapUserCache() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		assertTrue(cachingView.onlyForTestGetBackgroundWorkers().onlyForTestGetWorkers().stream()
+				.noneMatch(worker -> worker instanceof PeriodicWorker periodicWorker
+						&& "userstorage-user-expiry".equals(periodicWorker.onlyForTestGetName())));
+	}
+
+	@Test
+	public void testNoUserSnapshotByDefault() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		assertFalse(cachingView.onlyForTestGetCaches().userSnapshot().isOpen());
+		assertTrue(cachingView.onlyForTestGetBackgroundWorkers().onlyForTestGetWorkers().stream()
+				.noneMatch(worker -> worker instanceof PeriodicWorker periodicWorker
+						&& "userstorage-user-snapshot"
+								.equals(periodicWorker.onlyForTestGetName())));
+	}
+
+	@Test
+	public void testUserSnapshotIsOpenedAndWrittenWhenEnabled() throws Exception {
+		Path directory = Files.createTempDirectory("userSnapshot");
+		Path path = directory.resolve("users.snapshot");
+		writeSnapshotWithOneUser(path);
+		System.setProperty(UserStorageViewInstanceProviderImp.USER_SNAPSHOT_FILE_PROPERTY,
+				path.toString());
+		try {
+			CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+					.getStorageView();
+
+			UserCachePreloader preloader = getPreloader(cachingView);
+			assertTrue(preloader.awaitReady(10, TimeUnit.SECONDS));
+			assertFalse(cachingView.onlyForTestGetCaches().userSnapshot().isOpen());
+			assertEquals(cachingView.onlyForTestGetCaches().userSnapshot().getNumberOfUsers(), 0);
+			PeriodicWorker snapshotWriter = getPeriodicWorkerByName(cachingView,
+					"userstorage-user-snapshot");
+			assertEquals(snapshotWriter.onlyForTestGetInterval(),
+					UserStorageViewInstanceProviderImp.USER_CACHE_TIME_TO_LIVE);
+			Files.delete(path);
+			snapshotWriter.onlyForTestGetTask().run();
+			assertTrue(Files.exists(path));
+		} finally {
+			System.clearProperty(UserStorageViewInstanceProviderImp.USER_SNAPSHOT_FILE_PROPERTY);
+			Files.deleteIfExists(path);
+			Files.delete(directory);
+		}
+	}
+
+	private void writeSnapshotWithOneUser(Path path) {
+		BoundedTtlCache<String, User> userCache = BoundedTtlCache.usingMaxSizeAndTimeToLive(1,
+				Duration.ofMinutes(1));
+		User user = new User("userId1");
+		user.loginId = "loginId1";
+		userCache.put(user.id, user);
+		UserSnapshotFile.usingPathAndMaxAge(path, Duration.ofMinutes(1)).write(userCache);
+	}
+
+	@Test
+	public void testStorageViewRefreshesUsersAhead() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		RefreshAhead<String> refreshAhead = cachingView.onlyForTestGetUserRefreshAhead();
+		assertEquals(refreshAhead.getRefreshAfter(),
+				UserStorageViewInstanceProviderImp.USER_REFRESH_AFTER);
+		assertEquals(refreshAhead.getMaxConcurrentRefreshes(),
+				UserStorageViewInstanceProviderImp.MAX_CONCURRENT_USER_REFRESHES);
+	}
+
+	@Test
+	public void testStorageViewUsesCircuitBreaker() throws Exception {
+		instanceProvider.getStorageView();
+		UserStorageViewImp userStorageViewImp = getUserStorageViewImpFromInstanceProvider();
+
+		CircuitBreaker circuitBreaker = userStorageViewImp.getCircuitBreaker();
+		assertEquals(circuitBreaker.getFailureThreshold(),
+				UserStorageViewInstanceProviderImp.CIRCUIT_FAILURE_THRESHOLD);
+		assertEquals(circuitBreaker.getSlowCallThreshold(),
+				UserStorageViewInstanceProviderImp.CIRCUIT_SLOW_CALL_THRESHOLD);
+		assertEquals(circuitBreaker.getOpenDuration(),
+				UserStorageViewInstanceProviderImp.CIRCUIT_OPEN_DURATION);
+	}
+
+	@Test
+	public void testLastKnownGoodUsersAreDisabledByDefault() throws Exception {
+		UserStorageViewImp userStorageViewImp = getUserStorageViewImpFromInstanceProvider();
+
+		assertFalse(userStorageViewImp.onlyForTestGetLastKnownGoodUsers().isEnabled());
+	}
+
+	@Test
+	public void testLastKnownGoodUsersKeptForUserCacheTimeToLiveWhenEnabled() throws Exception {
+		System.setProperty(UserStorageViewInstanceProviderImp.LAST_KNOWN_GOOD_USERS_PROPERTY,
+				"true");
+		try {
+			UserStorageViewImp userStorageViewImp = getUserStorageViewImpFromInstanceProvider();
+
+			LastKnownGoodUsers lastKnownGoodUsers = userStorageViewImp
+					.onlyForTestGetLastKnownGoodUsers();
+			assertTrue(lastKnownGoodUsers.isEnabled());
+			assertEquals(lastKnownGoodUsers.getMaxSize(),
+					UserStorageViewInstanceProviderImp.LAST_KNOWN_GOOD_MAX_SIZE);
+			assertEquals(lastKnownGoodUsers.getMaxAge(),
+					UserStorageViewInstanceProviderImp.USER_CACHE_TIME_TO_LIVE);
+		} finally {
+			System.clearProperty(
+					UserStorageViewInstanceProviderImp.LAST_KNOWN_GOOD_USERS_PROPERTY);
+		}
+	}
+
+	@Test
+	public void testLastKnownGoodMaxAgeIsReadFromSystemProperty() throws Exception {
+		System.setProperty(UserStorageViewInstanceProviderImp.LAST_KNOWN_GOOD_USERS_PROPERTY,
+				"true");
+		System.setProperty(UserStorageViewInstanceProviderImp.LAST_KNOWN_GOOD_MAX_AGE_PROPERTY,
+				"PT5M");
+		try {
+			UserStorageViewImp userStorageViewImp = getUserStorageViewImpFromInstanceProvider();
+
+			assertEquals(userStorageViewImp.onlyForTestGetLastKnownGoodUsers().getMaxAge(),
+					Duration.ofMinutes(5));
+		} finally {
+			System.clearProperty(
+					UserStorageViewInstanceProviderImp.LAST_KNOWN_GOOD_USERS_PROPERTY);
+			System.clearProperty(
+					UserStorageViewInstanceProviderImp.LAST_KNOWN_GOOD_MAX_AGE_PROPERTY);
+		}
+	}
+
+	@Test
+	public void testTimesToLiveAndThresholdsAreReadFromSystemProperties() throws Exception {
+		System.setProperty(UserStorageViewInstanceProviderImp.USER_CACHE_TIME_TO_LIVE_PROPERTY,
+				"PT20S");
+		System.setProperty(UserStorageViewInstanceProviderImp.USER_CACHE_STALE_WINDOW_PROPERTY,
+				"PT0S");
+		System.setProperty(UserStorageViewInstanceProviderImp.USER_REFRESH_AFTER_PROPERTY,
+				"PT15S");
+		System.setProperty(
+				UserStorageViewInstanceProviderImp.NOT_FOUND_CACHE_TIME_TO_LIVE_PROPERTY, "PT5S");
+		System.setProperty(UserStorageViewInstanceProviderImp.SECRET_CACHE_TIME_TO_LIVE_PROPERTY,
+				"PT1S");
+		System.setProperty(UserStorageViewInstanceProviderImp.CIRCUIT_FAILURE_THRESHOLD_PROPERTY,
+				"3");
+		System.setProperty(
+				UserStorageViewInstanceProviderImp.CIRCUIT_SLOW_CALL_THRESHOLD_PROPERTY, "PT0.5S");
+		System.setProperty(UserStorageViewInstanceProviderImp.CIRCUIT_OPEN_DURATION_PROPERTY,
+				"PT1M");
+		try {
+			CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+					.getStorageView();
+
+			UserStorageCaches caches = cachingView.onlyForTestGetCaches();
+			assertEquals(caches.userCache().getTimeToLive(), Duration.ofSeconds(20));
+			assertEquals(caches.userCache().getStaleWindow(), Duration.ZERO);
+			assertEquals(caches.loginIdIndex().getTimeToLive(), Duration.ofSeconds(20));
+			assertEquals(caches.userAuthorizations().onlyForTestGetCache().getTimeToLive(),
+					Duration.ofSeconds(20));
+			assertEquals(cachingView.onlyForTestGetUserRefreshAhead().getRefreshAfter(),
+					Duration.ofSeconds(15));
+			assertEquals(caches.notFoundCache().getTimeToLive(), Duration.ofSeconds(5));
+			assertEquals(caches.secretCache().getTimeToLive(), Duration.ofSeconds(1));
+			PeriodicWorker secretExpiry = getPeriodicWorkerByName(cachingView,
+					"userstorage-secret-expiry");
+			assertEquals(secretExpiry.onlyForTestGetInterval(), Duration.ofSeconds(1));
+			CircuitBreaker circuitBreaker = getUserStorageViewImpFromInstanceProvider()
+					.getCircuitBreaker();
+			assertEquals(circuitBreaker.getFailureThreshold(), 3);
+			assertEquals(circuitBreaker.getSlowCallThreshold(), Duration.ofMillis(500));
+			assertEquals(circuitBreaker.getOpenDuration(), Duration.ofMinutes(1));
+		} finally {
+			System.clearProperty(
+					UserStorageViewInstanceProviderImp.USER_CACHE_TIME_TO_LIVE_PROPERTY);
+			System.clearProperty(
+					UserStorageViewInstanceProviderImp.USER_CACHE_STALE_WINDOW_PROPERTY);
+			System.clearProperty(UserStorageViewInstanceProviderImp.USER_REFRESH_AFTER_PROPERTY);
+			System.clearProperty(
+					UserStorageViewInstanceProviderImp.NOT_FOUND_CACHE_TIME_TO_LIVE_PROPERTY);
+			System.clearProperty(
+					UserStorageViewInstanceProviderImp.SECRET_CACHE_TIME_TO_LIVE_PROPERTY);
+			System.clearProperty(
+					UserStorageViewInstanceProviderImp.CIRCUIT_FAILURE_THRESHOLD_PROPERTY);
+			System.clearProperty(
+					UserStorageViewInstanceProviderImp.CIRCUIT_SLOW_CALL_THRESHOLD_PROPERTY);
+			System.clearProperty(UserStorageViewInstanceProviderImp.CIRCUIT_OPEN_DURATION_PROPERTY);
+		}
+	}
+
+	@Test
+	public void testDurationPropertyThatIsNotADurationIsRejected() throws Exception {
+		assertPropertyIsRejected(
+				UserStorageViewInstanceProviderImp.SECRET_CACHE_TIME_TO_LIVE_PROPERTY, "30",
+				"an ISO-8601 duration, such as PT30S");
+	}
+
+	@Test
+	public void testNegativeDurationPropertyIsRejected() throws Exception {
+		assertPropertyIsRejected(
+				UserStorageViewInstanceProviderImp.USER_CACHE_STALE_WINDOW_PROPERTY, "-PT1S",
+				"an ISO-8601 duration, such as PT30S");
+	}
+
+	@Test
+	public void testZeroTimeToLiveIsRejected() throws Exception {
+		assertPropertyIsRejected(
+				UserStorageViewInstanceProviderImp.USER_CACHE_TIME_TO_LIVE_PROPERTY, "PT0S",
+				"a positive duration");
+	}
+
+	@Test
+	public void testFailureThresholdThatIsNotPositiveIsRejected() throws Exception {
+		assertPropertyIsRejected(
+				UserStorageViewInstanceProviderImp.CIRCUIT_FAILURE_THRESHOLD_PROPERTY, "0",
+				"a positive integer");
+		assertPropertyIsRejected(
+				UserStorageViewInstanceProviderImp.CIRCUIT_FAILURE_THRESHOLD_PROPERTY, "five",
+				"a positive integer");
+	}
+
+	private void assertPropertyIsRejected(String property, String value, String expected) {
+		System.setProperty(property, value);
+		try {
+			instanceProvider.getStorageView();
+			fail("IllegalArgumentException should have been thrown");
+		} catch (IllegalArgumentException e) {
+			assertEquals(e.getMessage(), "System property " + property + " must be " + expected
+					+ ", but was: " + value);
+		} finally {
+			System.clearProperty(property);
+		}
+	}
+
+	@Test
+	public void testStorageViewUsesLoginIdIndex() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		LoginIdIndex loginIdIndex = cachingView.onlyForTestGetCaches().loginIdIndex();
+		assertEquals(loginIdIndex.getMaxSize(),
+				UserStorageViewInstanceProviderImp.USER_CACHE_MAX_SIZE);
+		assertEquals(loginIdIndex.getTimeToLive(),
+				UserStorageViewInstanceProviderImp.USER_CACHE_TIME_TO_LIVE);
+	}
+
+	@Test
+	public void testStorageViewUsesNotFoundCache() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		BoundedTtlCache<NotFoundKey, NotFound> notFoundCache = cachingView
+				.onlyForTestGetCaches().notFoundCache();
+		assertEquals(notFoundCache.getMaxSize(),
+				UserStorageViewInstanceProviderImp.NOT_FOUND_CACHE_MAX_SIZE);
+		assertEquals(notFoundCache.getTimeToLive(),
+				UserStorageViewInstanceProviderImp.NOT_FOUND_CACHE_TIME_TO_LIVE);
+	}
+
+	@Test
+	public void testStorageViewLogsMetricsOfUserStorageViewImp() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+		UserStorageViewImp userStorageViewImp = getUserStorageViewImpFromInstanceProvider();
+
+		List<BackgroundWorker> workers = cachingView.onlyForTestGetBackgroundWorkers()
+				.onlyForTestGetWorkers();
+		MetricsLogger metricsLogger = (MetricsLogger) workers.get(0);
+		assertSame(metricsLogger.onlyForTestGetMetrics(), userStorageViewImp.getMetrics());
+		assertSame(metricsLogger.onlyForTestGetCircuitBreaker(),
+				userStorageViewImp.getCircuitBreaker());
+		assertEquals(metricsLogger.onlyForTestGetStatisticsSources(),
+				List.of(userStorageViewImp, cachingView));
+		assertEquals(metricsLogger.onlyForTestGetInterval(),
+				UserStorageViewInstanceProviderImp.METRICS_LOG_INTERVAL);
+		assertTrue(metricsLogger.onlyForTestIsScheduled());
+	}
+
+	@Test
+	public void testStorageViewUsesSecretCache() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		SecretCache secretCache = cachingView.onlyForTestGetCaches().secretCache();
+		assertEquals(secretCache.getMaxSize(),
+				UserStorageViewInstanceProviderImp.SECRET_CACHE_MAX_SIZE);
+		assertEquals(secretCache.getTimeToLive(),
+				UserStorageViewInstanceProviderImp.SECRET_CACHE_TIME_TO_LIVE);
+	}
+
+	@Test
+	public void testStorageViewRemovesExpiredSecretsPeriodically() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		List<BackgroundWorker> workers = cachingView.onlyForTestGetBackgroundWorkers()
+				.onlyForTestGetWorkers();
+		PeriodicWorker secretExpiry = (PeriodicWorker) workers.get(1);
+		assertEquals(secretExpiry.onlyForTestGetName(), "userstorage-secret-expiry");
+		assertEquals(secretExpiry.onlyForTestGetInterval(),
+				UserStorageViewInstanceProviderImp.SECRET_CACHE_TIME_TO_LIVE);
+		assertTrue(secretExpiry.onlyForTestIsScheduled());
+	}
+
+	@Test
+	public void testStorageViewLimitsConcurrentAsyncLookups() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		assertEquals(cachingView.onlyForTestGetAsyncView().onlyForTestGetMaxConcurrentLookups(),
+				UserStorageViewInstanceProviderImp.MAX_CONCURRENT_ASYNC_LOOKUPS);
+	}
+
+	@Test
+	public void testNoPreloaderByDefault() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		List<BackgroundWorker> workers = cachingView.onlyForTestGetBackgroundWorkers()
+				.onlyForTestGetWorkers();
+		assertTrue(workers.stream().noneMatch(UserCachePreloader.class::isInstance));
+	}
+
+	@Test
+	public void testPreloaderIsAddedWhenEnabled() throws Exception {
+		System.setProperty(UserStorageViewInstanceProviderImp.PRELOAD_USERS_PROPERTY, "true");
+		try {
+			CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+					.getStorageView();
+			UserStorageViewImp userStorageViewImp = getUserStorageViewImpFromInstanceProvider();
+
+			UserCachePreloader preloader = getPreloader(cachingView);
+			assertSame(preloader.onlyForTestGetRecordStorage(),
+					userStorageViewImp.onlyForTestGetRecordStorage());
+			assertSame(preloader.onlyForTestGetDataGroupToUser(),
+					userStorageViewImp.onlyForTestGetDataGroupToUser());
+			assertSame(preloader.onlyForTestGetCaches(), cachingView.onlyForTestGetCaches());
+			assertEquals(preloader.onlyForTestGetPageSize(),
+					UserStorageViewInstanceProviderImp.PRELOAD_PAGE_SIZE);
+		} finally {
+			System.clearProperty(UserStorageViewInstanceProviderImp.PRELOAD_USERS_PROPERTY);
+		}
+	}
+
+	@Test
+	public void testKnownLoginIdsFilterIsDisabledByDefault() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		assertFalse(cachingView.onlyForTestGetCaches().knownLoginIds().isEnabled());
+		assertTrue(cachingView.onlyForTestGetBackgroundWorkers().onlyForTestGetWorkers().stream()
+				.noneMatch(this::isKnownLoginIdsRebuilderWorker));
+	}
+
+	private boolean isKnownLoginIdsRebuilderWorker(BackgroundWorker worker) {
+		return worker instanceof PeriodicWorker periodicWorker
+				&& periodicWorker.onlyForTestGetTask() instanceof KnownLoginIdsRebuilder;
+	}
+
+	@Test
+	public void testKnownLoginIdsFilterIsRebuiltPeriodicallyWhenEnabled() throws Exception {
+		System.setProperty(UserStorageViewInstanceProviderImp.KNOWN_LOGIN_IDS_PROPERTY, "true");
+		try {
+			CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+					.getStorageView();
+			UserStorageViewImp userStorageViewImp = getUserStorageViewImpFromInstanceProvider();
+
+			KnownLoginIds knownLoginIds = cachingView.onlyForTestGetCaches().knownLoginIds();
+			assertTrue(knownLoginIds.isEnabled());
+			assertEquals(knownLoginIds.getExpectedLoginIds(),
+					UserStorageViewInstanceProviderImp.KNOWN_LOGIN_IDS_EXPECTED);
+			assertEquals(knownLoginIds.getFalsePositiveRate(),
+					UserStorageViewInstanceProviderImp.KNOWN_LOGIN_IDS_FALSE_POSITIVE_RATE);
+			PeriodicWorker rebuildWorker = (PeriodicWorker) cachingView
+					.onlyForTestGetBackgroundWorkers().onlyForTestGetWorkers().stream()
+					.filter(this::isKnownLoginIdsRebuilderWorker).findFirst().get();
+			assertEquals(rebuildWorker.onlyForTestGetName(), "userstorage-known-loginids");
+			assertEquals(rebuildWorker.onlyForTestGetInitialDelay(), Duration.ZERO);
+			assertEquals(rebuildWorker.onlyForTestGetInterval(),
+					UserStorageViewInstanceProviderImp.KNOWN_LOGIN_IDS_REBUILD_INTERVAL);
+			KnownLoginIdsRebuilder rebuilder = (KnownLoginIdsRebuilder) rebuildWorker
+					.onlyForTestGetTask();
+			assertSame(rebuilder.onlyForTestGetRecordStorage(),
+					userStorageViewImp.onlyForTestGetRecordStorage());
+			assertSame(rebuilder.onlyForTestGetKnownLoginIds(), knownLoginIds);
+			assertEquals(rebuilder.onlyForTestGetPageSize(),
+					UserStorageViewInstanceProviderImp.KNOWN_LOGIN_IDS_PAGE_SIZE);
+		} finally {
+			System.clearProperty(UserStorageViewInstanceProviderImp.KNOWN_LOGIN_IDS_PROPERTY);
+		}
+	}
+
+	@Test
+	public void testNoUserReplicaByDefault() throws Exception {
+		CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+				.getStorageView();
+
+		assertFalse(cachingView.onlyForTestGetCaches().userReplica().isEnabled());
+		assertTrue(cachingView.onlyForTestGetBackgroundWorkers().onlyForTestGetWorkers().stream()
+				.noneMatch(this::isUserReplicaSynchronizerWorker));
+	}
+
+	private boolean isUserReplicaSynchronizerWorker(BackgroundWorker worker) {
+		return worker instanceof PeriodicWorker periodicWorker
+				&& periodicWorker.onlyForTestGetTask() instanceof UserReplicaSynchronizer;
+	}
+
+	@Test
+	public void testUserReplicaIsSynchronizedPeriodicallyWhenEnabled() throws Exception {
+		System.setProperty(UserStorageViewInstanceProviderImp.USER_REPLICA_PROPERTY, "true");
+		try {
+			CachingUserStorageView cachingView = (CachingUserStorageView) instanceProvider
+					.getStorageView();
+			UserStorageViewImp userStorageViewImp = getUserStorageViewImpFromInstanceProvider();
+
+			UserReplica userReplica = cachingView.onlyForTestGetCaches().userReplica();
+			assertTrue(userReplica.isEnabled());
+			assertEquals(userReplica.getMaxStaleness(),
+					UserStorageViewInstanceProviderImp.USER_REPLICA_MAX_STALENESS);
+			assertEquals(userReplica.getFullSyncInterval(),
+					UserStorageViewInstanceProviderImp.USER_REPLICA_FULL_SYNC_INTERVAL);
+			PeriodicWorker syncWorker = (PeriodicWorker) cachingView
+					.onlyForTestGetBackgroundWorkers().onlyForTestGetWorkers().stream()
+					.filter(this::isUserReplicaSynchronizerWorker).findFirst().get();
+			assertEquals(syncWorker.onlyForTestGetName(), "userstorage-user-replica");
+			assertEquals(syncWorker.onlyForTestGetInitialDelay(), Duration.ZERO);
+			assertEquals(syncWorker.onlyForTestGetInterval(),
+					UserStorageViewInstanceProviderImp.USER_REPLICA_SYNC_INTERVAL);
+			UserReplicaSynchronizer synchronizer = (UserReplicaSynchronizer) syncWorker
+					.onlyForTestGetTask();
+			assertSame(synchronizer.onlyForTestGetRecordStorage(),
+					userStorageViewImp.onlyForTestGetRecordStorage());
+			assertSame(synchronizer.onlyForTestGetDataGroupToUser(),
+					userStorageViewImp.onlyForTestGetDataGroupToUser());
+			assertSame(synchronizer.onlyForTestGetCaches(), cachingView.onlyForTestGetCaches());
+			assertEquals(synchronizer.onlyForTestGetPageSize(),
+					UserStorageViewInstanceProviderImp.USER_REPLICA_PAGE_SIZE);
+		} finally {
+			System.clearProperty(UserStorageViewInstanceProviderImp.USER_REPLICA_PROPERTY);
+		}
+	}
+
+	private UserCachePreloader getPreloader(CachingUserStorageView cachingView) {
+		return (UserCachePreloader) cachingView.onlyForTestGetBackgroundWorkers()
+				.onlyForTestGetWorkers().stream().filter(UserCachePreloader.class::isInstance)
+				.findFirst().get();
+	}
+
+	@Test
+	public void testStorageViewIsStarted() throws Exception {
+		ManagedUserStorageView storageView = (ManagedUserStorageView) instanceProvider
+				.getStorageView();
+
+		assertTrue(storageView.isRunning());
+	}
+
+	@Test
+	public void testSameStorageViewIsReturnedForAllCalls() throws Exception {
+		UserStorageView storageView = instanceProvider.getStorageView();
+		UserStorageView storageView2 = instanceProvider.getStorageView();
+
+		assertSame(storageView2, storageView);
+		recordStorageInstanceProvider.MCR.assertNumberOfCallsToMethod("getRecordStorage", 1);
+	}
+
+	@Test
+	public void testCloseStorageView() throws Exception {
+		ManagedUserStorageView storageView = (ManagedUserStorageView) instanceProvider
+				.getStorageView();
+
+		instanceProvider.closeStorageView();
+
+		assertFalse(storageView.isRunning());
+	}
+
+	@Test
+	public void testShutdownHookIsAddedForStorageView() throws Exception {
+		instanceProvider.getStorageView();
+
+		Thread shutdownHook = instanceProvider.onlyForTestGetShutdownHook();
+		assertEquals(shutdownHook.getName(), "userstorage-shutdown");
+		assertTrue(Runtime.getRuntime().removeShutdownHook(shutdownHook));
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	@Test
+	public void testCloseStorageViewRemovesShutdownHook() throws Exception {
+		instanceProvider.getStorageView();
+		Thread shutdownHook = instanceProvider.onlyForTestGetShutdownHook();
+
+		instanceProvider.closeStorageView();
+
+		assertFalse(Runtime.getRuntime().removeShutdownHook(shutdownHook));
+		assertNull(instanceProvider.onlyForTestGetShutdownHook());
+	}
+
+	@Test
+	public void testStorageViewIsSubscribedToInvalidationBus() throws Exception {
+		UserStorageView storageView = instanceProvider.getStorageView();
+
+		List<RecordInvalidationListener> listeners = InvalidationBusProvider.getInvalidationBus()
+				.onlyForTestGetListeners();
+		assertTrue(listeners.contains(storageView));
+	}
+
+	@Test
+	public void testCloseStorageViewUnsubscribesFromInvalidationBus() throws Exception {
+		UserStorageView storageView = instanceProvider.getStorageView();
+
+		instanceProvider.closeStorageView();
+
+		List<RecordInvalidationListener> listeners = InvalidationBusProvider.getInvalidationBus()
+				.onlyForTestGetListeners();
+		assertFalse(listeners.contains(storageView));
+	}
+
+	@Test
+	public void testNewStorageViewIsCreatedAfterClose() throws Exception {
+		UserStorageView storageView = instanceProvider.getStorageView();
+		instanceProvider.closeStorageView();
+
+		UserStorageView storageView2 = instanceProvider.getStorageView();
+
+		assertNotSame(storageView2, storageView);
+		recordStorageInstanceProvider.MCR.assertNumberOfCallsToMethod("getRecordStorage", 2);
+	}
+
+	@Test
+	public void testCloseStorageViewWithoutStorageViewDoesNothing() throws Exception {
+		instanceProvider.closeStorageView();
+
+		recordStorageInstanceProvider.MCR.assertMethodNotCalled("getRecordStorage");
 	}
 
 	@Test
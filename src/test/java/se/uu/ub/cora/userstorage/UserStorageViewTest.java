@@ -1,5 +1,5 @@
 /*
- * Copyright 2022, 2024 Uppsala University Library
+ * Copyright 2022, 2024, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -19,18 +19,36 @@
 package se.uu.ub.cora.userstorage;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import se.uu.ub.cora.data.DataProvider;
+import se.uu.ub.cora.data.DataRecordGroup;
 import se.uu.ub.cora.data.spies.DataFactorySpy;
 import se.uu.ub.cora.data.spies.DataGroupSpy;
 import se.uu.ub.cora.data.spies.DataRecordGroupSpy;
@@ -41,9 +59,20 @@ import se.uu.ub.cora.storage.Condition;
 import se.uu.ub.cora.storage.Filter;
 import se.uu.ub.cora.storage.Part;
 import se.uu.ub.cora.storage.RecordNotFoundException;
+import se.uu.ub.cora.storage.RecordStorage;
 import se.uu.ub.cora.storage.RelationalOperator;
 import se.uu.ub.cora.storage.StorageReadResult;
 import se.uu.ub.cora.storage.spies.RecordStorageSpy;
+import se.uu.ub.cora.userstorage.circuit.CircuitBreaker;
+import se.uu.ub.cora.userstorage.circuit.CircuitOpenException;
+import se.uu.ub.cora.userstorage.circuit.CircuitState;
+import se.uu.ub.cora.userstorage.circuit.LastKnownGoodUsers;
+import se.uu.ub.cora.userstorage.coalesce.RequestCoalescer;
+import se.uu.ub.cora.userstorage.convert.UserProjection;
+import se.uu.ub.cora.userstorage.metrics.CoalescingStatistics;
+import se.uu.ub.cora.userstorage.metrics.LatencySnapshot;
+import se.uu.ub.cora.userstorage.metrics.MethodMetricsSnapshot;
+import se.uu.ub.cora.userstorage.metrics.UserStorageViewMetrics;
 import se.uu.ub.cora.userstorage.spies.DataGroupToUserSpy;
 
 public class UserStorageViewTest {
@@ -71,6 +100,132 @@ public class UserStorageViewTest {
 		assertTrue(userStorageView instanceof UserStorageViewImp);
 	}
 
+	@Test
+	public void testGetUserById_concurrentCallsReadAndConvertOnce() throws Exception {
+		CountDownLatch readStarted = new CountDownLatch(1);
+		CountDownLatch releaseRead = new CountDownLatch(1);
+		recordStorage.MRV.setDefaultReturnValuesSupplier("read", () -> {
+			readStarted.countDown();
+			awaitLatch(releaseRead);
+			return new DataRecordGroupSpy();
+		});
+		CountDownLatch coalesced = createCoalescedLatch(
+				userStorageView.onlyForTestGetUserIdCoalescer());
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		Future<User> first = executor.submit(() -> userStorageView.getUserById(USER_ID));
+		assertTrue(readStarted.await(5, TimeUnit.SECONDS));
+		Future<User> second = executor.submit(() -> userStorageView.getUserById(USER_ID));
+		assertTrue(coalesced.await(5, TimeUnit.SECONDS));
+		releaseRead.countDown();
+
+		assertSame(second.get(5, TimeUnit.SECONDS), first.get(5, TimeUnit.SECONDS));
+		executor.shutdown();
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 1);
+		dataGroupToUser.MCR.assertNumberOfCallsToMethod("groupToUser", 1);
+		assertEquals(userStorageView.getUserIdCoalescingStatistics(),
+				new CoalescingStatistics(1, 1));
+	}
+
+	@Test
+	public void testStatisticsAreTheCoalescingStatistics() throws Exception {
+		userStorageView.getUserById(USER_ID);
+
+		Map<String, Record> statistics = userStorageView.getStatistics();
+
+		assertEquals(List.copyOf(statistics.keySet()),
+				List.of("userIdCoalescing", "loginIdCoalescing"));
+		assertEquals(statistics.get("userIdCoalescing"),
+				userStorageView.getUserIdCoalescingStatistics());
+		assertEquals(statistics.get("loginIdCoalescing"),
+				userStorageView.getLoginIdCoalescingStatistics());
+	}
+
+	@Test
+	public void testGetUserById_concurrentCallsGetOwnExceptionWithSameCause() throws Exception {
+		CountDownLatch readStarted = new CountDownLatch(1);
+		CountDownLatch releaseRead = new CountDownLatch(1);
+		RecordNotFoundException notFound = RecordNotFoundException.withMessage("error from spy");
+		recordStorage.MRV.setDefaultReturnValuesSupplier("read", () -> {
+			readStarted.countDown();
+			awaitLatch(releaseRead);
+			throw notFound;
+		});
+		CountDownLatch coalesced = createCoalescedLatch(
+				userStorageView.onlyForTestGetUserIdCoalescer());
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		Future<User> first = executor.submit(() -> userStorageView.getUserById(USER_ID));
+		assertTrue(readStarted.await(5, TimeUnit.SECONDS));
+		Future<User> second = executor.submit(() -> userStorageView.getUserById(USER_ID));
+		assertTrue(coalesced.await(5, TimeUnit.SECONDS));
+		releaseRead.countDown();
+
+		Throwable firstError = getError(first);
+		Throwable secondError = getError(second);
+		executor.shutdown();
+		assertNotSame(secondError, firstError);
+		assertTrue(secondError instanceof UserStorageViewException);
+		assertEquals(secondError.getMessage(), firstError.getMessage());
+		assertSame(firstError.getCause(), notFound);
+		assertSame(secondError.getCause(), notFound);
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 1);
+	}
+
+	private Throwable getError(Future<User> result) throws Exception {
+		try {
+			result.get(5, TimeUnit.SECONDS);
+			fail();
+			return null;
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+	}
+
+	private void awaitLatch(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private CountDownLatch createCoalescedLatch(RequestCoalescer<String, User> coalescer) {
+		CountDownLatch coalesced = new CountDownLatch(1);
+		coalescer.onlyForTestSetCoalescedListener(coalesced::countDown);
+		return coalesced;
+	}
+
+	@Test
+	public void testGetUserByLoginId_concurrentCallsSearchAndConvertOnce() throws Exception {
+		CountDownLatch readListStarted = new CountDownLatch(1);
+		CountDownLatch releaseReadList = new CountDownLatch(1);
+		StorageReadResult readResult = new StorageReadResult();
+		readResult.listOfDataRecordGroups = List.of(new DataRecordGroupSpy());
+		readResult.totalNumberOfMatches = 1;
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList", () -> {
+			readListStarted.countDown();
+			awaitLatch(releaseReadList);
+			return readResult;
+		});
+		CountDownLatch coalesced = createCoalescedLatch(
+				userStorageView.onlyForTestGetLoginIdCoalescer());
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		Future<User> first = executor.submit(() -> userStorageView.getUserByLoginId(LOGIN_ID));
+		assertTrue(readListStarted.await(5, TimeUnit.SECONDS));
+		Future<User> second = executor.submit(() -> userStorageView.getUserByLoginId(LOGIN_ID));
+		assertTrue(coalesced.await(5, TimeUnit.SECONDS));
+		releaseReadList.countDown();
+
+		assertSame(second.get(5, TimeUnit.SECONDS), first.get(5, TimeUnit.SECONDS));
+		executor.shutdown();
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 1);
+		dataGroupToUser.MCR.assertNumberOfCallsToMethod("groupToUser", 1);
+		assertEquals(userStorageView.getLoginIdCoalescingStatistics(),
+				new CoalescingStatistics(1, 1));
+	}
+
 	@Test
 	public void testGetUserById_usingDependencies() throws Exception {
 		userStorageView.getUserById(USER_ID);
@@ -106,6 +261,93 @@ public class UserStorageViewTest {
 		}
 	}
 
+	@Test
+	public void testGetUsersByIds_readsAndConvertsEachUser() throws Exception {
+		userStorageView.onlyForTestSetMaxParallelReads(1);
+		UserBatchResult result = userStorageView.getUsersByIds(List.of("userId1", "userId2"));
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 2);
+		recordStorage.MCR.assertCalledParameters("read", "user", "userId1");
+		recordStorage.MCR.assertCalledParameters("read", "user", "userId2");
+		dataGroupToUser.MCR.assertNumberOfCallsToMethod("groupToUser", 2);
+		assertEquals(result.users().keySet(), Set.of("userId1", "userId2"));
+		assertTrue(result.missingIds().isEmpty());
+	}
+
+	@Test
+	public void testGetUsersByIds_duplicateIdsAreReadOnce() throws Exception {
+		userStorageView.onlyForTestSetMaxParallelReads(1);
+		userStorageView.getUsersByIds(List.of("userId1", "userId1"));
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 1);
+	}
+
+	@Test
+	public void testGetUsersByIds_missingUsersAreReported() throws Exception {
+		userStorageView.onlyForTestSetMaxParallelReads(1);
+		recordStorage.MRV.setThrowException("read",
+				RecordNotFoundException.withMessage("error from spy"), "user", "userId2");
+
+		UserBatchResult result = userStorageView.getUsersByIds(List.of("userId1", "userId2"));
+
+		assertEquals(result.users().keySet(), Set.of("userId1"));
+		assertEquals(result.missingIds(), Set.of("userId2"));
+	}
+
+	@Test
+	public void testGetUsersByIds_otherErrorsAreThrown() throws Exception {
+		userStorageView.onlyForTestSetMaxParallelReads(1);
+		RuntimeException error = new RuntimeException("error from spy");
+		recordStorage.MRV.setThrowException("read", error, "user", "userId2");
+
+		try {
+			userStorageView.getUsersByIds(List.of("userId1", "userId2"));
+			fail();
+		} catch (Exception e) {
+			assertTrue(e instanceof UserStorageViewException);
+			assertEquals(e.getMessage(), "Error reading users with ids: [userId2] from storage.");
+			assertSame(e.getCause(), error);
+		}
+	}
+
+	@Test
+	public void testGetUsersByIds_numberOfParallelReadsIsBounded() throws Exception {
+		AtomicInteger readsInProgress = new AtomicInteger();
+		AtomicInteger maxReadsInProgress = new AtomicInteger();
+		CountDownLatch allParallelReadsStarted = new CountDownLatch(
+				UserStorageViewImp.MAX_PARALLEL_READS);
+		RecordStorage slowRecordStorage = createRecordStorageAnsweringReadUsing(() -> {
+			int inProgress = readsInProgress.incrementAndGet();
+			maxReadsInProgress.accumulateAndGet(inProgress, Math::max);
+			allParallelReadsStarted.countDown();
+			awaitLatch(allParallelReadsStarted);
+			readsInProgress.decrementAndGet();
+			return new DataRecordGroupSpy();
+		});
+		userStorageView = UserStorageViewImp.usingRecordStorageAndRecordTypeHandlerFactory(
+				slowRecordStorage, (recordGroup, projection) -> new User("someUserId"));
+		List<String> userIds = new ArrayList<>();
+		for (int i = 0; i < UserStorageViewImp.MAX_PARALLEL_READS * 3; i++) {
+			userIds.add("userId" + i);
+		}
+
+		UserBatchResult result = userStorageView.getUsersByIds(userIds);
+
+		assertEquals(result.users().size(), userIds.size());
+		assertEquals(maxReadsInProgress.get(), UserStorageViewImp.MAX_PARALLEL_READS);
+	}
+
+	private RecordStorage createRecordStorageAnsweringReadUsing(
+			Supplier<DataRecordGroup> readAnswer) {
+		return (RecordStorage) Proxy.newProxyInstance(RecordStorage.class.getClassLoader(),
+				new Class<?>[] { RecordStorage.class }, (proxy, method, args) -> {
+					if ("read".equals(method.getName())) {
+						return readAnswer.get();
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
 	@Test
 	public void testGetUserByLoginId_usingDependencies() throws Exception {
 		setupRecordStorageToReturnUserForReadListUsingFilter();
@@ -174,6 +416,18 @@ public class UserStorageViewTest {
 		}
 	}
 
+	@Test
+	public void testGetUserByLoginId_moreThanOneUserFoundInStorageHasNoCause() throws Exception {
+		setupRecordStorageToReturnUserForReadListUsingFilterNumberOfResults(2);
+
+		try {
+			userStorageView.getUserByLoginId(LOGIN_ID);
+			fail();
+		} catch (Exception e) {
+			assertNull(e.getCause());
+		}
+	}
+
 	@Test
 	public void testGetUserByLoginId_noUserFoundInStorage() throws Exception {
 		setupRecordStorageToReturnUserForReadListUsingFilterNumberOfResults(0);
@@ -185,6 +439,8 @@ public class UserStorageViewTest {
 			assertTrue(e instanceof UserStorageViewException);
 			assertEquals(e.getMessage(),
 					"Error reading user with login id: " + LOGIN_ID + " from storage.");
+			assertTrue(e.getCause() instanceof RecordNotFoundException);
+			assertEquals(e.getCause().getMessage(), "No user found with login id: " + LOGIN_ID);
 		}
 	}
 
@@ -281,4 +537,641 @@ public class UserStorageViewTest {
 		recordStorage.MRV.setSpecificReturnValuesSupplier("read", () -> systemSecret,
 				"systemSecret", someSystemSecretId);
 	}
+
+	@Test
+	public void testGetUserById_measuresCallStorageReadAndConversion() throws Exception {
+		useClockThatStepsHundredNanosForEachRead();
+
+		userStorageView.getUserById(USER_ID);
+
+		MethodMetricsSnapshot snapshot = getMetricsSnapshotForMethod(
+				UserStorageViewMetrics.GET_USER_BY_ID);
+		assertEquals(snapshot.calls(), 1);
+		assertEquals(snapshot.errors(), 0);
+		assertEquals(snapshot.latency(), new LatencySnapshot(1, 500, 500, 500, 500));
+		assertEquals(snapshot.storageRead(), new LatencySnapshot(1, 100, 100, 100, 100));
+		assertEquals(snapshot.conversion(), new LatencySnapshot(1, 100, 100, 100, 100));
+	}
+
+	private void useClockThatStepsHundredNanosForEachRead() {
+		AtomicLong clock = new AtomicLong();
+		userStorageView.getMetrics().onlyForTestSetNanoTimeSource(() -> clock.getAndAdd(100));
+	}
+
+	private MethodMetricsSnapshot getMetricsSnapshotForMethod(String method) {
+		return userStorageView.getMetrics().createSnapshot().get(method);
+	}
+
+	@Test
+	public void testGetUserById_failedCallIsCountedByCause() throws Exception {
+		recordStorage.MRV.setAlwaysThrowException("read",
+				RecordNotFoundException.withMessage("error from spy"));
+
+		callAndIgnoreException(() -> userStorageView.getUserById(USER_ID));
+
+		MethodMetricsSnapshot snapshot = getMetricsSnapshotForMethod(
+				UserStorageViewMetrics.GET_USER_BY_ID);
+		assertEquals(snapshot.calls(), 1);
+		assertEquals(snapshot.errorsByCause(), Map.of("RecordNotFoundException", 1L));
+		assertEquals(snapshot.storageRead().count(), 1);
+		assertEquals(snapshot.conversion().count(), 0);
+	}
+
+	private void callAndIgnoreException(Runnable call) {
+		try {
+			call.run();
+			fail();
+		} catch (UserStorageViewException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testGetUserByLoginId_measuresCallStorageReadAndConversion() throws Exception {
+		StorageReadResult readResult = new StorageReadResult();
+		readResult.listOfDataRecordGroups = List.of(new DataRecordGroupSpy());
+		readResult.totalNumberOfMatches = 1;
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList", () -> readResult);
+
+		userStorageView.getUserByLoginId(LOGIN_ID);
+
+		MethodMetricsSnapshot snapshot = getMetricsSnapshotForMethod(
+				UserStorageViewMetrics.GET_USER_BY_LOGIN_ID);
+		assertEquals(snapshot.calls(), 1);
+		assertEquals(snapshot.storageRead().count(), 1);
+		assertEquals(snapshot.conversion().count(), 1);
+	}
+
+	@Test
+	public void testGetUserByLoginId_noUserFoundIsCountedByCause() throws Exception {
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList", StorageReadResult::new);
+
+		callAndIgnoreException(() -> userStorageView.getUserByLoginId(LOGIN_ID));
+
+		MethodMetricsSnapshot snapshot = getMetricsSnapshotForMethod(
+				UserStorageViewMetrics.GET_USER_BY_LOGIN_ID);
+		assertEquals(snapshot.errorsByCause(), Map.of("RecordNotFoundException", 1L));
+		assertEquals(snapshot.conversion().count(), 0);
+	}
+
+	@Test
+	public void testGetUsersByIds_measuresOneCallAndEachRead() throws Exception {
+		userStorageView.onlyForTestSetMaxParallelReads(1);
+
+		userStorageView.getUsersByIds(List.of("userId1", "userId2"));
+
+		MethodMetricsSnapshot snapshot = getMetricsSnapshotForMethod(
+				UserStorageViewMetrics.GET_USERS_BY_IDS);
+		assertEquals(snapshot.calls(), 1);
+		assertEquals(snapshot.storageRead().count(), 2);
+		assertEquals(snapshot.conversion().count(), 2);
+		assertEquals(getMetricsSnapshotForMethod(UserStorageViewMetrics.GET_USER_BY_ID).calls(),
+				0);
+	}
+
+	@Test
+	public void testGetAppTokenById_measuresCall() throws Exception {
+		userStorageView.getAppTokenById(APP_TOKEN_ID);
+
+		MethodMetricsSnapshot snapshot = getMetricsSnapshotForMethod(
+				UserStorageViewMetrics.GET_APP_TOKEN_BY_ID);
+		assertEquals(snapshot.calls(), 1);
+		assertEquals(snapshot.storageRead().count(), 1);
+		assertEquals(snapshot.conversion().count(), 1);
+	}
+
+	@Test
+	public void testGetSystemSecretById_failedCallIsCountedByCause() throws Exception {
+		recordStorage.MRV.setAlwaysThrowException("read",
+				RecordNotFoundException.withMessage("error from spy"));
+
+		callAndIgnoreException(() -> userStorageView.getSystemSecretById("someId"));
+
+		MethodMetricsSnapshot snapshot = getMetricsSnapshotForMethod(
+				UserStorageViewMetrics.GET_SYSTEM_SECRET_BY_ID);
+		assertEquals(snapshot.calls(), 1);
+		assertEquals(snapshot.errorsByCause(), Map.of("RecordNotFoundException", 1L));
+	}
+
+	@Test
+	public void testCircuitBreakerAndLastKnownGoodUsersAreDisabledByDefault() throws Exception {
+		assertFalse(userStorageView.getCircuitBreaker().isEnabled());
+		assertFalse(userStorageView.onlyForTestGetLastKnownGoodUsers().isEnabled());
+	}
+
+	private CircuitBreaker createViewWithCircuitBreaker() {
+		CircuitBreaker circuitBreaker = CircuitBreaker
+				.usingFailureThresholdSlowCallThresholdAndOpenDuration(2, Duration.ofSeconds(2),
+						Duration.ofSeconds(10));
+		LastKnownGoodUsers lastKnownGoodUsers = LastKnownGoodUsers.usingMaxSizeAndMaxAge(10,
+				Duration.ofMinutes(30));
+		userStorageView = UserStorageViewImp
+				.usingRecordStorageConverterCircuitBreakerAndLastKnownGood(recordStorage,
+						dataGroupToUser, circuitBreaker, lastKnownGoodUsers);
+		return circuitBreaker;
+	}
+
+	@Test
+	public void testInitWithCircuitBreaker() throws Exception {
+		CircuitBreaker circuitBreaker = createViewWithCircuitBreaker();
+
+		assertSame(userStorageView.getCircuitBreaker(), circuitBreaker);
+		assertTrue(userStorageView.onlyForTestGetLastKnownGoodUsers().isEnabled());
+	}
+
+	private void openCircuitUsingFailingReads() {
+		recordStorage.MRV.setAlwaysThrowException("read", new RuntimeException("storage down"));
+		callAndIgnoreException(() -> userStorageView.getSystemSecretById("someId"));
+		callAndIgnoreException(() -> userStorageView.getSystemSecretById("someId"));
+	}
+
+	@Test
+	public void testStorageErrorsOpenCircuit() throws Exception {
+		CircuitBreaker circuitBreaker = createViewWithCircuitBreaker();
+
+		openCircuitUsingFailingReads();
+
+		assertEquals(circuitBreaker.getState(), CircuitState.OPEN);
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 2);
+	}
+
+	@Test
+	public void testNotFoundDoesNotOpenCircuit() throws Exception {
+		CircuitBreaker circuitBreaker = createViewWithCircuitBreaker();
+		recordStorage.MRV.setAlwaysThrowException("read",
+				RecordNotFoundException.withMessage("error from spy"));
+
+		callAndIgnoreException(() -> userStorageView.getUserById(USER_ID));
+		callAndIgnoreException(() -> userStorageView.getUserById(USER_ID));
+
+		assertEquals(circuitBreaker.getState(), CircuitState.CLOSED);
+	}
+
+	@Test
+	public void testInterruptedReadsDoNotOpenCircuitAndKeepThreadInterrupted() throws Exception {
+		CircuitBreaker circuitBreaker = createViewWithCircuitBreaker();
+		recordStorage.MRV.setAlwaysThrowException("read",
+				new RuntimeException("read interrupted", new InterruptedException()));
+
+		callAndIgnoreException(() -> userStorageView.getUserById(USER_ID));
+		boolean interrupted = Thread.interrupted();
+		callAndIgnoreException(() -> userStorageView.getSystemSecretById("someId"));
+		Thread.interrupted();
+
+		assertTrue(interrupted);
+		assertEquals(circuitBreaker.getState(), CircuitState.CLOSED);
+	}
+
+	@Test
+	public void testReadsFailingInInterruptedThreadDoNotOpenCircuit() throws Exception {
+		CircuitBreaker circuitBreaker = createViewWithCircuitBreaker();
+		recordStorage.MRV.setAlwaysThrowException("read", new RuntimeException("storage down"));
+
+		Thread.currentThread().interrupt();
+		callAndIgnoreException(() -> userStorageView.getUserById(USER_ID));
+		callAndIgnoreException(() -> userStorageView.getUserById(USER_ID));
+		boolean interrupted = Thread.interrupted();
+
+		assertTrue(interrupted);
+		assertEquals(circuitBreaker.getState(), CircuitState.CLOSED);
+	}
+
+	@Test
+	public void testSlowReadsOpenCircuit() throws Exception {
+		CircuitBreaker circuitBreaker = createViewWithCircuitBreaker();
+		long[] now = { 0 };
+		userStorageView.getMetrics().onlyForTestSetNanoTimeSource(() -> now[0]);
+		recordStorage.MRV.setDefaultReturnValuesSupplier("read", () -> {
+			now[0] += Duration.ofSeconds(3).toNanos();
+			return new DataRecordGroupSpy();
+		});
+
+		userStorageView.getUserById(USER_ID);
+		userStorageView.getUserById(USER_ID);
+
+		assertEquals(circuitBreaker.getState(), CircuitState.OPEN);
+	}
+
+	@Test
+	public void testGetUserById_lastKnownGoodUserIsReturnedWhileCircuitIsOpen()
+			throws Exception {
+		CircuitBreaker circuitBreaker = createViewWithCircuitBreaker();
+		setUpConverterToReturnUserWithLoginId();
+		User user = userStorageView.getUserById(USER_ID);
+		openCircuitUsingFailingReads();
+
+		User lastKnownGoodUser = userStorageView.getUserById(USER_ID);
+
+		assertSame(lastKnownGoodUser, user);
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 3);
+		assertEquals(circuitBreaker.getStatistics().fallbacks(), 1);
+	}
+
+	@Test
+	public void testGetUserById_failsWithoutCallingStorageWhenNoLastKnownGoodUser()
+			throws Exception {
+		createViewWithCircuitBreaker();
+		openCircuitUsingFailingReads();
+
+		try {
+			userStorageView.getUserById(USER_ID);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertEquals(e.getMessage(),
+					"Error reading user with id: " + USER_ID + " from storage.");
+			assertTrue(e.getCause() instanceof CircuitOpenException);
+			assertEquals(e.getCause().getMessage(),
+					"Storage is unavailable, circuit breaker is open.");
+		}
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 2);
+	}
+
+	@Test
+	public void testGetUserById_notFoundUserIsForgotten() throws Exception {
+		createViewWithCircuitBreaker();
+		setUpConverterToReturnUserWithLoginId();
+		userStorageView.getUserById(USER_ID);
+		recordStorage.MRV.setAlwaysThrowException("read",
+				RecordNotFoundException.withMessage("error from spy"));
+
+		callAndIgnoreException(() -> userStorageView.getUserById(USER_ID));
+
+		LastKnownGoodUsers lastKnownGoodUsers = userStorageView
+				.onlyForTestGetLastKnownGoodUsers();
+		assertTrue(lastKnownGoodUsers.findUserById(USER_ID).isEmpty());
+	}
+
+	@Test
+	public void testInvalidateUserForgetsLastKnownGoodUser() throws Exception {
+		createViewWithCircuitBreaker();
+		setUpConverterToReturnUserWithLoginId();
+		userStorageView.getUserById(USER_ID);
+
+		userStorageView.invalidateRecord(RecordTypes.USER, USER_ID);
+
+		LastKnownGoodUsers lastKnownGoodUsers = userStorageView
+				.onlyForTestGetLastKnownGoodUsers();
+		assertTrue(lastKnownGoodUsers.findUserById(USER_ID).isEmpty());
+		assertTrue(lastKnownGoodUsers.findUserByLoginId(LOGIN_ID).isEmpty());
+	}
+
+	@Test
+	public void testInvalidateOtherRecordTypeKeepsLastKnownGoodUser() throws Exception {
+		createViewWithCircuitBreaker();
+		setUpConverterToReturnUserWithLoginId();
+		User user = userStorageView.getUserById(USER_ID);
+
+		userStorageView.invalidateRecord(RecordTypes.APP_TOKEN, USER_ID);
+
+		LastKnownGoodUsers lastKnownGoodUsers = userStorageView
+				.onlyForTestGetLastKnownGoodUsers();
+		assertSame(lastKnownGoodUsers.findUserById(USER_ID).get(), user);
+	}
+
+	@Test
+	public void testGetUserByLoginId_lastKnownGoodUserIsReturnedWhileCircuitIsOpen()
+			throws Exception {
+		createViewWithCircuitBreaker();
+		setUpConverterToReturnUserWithLoginId();
+		setUpReadListToReturnOneUser();
+		User user = userStorageView.getUserByLoginId(LOGIN_ID);
+		openCircuitUsingFailingReads();
+
+		User lastKnownGoodUser = userStorageView.getUserByLoginId(LOGIN_ID);
+
+		assertSame(lastKnownGoodUser, user);
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 1);
+	}
+
+	private void setUpConverterToReturnUserWithLoginId() {
+		User user = new User(USER_ID);
+		user.loginId = LOGIN_ID;
+		dataGroupToUser.MRV.setDefaultReturnValuesSupplier("groupToUser",
+				(Supplier<User>) () -> user);
+	}
+
+	private void setUpReadListToReturnOneUser() {
+		StorageReadResult readResult = new StorageReadResult();
+		readResult.listOfDataRecordGroups = List.of(new DataRecordGroupSpy());
+		readResult.totalNumberOfMatches = 1;
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList",
+				(Supplier<StorageReadResult>) () -> readResult);
+	}
+
+	@Test
+	public void testGetUserByLoginId_notFoundLoginIdIsForgotten() throws Exception {
+		createViewWithCircuitBreaker();
+		setUpConverterToReturnUserWithLoginId();
+		setUpReadListToReturnOneUser();
+		userStorageView.getUserByLoginId(LOGIN_ID);
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList",
+				(Supplier<StorageReadResult>) StorageReadResult::new);
+
+		callAndIgnoreException(() -> userStorageView.getUserByLoginId(LOGIN_ID));
+
+		LastKnownGoodUsers lastKnownGoodUsers = userStorageView
+				.onlyForTestGetLastKnownGoodUsers();
+		assertTrue(lastKnownGoodUsers.findUserByLoginId(LOGIN_ID).isEmpty());
+		assertTrue(lastKnownGoodUsers.findUserById(USER_ID).isPresent());
+	}
+
+	@Test
+	public void testGetUsersByIds_usesLastKnownGoodUsersWhileCircuitIsOpen() throws Exception {
+		createViewWithCircuitBreaker();
+		User user = userStorageView.getUserById(USER_ID);
+		openCircuitUsingFailingReads();
+
+		UserBatchResult result = userStorageView.getUsersByIds(List.of("someUser"));
+
+		assertSame(result.users().get("someUser"), user);
+		callAndIgnoreException(() -> userStorageView.getUsersByIds(List.of("otherUser")));
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 3);
+	}
+
+	@Test
+	public void testGetAppTokenById_failsFastWhileCircuitIsOpen() throws Exception {
+		createViewWithCircuitBreaker();
+		openCircuitUsingFailingReads();
+
+		try {
+			userStorageView.getAppTokenById(APP_TOKEN_ID);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertTrue(e.getCause() instanceof CircuitOpenException);
+		}
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 2);
+		MethodMetricsSnapshot snapshot = getMetricsSnapshotForMethod(
+				UserStorageViewMetrics.GET_APP_TOKEN_BY_ID);
+		assertEquals(snapshot.errorsByCause(), Map.of("CircuitOpenException", 1L));
+	}
+
+	@Test
+	public void testGetSystemSecretById_failsFastWhileCircuitIsOpen() throws Exception {
+		createViewWithCircuitBreaker();
+		openCircuitUsingFailingReads();
+
+		callAndIgnoreException(() -> userStorageView.getSystemSecretById("someId"));
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 2);
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_readsUserAndPasswordSecretUsingProjection()
+			throws Exception {
+		DataRecordGroupSpy userRecord = setupRecordStorageToReturnUserForReadListUsingFilter();
+		setUpConverterToReturnUserWithActiveAndPassword(true);
+		setUpRecordStorageToReturnSystemSecretWithSecretForId("someSecret", "somePasswordId");
+
+		UserCredentials credentials = userStorageView.getUserCredentialsByLoginId(LOGIN_ID);
+
+		assertEquals(credentials,
+				new UserCredentials(USER_ID, true, Optional.of("someSecret")));
+		recordStorage.MCR.assertParameterAsEqual("readList", 0, "type", "user");
+		Filter filter = (Filter) recordStorage.MCR
+				.getParameterForMethodAndCallNumberAndParameter("readList", 0, "filter");
+		assertEquals(filter.include.get(0).conditions.get(0).value(), LOGIN_ID);
+		recordStorage.MCR.assertParameters("read", 0, "systemSecret", "somePasswordId");
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 1);
+		dataGroupToUser.MCR.assertParameters("groupToUser", 0, userRecord,
+				UserProjection.CREDENTIALS);
+	}
+
+	private void setUpConverterToReturnUserWithActiveAndPassword(boolean active) {
+		setUpConverterToReturnUserWithActiveAndPasswordId(active, Optional.of("somePasswordId"));
+	}
+
+	private void setUpConverterToReturnUserWithActiveAndPasswordId(boolean active,
+			Optional<String> passwordId) {
+		User user = new User(USER_ID);
+		user.active = active;
+		user.passwordId = passwordId;
+		dataGroupToUser.MRV.setDefaultReturnValuesSupplier("groupToUser", () -> user);
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_inactiveUserPasswordIsNotRead() throws Exception {
+		setupRecordStorageToReturnUserForReadListUsingFilter();
+		setUpConverterToReturnUserWithActiveAndPassword(false);
+
+		UserCredentials credentials = userStorageView.getUserCredentialsByLoginId(LOGIN_ID);
+
+		assertEquals(credentials, new UserCredentials(USER_ID, false, Optional.empty()));
+		recordStorage.MCR.assertMethodNotCalled("read");
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_userWithoutPassword() throws Exception {
+		setupRecordStorageToReturnUserForReadListUsingFilter();
+		setUpConverterToReturnUserWithActiveAndPasswordId(true, Optional.empty());
+
+		UserCredentials credentials = userStorageView.getUserCredentialsByLoginId(LOGIN_ID);
+
+		assertEquals(credentials, new UserCredentials(USER_ID, true, Optional.empty()));
+		recordStorage.MCR.assertMethodNotCalled("read");
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_noUserFoundInStorage() throws Exception {
+		setupRecordStorageToReturnUserForReadListUsingFilterNumberOfResults(0);
+
+		try {
+			userStorageView.getUserCredentialsByLoginId(LOGIN_ID);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertEquals(e.getMessage(),
+					"Error reading user with login id: " + LOGIN_ID + " from storage.");
+			assertTrue(e.getCause() instanceof RecordNotFoundException);
+		}
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_missingPasswordIsNotReportedAsMissingUser()
+			throws Exception {
+		setupRecordStorageToReturnUserForReadListUsingFilter();
+		setUpConverterToReturnUserWithActiveAndPassword(true);
+		RecordNotFoundException error = RecordNotFoundException.withMessage("error from spy");
+		recordStorage.MRV.setAlwaysThrowException("read", error);
+
+		try {
+			userStorageView.getUserCredentialsByLoginId(LOGIN_ID);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertEquals(e.getMessage(),
+					"Error reading password for user with login id: " + LOGIN_ID
+							+ " from storage.");
+			assertEquals(e.getCause().getMessage(),
+					"Error reading systemSecret with id: somePasswordId from storage.");
+			assertSame(e.getCause().getCause(), error);
+		}
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_measuresCallAndBothStorageReads()
+			throws Exception {
+		setupRecordStorageToReturnUserForReadListUsingFilter();
+		setUpConverterToReturnUserWithActiveAndPassword(true);
+		setUpRecordStorageToReturnSystemSecretWithSecretForId("someSecret", "somePasswordId");
+
+		userStorageView.getUserCredentialsByLoginId(LOGIN_ID);
+
+		MethodMetricsSnapshot snapshot = getMetricsSnapshotForMethod(
+				UserStorageViewMetrics.GET_USER_CREDENTIALS_BY_LOGIN_ID);
+		assertEquals(snapshot.calls(), 1);
+		assertEquals(snapshot.storageRead().count(), 2);
+		assertEquals(getMetricsSnapshotForMethod(UserStorageViewMetrics.GET_SYSTEM_SECRET_BY_ID)
+				.calls(), 0);
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_failsFastWhileCircuitIsOpen() throws Exception {
+		createViewWithCircuitBreaker();
+		openCircuitUsingFailingReads();
+
+		try {
+			userStorageView.getUserCredentialsByLoginId(LOGIN_ID);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertEquals(e.getMessage(),
+					"Error reading user with login id: " + LOGIN_ID + " from storage.");
+			assertTrue(e.getCause() instanceof CircuitOpenException);
+		}
+		recordStorage.MCR.assertMethodNotCalled("readList");
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_asksForPermissionOnceWhenCircuitIsHalfOpen()
+			throws Exception {
+		CircuitBreaker circuitBreaker = createViewWithCircuitBreaker();
+		long[] now = { 0 };
+		circuitBreaker.onlyForTestSetNanoTimeSource(() -> now[0]);
+		userStorageView.getMetrics().onlyForTestSetNanoTimeSource(() -> now[0]);
+		setUpRecordStorageToReturnUserAfterSlowReadList(now);
+		setUpConverterToReturnUserWithActiveAndPassword(false);
+		userStorageView.getUserCredentialsByLoginId(LOGIN_ID);
+		userStorageView.getUserCredentialsByLoginId(LOGIN_ID);
+		assertEquals(circuitBreaker.getState(), CircuitState.OPEN);
+		now[0] += Duration.ofSeconds(10).toNanos();
+		setUpConverterToReturnUserWithActiveAndPassword(true);
+		setUpRecordStorageToReturnSystemSecretWithSecretForId("someSecret", "somePasswordId");
+
+		UserCredentials credentials = userStorageView.getUserCredentialsByLoginId(LOGIN_ID);
+
+		assertEquals(credentials,
+				new UserCredentials(USER_ID, true, Optional.of("someSecret")));
+		assertEquals(circuitBreaker.getStatistics().rejectedCalls(), 0);
+	}
+
+	private void setUpRecordStorageToReturnUserAfterSlowReadList(long[] now) {
+		DataRecordGroupSpy userRecord = new DataRecordGroupSpy();
+		StorageReadResult readResult = new StorageReadResult();
+		readResult.listOfDataRecordGroups = List.of(userRecord);
+		readResult.totalNumberOfMatches = 1;
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList",
+				(Supplier<StorageReadResult>) () -> {
+					now[0] += Duration.ofSeconds(3).toNanos();
+					return readResult;
+				});
+	}
+
+	@Test
+	public void testGetAppTokensByIds_readsEachAppToken() throws Exception {
+		userStorageView.onlyForTestSetMaxParallelReads(1);
+		setUpRecordStorageToReturnAppTokenWithToken("appTokenId1", "token1");
+		setUpRecordStorageToReturnAppTokenWithToken("appTokenId2", "token2");
+
+		AppTokenBatchResult result = userStorageView
+				.getAppTokensByIds(List.of("appTokenId1", "appTokenId2", "appTokenId1"));
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 2);
+		recordStorage.MCR.assertCalledParameters("read", "appToken", "appTokenId1");
+		recordStorage.MCR.assertCalledParameters("read", "appToken", "appTokenId2");
+		assertEquals(result.appTokens().keySet(), Set.of("appTokenId1", "appTokenId2"));
+		assertEquals(result.appTokens().get("appTokenId1").tokenString, "token1");
+		assertEquals(result.appTokens().get("appTokenId2").tokenString, "token2");
+		assertTrue(result.errors().isEmpty());
+	}
+
+	private void setUpRecordStorageToReturnAppTokenWithToken(String appTokenId, String token) {
+		DataRecordGroupSpy appToken = new DataRecordGroupSpy();
+		appToken.MRV.setSpecificReturnValuesSupplier("getFirstAtomicValueWithNameInData",
+				() -> token, "token");
+		recordStorage.MRV.setSpecificReturnValuesSupplier("read", () -> appToken, "appToken",
+				appTokenId);
+	}
+
+	@Test
+	public void testGetAppTokensByIds_failuresAreReportedPerAppToken() throws Exception {
+		userStorageView.onlyForTestSetMaxParallelReads(1);
+		RecordNotFoundException notFound = RecordNotFoundException.withMessage("error from spy");
+		RuntimeException error = new RuntimeException("error from spy");
+		recordStorage.MRV.setThrowException("read", notFound, "appToken", "appTokenId1");
+		recordStorage.MRV.setThrowException("read", error, "appToken", "appTokenId2");
+
+		AppTokenBatchResult result = userStorageView
+				.getAppTokensByIds(List.of("appTokenId1", "appTokenId2", "appTokenId3"));
+
+		assertEquals(result.appTokens().keySet(), Set.of("appTokenId3"));
+		assertEquals(result.errors().keySet(), Set.of("appTokenId1", "appTokenId2"));
+		UserStorageViewException notFoundError = result.errors().get("appTokenId1");
+		assertEquals(notFoundError.getMessage(),
+				"Error reading appToken with id: appTokenId1 from storage.");
+		assertSame(notFoundError.getCause(), notFound);
+		assertSame(result.errors().get("appTokenId2").getCause(), error);
+	}
+
+	@Test
+	public void testGetAppTokensByIds_numberOfParallelReadsIsBounded() throws Exception {
+		AtomicInteger readsInProgress = new AtomicInteger();
+		AtomicInteger maxReadsInProgress = new AtomicInteger();
+		CountDownLatch allParallelReadsStarted = new CountDownLatch(
+				UserStorageViewImp.MAX_PARALLEL_READS);
+		RecordStorage slowRecordStorage = createRecordStorageAnsweringReadUsing(() -> {
+			int inProgress = readsInProgress.incrementAndGet();
+			maxReadsInProgress.accumulateAndGet(inProgress, Math::max);
+			allParallelReadsStarted.countDown();
+			awaitLatch(allParallelReadsStarted);
+			readsInProgress.decrementAndGet();
+			return new DataRecordGroupSpy();
+		});
+		userStorageView = UserStorageViewImp
+				.usingRecordStorageAndRecordTypeHandlerFactory(slowRecordStorage, dataGroupToUser);
+		List<String> appTokenIds = new ArrayList<>();
+		for (int i = 0; i < UserStorageViewImp.MAX_PARALLEL_READS * 3; i++) {
+			appTokenIds.add("appTokenId" + i);
+		}
+
+		AppTokenBatchResult result = userStorageView.getAppTokensByIds(appTokenIds);
+
+		assertEquals(result.appTokens().size(), appTokenIds.size());
+		assertEquals(maxReadsInProgress.get(), UserStorageViewImp.MAX_PARALLEL_READS);
+	}
+
+	@Test
+	public void testGetAppTokensByIds_measuresCallAndEachRead() throws Exception {
+		userStorageView.onlyForTestSetMaxParallelReads(1);
+
+		userStorageView.getAppTokensByIds(List.of("appTokenId1", "appTokenId2"));
+
+		MethodMetricsSnapshot snapshot = getMetricsSnapshotForMethod(
+				UserStorageViewMetrics.GET_APP_TOKENS_BY_IDS);
+		assertEquals(snapshot.calls(), 1);
+		assertEquals(snapshot.storageRead().count(), 2);
+		assertEquals(snapshot.conversion().count(), 2);
+		assertEquals(getMetricsSnapshotForMethod(UserStorageViewMetrics.GET_APP_TOKEN_BY_ID)
+				.calls(), 0);
+	}
+
+	@Test
+	public void testGetAppTokensByIds_failsPerAppTokenWhileCircuitIsOpen() throws Exception {
+		createViewWithCircuitBreaker();
+		openCircuitUsingFailingReads();
+
+		AppTokenBatchResult result = userStorageView
+				.getAppTokensByIds(List.of("appTokenId1", "appTokenId2"));
+
+		assertTrue(result.appTokens().isEmpty());
+		assertTrue(result.errors().get("appTokenId1").getCause() instanceof CircuitOpenException);
+		assertTrue(result.errors().get("appTokenId2").getCause() instanceof CircuitOpenException);
+		recordStorage.MCR.assertNumberOfCallsToMethod("read", 2);
+	}
 }
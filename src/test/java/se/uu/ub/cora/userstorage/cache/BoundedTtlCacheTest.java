@@ -0,0 +1,316 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.userstorage.metrics.CacheStatistics;
+
+public class BoundedTtlCacheTest {
+	private static final Duration TIME_TO_LIVE = Duration.ofSeconds(10);
+	private BoundedTtlCache<String, String> cache;
+	private long now;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 0;
+		cache = BoundedTtlCache.usingMaxSizeAndTimeToLive(3, TIME_TO_LIVE);
+		cache.onlyForTestSetNanoTimeSource(() -> now);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertEquals(cache.getMaxSize(), 3);
+		assertEquals(cache.getTimeToLive(), TIME_TO_LIVE);
+		assertEquals(cache.getStaleWindow(), Duration.ZERO);
+		assertEquals(cache.size(), 0);
+		assertEquals(cache.onlyForTestGetNumberOfSegments(), 1);
+	}
+
+	@Test
+	public void testLargeCacheIsSegmented() throws Exception {
+		BoundedTtlCache<String, String> largeCache = BoundedTtlCache
+				.usingMaxSizeAndTimeToLive(10000, TIME_TO_LIVE);
+
+		assertEquals(largeCache.onlyForTestGetNumberOfSegments(), 16);
+	}
+
+	@Test
+	public void testGetMissing() throws Exception {
+		Optional<String> value = cache.get("someKey");
+
+		assertTrue(value.isEmpty());
+		assertStatistics(0, 1, 0, 0, 0);
+	}
+
+	@Test
+	public void testPutAndGet() throws Exception {
+		cache.put("someKey", "someValue");
+
+		Optional<String> value = cache.get("someKey");
+
+		assertEquals(value.get(), "someValue");
+		assertStatistics(1, 0, 0, 0, 1);
+	}
+
+	@Test
+	public void testPutReplacesValue() throws Exception {
+		cache.put("someKey", "someValue");
+		cache.put("someKey", "someOtherValue");
+
+		assertEquals(cache.get("someKey").get(), "someOtherValue");
+		assertEquals(cache.size(), 1);
+	}
+
+	@Test
+	public void testEntryExpiresAfterTimeToLive() throws Exception {
+		cache.put("someKey", "someValue");
+		now = TIME_TO_LIVE.toNanos() - 1;
+		assertEquals(cache.get("someKey").get(), "someValue");
+
+		now = TIME_TO_LIVE.toNanos();
+
+		assertTrue(cache.get("someKey").isEmpty());
+		assertStatistics(1, 1, 0, 1, 0);
+	}
+
+	@Test
+	public void testEntryPutWithAgeExpiresEarlier() throws Exception {
+		cache.putWithAge("someKey", "someValue", Duration.ofSeconds(4));
+		assertEquals(cache.getCachedValue("someKey").get().ageNanos(),
+				Duration.ofSeconds(4).toNanos());
+		now = Duration.ofSeconds(6).toNanos() - 1;
+		assertEquals(cache.get("someKey").get(), "someValue");
+
+		now = Duration.ofSeconds(6).toNanos();
+
+		assertTrue(cache.get("someKey").isEmpty());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvictedWhenFull() throws Exception {
+		cache.put("key1", "value1");
+		cache.put("key2", "value2");
+		cache.put("key3", "value3");
+		cache.get("key1");
+
+		cache.put("key4", "value4");
+
+		assertEquals(cache.size(), 3);
+		assertTrue(cache.get("key2").isEmpty());
+		assertTrue(cache.get("key1").isPresent());
+		assertTrue(cache.get("key3").isPresent());
+		assertTrue(cache.get("key4").isPresent());
+		assertEquals(cache.getStatistics().evictions(), 1);
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		cache.put("key1", "value1");
+		cache.put("key2", "value2");
+
+		cache.invalidate("key1");
+
+		assertTrue(cache.get("key1").isEmpty());
+		assertTrue(cache.get("key2").isPresent());
+	}
+
+	@Test
+	public void testInvalidateAll() throws Exception {
+		cache.put("key1", "value1");
+		cache.put("key2", "value2");
+
+		cache.invalidateAll();
+
+		assertEquals(cache.size(), 0);
+	}
+
+	@Test
+	public void testHitRate() throws Exception {
+		assertEquals(cache.getStatistics().hitRate(), 0.0, 0.0);
+		cache.put("key1", "value1");
+		cache.get("key1");
+		cache.get("key1");
+		cache.get("key1");
+		cache.get("key2");
+
+		assertEquals(cache.getStatistics().hitRate(), 0.75, 0.0);
+	}
+
+	@Test
+	public void testRemoveExpired() throws Exception {
+		cache.put("key1", "value1");
+		now += TIME_TO_LIVE.toNanos() / 2;
+		cache.put("key2", "value2");
+		now += TIME_TO_LIVE.toNanos() / 2;
+
+		cache.removeExpired();
+
+		assertEquals(cache.size(), 1);
+		assertEquals(cache.get("key2").get(), "value2");
+		assertStatistics(1, 0, 0, 1, 1);
+	}
+
+	@Test
+	public void testRemovalListenerIsCalledForAllRemovedValues() throws Exception {
+		List<String> removed = new ArrayList<>();
+		cache = BoundedTtlCache.usingMaxSizeTimeToLiveAndRemovalListener(2, TIME_TO_LIVE,
+				removed::add);
+		cache.onlyForTestSetNanoTimeSource(() -> now);
+
+		cache.put("key1", "evicted");
+		cache.put("key2", "replaced");
+		cache.put("key3", "invalidated");
+		cache.put("key2", "expired");
+		cache.invalidate("key3");
+		now += TIME_TO_LIVE.toNanos();
+		cache.get("key2");
+		cache.put("key4", "removedAsExpired");
+		now += TIME_TO_LIVE.toNanos();
+		cache.removeExpired();
+		cache.put("key5", "invalidatedByAll");
+		cache.put("key6", "invalidatedByAll");
+		cache.invalidateAll();
+
+		assertEquals(removed, List.of("evicted", "replaced", "invalidated", "expired",
+				"removedAsExpired", "invalidatedByAll", "invalidatedByAll"));
+	}
+
+	@Test
+	public void testRemovalListenerIsNotCalledWhenSameValueIsPutAgain() throws Exception {
+		List<String> removed = new ArrayList<>();
+		cache = BoundedTtlCache.usingMaxSizeTimeToLiveAndRemovalListener(2, TIME_TO_LIVE,
+				removed::add);
+		String value = "someValue";
+		cache.put("key1", value);
+
+		cache.put("key1", value);
+
+		assertTrue(removed.isEmpty());
+	}
+
+	@Test
+	public void testGetCachedValueReturnsValueAndAge() throws Exception {
+		cache.put("someKey", "someValue");
+		now = 5;
+
+		CachedValue<String> cachedValue = cache.getCachedValue("someKey").get();
+
+		assertEquals(cachedValue, new CachedValue<>("someValue", 5, false));
+		assertStatistics(1, 0, 0, 0, 1);
+	}
+
+	@Test
+	public void testGetCachedValueMissing() throws Exception {
+		assertTrue(cache.getCachedValue("someKey").isEmpty());
+		assertStatistics(0, 1, 0, 0, 0);
+	}
+
+	@Test
+	public void testGetCachedValueWithoutStaleWindowExpires() throws Exception {
+		cache.put("someKey", "someValue");
+		now = TIME_TO_LIVE.toNanos();
+
+		assertTrue(cache.getCachedValue("someKey").isEmpty());
+		assertStatistics(0, 1, 0, 1, 0);
+	}
+
+	@Test
+	public void testStaleWindow() throws Exception {
+		Duration staleWindow = Duration.ofSeconds(2);
+		cache = BoundedTtlCache.usingMaxSizeTimeToLiveAndStaleWindow(3, TIME_TO_LIVE,
+				staleWindow);
+		cache.onlyForTestSetNanoTimeSource(() -> now);
+
+		assertEquals(cache.getStaleWindow(), staleWindow);
+	}
+
+	@Test
+	public void testStaleValueIsOnlyReturnedAsCachedValue() throws Exception {
+		createCacheWithStaleWindow();
+		cache.put("someKey", "someValue");
+		now = TIME_TO_LIVE.toNanos();
+
+		assertTrue(cache.get("someKey").isEmpty());
+		CachedValue<String> cachedValue = cache.getCachedValue("someKey").get();
+
+		assertEquals(cachedValue, new CachedValue<>("someValue", TIME_TO_LIVE.toNanos(), true));
+		assertStatistics(1, 1, 0, 0, 1);
+	}
+
+	private void createCacheWithStaleWindow() {
+		cache = BoundedTtlCache.usingMaxSizeTimeToLiveAndStaleWindow(3, TIME_TO_LIVE,
+				Duration.ofSeconds(2));
+		cache.onlyForTestSetNanoTimeSource(() -> now);
+	}
+
+	@Test
+	public void testStaleValueIsRemovedAfterStaleWindow() throws Exception {
+		createCacheWithStaleWindow();
+		cache.put("someKey", "someValue");
+		now = TIME_TO_LIVE.plusSeconds(2).toNanos();
+
+		assertTrue(cache.getCachedValue("someKey").isEmpty());
+		assertStatistics(0, 1, 0, 1, 0);
+	}
+
+	@Test
+	public void testRemoveExpiredKeepsStaleValues() throws Exception {
+		createCacheWithStaleWindow();
+		cache.put("stale", "someValue");
+		now = TIME_TO_LIVE.toNanos();
+		cache.put("fresh", "someValue");
+		now = TIME_TO_LIVE.plusSeconds(2).toNanos();
+
+		cache.removeExpired();
+
+		assertTrue(cache.getCachedValue("stale").isEmpty());
+		assertTrue(cache.getCachedValue("fresh").isPresent());
+		assertEquals(cache.size(), 1);
+	}
+
+	@Test
+	public void testForEachValueVisitsValuesYoungerThanTimeToLive() throws Exception {
+		createCacheWithStaleWindow();
+		cache.put("stale", "staleValue");
+		now = TIME_TO_LIVE.toNanos();
+		cache.put("fresh", "freshValue");
+		List<String> values = new ArrayList<>();
+
+		cache.forEachValue(values::add);
+
+		assertEquals(values, List.of("freshValue"));
+		assertStatistics(0, 0, 0, 0, 2);
+	}
+
+	private void assertStatistics(long hits, long misses, long evictions, long expirations,
+			long size) {
+		CacheStatistics statistics = cache.getStatistics();
+		assertEquals(statistics, new CacheStatistics(hits, misses, evictions, expirations, size));
+	}
+}
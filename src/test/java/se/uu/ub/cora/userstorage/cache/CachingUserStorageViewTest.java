@@ -0,0 +1,1688 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+import se.uu.ub.cora.userstorage.AppTokenBatchResult;
+import se.uu.ub.cora.userstorage.AsyncUserStorageViewImp;
+import se.uu.ub.cora.userstorage.Deadline;
+import se.uu.ub.cora.userstorage.DeadlineExceededException;
+import se.uu.ub.cora.userstorage.DeadlineUserStorageViewImp;
+import se.uu.ub.cora.userstorage.ManagedUserStorageView;
+import se.uu.ub.cora.userstorage.RecordTypes;
+import se.uu.ub.cora.userstorage.UserBatchResult;
+import se.uu.ub.cora.userstorage.UserCredentials;
+import se.uu.ub.cora.userstorage.convert.AuthorizationDictionary;
+import se.uu.ub.cora.userstorage.convert.CompactUserCodec;
+import se.uu.ub.cora.userstorage.convert.UserAuthorization;
+import se.uu.ub.cora.userstorage.metrics.CacheStatistics;
+import se.uu.ub.cora.userstorage.metrics.RefreshStatistics;
+import se.uu.ub.cora.userstorage.spies.BackgroundWorkerSpy;
+import se.uu.ub.cora.userstorage.spies.UserStorageViewSpy;
+
+public class CachingUserStorageViewTest {
+	private static final String USER_ID = "someUserId";
+	private static final String LOGIN_ID = "someLoginId";
+	private UserStorageViewSpy userStorageViewSpy;
+	private BoundedTtlCache<String, User> userCache;
+	private LoginIdIndex loginIdIndex;
+	private BoundedTtlCache<NotFoundKey, NotFound> notFoundCache;
+	private SecretCache secretCache;
+	private KnownLoginIds knownLoginIds;
+	private UserAuthorizations userAuthorizations;
+	private UserSnapshot userSnapshot;
+	private UserReplica userReplica;
+	private UserStorageCaches caches;
+	private CachingUserStorageView cachingView;
+	private long now;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 0;
+		userStorageViewSpy = new UserStorageViewSpy();
+		userCache = BoundedTtlCache.usingMaxSizeAndTimeToLive(10, Duration.ofSeconds(10));
+		userCache.onlyForTestSetNanoTimeSource(() -> now);
+		loginIdIndex = LoginIdIndex.usingMaxSizeAndTimeToLive(10, Duration.ofSeconds(10));
+		loginIdIndex.onlyForTestSetNanoTimeSource(() -> now);
+		notFoundCache = BoundedTtlCache.usingMaxSizeAndTimeToLive(10, Duration.ofSeconds(5));
+		notFoundCache.onlyForTestSetNanoTimeSource(() -> now);
+		secretCache = SecretCache.usingMaxSizeAndTimeToLive(10, Duration.ofSeconds(3));
+		secretCache.onlyForTestGetCache().onlyForTestSetNanoTimeSource(() -> now);
+		knownLoginIds = KnownLoginIds.disabled();
+		userAuthorizations = UserAuthorizations.usingDictionaryMaxSizeAndTimeToLive(
+				new AuthorizationDictionary(), 10, Duration.ofSeconds(10));
+		userSnapshot = UserSnapshot.empty();
+		userReplica = UserReplica.disabled();
+		caches = new UserStorageCaches(userCache, loginIdIndex, notFoundCache, secretCache,
+				knownLoginIds, userAuthorizations, userSnapshot, userReplica);
+		cachingView = CachingUserStorageView.usingUserStorageViewAndCaches(userStorageViewSpy,
+				caches);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(cachingView instanceof ManagedUserStorageView);
+		assertSame(cachingView.onlyForTestGetUserStorageView(), userStorageViewSpy);
+		assertSame(cachingView.onlyForTestGetCaches(), caches);
+	}
+
+	@Test
+	public void testLifecycle() throws Exception {
+		BackgroundWorkerSpy worker = new BackgroundWorkerSpy();
+		cachingView.addBackgroundWorker(worker);
+		assertFalse(cachingView.isRunning());
+
+		cachingView.start();
+
+		assertTrue(cachingView.isRunning());
+		worker.MCR.assertNumberOfCallsToMethod("start", 1);
+
+		cachingView.close();
+
+		assertFalse(cachingView.isRunning());
+		worker.MCR.assertNumberOfCallsToMethod("stop", 1);
+	}
+
+	@Test
+	public void testIsReadyWhenStartedAndWorkersAreReady() throws Exception {
+		BackgroundWorkerSpy worker = new BackgroundWorkerSpy();
+		cachingView.addBackgroundWorker(worker);
+		assertFalse(cachingView.isReady());
+
+		cachingView.start();
+		assertTrue(cachingView.isReady());
+
+		worker.MRV.setDefaultReturnValuesSupplier("isReady", () -> false);
+		assertFalse(cachingView.isReady());
+	}
+
+	@Test
+	public void testLookupsWorkAfterClose() throws Exception {
+		cachingView.start();
+		cachingView.close();
+
+		User user = cachingView.getUserById(USER_ID);
+
+		userStorageViewSpy.MCR.assertReturn("getUserById", 0, user);
+	}
+
+	@Test
+	public void testGetUserById_notCachedReadsFromUserStorageView() throws Exception {
+		User user = cachingView.getUserById(USER_ID);
+
+		userStorageViewSpy.MCR.assertParameters("getUserById", 0, USER_ID);
+		userStorageViewSpy.MCR.assertReturn("getUserById", 0, user);
+	}
+
+	@Test
+	public void testGetUserById_secondCallIsServedFromCache() throws Exception {
+		User user = cachingView.getUserById(USER_ID);
+
+		User user2 = cachingView.getUserById(USER_ID);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 1);
+		assertSame(user2, user);
+		CacheStatistics statistics = cachingView.getUserCacheStatistics();
+		assertEquals(statistics.hits(), 1);
+		assertEquals(statistics.misses(), 1);
+	}
+
+	@Test
+	public void testStatisticsAreTheStatisticsOfTheCaches() throws Exception {
+		cachingView.getUserById(USER_ID);
+
+		Map<String, Record> statistics = cachingView.getStatistics();
+
+		assertEquals(List.copyOf(statistics.keySet()),
+				List.of("userCache", "userRefresh", "notFoundCache", "secretCache"));
+		assertEquals(statistics.get("userCache"), cachingView.getUserCacheStatistics());
+		assertEquals(statistics.get("userRefresh"), cachingView.getUserRefreshStatistics());
+		assertEquals(statistics.get("notFoundCache"), cachingView.getNotFoundCacheStatistics());
+		assertEquals(statistics.get("secretCache"), cachingView.getSecretCacheStatistics());
+	}
+
+	@Test
+	public void testStatisticsIncludeKnownLoginIdsWhenEnabled() throws Exception {
+		buildKnownLoginIds();
+
+		Map<String, Record> statistics = cachingView.getStatistics();
+
+		assertEquals(statistics.get("knownLoginIds"), knownLoginIds.getStatistics());
+	}
+
+	@Test
+	public void testGetUserById_expiredEntryIsReadAgain() throws Exception {
+		cachingView.getUserById(USER_ID);
+		now = Duration.ofSeconds(10).toNanos();
+
+		cachingView.getUserById(USER_ID);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 2);
+	}
+
+	@Test
+	public void testGetUserById_errorIsNotCached() throws Exception {
+		UserStorageViewException error = UserStorageViewException.usingMessage("error from spy");
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserById", error);
+
+		try {
+			cachingView.getUserById(USER_ID);
+			fail();
+		} catch (Exception e) {
+			assertSame(e, error);
+		}
+		assertEquals(userCache.size(), 0);
+	}
+
+	@Test
+	public void testGetUsersByIds_notCachedAreReadInOneBatch() throws Exception {
+		User user1 = createUser("userId1", "loginId1");
+		User user2 = createUser("userId2", "loginId2");
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getUsersByIds",
+				() -> new UserBatchResult(Map.of("userId1", user1, "userId2", user2),
+						Set.of("userId3")));
+
+		UserBatchResult result = cachingView
+				.getUsersByIds(List.of("userId1", "userId2", "userId3"));
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUsersByIds", 1);
+		userStorageViewSpy.MCR.assertParameterAsEqual("getUsersByIds", 0, "userIds",
+				List.of("userId1", "userId2", "userId3"));
+		assertSame(result.users().get("userId1"), user1);
+		assertSame(result.users().get("userId2"), user2);
+		assertEquals(result.missingIds(), Set.of("userId3"));
+	}
+
+	@Test
+	public void testGetUsersByIds_readUsersAreCachedButNotIndexed() throws Exception {
+		User user1 = createUser("userId1", "loginId1");
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getUsersByIds",
+				() -> new UserBatchResult(Map.of("userId1", user1), Set.of()));
+
+		cachingView.getUsersByIds(List.of("userId1"));
+
+		assertSame(userCache.get("userId1").get(), user1);
+		assertTrue(loginIdIndex.findUserIdForLoginId("loginId1").isEmpty());
+	}
+
+	@Test
+	public void testGetUsersByIds_cachedAndKnownMissingAreNotRead() throws Exception {
+		User cachedUser = createUser("userId1", "loginId1");
+		userCache.put("userId1", cachedUser);
+		notFoundCache.put(new NotFoundKey(NotFoundKey.USER, "userId2"), createNotFound());
+
+		UserBatchResult result = cachingView
+				.getUsersByIds(List.of("userId1", "userId2", "userId3"));
+
+		userStorageViewSpy.MCR.assertParameterAsEqual("getUsersByIds", 0, "userIds",
+				List.of("userId3"));
+		assertSame(result.users().get("userId1"), cachedUser);
+		assertEquals(result.missingIds(), Set.of("userId2"));
+	}
+
+	@Test
+	public void testGetUsersByIds_allCachedDoesNotRead() throws Exception {
+		userCache.put("userId1", createUser("userId1", "loginId1"));
+
+		cachingView.getUsersByIds(List.of("userId1", "userId1"));
+
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUsersByIds");
+	}
+
+	@Test
+	public void testGetUserById_userIsNotAddedToLoginIdIndex() throws Exception {
+		cachingView.getUserById(USER_ID);
+
+		assertTrue(loginIdIndex.findUserIdForLoginId(LOGIN_ID).isEmpty());
+	}
+
+	@Test
+	public void testGetUserByLoginId_userReadByIdIsNotTrustedForLoginId() throws Exception {
+		cachingView.getUserById(USER_ID);
+
+		cachingView.getUserByLoginId(LOGIN_ID);
+
+		userStorageViewSpy.MCR.assertParameters("getUserByLoginId", 0, LOGIN_ID);
+	}
+
+	@Test
+	public void testGetUserByLoginId_expiredIndexedLoginIdIsSearchedAgain() throws Exception {
+		cachingView.getUserByLoginId(LOGIN_ID);
+		now += Duration.ofSeconds(10).toNanos();
+
+		cachingView.getUserByLoginId(LOGIN_ID);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserByLoginId", 2);
+	}
+
+	@Test
+	public void testGetUserByLoginId_notIndexedSearchesUsingLoginId() throws Exception {
+		User user = cachingView.getUserByLoginId(LOGIN_ID);
+
+		userStorageViewSpy.MCR.assertParameters("getUserByLoginId", 0, LOGIN_ID);
+		userStorageViewSpy.MCR.assertReturn("getUserByLoginId", 0, user);
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserById");
+	}
+
+	@Test
+	public void testGetUserByLoginId_foundUserIsCachedAndIndexed() throws Exception {
+		User user = cachingView.getUserByLoginId(LOGIN_ID);
+
+		assertSame(userCache.get(USER_ID).get(), user);
+		assertEquals(loginIdIndex.findUserIdForLoginId(LOGIN_ID).get(), USER_ID);
+	}
+
+	@Test
+	public void testGetUserByLoginId_secondCallIsServedFromCache() throws Exception {
+		User user = cachingView.getUserByLoginId(LOGIN_ID);
+
+		User user2 = cachingView.getUserByLoginId(LOGIN_ID);
+
+		assertSame(user2, user);
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserByLoginId", 1);
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserById");
+	}
+
+	@Test
+	public void testGetUserByLoginId_indexedButNotCachedReadsUsingUserId() throws Exception {
+		cachingView.getUserByLoginId(LOGIN_ID);
+		userCache.invalidateAll();
+
+		User user = cachingView.getUserByLoginId(LOGIN_ID);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserByLoginId", 1);
+		userStorageViewSpy.MCR.assertParameters("getUserById", 0, USER_ID);
+		userStorageViewSpy.MCR.assertReturn("getUserById", 0, user);
+	}
+
+	@Test
+	public void testGetUserByLoginId_indexedUserHasChangedLoginIdSearchesUsingLoginId()
+			throws Exception {
+		loginIdIndex.indexUser(createUser(USER_ID, LOGIN_ID));
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getUserById",
+				() -> createUser(USER_ID, "someOtherLoginId"));
+
+		cachingView.getUserByLoginId(LOGIN_ID);
+
+		userStorageViewSpy.MCR.assertParameters("getUserById", 0, USER_ID);
+		userStorageViewSpy.MCR.assertParameters("getUserByLoginId", 0, LOGIN_ID);
+	}
+
+	@Test
+	public void testGetUserByLoginId_indexedUserCanNotBeReadSearchesUsingLoginId()
+			throws Exception {
+		loginIdIndex.indexUser(createUser(USER_ID, LOGIN_ID));
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserById",
+				UserStorageViewException.usingMessage("error from spy"));
+
+		User user = cachingView.getUserByLoginId(LOGIN_ID);
+
+		userStorageViewSpy.MCR.assertReturn("getUserByLoginId", 0, user);
+	}
+
+	@Test
+	public void testGetUserByLoginId_errorFromSearchIsThrownAndLoginIdNotIndexed()
+			throws Exception {
+		UserStorageViewException error = UserStorageViewException.usingMessage("error from spy");
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserByLoginId", error);
+
+		try {
+			cachingView.getUserByLoginId(LOGIN_ID);
+			fail();
+		} catch (Exception e) {
+			assertSame(e, error);
+		}
+		assertTrue(loginIdIndex.findUserIdForLoginId(LOGIN_ID).isEmpty());
+	}
+
+	@Test
+	public void testGetUserByLoginId_unknownLoginIdIsRejectedWithoutReadingStorage()
+			throws Exception {
+		buildKnownLoginIds("knownLoginId");
+
+		try {
+			cachingView.getUserByLoginId(LOGIN_ID);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertEquals(e.getMessage(),
+					"Error reading user with login id: " + LOGIN_ID + " from storage.");
+			assertTrue(e.getCause() instanceof RecordNotFoundException);
+			assertEquals(e.getCause().getMessage(), "No user found with login id: " + LOGIN_ID);
+		}
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserByLoginId");
+		assertEquals(cachingView.getKnownLoginIdsStatistics().rejectedLookups(), 1);
+	}
+
+	@Test
+	public void testGetUserByLoginId_unknownLoginIdIsReadFromStorageDuringRebuild()
+			throws Exception {
+		buildKnownLoginIds("knownLoginId");
+		knownLoginIds.startRebuild(0);
+
+		User user = cachingView.getUserByLoginId(LOGIN_ID);
+
+		userStorageViewSpy.MCR.assertReturn("getUserByLoginId", 0, user);
+		assertEquals(cachingView.getKnownLoginIdsStatistics().rejectedLookups(), 0);
+	}
+
+	private void buildKnownLoginIds(String... loginIds) {
+		createViewWithKnownLoginIds(
+				KnownLoginIds.usingExpectedLoginIdsAndFalsePositiveRate(100, 0.01));
+		LoginIdBloomFilter filter = knownLoginIds.startRebuild(0);
+		for (String loginId : loginIds) {
+			filter.add(loginId);
+		}
+		knownLoginIds.finishRebuild(filter);
+	}
+
+	@Test
+	public void testGetUserByLoginId_possiblyKnownLoginIdIsRead() throws Exception {
+		buildKnownLoginIds(LOGIN_ID);
+
+		cachingView.getUserByLoginId(LOGIN_ID);
+
+		userStorageViewSpy.MCR.assertParameters("getUserByLoginId", 0, LOGIN_ID);
+	}
+
+	@Test
+	public void testReadUsersAreAddedToKnownLoginIds() throws Exception {
+		buildKnownLoginIds();
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getUserById",
+				() -> createUser(USER_ID, LOGIN_ID));
+
+		cachingView.getUserById(USER_ID);
+
+		assertTrue(knownLoginIds.mightExist(LOGIN_ID));
+		assertEquals(cachingView.getKnownLoginIdsStatistics(), knownLoginIds.getStatistics());
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_readFromStorageWhenLoginIdNotIndexed()
+			throws Exception {
+		UserCredentials credentials = cachingView.getUserCredentialsByLoginId(LOGIN_ID);
+
+		userStorageViewSpy.MCR.assertParameters("getUserCredentialsByLoginId", 0, LOGIN_ID);
+		userStorageViewSpy.MCR.assertReturn("getUserCredentialsByLoginId", 0, credentials);
+		assertTrue(loginIdIndex.findUserIdForLoginId(LOGIN_ID).isEmpty());
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_takenFromCachedUser() throws Exception {
+		User user = createUser(USER_ID, LOGIN_ID);
+		user.active = true;
+		user.passwordId = Optional.of("somePasswordId");
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getUserById", () -> user);
+		cachingView.getUserById(USER_ID);
+		loginIdIndex.indexUser(user);
+		cachingView.getSystemSecretById("somePasswordId");
+
+		UserCredentials credentials = cachingView.getUserCredentialsByLoginId(LOGIN_ID);
+
+		assertEquals(credentials, new UserCredentials(USER_ID, true, Optional.of("someSecret")));
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserCredentialsByLoginId");
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 1);
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getSystemSecretById", 1);
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_inactiveCachedUserPasswordIsNotRead()
+			throws Exception {
+		User user = createUser(USER_ID, LOGIN_ID);
+		user.passwordId = Optional.of("somePasswordId");
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getUserById", () -> user);
+		cachingView.getUserById(USER_ID);
+		loginIdIndex.indexUser(user);
+
+		UserCredentials credentials = cachingView.getUserCredentialsByLoginId(LOGIN_ID);
+
+		assertEquals(credentials, new UserCredentials(USER_ID, false, Optional.empty()));
+		userStorageViewSpy.MCR.assertMethodNotCalled("getSystemSecretById");
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_notFoundIsRemembered() throws Exception {
+		UserStorageViewException error = createNotFoundError();
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserCredentialsByLoginId", error);
+		assertThrowsSameError(() -> cachingView.getUserCredentialsByLoginId(LOGIN_ID), error);
+
+		assertThrowsCopyOfError(() -> cachingView.getUserCredentialsByLoginId(LOGIN_ID), error);
+		assertThrowsCopyOfError(() -> cachingView.getUserByLoginId(LOGIN_ID), error);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserCredentialsByLoginId", 1);
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserByLoginId");
+	}
+
+	@Test
+	public void testGetUserCredentialsByLoginId_unknownLoginIdIsRejected() throws Exception {
+		buildKnownLoginIds();
+
+		try {
+			cachingView.getUserCredentialsByLoginId(LOGIN_ID);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertTrue(e.getCause() instanceof RecordNotFoundException);
+		}
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserCredentialsByLoginId");
+	}
+
+	private User createUser(String userId, String loginId) {
+		User user = new User(userId);
+		user.loginId = loginId;
+		return user;
+	}
+
+	@Test
+	public void testGetUserById_notFoundIsRemembered() throws Exception {
+		UserStorageViewException error = createNotFoundError();
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserById", error);
+		assertThrowsSameError(() -> cachingView.getUserById(USER_ID), error);
+
+		assertThrowsCopyOfError(() -> cachingView.getUserById(USER_ID), error);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 1);
+		assertEquals(cachingView.getNotFoundCacheStatistics().hits(), 1);
+	}
+
+	private UserStorageViewException createNotFoundError() {
+		return UserStorageViewException.usingMessageAndException("error from spy",
+				RecordNotFoundException.withMessage("not found from spy"));
+	}
+
+	private void assertThrowsSameError(Runnable lookup, Exception expectedError) {
+		try {
+			lookup.run();
+			fail();
+		} catch (Exception e) {
+			assertSame(e, expectedError);
+		}
+	}
+
+	private void assertThrowsCopyOfError(Runnable lookup, Exception expectedError) {
+		try {
+			lookup.run();
+			fail();
+		} catch (Exception e) {
+			assertIsCopyOfError(e, expectedError);
+		}
+	}
+
+	private void assertIsCopyOfError(Throwable error, Exception expectedError) {
+		assertNotSame(error, expectedError);
+		assertTrue(error instanceof UserStorageViewException);
+		assertEquals(error.getMessage(), expectedError.getMessage());
+		assertSame(error.getCause(), expectedError.getCause());
+	}
+
+	private NotFound createNotFound() {
+		return new NotFound("error from spy",
+				RecordNotFoundException.withMessage("not found from spy"));
+	}
+
+	@Test
+	public void testGetUserById_notFoundIsRememberedUntilExpired() throws Exception {
+		UserStorageViewException error = createNotFoundError();
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserById", error);
+		assertThrowsSameError(() -> cachingView.getUserById(USER_ID), error);
+		now = Duration.ofSeconds(5).toNanos();
+
+		assertThrowsSameError(() -> cachingView.getUserById(USER_ID), error);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 2);
+	}
+
+	@Test
+	public void testGetUserById_otherErrorsAreNotRemembered() throws Exception {
+		UserStorageViewException error = UserStorageViewException.usingMessageAndException(
+				"error from spy", new RuntimeException("storage is down"));
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserById", error);
+		assertThrowsSameError(() -> cachingView.getUserById(USER_ID), error);
+
+		assertThrowsSameError(() -> cachingView.getUserById(USER_ID), error);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 2);
+		assertEquals(notFoundCache.size(), 0);
+	}
+
+	@Test
+	public void testGetUserByLoginId_notFoundIsRemembered() throws Exception {
+		UserStorageViewException error = createNotFoundError();
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserByLoginId", error);
+		assertThrowsSameError(() -> cachingView.getUserByLoginId(LOGIN_ID), error);
+
+		assertThrowsCopyOfError(() -> cachingView.getUserByLoginId(LOGIN_ID), error);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserByLoginId", 1);
+		assertTrue(notFoundCache.get(new NotFoundKey(NotFoundKey.LOGIN_ID, LOGIN_ID)).isPresent());
+	}
+
+	@Test
+	public void testGetUserByLoginId_multipleUsersFoundIsNotRemembered() throws Exception {
+		UserStorageViewException error = UserStorageViewException.usingMessage("error from spy");
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserByLoginId", error);
+		assertThrowsSameError(() -> cachingView.getUserByLoginId(LOGIN_ID), error);
+
+		assertThrowsSameError(() -> cachingView.getUserByLoginId(LOGIN_ID), error);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserByLoginId", 2);
+	}
+
+	@Test
+	public void testNotFoundLookupTypesAreKeptApart() throws Exception {
+		UserStorageViewException error = createNotFoundError();
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserById", error);
+		assertThrowsSameError(() -> cachingView.getUserById("someId"), error);
+
+		cachingView.getUserByLoginId("someId");
+		cachingView.getAppTokenById("someId");
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserByLoginId", 1);
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getAppTokenById", 1);
+	}
+
+	@Test
+	public void testGetAppTokenById_notFoundIsRemembered() throws Exception {
+		UserStorageViewException error = createNotFoundError();
+		userStorageViewSpy.MRV.setAlwaysThrowException("getAppTokenById", error);
+		assertThrowsSameError(() -> cachingView.getAppTokenById("someAppTokenId"), error);
+
+		assertThrowsCopyOfError(() -> cachingView.getAppTokenById("someAppTokenId"), error);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getAppTokenById", 1);
+	}
+
+	@Test
+	public void testGetAppTokenById_otherErrorsAreNotRemembered() throws Exception {
+		UserStorageViewException error = UserStorageViewException.usingMessage("error from spy");
+		userStorageViewSpy.MRV.setAlwaysThrowException("getAppTokenById", error);
+		assertThrowsSameError(() -> cachingView.getAppTokenById("someAppTokenId"), error);
+
+		assertThrowsSameError(() -> cachingView.getAppTokenById("someAppTokenId"), error);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getAppTokenById", 2);
+	}
+
+	@Test
+	public void testGetAppTokenById() throws Exception {
+		AppToken appToken = cachingView.getAppTokenById("someAppTokenId");
+
+		userStorageViewSpy.MCR.assertParameters("getAppTokenById", 0, "someAppTokenId");
+		userStorageViewSpy.MCR.assertReturn("getAppTokenById", 0, appToken);
+	}
+
+	@Test
+	public void testGetSystemSecretById() throws Exception {
+		String secret = cachingView.getSystemSecretById("someSecretId");
+
+		userStorageViewSpy.MCR.assertParameters("getSystemSecretById", 0, "someSecretId");
+		userStorageViewSpy.MCR.assertReturn("getSystemSecretById", 0, secret);
+	}
+
+	@Test
+	public void testGetAppTokenById_secondCallIsServedFromSecretCache() throws Exception {
+		cachingView.getAppTokenById("someAppTokenId");
+
+		AppToken appToken = cachingView.getAppTokenById("someAppTokenId");
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getAppTokenById", 1);
+		assertEquals(appToken.id, "someAppTokenId");
+		assertEquals(appToken.tokenString, "someTokenString");
+		assertEquals(cachingView.getSecretCacheStatistics().hits(), 1);
+	}
+
+	@Test
+	public void testGetAppTokenById_expiredTokenIsReadAgain() throws Exception {
+		cachingView.getAppTokenById("someAppTokenId");
+		now += Duration.ofSeconds(3).toNanos();
+
+		cachingView.getAppTokenById("someAppTokenId");
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getAppTokenById", 2);
+	}
+
+	@Test
+	public void testGetSystemSecretById_secondCallIsServedFromSecretCache() throws Exception {
+		cachingView.getSystemSecretById("someSecretId");
+
+		String secret = cachingView.getSystemSecretById("someSecretId");
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getSystemSecretById", 1);
+		assertEquals(secret, "someSecret");
+	}
+
+	@Test
+	public void testGetSystemSecretById_errorIsNotCached() throws Exception {
+		UserStorageViewException error = createNotFoundError();
+		userStorageViewSpy.MRV.setAlwaysThrowException("getSystemSecretById", error);
+		assertThrowsSameError(() -> cachingView.getSystemSecretById("someSecretId"), error);
+
+		assertThrowsSameError(() -> cachingView.getSystemSecretById("someSecretId"), error);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getSystemSecretById", 2);
+		assertEquals(secretCache.size(), 0);
+	}
+
+	@Test
+	public void testAppTokensAndSystemSecretsAreKeptApart() throws Exception {
+		cachingView.getAppTokenById("someId");
+
+		String secret = cachingView.getSystemSecretById("someId");
+
+		assertEquals(secret, "someSecret");
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getSystemSecretById", 1);
+	}
+
+	@Test
+	public void testCloseDropsCachedSecrets() throws Exception {
+		cachingView.start();
+		cachingView.getAppTokenById("someAppTokenId");
+		cachingView.getSystemSecretById("someSecretId");
+
+		cachingView.close();
+
+		assertEquals(secretCache.size(), 0);
+	}
+
+	@Test
+	public void testCloseClosesAsyncView() throws Exception {
+		cachingView.start();
+
+		cachingView.close();
+
+		CompletableFuture<User> future = cachingView.getUserByIdAsync(USER_ID);
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals(e.getCause().getMessage(), "Lookup rejected, the view is closed.");
+		}
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserById");
+	}
+
+	@Test
+	public void testAsyncViewUsesThisView() throws Exception {
+		AsyncUserStorageViewImp asyncView = cachingView.onlyForTestGetAsyncView();
+
+		assertSame(asyncView.onlyForTestGetUserStorageView(), cachingView);
+		assertEquals(asyncView.onlyForTestGetMaxConcurrentLookups(),
+				CachingUserStorageView.DEFAULT_MAX_CONCURRENT_ASYNC_LOOKUPS);
+	}
+
+	@Test
+	public void testMaxAsyncLookupsCanBeSet() throws Exception {
+		cachingView = CachingUserStorageView.usingUserStorageViewCachesAndMaxAsyncLookups(
+				userStorageViewSpy, caches, 7);
+
+		assertEquals(cachingView.onlyForTestGetAsyncView().onlyForTestGetMaxConcurrentLookups(),
+				7);
+	}
+
+	@Test
+	public void testGetUserByIdAsync_isServedFromCache() throws Exception {
+		User user = cachingView.getUserById(USER_ID);
+
+		User asyncUser = cachingView.getUserByIdAsync(USER_ID).get(5, TimeUnit.SECONDS);
+
+		assertSame(asyncUser, user);
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 1);
+	}
+
+	@Test
+	public void testGetUserByLoginIdAsync() throws Exception {
+		User user = cachingView.getUserByLoginIdAsync(LOGIN_ID).get(5, TimeUnit.SECONDS);
+
+		userStorageViewSpy.MCR.assertReturn("getUserByLoginId", 0, user);
+	}
+
+	@Test
+	public void testGetAppTokenByIdAsync_knownNotFoundFailsWithCopyOfError() throws Exception {
+		UserStorageViewException error = createNotFoundError();
+		userStorageViewSpy.MRV.setAlwaysThrowException("getAppTokenById", error);
+		assertThrowsSameError(() -> cachingView.getAppTokenById("someAppTokenId"), error);
+
+		CompletableFuture<AppToken> future = cachingView.getAppTokenByIdAsync("someAppTokenId");
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertIsCopyOfError(e.getCause(), error);
+		}
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getAppTokenById", 1);
+	}
+
+	@Test
+	public void testGetSystemSecretByIdAsync() throws Exception {
+		String secret = cachingView.getSystemSecretByIdAsync("someSecretId").get(5,
+				TimeUnit.SECONDS);
+
+		assertEquals(secret, "someSecret");
+	}
+
+	@Test
+	public void testRefreshAheadIsDisabledByDefault() throws Exception {
+		assertFalse(cachingView.onlyForTestGetUserRefreshAhead().isEnabled());
+	}
+
+	@Test
+	public void testStaleUserIsNotUsedWithoutRefreshAhead() throws Exception {
+		createViewWithStaleWindow(RefreshAhead.disabled());
+		cachingView.getUserById(USER_ID);
+		now = Duration.ofSeconds(10).toNanos();
+
+		cachingView.getUserById(USER_ID);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 2);
+	}
+
+	private List<Runnable> createViewWithRefreshAhead() {
+		List<Runnable> scheduledRefreshes = new ArrayList<>();
+		RefreshAhead<String> refreshAhead = RefreshAhead
+				.usingRefreshAfterAndMaxConcurrentRefreshes(Duration.ofSeconds(8), 10);
+		refreshAhead.onlyForTestSetExecutor(scheduledRefreshes::add);
+		createViewWithStaleWindow(refreshAhead);
+		return scheduledRefreshes;
+	}
+
+	private void createViewWithStaleWindow(RefreshAhead<String> refreshAhead) {
+		userCache = BoundedTtlCache.usingMaxSizeTimeToLiveAndStaleWindow(10,
+				Duration.ofSeconds(10), Duration.ofSeconds(2));
+		userCache.onlyForTestSetNanoTimeSource(() -> now);
+		caches = new UserStorageCaches(userCache, loginIdIndex, notFoundCache, secretCache,
+				knownLoginIds, userAuthorizations, userSnapshot, userReplica);
+		cachingView = CachingUserStorageView
+				.usingUserStorageViewCachesMaxAsyncLookupsAndRefreshAhead(userStorageViewSpy,
+						caches, 4, refreshAhead);
+	}
+
+	@Test
+	public void testInitWithRefreshAhead() throws Exception {
+		RefreshAhead<String> refreshAhead = RefreshAhead
+				.usingRefreshAfterAndMaxConcurrentRefreshes(Duration.ofSeconds(8), 10);
+
+		createViewWithStaleWindow(refreshAhead);
+
+		assertSame(cachingView.onlyForTestGetUserRefreshAhead(), refreshAhead);
+		assertEquals(cachingView.onlyForTestGetAsyncView().onlyForTestGetMaxConcurrentLookups(),
+				4);
+	}
+
+	@Test
+	public void testYoungUserIsNotRefreshed() throws Exception {
+		List<Runnable> scheduledRefreshes = createViewWithRefreshAhead();
+		cachingView.getUserById(USER_ID);
+		now = Duration.ofSeconds(8).toNanos() - 1;
+
+		cachingView.getUserById(USER_ID);
+
+		assertTrue(scheduledRefreshes.isEmpty());
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 1);
+	}
+
+	@Test
+	public void testUserIsRefreshedAheadOfExpiry() throws Exception {
+		List<Runnable> scheduledRefreshes = createViewWithRefreshAhead();
+		User cachedUser = cachingView.getUserById(USER_ID);
+		now = Duration.ofSeconds(8).toNanos();
+
+		User user = cachingView.getUserById(USER_ID);
+
+		assertSame(user, cachedUser);
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 1);
+		assertEquals(scheduledRefreshes.size(), 1);
+
+		scheduledRefreshes.get(0).run();
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 2);
+		User refreshedUser = (User) userStorageViewSpy.MCR.getReturnValue("getUserById", 1);
+		assertSame(cachingView.getUserById(USER_ID), refreshedUser);
+		assertEquals(cachingView.getUserRefreshStatistics(),
+				new RefreshStatistics(1, 1, 0, 0, 0, 0));
+	}
+
+	@Test
+	public void testStaleUserIsReturnedWhileRefreshIsInFlight() throws Exception {
+		List<Runnable> scheduledRefreshes = createViewWithRefreshAhead();
+		User cachedUser = cachingView.getUserById(USER_ID);
+		now = Duration.ofSeconds(10).toNanos();
+
+		User user = cachingView.getUserById(USER_ID);
+
+		assertSame(user, cachedUser);
+		assertEquals(scheduledRefreshes.size(), 1);
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 1);
+		assertEquals(cachingView.getUserRefreshStatistics().staleHits(), 1);
+	}
+
+	@Test
+	public void testStaleUserIsNotReturnedAfterStaleWindow() throws Exception {
+		List<Runnable> scheduledRefreshes = createViewWithRefreshAhead();
+		cachingView.getUserById(USER_ID);
+		now = Duration.ofSeconds(12).toNanos();
+
+		cachingView.getUserById(USER_ID);
+
+		assertTrue(scheduledRefreshes.isEmpty());
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 2);
+	}
+
+	@Test
+	public void testRefreshOfRemovedUserRemovesUserFromCache() throws Exception {
+		List<Runnable> scheduledRefreshes = createViewWithRefreshAhead();
+		cachingView.getUserById(USER_ID);
+		now = Duration.ofSeconds(8).toNanos();
+		cachingView.getUserById(USER_ID);
+		UserStorageViewException error = createNotFoundError();
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserById", error);
+
+		scheduledRefreshes.get(0).run();
+
+		assertTrue(userCache.getCachedValue(USER_ID).isEmpty());
+		assertThrowsCopyOfError(() -> cachingView.getUserById(USER_ID), error);
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 2);
+		assertEquals(cachingView.getUserRefreshStatistics().failed(), 1);
+	}
+
+	@Test
+	public void testRefreshOfUserInvalidatedDuringRefreshDoesNotCacheUser() throws Exception {
+		List<Runnable> scheduledRefreshes = createViewWithRefreshAhead();
+		cachingView.getUserById(USER_ID);
+		now = Duration.ofSeconds(8).toNanos();
+		cachingView.getUserById(USER_ID);
+		userStorageViewSpy.MRV.setSpecificReturnValuesSupplier("getUserById",
+				() -> readUserInvalidatedDuringRead(), USER_ID);
+
+		scheduledRefreshes.get(0).run();
+
+		assertTrue(userCache.getCachedValue(USER_ID).isEmpty());
+		assertEquals(cachingView.getUserRefreshStatistics().succeeded(), 1);
+	}
+
+	private User readUserInvalidatedDuringRead() {
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+		return createUser(USER_ID, LOGIN_ID);
+	}
+
+	@Test
+	public void testRefreshOfUserInvalidatedDuringRefreshDoesNotRememberNotFound()
+			throws Exception {
+		List<Runnable> scheduledRefreshes = createViewWithRefreshAhead();
+		cachingView.getUserById(USER_ID);
+		now = Duration.ofSeconds(8).toNanos();
+		cachingView.getUserById(USER_ID);
+		userStorageViewSpy.MRV.setSpecificReturnValuesSupplier("getUserById",
+				() -> throwNotFoundInvalidatedDuringRead(), USER_ID);
+
+		scheduledRefreshes.get(0).run();
+
+		assertTrue(notFoundCache.get(new NotFoundKey(NotFoundKey.USER, USER_ID)).isEmpty());
+	}
+
+	private User throwNotFoundInvalidatedDuringRead() {
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+		throw createNotFoundError();
+	}
+
+	@Test
+	public void testFailedRefreshKeepsCachedUser() throws Exception {
+		List<Runnable> scheduledRefreshes = createViewWithRefreshAhead();
+		User cachedUser = cachingView.getUserById(USER_ID);
+		now = Duration.ofSeconds(8).toNanos();
+		cachingView.getUserById(USER_ID);
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserById",
+				UserStorageViewException.usingMessage("storage unavailable"));
+
+		scheduledRefreshes.get(0).run();
+
+		assertSame(userCache.getCachedValue(USER_ID).get().value(), cachedUser);
+	}
+
+	@Test
+	public void testGetUsersByIdsRefreshesAheadOfExpiry() throws Exception {
+		List<Runnable> scheduledRefreshes = createViewWithRefreshAhead();
+		User cachedUser = cachingView.getUserById(USER_ID);
+		now = Duration.ofSeconds(10).toNanos();
+
+		UserBatchResult result = cachingView.getUsersByIds(List.of(USER_ID));
+
+		assertSame(result.users().get(USER_ID), cachedUser);
+		assertEquals(scheduledRefreshes.size(), 1);
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUsersByIds");
+	}
+
+	@Test
+	public void testDeadlineViewUsesAsyncView() throws Exception {
+		DeadlineUserStorageViewImp deadlineView = cachingView.onlyForTestGetDeadlineView();
+
+		assertSame(deadlineView.onlyForTestGetAsyncView(), cachingView.onlyForTestGetAsyncView());
+		assertEquals(deadlineView.onlyForTestGetMinRemainingTime(),
+				CachingUserStorageView.MIN_REMAINING_TIME_FOR_LOOKUP);
+	}
+
+	@Test
+	public void testGetUserByIdWithDeadline_cachedUserIsReturnedDirectly() throws Exception {
+		User cachedUser = cachingView.getUserById(USER_ID);
+		long[] now = { 0 };
+		Deadline expiredDeadline = Deadline.withTimeoutUsingNanoTimeSource(Duration.ZERO,
+				() -> now[0]);
+
+		User user = cachingView.getUserById(USER_ID, expiredDeadline);
+
+		assertSame(user, cachedUser);
+	}
+
+	@Test
+	public void testGetUserByIdWithDeadline_notCachedIsReadAndCached() throws Exception {
+		User user = cachingView.getUserById(USER_ID, createDeadline());
+
+		userStorageViewSpy.MCR.assertReturn("getUserById", 0, user);
+		assertSame(userCache.get(USER_ID).get(), user);
+	}
+
+	private Deadline createDeadline() {
+		return Deadline.withTimeout(Duration.ofSeconds(10));
+	}
+
+	@Test
+	public void testGetUserByLoginIdWithDeadline() throws Exception {
+		User user = cachingView.getUserByLoginId(LOGIN_ID, createDeadline());
+
+		userStorageViewSpy.MCR.assertReturn("getUserByLoginId", 0, user);
+	}
+
+	@Test
+	public void testGetAppTokenByIdWithDeadline() throws Exception {
+		AppToken appToken = cachingView.getAppTokenById("someAppTokenId", createDeadline());
+
+		assertEquals(appToken.tokenString, "someTokenString");
+		userStorageViewSpy.MCR.assertParameters("getAppTokenById", 0, "someAppTokenId");
+	}
+
+	@Test
+	public void testGetSystemSecretByIdWithDeadline() throws Exception {
+		String secret = cachingView.getSystemSecretById("someSecretId", createDeadline());
+
+		assertEquals(secret, "someSecret");
+	}
+
+	@Test
+	public void testLookupWithExpiredDeadlineFailsWithoutReading() throws Exception {
+		long[] now = { 0 };
+		Deadline expiredDeadline = Deadline.withTimeoutUsingNanoTimeSource(Duration.ZERO,
+				() -> now[0]);
+
+		try {
+			cachingView.getUserById(USER_ID, expiredDeadline);
+			fail();
+		} catch (UserStorageViewException e) {
+			assertTrue(e.getCause() instanceof DeadlineExceededException);
+		}
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserById");
+	}
+
+	@Test
+	public void testGetAppTokensByIds_readsAndCachesAppTokens() throws Exception {
+		AppToken appToken = new AppToken("appTokenId1", "token1");
+		UserStorageViewException notFound = createNotFoundError();
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getAppTokensByIds",
+				() -> new AppTokenBatchResult(Map.of("appTokenId1", appToken),
+						Map.of("appTokenId2", notFound)));
+
+		AppTokenBatchResult result = cachingView
+				.getAppTokensByIds(List.of("appTokenId1", "appTokenId2", "appTokenId1"));
+
+		userStorageViewSpy.MCR.assertParameterAsEqual("getAppTokensByIds", 0, "appTokenIds",
+				List.of("appTokenId1", "appTokenId2"));
+		assertEquals(result.appTokens(), Map.of("appTokenId1", appToken));
+		assertEquals(result.errors(), Map.of("appTokenId2", notFound));
+		assertEquals(secretCache.get(new SecretKey(SecretKey.APP_TOKEN, "appTokenId1")),
+				Optional.of("token1"));
+		assertEquals(notFoundCache.get(new NotFoundKey(NotFoundKey.APP_TOKEN, "appTokenId2")).get(),
+				new NotFound(notFound.getMessage(), (RecordNotFoundException) notFound.getCause()));
+	}
+
+	@Test
+	public void testGetAppTokensByIds_cachedAndKnownMissingAppTokensAreNotRead()
+			throws Exception {
+		secretCache.put(new SecretKey(SecretKey.APP_TOKEN, "appTokenId1"), "token1");
+		NotFound notFound = createNotFound();
+		notFoundCache.put(new NotFoundKey(NotFoundKey.APP_TOKEN, "appTokenId2"), notFound);
+
+		AppTokenBatchResult result = cachingView
+				.getAppTokensByIds(List.of("appTokenId1", "appTokenId2"));
+
+		userStorageViewSpy.MCR.assertMethodNotCalled("getAppTokensByIds");
+		assertEquals(result.appTokens().get("appTokenId1").tokenString, "token1");
+		UserStorageViewException error = result.errors().get("appTokenId2");
+		assertEquals(error.getMessage(), notFound.message());
+		assertSame(error.getCause(), notFound.cause());
+	}
+
+	@Test
+	public void testGetAppTokensByIds_otherErrorsAreNotRemembered() throws Exception {
+		UserStorageViewException error = UserStorageViewException.usingMessage("error from spy");
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getAppTokensByIds",
+				() -> new AppTokenBatchResult(Map.of(), Map.of("appTokenId1", error)));
+
+		cachingView.getAppTokensByIds(List.of("appTokenId1"));
+		cachingView.getAppTokensByIds(List.of("appTokenId1"));
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getAppTokensByIds", 2);
+	}
+
+	@Test
+	public void testGetUserAuthorizationById_usesCachedUser() throws Exception {
+		User user = cachingView.getUserById(USER_ID);
+		user.roles = Set.of("someRole");
+
+		UserAuthorization authorization = cachingView.getUserAuthorizationById(USER_ID);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 1);
+		assertEquals(authorization.getUserId(), user.id);
+		AuthorizationDictionary dictionary = userAuthorizations.getDictionary();
+		assertTrue(authorization.hasRole(dictionary.findRoleIndex("someRole")));
+	}
+
+	@Test
+	public void testGetUserAuthorizationById_sameAuthorizationForSameCachedUser()
+			throws Exception {
+		UserAuthorization authorization = cachingView.getUserAuthorizationById(USER_ID);
+
+		UserAuthorization authorization2 = cachingView.getUserAuthorizationById(USER_ID);
+
+		assertSame(authorization2, authorization);
+	}
+
+	@Test
+	public void testGetUserAuthorizationById_expiredUserCreatesNewAuthorization()
+			throws Exception {
+		UserAuthorization authorization = cachingView.getUserAuthorizationById(USER_ID);
+		now = Duration.ofSeconds(10).toNanos();
+
+		UserAuthorization authorization2 = cachingView.getUserAuthorizationById(USER_ID);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 2);
+		assertTrue(authorization2 != authorization);
+	}
+
+	@Test
+	public void testGetUserById_withOffHeapUserCache() throws Exception {
+		OffHeapUserCache offHeapUserCache = OffHeapUserCache
+				.usingCodecMaxSizeTimeToLiveAndStaleWindow(
+						CompactUserCodec.usingDictionary(new AuthorizationDictionary()), 10,
+						Duration.ofSeconds(10), Duration.ZERO);
+		caches = new UserStorageCaches(offHeapUserCache, loginIdIndex, notFoundCache, secretCache,
+				KnownLoginIds.disabled(), userAuthorizations, userSnapshot, userReplica);
+		cachingView = CachingUserStorageView.usingUserStorageViewAndCaches(userStorageViewSpy,
+				caches);
+
+		User user = cachingView.getUserById(USER_ID);
+		User user2 = cachingView.getUserById(USER_ID);
+		loginIdIndex.indexUser(user);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 1);
+		assertEquals(user2.id, user.id);
+		assertEquals(user2.loginId, user.loginId);
+		assertEquals(cachingView.getUserByLoginId(user.loginId).id, user.id);
+		assertEquals(offHeapUserCache.getStatistics().hits(), 2);
+	}
+
+	@Test
+	public void testGetUserById_fromUserSnapshot() throws Exception {
+		createViewWithSnapshotOfUser(createSnapshotUser());
+
+		User user = cachingView.getUserById("snapshotUserId");
+
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserById");
+		assertEquals(user.loginId, "snapshotLoginId");
+		assertEquals(user.roles, Set.of("someRole"));
+		assertTrue(userCache.get("snapshotUserId").isEmpty());
+		assertEquals(userSnapshot.getNumberOfHits(), 1);
+	}
+
+	private User createSnapshotUser() {
+		User user = new User("snapshotUserId");
+		user.loginId = "snapshotLoginId";
+		user.active = true;
+		user.roles = Set.of("someRole");
+		return user;
+	}
+
+	private void createViewWithSnapshotOfUser(User user) throws IOException {
+		Path directory = Files.createTempDirectory("cachingUserStorageViewTest");
+		Path path = directory.resolve("users.snapshot");
+		try {
+			BoundedTtlCache<String, User> snapshotCache = BoundedTtlCache
+					.usingMaxSizeAndTimeToLive(10, Duration.ofSeconds(10));
+			snapshotCache.put(user.id, user);
+			UserSnapshotFile snapshotFile = UserSnapshotFile.usingPathAndMaxAge(path,
+					Duration.ofMinutes(1));
+			snapshotFile.write(snapshotCache);
+			userSnapshot = snapshotFile.open();
+		} finally {
+			Files.deleteIfExists(path);
+			Files.delete(directory);
+		}
+		caches = new UserStorageCaches(userCache, loginIdIndex, notFoundCache, secretCache,
+				knownLoginIds, userAuthorizations, userSnapshot, userReplica);
+		cachingView = CachingUserStorageView.usingUserStorageViewAndCaches(userStorageViewSpy,
+				caches);
+	}
+
+	@Test
+	public void testGetUserByLoginId_fromUserSnapshot() throws Exception {
+		createViewWithSnapshotOfUser(createSnapshotUser());
+
+		User user = cachingView.getUserByLoginId("snapshotLoginId");
+
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserByLoginId");
+		assertEquals(user.id, "snapshotUserId");
+		assertTrue(loginIdIndex.findUserIdForLoginId("snapshotLoginId").isEmpty());
+	}
+
+	@Test
+	public void testGetUserById_cachedUserIsUsedBeforeUserSnapshot() throws Exception {
+		createViewWithSnapshotOfUser(createSnapshotUser());
+		User cachedUser = new User("snapshotUserId");
+		userCache.put("snapshotUserId", cachedUser);
+
+		User user = cachingView.getUserById("snapshotUserId");
+
+		assertSame(user, cachedUser);
+		assertEquals(userSnapshot.getNumberOfHits(), 0);
+	}
+
+	@Test
+	public void testGetUserById_userMissingInSnapshotIsReadFromStorage() throws Exception {
+		createViewWithSnapshotOfUser(createSnapshotUser());
+
+		User user = cachingView.getUserById(USER_ID);
+
+		userStorageViewSpy.MCR.assertReturn("getUserById", 0, user);
+		assertSame(userCache.get(USER_ID).get(), user);
+	}
+
+	@Test
+	public void testGetUserById_closedUserSnapshotIsNotUsed() throws Exception {
+		createViewWithSnapshotOfUser(createSnapshotUser());
+		userSnapshot.close();
+
+		cachingView.getUserById("snapshotUserId");
+
+		userStorageViewSpy.MCR.assertParameters("getUserById", 0, "snapshotUserId");
+	}
+
+	@Test
+	public void testGetUserById_fromFreshUserReplica() throws Exception {
+		User replicatedUser = createViewWithFreshReplicaOfUser();
+
+		User user = cachingView.getUserById("replicatedUserId");
+
+		assertSame(user, replicatedUser);
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserById");
+		assertEquals(userReplica.getNumberOfHits(), 1);
+	}
+
+	@Test
+	public void testGetUserById_cachedUserIsUsedBeforeReplica() throws Exception {
+		createViewWithFreshReplicaOfUser();
+		User cachedUser = new User("replicatedUserId");
+		userCache.put("replicatedUserId", cachedUser);
+
+		User user = cachingView.getUserById("replicatedUserId");
+
+		assertSame(user, cachedUser);
+		assertEquals(userCache.getStatistics().hits(), 1);
+		assertEquals(userReplica.getNumberOfHits(), 0);
+	}
+
+	@Test
+	public void testGetUserByLoginId_indexedUserIsUsedBeforeReplica() throws Exception {
+		createViewWithFreshReplicaOfUser();
+		User cachedUser = createUser("replicatedUserId", "replicatedLoginId");
+		userCache.put("replicatedUserId", cachedUser);
+		loginIdIndex.indexUser(cachedUser);
+
+		User user = cachingView.getUserByLoginId("replicatedLoginId");
+
+		assertSame(user, cachedUser);
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserByLoginId");
+		assertEquals(userReplica.getNumberOfHits(), 0);
+	}
+
+	private User createViewWithFreshReplicaOfUser() {
+		User user = new User("replicatedUserId");
+		user.loginId = "replicatedLoginId";
+		userReplica = UserReplica.usingMaxStalenessAndFullSyncInterval(Duration.ofSeconds(30),
+				Duration.ofHours(1));
+		userReplica.onlyForTestSetNanoTimeSource(() -> now);
+		userReplica.replaceUsers(List.of(user));
+		userReplica.markSynchronized(now);
+		caches = new UserStorageCaches(userCache, loginIdIndex, notFoundCache, secretCache,
+				knownLoginIds, userAuthorizations, userSnapshot, userReplica);
+		cachingView = CachingUserStorageView.usingUserStorageViewAndCaches(userStorageViewSpy,
+				caches);
+		return user;
+	}
+
+	@Test
+	public void testGetUserByLoginId_fromFreshUserReplica() throws Exception {
+		User replicatedUser = createViewWithFreshReplicaOfUser();
+
+		User user = cachingView.getUserByLoginId("replicatedLoginId");
+
+		assertSame(user, replicatedUser);
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserByLoginId");
+		assertEquals(userReplica.getNumberOfHits(), 1);
+	}
+
+	@Test
+	public void testGetUserById_userMissingInReplicaIsReadFromStorage() throws Exception {
+		createViewWithFreshReplicaOfUser();
+
+		User user = cachingView.getUserById(USER_ID);
+
+		userStorageViewSpy.MCR.assertReturn("getUserById", 0, user);
+	}
+
+	@Test
+	public void testGetUserById_staleUserReplicaIsNotUsed() throws Exception {
+		createViewWithFreshReplicaOfUser();
+		now = Duration.ofSeconds(30).toNanos() + 1;
+
+		cachingView.getUserById("replicatedUserId");
+		cachingView.getUserByLoginId("replicatedLoginId");
+
+		userStorageViewSpy.MCR.assertParameters("getUserById", 0, "replicatedUserId");
+		userStorageViewSpy.MCR.assertParameters("getUserByLoginId", 0, "replicatedLoginId");
+	}
+
+	@Test
+	public void testUserInvalidatedDuringBlockedLoadIsNotCached() throws Exception {
+		CountDownLatch loadStarted = new CountDownLatch(1);
+		CountDownLatch invalidated = new CountDownLatch(1);
+		userStorageViewSpy.MRV.setSpecificReturnValuesSupplier("getUserById",
+				() -> readUserAfterInvalidation(loadStarted, invalidated), USER_ID);
+		CompletableFuture<User> load = CompletableFuture
+				.supplyAsync(() -> cachingView.getUserById(USER_ID));
+		assertTrue(loadStarted.await(1, TimeUnit.SECONDS));
+
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+		invalidated.countDown();
+
+		assertEquals(load.get(1, TimeUnit.SECONDS).id, USER_ID);
+		assertTrue(userCache.getCachedValue(USER_ID).isEmpty());
+	}
+
+	private User readUserAfterInvalidation(CountDownLatch loadStarted,
+			CountDownLatch invalidated) {
+		loadStarted.countDown();
+		try {
+			invalidated.await(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return createUser(USER_ID, LOGIN_ID);
+	}
+
+	@Test
+	public void testUserNotFoundDuringInvalidationIsNotRemembered() throws Exception {
+		userStorageViewSpy.MRV.setSpecificReturnValuesSupplier("getUserById",
+				() -> throwNotFoundInvalidatedDuringRead(), USER_ID);
+
+		assertThrowsNotFound(() -> cachingView.getUserById(USER_ID));
+
+		assertTrue(notFoundCache.get(new NotFoundKey(NotFoundKey.USER, USER_ID)).isEmpty());
+	}
+
+	private void assertThrowsNotFound(Runnable lookup) {
+		try {
+			lookup.run();
+			fail();
+		} catch (UserStorageViewException e) {
+			assertTrue(e.getCause() instanceof RecordNotFoundException);
+		}
+	}
+
+	@Test
+	public void testUserReadByLoginIdDuringInvalidationIsNotCachedOrIndexed() throws Exception {
+		userStorageViewSpy.MRV.setSpecificReturnValuesSupplier("getUserByLoginId",
+				() -> readUserInvalidatedDuringRead(), LOGIN_ID);
+
+		User user = cachingView.getUserByLoginId(LOGIN_ID);
+
+		assertEquals(user.id, USER_ID);
+		assertTrue(userCache.getCachedValue(USER_ID).isEmpty());
+		assertTrue(loginIdIndex.findUserIdForLoginId(LOGIN_ID).isEmpty());
+	}
+
+	@Test
+	public void testLoginIdNotFoundDuringInvalidationIsNotRemembered() throws Exception {
+		userStorageViewSpy.MRV.setSpecificReturnValuesSupplier("getUserByLoginId",
+				() -> throwNotFoundInvalidatedDuringRead(), LOGIN_ID);
+
+		assertThrowsNotFound(() -> cachingView.getUserByLoginId(LOGIN_ID));
+
+		assertTrue(notFoundCache.get(new NotFoundKey(NotFoundKey.LOGIN_ID, LOGIN_ID)).isEmpty());
+	}
+
+	@Test
+	public void testUsersReadInBatchDuringInvalidationAreNotCached() throws Exception {
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getUsersByIds",
+				() -> readBatchWithUserInvalidatedDuringRead());
+
+		UserBatchResult result = cachingView.getUsersByIds(List.of(USER_ID, "otherUserId"));
+
+		assertEquals(result.users().keySet(), Set.of(USER_ID, "otherUserId"));
+		assertTrue(userCache.getCachedValue(USER_ID).isEmpty());
+		assertTrue(userCache.getCachedValue("otherUserId").isPresent());
+	}
+
+	private UserBatchResult readBatchWithUserInvalidatedDuringRead() {
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+		return new UserBatchResult(Map.of(USER_ID, createUser(USER_ID, LOGIN_ID), "otherUserId",
+				createUser("otherUserId", "otherLoginId")), Set.of());
+	}
+
+	@Test
+	public void testAppTokenRevokedDuringReadIsNotCached() throws Exception {
+		userStorageViewSpy.MRV.setSpecificReturnValuesSupplier("getAppTokenById",
+				() -> readAppTokenRevokedDuringRead("someAppTokenId"), "someAppTokenId");
+
+		AppToken appToken = cachingView.getAppTokenById("someAppTokenId");
+
+		assertEquals(appToken.tokenString, "someTokenString");
+		assertTrue(secretCache.get(new SecretKey(SecretKey.APP_TOKEN, "someAppTokenId"))
+				.isEmpty());
+	}
+
+	private AppToken readAppTokenRevokedDuringRead(String appTokenId) {
+		cachingView.invalidateRecord(RecordTypes.APP_TOKEN, appTokenId);
+		return new AppToken(appTokenId, "someTokenString");
+	}
+
+	@Test
+	public void testAppTokenNotFoundDuringRevocationIsNotRemembered() throws Exception {
+		userStorageViewSpy.MRV.setSpecificReturnValuesSupplier("getAppTokenById",
+				() -> throwNotFoundForAppTokenRevokedDuringRead(), "someAppTokenId");
+
+		assertThrowsNotFound(() -> cachingView.getAppTokenById("someAppTokenId"));
+
+		assertTrue(notFoundCache.get(new NotFoundKey(NotFoundKey.APP_TOKEN, "someAppTokenId"))
+				.isEmpty());
+	}
+
+	private AppToken throwNotFoundForAppTokenRevokedDuringRead() {
+		cachingView.invalidateRecord(RecordTypes.APP_TOKEN, "someAppTokenId");
+		throw createNotFoundError();
+	}
+
+	@Test
+	public void testAppTokensReadInBatchDuringRevocationAreNotCached() throws Exception {
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getAppTokensByIds",
+				() -> readAppTokenBatchWithTokenRevokedDuringRead());
+
+		AppTokenBatchResult result = cachingView
+				.getAppTokensByIds(List.of("appTokenId1", "appTokenId2"));
+
+		assertEquals(result.appTokens().keySet(), Set.of("appTokenId1", "appTokenId2"));
+		assertTrue(secretCache.get(new SecretKey(SecretKey.APP_TOKEN, "appTokenId1")).isEmpty());
+		assertTrue(
+				secretCache.get(new SecretKey(SecretKey.APP_TOKEN, "appTokenId2")).isPresent());
+	}
+
+	private AppTokenBatchResult readAppTokenBatchWithTokenRevokedDuringRead() {
+		cachingView.invalidateRecord(RecordTypes.APP_TOKEN, "appTokenId1");
+		return new AppTokenBatchResult(Map.of("appTokenId1", new AppToken("appTokenId1", "token1"),
+				"appTokenId2", new AppToken("appTokenId2", "token2")), Map.of());
+	}
+
+	@Test
+	public void testSystemSecretChangedDuringReadIsNotCached() throws Exception {
+		userStorageViewSpy.MRV.setSpecificReturnValuesSupplier("getSystemSecretById",
+				() -> readSystemSecretChangedDuringRead(), "somePasswordId");
+
+		String secret = cachingView.getSystemSecretById("somePasswordId");
+
+		assertEquals(secret, "oldSecret");
+		assertTrue(secretCache.get(new SecretKey(SecretKey.SYSTEM_SECRET, "somePasswordId"))
+				.isEmpty());
+	}
+
+	private String readSystemSecretChangedDuringRead() {
+		cachingView.invalidateRecord(RecordTypes.SYSTEM_SECRET, "somePasswordId");
+		return "oldSecret";
+	}
+
+	@Test
+	public void testPasswordOfUserInvalidatedDuringSecretReadIsNotCached() throws Exception {
+		User user = createUser(USER_ID, LOGIN_ID);
+		user.passwordId = Optional.of("somePasswordId");
+		userCache.put(USER_ID, user);
+		userStorageViewSpy.MRV.setSpecificReturnValuesSupplier("getSystemSecretById",
+				() -> readPasswordOfUserInvalidatedDuringRead(), "somePasswordId");
+
+		cachingView.getSystemSecretById("somePasswordId");
+
+		assertTrue(secretCache.get(new SecretKey(SecretKey.SYSTEM_SECRET, "somePasswordId"))
+				.isEmpty());
+	}
+
+	private String readPasswordOfUserInvalidatedDuringRead() {
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+		return "oldSecret";
+	}
+
+	@Test
+	public void testInvalidateUserDropsUserAndEntriesDependingOnIt() throws Exception {
+		User user = createUser(USER_ID, LOGIN_ID);
+		user.appTokenIds = List.of("someAppTokenId");
+		user.passwordId = Optional.of("somePasswordId");
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getUserById", () -> user);
+		cachingView.getUserById(USER_ID);
+		cachingView.getAppTokenById("someAppTokenId");
+		cachingView.getSystemSecretById("somePasswordId");
+
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+
+		assertTrue(userCache.get(USER_ID).isEmpty());
+		assertTrue(loginIdIndex.findUserIdForLoginId(LOGIN_ID).isEmpty());
+		assertTrue(secretCache.get(new SecretKey(SecretKey.APP_TOKEN, "someAppTokenId"))
+				.isEmpty());
+		assertTrue(secretCache.get(new SecretKey(SecretKey.SYSTEM_SECRET, "somePasswordId"))
+				.isEmpty());
+		userStorageViewSpy.MCR.assertParameters("invalidateRecord", 0,
+				RecordTypes.USER, USER_ID);
+	}
+
+	@Test
+	public void testInvalidateUserDropsNotFoundUserAndLoginId() throws Exception {
+		User user = createUser(USER_ID, LOGIN_ID);
+		userCache.put(USER_ID, user);
+		notFoundCache.put(new NotFoundKey(NotFoundKey.USER, USER_ID), createNotFound());
+		notFoundCache.put(new NotFoundKey(NotFoundKey.LOGIN_ID, LOGIN_ID), createNotFound());
+
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+
+		assertEquals(notFoundCache.size(), 0);
+	}
+
+	@Test
+	public void testLoginIdOfInvalidatedUserIsReadAndAddedToKnownLoginIds() throws Exception {
+		buildKnownLoginIds();
+		userStorageViewSpy.MRV.setDefaultReturnValuesSupplier("getUserById",
+				() -> createUser(USER_ID, "createdLoginId"));
+
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+
+		userStorageViewSpy.MCR.assertParameters("getUserById", 0, USER_ID);
+		assertTrue(knownLoginIds.mightExist("createdLoginId"));
+		assertTrue(userCache.getCachedValue(USER_ID).isEmpty());
+	}
+
+	@Test
+	public void testLoginIdOfInvalidatedUserIsNotReadWhenKnownLoginIdsIsDisabled()
+			throws Exception {
+		createViewWithKnownLoginIds(KnownLoginIds.disabled());
+
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+
+		userStorageViewSpy.MCR.assertMethodNotCalled("getUserById");
+	}
+
+	private void createViewWithKnownLoginIds(KnownLoginIds knownLoginIds) {
+		this.knownLoginIds = knownLoginIds;
+		caches = new UserStorageCaches(userCache, loginIdIndex, notFoundCache, secretCache,
+				knownLoginIds, userAuthorizations, userSnapshot, userReplica);
+		cachingView = CachingUserStorageView.usingUserStorageViewAndCaches(userStorageViewSpy,
+				caches);
+	}
+
+	@Test
+	public void testDeletedInvalidatedUserKeepsKnownLoginIds() throws Exception {
+		buildKnownLoginIds("knownLoginId");
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserById", createNotFoundError());
+
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+
+		assertTrue(knownLoginIds.getStatistics().built());
+		assertFalse(knownLoginIds.mightExist(LOGIN_ID));
+	}
+
+	@Test
+	public void testKnownLoginIdsAreForgottenWhenInvalidatedUserCanNotBeRead() throws Exception {
+		buildKnownLoginIds("knownLoginId");
+		userStorageViewSpy.MRV.setAlwaysThrowException("getUserById",
+				UserStorageViewException.usingMessage("storage unavailable"));
+
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+
+		assertFalse(knownLoginIds.getStatistics().built());
+		assertTrue(knownLoginIds.mightExist(LOGIN_ID));
+	}
+
+	@Test
+	public void testInvalidatedUserLoginIdIsKeptByRebuildOfKnownLoginIds() throws Exception {
+		createViewWithKnownLoginIds(
+				KnownLoginIds.usingExpectedLoginIdsAndFalsePositiveRate(100, 0.01));
+		userCache.put(USER_ID, createUser(USER_ID, LOGIN_ID));
+		LoginIdBloomFilter filter = knownLoginIds.startRebuild(0);
+
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+		knownLoginIds.finishRebuild(filter);
+
+		assertTrue(knownLoginIds.mightExist(LOGIN_ID));
+	}
+
+	@Test
+	public void testInvalidateUserIsReadFromStorageAgain() throws Exception {
+		cachingView.getUserById(USER_ID);
+
+		cachingView.invalidateRecord(RecordTypes.USER, USER_ID);
+		cachingView.getUserById(USER_ID);
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getUserById", 2);
+	}
+
+	@Test
+	public void testInvalidateUserRemovesUserFromReplica() throws Exception {
+		createViewWithFreshReplicaOfUser();
+		cachingView.getAppTokenById("someAppTokenId");
+
+		cachingView.invalidateRecord(RecordTypes.USER, "replicatedUserId");
+		cachingView.getUserByLoginId("replicatedLoginId");
+
+		assertEquals(userReplica.getNumberOfUsers(), 0);
+		userStorageViewSpy.MCR.assertParameters("getUserByLoginId", 0, "replicatedLoginId");
+	}
+
+	@Test
+	public void testInvalidateUserStopsSnapshotFromFindingUser() throws Exception {
+		createViewWithSnapshotOfUser(createSnapshotUser());
+
+		cachingView.invalidateRecord(RecordTypes.USER, "snapshotUserId");
+		cachingView.getUserById("snapshotUserId");
+
+		userStorageViewSpy.MCR.assertParameters("getUserById", 0, "snapshotUserId");
+	}
+
+	@Test
+	public void testInvalidateAppToken() throws Exception {
+		cachingView.getAppTokenById("someAppTokenId");
+		notFoundCache.put(new NotFoundKey(NotFoundKey.APP_TOKEN, "someAppTokenId"),
+				createNotFound());
+
+		cachingView.invalidateRecord(RecordTypes.APP_TOKEN, "someAppTokenId");
+		cachingView.getAppTokenById("someAppTokenId");
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getAppTokenById", 2);
+		assertEquals(notFoundCache.size(), 0);
+		userStorageViewSpy.MCR.assertParameters("invalidateRecord", 0,
+				RecordTypes.APP_TOKEN, "someAppTokenId");
+	}
+
+	@Test
+	public void testInvalidateSystemSecret() throws Exception {
+		cachingView.getSystemSecretById("someSecretId");
+
+		cachingView.invalidateRecord(RecordTypes.SYSTEM_SECRET, "someSecretId");
+		cachingView.getSystemSecretById("someSecretId");
+
+		userStorageViewSpy.MCR.assertNumberOfCallsToMethod("getSystemSecretById", 2);
+		userStorageViewSpy.MCR.assertParameters("invalidateRecord", 0,
+				RecordTypes.SYSTEM_SECRET, "someSecretId");
+	}
+
+	@Test
+	public void testInvalidateOtherRecordTypeIsOnlyPassedOn() throws Exception {
+		cachingView.getUserById(USER_ID);
+
+		cachingView.invalidateRecord("someOtherType", USER_ID);
+
+		assertTrue(userCache.get(USER_ID).isPresent());
+		userStorageViewSpy.MCR.assertParameters("invalidateRecord", 0, "someOtherType",
+				USER_ID);
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.data.spies.DataRecordGroupSpy;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.logger.spies.LoggerFactorySpy;
+import se.uu.ub.cora.logger.spies.LoggerSpy;
+import se.uu.ub.cora.storage.Filter;
+import se.uu.ub.cora.storage.StorageReadResult;
+import se.uu.ub.cora.storage.spies.RecordStorageSpy;
+
+public class KnownLoginIdsRebuilderTest {
+	private static final int PAGE_SIZE = 2;
+	private LoggerFactorySpy loggerFactorySpy;
+	private RecordStorageSpy recordStorage;
+	private KnownLoginIds knownLoginIds;
+	private KnownLoginIdsRebuilder rebuilder;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		recordStorage = new RecordStorageSpy();
+		knownLoginIds = KnownLoginIds.usingExpectedLoginIdsAndFalsePositiveRate(100, 0.01);
+		rebuilder = KnownLoginIdsRebuilder.usingRecordStorageKnownLoginIdsAndPageSize(
+				recordStorage, knownLoginIds, PAGE_SIZE);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(rebuilder instanceof Runnable);
+		assertSame(rebuilder.onlyForTestGetRecordStorage(), recordStorage);
+		assertSame(rebuilder.onlyForTestGetKnownLoginIds(), knownLoginIds);
+		assertEquals(rebuilder.onlyForTestGetPageSize(), PAGE_SIZE);
+		loggerFactorySpy.MCR.assertParameters("factorForClass", 0, KnownLoginIdsRebuilder.class);
+	}
+
+	@Test
+	public void testAllPagesAreReadAndLoginIdsAdded() throws Exception {
+		setUpStorageWithPages(3, List.of(userRecord("login1"), userRecord("login2")),
+				List.of(userRecord("login3")));
+
+		rebuilder.run();
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 2);
+		assertPageRead(0, 1, 2);
+		assertPageRead(1, 3, 4);
+		assertTrue(knownLoginIds.mightExist("login1"));
+		assertTrue(knownLoginIds.mightExist("login2"));
+		assertTrue(knownLoginIds.mightExist("login3"));
+		assertFalse(knownLoginIds.mightExist("otherLogin"));
+	}
+
+	@Test
+	public void testLoginIdsAddedWhilePagesAreReadAreKept() throws Exception {
+		DataRecordGroupSpy userRecord = (DataRecordGroupSpy) userRecord("login3");
+		userRecord.MRV.setSpecificReturnValuesSupplier("containsChildWithNameInData", () -> {
+			knownLoginIds.add("loginMovedToReadPage");
+			return true;
+		}, "loginId");
+		setUpStorageWithPages(3, List.of(userRecord("login1"), userRecord("login2")),
+				List.of(userRecord));
+
+		rebuilder.run();
+
+		assertTrue(knownLoginIds.mightExist("loginMovedToReadPage"));
+	}
+
+	private void setUpStorageWithPages(long totalNumberOfMatches,
+			List<DataRecordGroup> firstPage, List<DataRecordGroup> secondPage) {
+		Iterator<List<DataRecordGroup>> pages = List.of(firstPage, secondPage).iterator();
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList", () -> {
+			StorageReadResult readResult = new StorageReadResult();
+			readResult.totalNumberOfMatches = totalNumberOfMatches;
+			readResult.listOfDataRecordGroups = pages.hasNext() ? pages.next() : List.of();
+			return readResult;
+		});
+	}
+
+	private DataRecordGroup userRecord(String loginId) {
+		DataRecordGroupSpy userRecord = new DataRecordGroupSpy();
+		userRecord.MRV.setSpecificReturnValuesSupplier("containsChildWithNameInData", () -> true,
+				"loginId");
+		userRecord.MRV.setSpecificReturnValuesSupplier("getFirstAtomicValueWithNameInData",
+				() -> loginId, "loginId");
+		return userRecord;
+	}
+
+	private void assertPageRead(int callNumber, long fromNo, long toNo) {
+		recordStorage.MCR.assertParameter("readList", callNumber, "type", "user");
+		Filter filter = (Filter) recordStorage.MCR
+				.getValueForMethodNameAndCallNumberAndParameterName("readList", callNumber,
+						"filter");
+		assertEquals(filter.fromNo, fromNo);
+		assertEquals(filter.toNo, toNo);
+	}
+
+	@Test
+	public void testFilterIsSizedForUsersInStorage() throws Exception {
+		setUpStorageWithPages(5000, new ArrayList<>(), List.of());
+
+		rebuilder.run();
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 1);
+		assertEquals(knownLoginIds.getStatistics().bitSize(), 47936);
+	}
+
+	@Test
+	public void testRecordsWithoutLoginIdAreSkipped() throws Exception {
+		DataRecordGroupSpy recordWithoutLoginId = new DataRecordGroupSpy();
+		setUpStorageWithPages(1, List.of(recordWithoutLoginId), List.of());
+
+		rebuilder.run();
+
+		recordWithoutLoginId.MCR.assertMethodNotCalled("getFirstAtomicValueWithNameInData");
+		assertTrue(knownLoginIds.getStatistics().built());
+	}
+
+	@Test
+	public void testRebuildIsLogged() throws Exception {
+		setUpStorageWithPages(1, List.of(userRecord("login1")), List.of());
+
+		rebuilder.run();
+
+		LoggerSpy loggerSpy = (LoggerSpy) loggerFactorySpy.MCR.getReturnValue("factorForClass", 0);
+		String message = (String) loggerSpy.MCR.getValueForMethodNameAndCallNumberAndParameterName(
+				"logInfoUsingMessage", 0, "message");
+		assertTrue(message.startsWith("Rebuilt known loginIds, loginIds: 1, bits: 960,"
+				+ " memory: 120 bytes, expected false positive rate: 0.0000, time: "), message);
+	}
+
+	@Test
+	public void testFailedReadKeepsCurrentFilter() throws Exception {
+		setUpStorageWithPages(3, List.of(userRecord("login1"), userRecord("login2")),
+				List.of(userRecord("login3")));
+		rebuilder.run();
+		RuntimeException error = new RuntimeException("error from storage");
+		recordStorage.MRV.setAlwaysThrowException("readList", error);
+
+		try {
+			rebuilder.run();
+			fail();
+		} catch (RuntimeException e) {
+			assertSame(e, error);
+		}
+
+		assertTrue(knownLoginIds.mightExist("login1"));
+		assertEquals(knownLoginIds.getStatistics().rebuilds(), 1);
+	}
+}
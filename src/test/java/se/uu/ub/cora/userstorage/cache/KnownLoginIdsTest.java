@@ -0,0 +1,191 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.userstorage.metrics.KnownLoginIdsStatistics;
+
+public class KnownLoginIdsTest {
+	private KnownLoginIds knownLoginIds;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		knownLoginIds = KnownLoginIds.usingExpectedLoginIdsAndFalsePositiveRate(1000, 0.01);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(knownLoginIds.isEnabled());
+		assertEquals(knownLoginIds.getExpectedLoginIds(), 1000);
+		assertEquals(knownLoginIds.getFalsePositiveRate(), 0.01);
+		assertEquals(knownLoginIds.getStatistics(),
+				new KnownLoginIdsStatistics(false, 0, 0, 0, 1, 0, 0));
+	}
+
+	@Test
+	public void testEveryLoginIdMightExistBeforeFirstBuild() throws Exception {
+		assertTrue(knownLoginIds.mightExist("someLoginId"));
+	}
+
+	@Test
+	public void testLoginIdsNotInBuiltFilterAreRejected() throws Exception {
+		buildWithLoginIds("someLoginId");
+
+		assertTrue(knownLoginIds.mightExist("someLoginId"));
+		assertFalse(knownLoginIds.mightExist("otherLoginId"));
+		KnownLoginIdsStatistics statistics = knownLoginIds.getStatistics();
+		assertTrue(statistics.built());
+		assertEquals(statistics.approximateLoginIds(), 1);
+		assertEquals(statistics.bitSize(), 9600);
+		assertEquals(statistics.memoryInBytes(), 1200);
+		assertTrue(statistics.expectedFalsePositiveRate() < 0.01);
+		assertEquals(statistics.rejectedLookups(), 1);
+		assertEquals(statistics.rebuilds(), 1);
+	}
+
+	private void buildWithLoginIds(String... loginIds) {
+		LoginIdBloomFilter filter = knownLoginIds.startRebuild(0);
+		for (String loginId : loginIds) {
+			filter.add(loginId);
+		}
+		knownLoginIds.finishRebuild(filter);
+	}
+
+	@Test
+	public void testAddedLoginIdIsKnown() throws Exception {
+		buildWithLoginIds();
+
+		knownLoginIds.add("someLoginId");
+
+		assertTrue(knownLoginIds.mightExist("someLoginId"));
+	}
+
+	@Test
+	public void testNullLoginIdIsIgnored() throws Exception {
+		buildWithLoginIds();
+
+		knownLoginIds.add(null);
+
+		assertEquals(knownLoginIds.getStatistics().approximateLoginIds(), 0);
+	}
+
+	@Test
+	public void testLoginIdsAddedDuringRebuildAreKeptInNewFilter() throws Exception {
+		buildWithLoginIds();
+		LoginIdBloomFilter newFilter = knownLoginIds.startRebuild(0);
+
+		knownLoginIds.add("addedDuringRebuild");
+
+		assertTrue(knownLoginIds.mightExist("addedDuringRebuild"));
+		knownLoginIds.finishRebuild(newFilter);
+		assertTrue(knownLoginIds.mightExist("addedDuringRebuild"));
+	}
+
+	@Test
+	public void testLoginIdsAddedDuringRebuildAreNotKeptWhenRebuildIsAborted() throws Exception {
+		buildWithLoginIds();
+		knownLoginIds.startRebuild(0);
+		knownLoginIds.add("addedDuringAbortedRebuild");
+		knownLoginIds.abortRebuild();
+
+		buildWithLoginIds();
+
+		assertFalse(knownLoginIds.mightExist("addedDuringAbortedRebuild"));
+	}
+
+	@Test
+	public void testNoLoginIdIsRejectedWhileRebuildIsInProgress() throws Exception {
+		buildWithLoginIds("someLoginId");
+		knownLoginIds.startRebuild(0);
+
+		assertTrue(knownLoginIds.mightExist("otherLoginId"));
+		assertEquals(knownLoginIds.getStatistics().rejectedLookups(), 0);
+	}
+
+	@Test
+	public void testForgetFilterStopsRejectionsUntilNextRebuild() throws Exception {
+		buildWithLoginIds("someLoginId");
+		LoginIdBloomFilter filterBeingBuilt = knownLoginIds.startRebuild(0);
+
+		knownLoginIds.forgetFilter();
+		knownLoginIds.finishRebuild(filterBeingBuilt);
+
+		assertTrue(knownLoginIds.mightExist("otherLoginId"));
+		assertFalse(knownLoginIds.getStatistics().built());
+		buildWithLoginIds("someLoginId");
+		assertFalse(knownLoginIds.mightExist("otherLoginId"));
+	}
+
+	@Test
+	public void testRebuildRemovesDeletedLoginIds() throws Exception {
+		buildWithLoginIds("deletedLoginId");
+
+		buildWithLoginIds();
+
+		assertFalse(knownLoginIds.mightExist("deletedLoginId"));
+		assertEquals(knownLoginIds.getStatistics().rebuilds(), 2);
+	}
+
+	@Test
+	public void testNewFilterIsSizedForLoginIdsInStorage() throws Exception {
+		LoginIdBloomFilter filter = knownLoginIds.startRebuild(10000);
+
+		assertEquals(filter.getBitSize(), 95872);
+	}
+
+	@Test
+	public void testAbortedRebuildKeepsCurrentFilter() throws Exception {
+		buildWithLoginIds("someLoginId");
+		LoginIdBloomFilter newFilter = knownLoginIds.startRebuild(0);
+
+		knownLoginIds.abortRebuild();
+		knownLoginIds.finishRebuild(newFilter);
+
+		assertTrue(knownLoginIds.mightExist("someLoginId"));
+		assertEquals(knownLoginIds.getStatistics().rebuilds(), 1);
+	}
+
+	@Test
+	public void testOnlyLatestRebuildCanFinish() throws Exception {
+		LoginIdBloomFilter oldFilter = knownLoginIds.startRebuild(0);
+		knownLoginIds.startRebuild(0);
+
+		knownLoginIds.finishRebuild(oldFilter);
+
+		assertFalse(knownLoginIds.getStatistics().built());
+	}
+
+	@Test
+	public void testDisabledNeverRejects() throws Exception {
+		knownLoginIds = KnownLoginIds.disabled();
+		buildWithLoginIds();
+
+		knownLoginIds.add("someLoginId");
+
+		assertFalse(knownLoginIds.isEnabled());
+		assertTrue(knownLoginIds.mightExist("otherLoginId"));
+		assertFalse(knownLoginIds.getStatistics().built());
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class LoginIdBloomFilterTest {
+
+	@Test
+	public void testSizeIsChosenFromExpectedLoginIdsAndFalsePositiveRate() throws Exception {
+		LoginIdBloomFilter filter = LoginIdBloomFilter
+				.usingExpectedLoginIdsAndFalsePositiveRate(1000, 0.01);
+
+		assertEquals(filter.getBitSize(), 9600);
+		assertEquals(filter.getNumberOfHashFunctions(), 7);
+		assertEquals(filter.getMemoryInBytes(), 1200);
+	}
+
+	@Test
+	public void testSmallFilterHasMinimumSize() throws Exception {
+		LoginIdBloomFilter filter = LoginIdBloomFilter
+				.usingExpectedLoginIdsAndFalsePositiveRate(0, 0.5);
+
+		assertEquals(filter.getBitSize(), 64);
+		assertTrue(filter.getNumberOfHashFunctions() >= 1);
+	}
+
+	@Test
+	public void testEmptyFilterContainsNothing() throws Exception {
+		LoginIdBloomFilter filter = LoginIdBloomFilter
+				.usingExpectedLoginIdsAndFalsePositiveRate(1000, 0.01);
+
+		assertFalse(filter.mightContain("someLoginId"));
+		assertFalse(filter.mightContain(""));
+		assertEquals(filter.getExpectedFalsePositiveRate(), 0.0);
+		assertEquals(filter.getApproximateNumberOfLoginIds(), 0);
+	}
+
+	@Test
+	public void testAddedLoginIdsAreAlwaysContained() throws Exception {
+		LoginIdBloomFilter filter = LoginIdBloomFilter
+				.usingExpectedLoginIdsAndFalsePositiveRate(1000, 0.01);
+
+		for (int i = 0; i < 1000; i++) {
+			filter.add("loginId" + i);
+		}
+
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(filter.mightContain("loginId" + i));
+		}
+	}
+
+	@Test
+	public void testFalsePositiveRateIsCloseToWanted() throws Exception {
+		LoginIdBloomFilter filter = LoginIdBloomFilter
+				.usingExpectedLoginIdsAndFalsePositiveRate(10000, 0.01);
+		for (int i = 0; i < 10000; i++) {
+			filter.add("loginId" + i);
+		}
+
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (filter.mightContain("otherLoginId" + i)) {
+				falsePositives++;
+			}
+		}
+
+		assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+		double expectedRate = filter.getExpectedFalsePositiveRate();
+		assertTrue(expectedRate > 0.005 && expectedRate < 0.02, "rate: " + expectedRate);
+		long approximateLoginIds = filter.getApproximateNumberOfLoginIds();
+		assertTrue(Math.abs(approximateLoginIds - 10000) < 500, "count: " + approximateLoginIds);
+	}
+
+	@Test
+	public void testAddingSameLoginIdAgainChangesNothing() throws Exception {
+		LoginIdBloomFilter filter = LoginIdBloomFilter
+				.usingExpectedLoginIdsAndFalsePositiveRate(1000, 0.01);
+		filter.add("someLoginId");
+		double rate = filter.getExpectedFalsePositiveRate();
+
+		filter.add("someLoginId");
+
+		assertEquals(filter.getExpectedFalsePositiveRate(), rate);
+		assertEquals(filter.getApproximateNumberOfLoginIds(), 1);
+	}
+}
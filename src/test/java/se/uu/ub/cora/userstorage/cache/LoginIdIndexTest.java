@@ -0,0 +1,208 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+public class LoginIdIndexTest {
+	private LoginIdIndex index;
+	private long now;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 0;
+		index = LoginIdIndex.usingMaxSizeAndTimeToLive(3, Duration.ofSeconds(10));
+		index.onlyForTestSetNanoTimeSource(() -> now);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertEquals(index.getMaxSize(), 3);
+		assertEquals(index.getTimeToLive(), Duration.ofSeconds(10));
+		assertEquals(index.size(), 0);
+		assertEquals(index.getNumberOfConflicts(), 0);
+	}
+
+	@Test
+	public void testNotIndexed() throws Exception {
+		assertTrue(index.findUserIdForLoginId("someLoginId").isEmpty());
+	}
+
+	@Test
+	public void testIndexUser() throws Exception {
+		index.indexUser(createUser("someUserId", "someLoginId"));
+
+		assertEquals(index.findUserIdForLoginId("someLoginId").get(), "someUserId");
+		assertEquals(index.size(), 1);
+	}
+
+	@Test
+	public void testUserWithoutLoginIdIsNotIndexed() throws Exception {
+		index.indexUser(new User("someUserId"));
+
+		assertEquals(index.size(), 0);
+	}
+
+	@Test
+	public void testIndexSameUserTwice() throws Exception {
+		index.indexUser(createUser("someUserId", "someLoginId"));
+		index.indexUser(createUser("someUserId", "someLoginId"));
+
+		assertEquals(index.findUserIdForLoginId("someLoginId").get(), "someUserId");
+		assertEquals(index.getNumberOfConflicts(), 0);
+	}
+
+	@Test
+	public void testChangedLoginIdReplacesPreviousLoginId() throws Exception {
+		index.indexUser(createUser("someUserId", "someLoginId"));
+
+		index.indexUser(createUser("someUserId", "someNewLoginId"));
+
+		assertTrue(index.findUserIdForLoginId("someLoginId").isEmpty());
+		assertEquals(index.findUserIdForLoginId("someNewLoginId").get(), "someUserId");
+		assertEquals(index.size(), 1);
+	}
+
+	@Test
+	public void testSameLoginIdForTwoUsersRemovesLoginId() throws Exception {
+		index.indexUser(createUser("someUserId", "someLoginId"));
+
+		index.indexUser(createUser("someOtherUserId", "someLoginId"));
+
+		assertTrue(index.findUserIdForLoginId("someLoginId").isEmpty());
+		assertEquals(index.size(), 0);
+		assertEquals(index.getNumberOfConflicts(), 1);
+	}
+
+	@Test
+	public void testConflictingLoginIdIsNotIndexedAgainBeforeConflictHasExpired()
+			throws Exception {
+		index.indexUser(createUser("someUserId", "someLoginId"));
+		index.indexUser(createUser("someOtherUserId", "someLoginId"));
+
+		index.indexUser(createUser("someOtherUserId", "someLoginId"));
+		index.indexUser(createUser("someThirdUserId", "someLoginId"));
+
+		assertTrue(index.findUserIdForLoginId("someLoginId").isEmpty());
+		assertEquals(index.getNumberOfConflicts(), 1);
+	}
+
+	@Test
+	public void testConflictingLoginIdCanBeIndexedAgainWhenConflictHasExpired()
+			throws Exception {
+		index.indexUser(createUser("someUserId", "someLoginId"));
+		index.indexUser(createUser("someOtherUserId", "someLoginId"));
+		now += Duration.ofSeconds(10).toNanos();
+
+		index.indexUser(createUser("someOtherUserId", "someLoginId"));
+
+		assertEquals(index.findUserIdForLoginId("someLoginId").get(), "someOtherUserId");
+	}
+
+	@Test
+	public void testIndexedLoginIdExpires() throws Exception {
+		index.indexUser(createUser("someUserId", "someLoginId"));
+		now += Duration.ofSeconds(10).toNanos() - 1;
+		assertEquals(index.findUserIdForLoginId("someLoginId").get(), "someUserId");
+
+		now += 1;
+
+		assertTrue(index.findUserIdForLoginId("someLoginId").isEmpty());
+	}
+
+	@Test
+	public void testExpiredLoginIdCanBeGivenToOtherUser() throws Exception {
+		index.indexUser(createUser("someUserId", "someLoginId"));
+		now += Duration.ofSeconds(10).toNanos();
+
+		index.indexUser(createUser("someOtherUserId", "someLoginId"));
+
+		assertEquals(index.findUserIdForLoginId("someLoginId").get(), "someOtherUserId");
+		assertEquals(index.getNumberOfConflicts(), 0);
+	}
+
+	@Test
+	public void testFullIndexEvictsLeastRecentlyUsedLoginId() throws Exception {
+		index.indexUser(createUser("userId1", "loginId1"));
+		index.indexUser(createUser("userId2", "loginId2"));
+		index.indexUser(createUser("userId3", "loginId3"));
+		index.findUserIdForLoginId("loginId1");
+
+		index.indexUser(createUser("userId4", "loginId4"));
+
+		assertEquals(index.size(), 3);
+		assertEquals(index.findUserIdForLoginId("loginId4").get(), "userId4");
+		assertEquals(index.findUserIdForLoginId("loginId1").get(), "userId1");
+		assertTrue(index.findUserIdForLoginId("loginId2").isEmpty());
+	}
+
+	@Test
+	public void testRemoveLoginId() throws Exception {
+		index.indexUser(createUser("someUserId", "someLoginId"));
+
+		index.removeLoginId("someLoginId");
+
+		assertTrue(index.findUserIdForLoginId("someLoginId").isEmpty());
+		index.indexUser(createUser("someUserId", "someLoginId"));
+		assertEquals(index.findUserIdForLoginId("someLoginId").get(), "someUserId");
+	}
+
+	@Test
+	public void testRemoveUser() throws Exception {
+		index.indexUser(createUser("someUserId", "someLoginId"));
+
+		index.removeUser("someUserId");
+
+		assertTrue(index.findUserIdForLoginId("someLoginId").isEmpty());
+	}
+
+	@Test
+	public void testRemoveUnknownDoesNothing() throws Exception {
+		index.indexUser(createUser("someUserId", "someLoginId"));
+
+		index.removeUser("someOtherUserId");
+		index.removeLoginId("someOtherLoginId");
+
+		assertEquals(index.size(), 1);
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		index.indexUser(createUser("userId1", "loginId1"));
+		index.indexUser(createUser("userId2", "loginId2"));
+
+		index.clear();
+
+		assertEquals(index.size(), 0);
+	}
+
+	private User createUser(String userId, String loginId) {
+		User user = new User(userId);
+		user.loginId = loginId;
+		return user;
+	}
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class OffHeapByteStoreTest {
+	private static final int PAGE_SIZE = 64;
+	private static final int HEADER = Integer.BYTES;
+	private OffHeapByteStore store;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		store = OffHeapByteStore.usingPageSize(PAGE_SIZE);
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(store.getPageSize(), PAGE_SIZE);
+		assertEquals(store.getAllocatedBytes(), 0);
+		assertEquals(store.getLiveBytes(), 0);
+	}
+
+	@Test
+	public void testWriteAndRead() {
+		long address = store.write(bytes(1, 2, 3));
+
+		assertEquals(read(address), Optional.of("[1, 2, 3]"));
+		assertEquals(store.getAllocatedBytes(), PAGE_SIZE);
+		assertEquals(store.getLiveBytes(), HEADER + 3);
+	}
+
+	private byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+
+	private Optional<String> read(long address) {
+		return store.read(address, this::toText);
+	}
+
+	private String toText(ByteBuffer buffer) {
+		StringBuilder text = new StringBuilder("[");
+		while (buffer.hasRemaining()) {
+			text.append(buffer.get());
+			text.append(buffer.hasRemaining() ? ", " : "");
+		}
+		return text.append("]").toString();
+	}
+
+	@Test
+	public void testReaderGetsReadOnlyBuffer() {
+		long address = store.write(bytes(1));
+
+		assertEquals(store.read(address, ByteBuffer::isReadOnly), Optional.of(true));
+	}
+
+	@Test
+	public void testManyWritesFillPages() {
+		long first = store.write(new byte[28]);
+		long second = store.write(new byte[28]);
+		long third = store.write(bytes(7));
+
+		assertEquals(store.getAllocatedBytes(), 2 * PAGE_SIZE);
+		assertEquals(read(third), Optional.of("[7]"));
+		assertEquals(store.read(first, ByteBuffer::remaining), Optional.of(28));
+		assertEquals(store.read(second, ByteBuffer::remaining), Optional.of(28));
+	}
+
+	@Test
+	public void testFreeLowersLiveBytes() {
+		long address = store.write(bytes(1, 2));
+		store.write(bytes(3));
+
+		store.free(address);
+
+		assertEquals(store.getLiveBytes(), HEADER + 1);
+	}
+
+	@Test
+	public void testFreedBytesInCurrentPageCanStillBeRead() {
+		long address = store.write(bytes(1, 2));
+
+		store.free(address);
+
+		assertEquals(read(address), Optional.of("[1, 2]"));
+	}
+
+	@Test
+	public void testFullyFreedPageIsReused() {
+		long first = store.write(new byte[60]);
+		store.write(new byte[60]);
+		store.free(first);
+
+		store.write(new byte[60]);
+
+		assertEquals(store.getAllocatedBytes(), 2 * PAGE_SIZE);
+		assertEquals(read(first), Optional.empty());
+	}
+
+	@Test
+	public void testNewAddressInReusedPageIsReadable() {
+		long first = store.write(new byte[60]);
+		store.write(new byte[60]);
+		store.free(first);
+
+		long third = store.write(bytes(9, 9));
+
+		assertNotEquals(third, first);
+		assertEquals(read(third), Optional.of("[9, 9]"));
+	}
+
+	@Test
+	public void testFreeingTwiceOnlyCountsOnce() {
+		long first = store.write(new byte[60]);
+		store.write(new byte[60]);
+		store.free(first);
+		long third = store.write(new byte[10]);
+
+		store.free(first);
+
+		assertEquals(store.getLiveBytes(), 2 * HEADER + 70);
+		assertEquals(store.read(third, ByteBuffer::remaining), Optional.of(10));
+	}
+
+	@Test
+	public void testLargeArrayGetsOwnPage() {
+		long small = store.write(bytes(1));
+		long large = store.write(new byte[100]);
+
+		assertEquals(store.getAllocatedBytes(), PAGE_SIZE + HEADER + 100);
+		assertEquals(store.read(large, ByteBuffer::remaining), Optional.of(100));
+		assertEquals(read(small), Optional.of("[1]"));
+	}
+
+	@Test
+	public void testFreedLargeArrayPageIsReleased() {
+		store.write(bytes(1));
+		long large = store.write(new byte[100]);
+
+		store.free(large);
+
+		assertEquals(store.getAllocatedBytes(), PAGE_SIZE);
+		assertEquals(read(large), Optional.empty());
+	}
+
+	@Test
+	public void testReleasedPageIndexIsUsedForNextNewPage() {
+		long large = store.write(new byte[100]);
+		store.free(large);
+
+		long next = store.write(new byte[200]);
+
+		assertEquals(read(large), Optional.empty());
+		assertEquals(store.read(next, ByteBuffer::remaining), Optional.of(200));
+	}
+
+	@Test
+	public void testExceptionFromReaderIsThrown() {
+		long address = store.write(bytes(1));
+		Function<ByteBuffer, String> failingReader = buffer -> {
+			throw new IllegalStateException("some error");
+		};
+
+		try {
+			store.read(address, failingReader);
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals(e.getMessage(), "some error");
+		}
+	}
+
+	@Test
+	public void testConcurrentReadsNeverSeeReusedContent() throws Exception {
+		int numberOfSlots = 8;
+		AtomicLongArray addresses = new AtomicLongArray(numberOfSlots);
+		for (int slot = 0; slot < numberOfSlots; slot++) {
+			addresses.set(slot, store.write(filledWith(slot, 0)));
+		}
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicInteger wrongReads = new AtomicInteger();
+		Thread writer = Thread.ofPlatform().start(() -> {
+			for (int round = 1; round < 20000; round++) {
+				int slot = round % numberOfSlots;
+				long old = addresses.getAndSet(slot, store.write(filledWith(slot, round)));
+				store.free(old);
+			}
+			running.set(false);
+		});
+		List<Thread> readers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			readers.add(Thread.ofPlatform()
+					.start(() -> readUntilStopped(addresses, running, wrongReads)));
+		}
+		writer.join();
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		assertEquals(wrongReads.get(), 0);
+	}
+
+	private byte[] filledWith(int slot, int round) {
+		byte[] bytes = new byte[12];
+		Arrays.fill(bytes, (byte) slot);
+		bytes[0] = (byte) round;
+		return bytes;
+	}
+
+	private void readUntilStopped(AtomicLongArray addresses, AtomicBoolean running,
+			AtomicInteger wrongReads) {
+		while (running.get()) {
+			for (int slot = 0; slot < addresses.length(); slot++) {
+				int expectedSlot = slot;
+				Optional<Boolean> correct = store.read(addresses.get(slot),
+						buffer -> isFilledWithSlot(buffer, expectedSlot));
+				if (correct.isPresent() && !correct.get()) {
+					wrongReads.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	private boolean isFilledWithSlot(ByteBuffer buffer, int slot) {
+		for (int i = 1; i < buffer.remaining(); i++) {
+			if (buffer.get(i) != slot) {
+				return false;
+			}
+		}
+		return buffer.remaining() == 12;
+	}
+}
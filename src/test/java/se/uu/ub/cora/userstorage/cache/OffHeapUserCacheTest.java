@@ -0,0 +1,213 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.userstorage.convert.AuthorizationDictionary;
+import se.uu.ub.cora.userstorage.convert.CompactUserCodec;
+import se.uu.ub.cora.userstorage.metrics.CacheStatistics;
+
+public class OffHeapUserCacheTest {
+	private CompactUserCodec codec;
+	private OffHeapUserCache userCache;
+	private long now;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 0;
+		codec = CompactUserCodec.usingDictionary(new AuthorizationDictionary());
+		userCache = OffHeapUserCache.usingCodecMaxSizeTimeToLiveAndStaleWindow(codec, 2,
+				Duration.ofSeconds(10), Duration.ofSeconds(5));
+		userCache.onlyForTestSetNanoTimeSource(() -> now);
+	}
+
+	@Test
+	public void testSettings() {
+		assertSame(userCache.onlyForTestGetCodec(), codec);
+		assertEquals(userCache.getMaxSize(), 2);
+		assertEquals(userCache.getTimeToLive(), Duration.ofSeconds(10));
+		assertEquals(userCache.getStaleWindow(), Duration.ofSeconds(5));
+	}
+
+	@Test
+	public void testEmpty() {
+		assertTrue(userCache.get("someUserId").isEmpty());
+		assertTrue(userCache.getCachedValue("someUserId").isEmpty());
+		assertEquals(userCache.size(), 0);
+		assertEquals(userCache.getOffHeapAllocatedBytes(), 0);
+	}
+
+	@Test
+	public void testPutAndGet() {
+		userCache.put("someUserId", createUser("someUserId"));
+
+		User user = userCache.get("someUserId").get();
+
+		assertEquals(user.id, "someUserId");
+		assertEquals(user.loginId, "someUserIdLogin");
+		assertEquals(user.roles, Set.of("someRole"));
+		assertEquals(userCache.size(), 1);
+		assertEquals(userCache.getOffHeapAllocatedBytes(), OffHeapUserCache.PAGE_SIZE);
+		assertTrue(userCache.getOffHeapLiveBytes() > 0);
+	}
+
+	private User createUser(String userId) {
+		User user = new User(userId);
+		user.loginId = userId + "Login";
+		user.active = true;
+		user.roles = Set.of("someRole");
+		return user;
+	}
+
+	@Test
+	public void testEachGetDecodesNewUser() {
+		userCache.put("someUserId", createUser("someUserId"));
+
+		User user = userCache.get("someUserId").get();
+		User user2 = userCache.get("someUserId").get();
+
+		assertNotSame(user2, user);
+		assertEquals(user2.loginId, user.loginId);
+	}
+
+	@Test
+	public void testGetCachedValueMarksStale() {
+		userCache.put("someUserId", createUser("someUserId"));
+		now = Duration.ofSeconds(12).toNanos();
+
+		CachedValue<User> cachedValue = userCache.getCachedValue("someUserId").get();
+
+		assertEquals(cachedValue.value().id, "someUserId");
+		assertEquals(cachedValue.ageNanos(), Duration.ofSeconds(12).toNanos());
+		assertTrue(cachedValue.stale());
+		assertTrue(userCache.get("someUserId").isEmpty());
+	}
+
+	@Test
+	public void testPutWithAge() {
+		userCache.putWithAge("someUserId", createUser("someUserId"), Duration.ofSeconds(4));
+
+		CachedValue<User> cachedValue = userCache.getCachedValue("someUserId").get();
+
+		assertEquals(cachedValue.value().id, "someUserId");
+		assertEquals(cachedValue.ageNanos(), Duration.ofSeconds(4).toNanos());
+		assertFalse(cachedValue.stale());
+	}
+
+	@Test
+	public void testReplacingUserFreesOldUser() {
+		userCache.put("someUserId", createUser("someUserId"));
+		long liveBytes = userCache.getOffHeapLiveBytes();
+
+		User replacement = createUser("someUserId");
+		replacement.loginId = "otherLogin";
+		userCache.put("someUserId", replacement);
+
+		assertEquals(userCache.get("someUserId").get().loginId, "otherLogin");
+		assertEquals(userCache.getOffHeapLiveBytes(), liveBytes - "someUserIdLogin".length()
+				+ "otherLogin".length());
+	}
+
+	@Test
+	public void testEvictedUserIsFreed() {
+		userCache.put("userId1", createUser("userId1"));
+		long liveBytesOfOneUser = userCache.getOffHeapLiveBytes();
+		userCache.put("userId2", createUser("userId2"));
+
+		userCache.put("userId3", createUser("userId3"));
+
+		assertEquals(userCache.size(), 2);
+		assertEquals(userCache.getOffHeapLiveBytes(), 2 * liveBytesOfOneUser);
+		assertEquals(userCache.getStatistics().evictions(), 1);
+	}
+
+	@Test
+	public void testInvalidateFreesUser() {
+		userCache.put("someUserId", createUser("someUserId"));
+
+		userCache.invalidate("someUserId");
+
+		assertEquals(userCache.get("someUserId"), Optional.empty());
+		assertEquals(userCache.getOffHeapLiveBytes(), 0);
+	}
+
+	@Test
+	public void testInvalidateAllFreesUsers() {
+		userCache.put("userId1", createUser("userId1"));
+		userCache.put("userId2", createUser("userId2"));
+
+		userCache.invalidateAll();
+
+		assertEquals(userCache.size(), 0);
+		assertEquals(userCache.getOffHeapLiveBytes(), 0);
+	}
+
+	@Test
+	public void testRemoveExpiredFreesUsers() {
+		userCache.put("someUserId", createUser("someUserId"));
+		now = Duration.ofSeconds(15).toNanos();
+
+		userCache.removeExpired();
+
+		assertEquals(userCache.size(), 0);
+		assertEquals(userCache.getOffHeapLiveBytes(), 0);
+		assertEquals(userCache.getStatistics().expirations(), 1);
+	}
+
+	@Test
+	public void testStatistics() {
+		userCache.put("someUserId", createUser("someUserId"));
+
+		userCache.get("someUserId");
+		userCache.get("otherUserId");
+
+		CacheStatistics statistics = userCache.getStatistics();
+		assertEquals(statistics.hits(), 1);
+		assertEquals(statistics.misses(), 1);
+		assertEquals(statistics.size(), 1);
+	}
+
+	@Test
+	public void testForEachValueDecodesUsersYoungerThanTimeToLive() {
+		userCache.put("oldUserId", createUser("oldUserId"));
+		now = Duration.ofSeconds(10).toNanos();
+		userCache.put("someUserId", createUser("someUserId"));
+		List<User> users = new ArrayList<>();
+
+		userCache.forEachValue(users::add);
+
+		assertEquals(users.size(), 1);
+		assertEquals(users.get(0).loginId, "someUserIdLogin");
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.logger.spies.LoggerFactorySpy;
+import se.uu.ub.cora.logger.spies.LoggerSpy;
+import se.uu.ub.cora.userstorage.metrics.RefreshStatistics;
+
+public class RefreshAheadTest {
+	private static final Duration REFRESH_AFTER = Duration.ofSeconds(8);
+	private LoggerFactorySpy loggerFactorySpy;
+	private RefreshAhead<String> refreshAhead;
+	private List<Runnable> scheduledRefreshes;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		scheduledRefreshes = new ArrayList<>();
+		refreshAhead = RefreshAhead.usingRefreshAfterAndMaxConcurrentRefreshes(REFRESH_AFTER, 2);
+		refreshAhead.onlyForTestSetExecutor(scheduledRefreshes::add);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(refreshAhead.isEnabled());
+		assertEquals(refreshAhead.getRefreshAfter(), REFRESH_AFTER);
+		assertEquals(refreshAhead.getMaxConcurrentRefreshes(), 2);
+		assertEquals(refreshAhead.getStatistics(), new RefreshStatistics(0, 0, 0, 0, 0, 0));
+		loggerFactorySpy.MCR.assertParameters("factorForClass", 0, RefreshAhead.class);
+	}
+
+	@Test
+	public void testNeedsRefresh() throws Exception {
+		long refreshAfter = REFRESH_AFTER.toNanos();
+
+		assertFalse(refreshAhead.needsRefresh(new CachedValue<>("v", refreshAfter - 1, false)));
+		assertTrue(refreshAhead.needsRefresh(new CachedValue<>("v", refreshAfter, false)));
+		assertTrue(refreshAhead.needsRefresh(new CachedValue<>("v", 0, true)));
+	}
+
+	@Test
+	public void testDisabledNeverStartsRefresh() throws Exception {
+		RefreshAhead<String> disabled = RefreshAhead.disabled();
+		disabled.onlyForTestSetExecutor(scheduledRefreshes::add);
+
+		assertFalse(disabled.isEnabled());
+		assertFalse(disabled.needsRefresh(new CachedValue<>("v", Long.MAX_VALUE - 1, false)));
+		assertTrue(disabled.needsRefresh(new CachedValue<>("v", 0, true)));
+		assertFalse(disabled.refreshInBackground("key", () -> {
+		}));
+		assertTrue(scheduledRefreshes.isEmpty());
+	}
+
+	@Test
+	public void testRefreshInBackground() throws Exception {
+		List<String> refreshed = new ArrayList<>();
+
+		assertTrue(refreshAhead.refreshInBackground("key", () -> refreshed.add("key")));
+
+		assertEquals(scheduledRefreshes.size(), 1);
+		assertTrue(refreshed.isEmpty());
+		assertEquals(refreshAhead.getStatistics(), new RefreshStatistics(1, 0, 0, 0, 0, 1));
+
+		scheduledRefreshes.get(0).run();
+
+		assertEquals(refreshed, List.of("key"));
+		assertEquals(refreshAhead.getStatistics(), new RefreshStatistics(1, 1, 0, 0, 0, 0));
+	}
+
+	@Test
+	public void testOnlyOneRefreshPerKeyIsInFlight() throws Exception {
+		assertTrue(refreshAhead.refreshInBackground("key", () -> {
+		}));
+		assertTrue(refreshAhead.refreshInBackground("key", () -> {
+		}));
+
+		assertEquals(scheduledRefreshes.size(), 1);
+
+		scheduledRefreshes.get(0).run();
+		refreshAhead.refreshInBackground("key", () -> {
+		});
+
+		assertEquals(scheduledRefreshes.size(), 2);
+	}
+
+	@Test
+	public void testRefreshesAboveMaxAreSkipped() throws Exception {
+		refreshAhead.refreshInBackground("key1", () -> {
+		});
+		refreshAhead.refreshInBackground("key2", () -> {
+		});
+
+		assertFalse(refreshAhead.refreshInBackground("key3", () -> {
+		}));
+
+		assertEquals(scheduledRefreshes.size(), 2);
+		assertEquals(refreshAhead.getStatistics(), new RefreshStatistics(2, 0, 0, 1, 0, 2));
+	}
+
+	@Test
+	public void testFinishedRefreshesFreeTheirPlace() throws Exception {
+		refreshAhead.refreshInBackground("key1", () -> {
+		});
+		refreshAhead.refreshInBackground("key2", () -> {
+			throw new RuntimeException("error from refresh");
+		});
+		scheduledRefreshes.get(0).run();
+		scheduledRefreshes.get(1).run();
+
+		assertTrue(refreshAhead.refreshInBackground("key3", () -> {
+		}));
+		assertTrue(refreshAhead.refreshInBackground("key4", () -> {
+		}));
+
+		assertEquals(scheduledRefreshes.size(), 4);
+	}
+
+	@Test
+	public void testConcurrentCallersDoNotStartMoreThanMaxRefreshes() throws Exception {
+		int numberOfCallers = 16;
+		refreshAhead.onlyForTestSetExecutor(refresh -> {
+		});
+		CountDownLatch startCalls = new CountDownLatch(1);
+		ExecutorService callers = Executors.newFixedThreadPool(numberOfCallers);
+		List<Future<Boolean>> results = new ArrayList<>();
+
+		for (int i = 0; i < numberOfCallers; i++) {
+			String key = "key" + i;
+			results.add(callers.submit(() -> {
+				startCalls.await();
+				return refreshAhead.refreshInBackground(key, () -> {
+				});
+			}));
+		}
+		startCalls.countDown();
+
+		int startedRefreshes = 0;
+		for (Future<Boolean> result : results) {
+			startedRefreshes += result.get(5, TimeUnit.SECONDS) ? 1 : 0;
+		}
+		callers.shutdown();
+		assertEquals(startedRefreshes, 2);
+		assertEquals(refreshAhead.getStatistics().started(), 2);
+		assertEquals(refreshAhead.getStatistics().skipped(), numberOfCallers - 2);
+	}
+
+	@Test
+	public void testFailedRefreshIsCountedAndLogged() throws Exception {
+		RuntimeException error = new RuntimeException("error from refresh");
+		refreshAhead.refreshInBackground("key", () -> {
+			throw error;
+		});
+
+		scheduledRefreshes.get(0).run();
+
+		assertEquals(refreshAhead.getStatistics(), new RefreshStatistics(1, 0, 1, 0, 0, 0));
+		LoggerSpy loggerSpy = (LoggerSpy) loggerFactorySpy.MCR.getReturnValue("factorForClass", 0);
+		loggerSpy.MCR.assertParameters("logErrorUsingMessageAndException", 0,
+				"Refresh of key failed.", error);
+	}
+
+	@Test
+	public void testRecordStaleHit() throws Exception {
+		refreshAhead.recordStaleHit();
+
+		assertEquals(refreshAhead.getStatistics().staleHits(), 1);
+	}
+
+	@Test
+	public void testRefreshRunsOnVirtualThread() throws Exception {
+		refreshAhead = RefreshAhead.usingRefreshAfterAndMaxConcurrentRefreshes(REFRESH_AFTER, 2);
+		CountDownLatch refreshed = new CountDownLatch(1);
+		List<Thread> refreshThreads = new ArrayList<>();
+
+		refreshAhead.refreshInBackground("key", () -> {
+			refreshThreads.add(Thread.currentThread());
+			refreshed.countDown();
+		});
+
+		assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+		assertTrue(refreshThreads.get(0).isVirtual());
+		assertTrue(refreshThreads.get(0).getName().startsWith("userstorage-refresh-"));
+	}
+}
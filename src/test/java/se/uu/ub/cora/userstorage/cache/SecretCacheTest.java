@@ -0,0 +1,131 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SecretCacheTest {
+	private static final Duration TIME_TO_LIVE = Duration.ofSeconds(30);
+	private static final SecretKey KEY = new SecretKey(SecretKey.SYSTEM_SECRET, "someId");
+	private SecretCache secretCache;
+	private long now;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 0;
+		secretCache = SecretCache.usingMaxSizeAndTimeToLive(2, TIME_TO_LIVE);
+		secretCache.onlyForTestGetCache().onlyForTestSetNanoTimeSource(() -> now);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertEquals(secretCache.getMaxSize(), 2);
+		assertEquals(secretCache.getTimeToLive(), TIME_TO_LIVE);
+		assertEquals(secretCache.size(), 0);
+	}
+
+	@Test
+	public void testPutAndGet() throws Exception {
+		secretCache.put(KEY, "someSecret");
+
+		assertEquals(secretCache.get(KEY), Optional.of("someSecret"));
+		assertEquals(secretCache.getStatistics().hits(), 1);
+	}
+
+	@Test
+	public void testGetMissing() throws Exception {
+		assertTrue(secretCache.get(KEY).isEmpty());
+	}
+
+	@Test
+	public void testSameIdOfDifferentTypesAreKeptApart() throws Exception {
+		secretCache.put(KEY, "someSecret");
+
+		assertTrue(secretCache.get(new SecretKey(SecretKey.APP_TOKEN, "someId")).isEmpty());
+	}
+
+	@Test
+	public void testExpiredSecretIsRemoved() throws Exception {
+		secretCache.put(KEY, "someSecret");
+		now += TIME_TO_LIVE.toNanos();
+
+		assertTrue(secretCache.get(KEY).isEmpty());
+		assertEquals(secretCache.size(), 0);
+	}
+
+	@Test
+	public void testRemoveExpiredRemovesExpiredSecrets() throws Exception {
+		SecretKey otherKey = new SecretKey(SecretKey.APP_TOKEN, "someId");
+		secretCache.put(KEY, "someSecret");
+		now += TIME_TO_LIVE.toNanos();
+		secretCache.put(otherKey, "someToken");
+
+		secretCache.removeExpired();
+
+		assertEquals(secretCache.size(), 1);
+		assertEquals(secretCache.get(otherKey), Optional.of("someToken"));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedSecretIsEvicted() throws Exception {
+		secretCache.put(KEY, "someSecret");
+
+		secretCache.put(new SecretKey(SecretKey.APP_TOKEN, "id1"), "token1");
+		secretCache.put(new SecretKey(SecretKey.APP_TOKEN, "id2"), "token2");
+
+		assertTrue(secretCache.get(KEY).isEmpty());
+		assertEquals(secretCache.size(), 2);
+	}
+
+	@Test
+	public void testReplacedSecret() throws Exception {
+		secretCache.put(KEY, "someSecret");
+
+		secretCache.put(KEY, "someNewSecret");
+
+		assertEquals(secretCache.get(KEY), Optional.of("someNewSecret"));
+		assertEquals(secretCache.size(), 1);
+	}
+
+	@Test
+	public void testInvalidateRemovesSecret() throws Exception {
+		secretCache.put(KEY, "someSecret");
+
+		secretCache.invalidate(KEY);
+
+		assertTrue(secretCache.get(KEY).isEmpty());
+	}
+
+	@Test
+	public void testInvalidateAllRemovesAllSecrets() throws Exception {
+		secretCache.put(KEY, "someSecret");
+		secretCache.put(new SecretKey(SecretKey.APP_TOKEN, "someId"), "someToken");
+
+		secretCache.invalidateAll();
+
+		assertEquals(secretCache.size(), 0);
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.userstorage.convert.AuthorizationDictionary;
+import se.uu.ub.cora.userstorage.convert.UserAuthorization;
+
+public class UserAuthorizationsTest {
+	private AuthorizationDictionary dictionary;
+	private UserAuthorizations userAuthorizations;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		dictionary = new AuthorizationDictionary();
+		userAuthorizations = UserAuthorizations.usingDictionaryMaxSizeAndTimeToLive(dictionary,
+				10, Duration.ofSeconds(10));
+	}
+
+	@Test
+	public void testOnlyForTest() {
+		assertSame(userAuthorizations.getDictionary(), dictionary);
+		assertEquals(userAuthorizations.onlyForTestGetCache().getMaxSize(), 10);
+		assertEquals(userAuthorizations.onlyForTestGetCache().getTimeToLive(),
+				Duration.ofSeconds(10));
+	}
+
+	@Test
+	public void testAuthorizationIsCreatedFromUser() {
+		User user = createUser("someUserId", "someRole");
+
+		UserAuthorization authorization = userAuthorizations.getAuthorizationForUser(user);
+
+		assertEquals(authorization.getUserId(), "someUserId");
+		assertTrue(authorization.hasRole(dictionary.findRoleIndex("someRole")));
+	}
+
+	@Test
+	public void testSameUserInstanceReusesAuthorization() {
+		User user = createUser("someUserId", "someRole");
+
+		UserAuthorization authorization = userAuthorizations.getAuthorizationForUser(user);
+		UserAuthorization authorization2 = userAuthorizations.getAuthorizationForUser(user);
+
+		assertSame(authorization2, authorization);
+		assertEquals(userAuthorizations.onlyForTestGetCache().size(), 1);
+	}
+
+	@Test
+	public void testNewUserInstanceCreatesNewAuthorization() {
+		UserAuthorization authorization = userAuthorizations
+				.getAuthorizationForUser(createUser("someUserId", "someRole"));
+
+		UserAuthorization authorization2 = userAuthorizations
+				.getAuthorizationForUser(createUser("someUserId", "otherRole"));
+
+		assertNotSame(authorization2, authorization);
+		assertTrue(authorization2.hasRole(dictionary.findRoleIndex("otherRole")));
+		assertEquals(authorization2.getNumberOfRoles(), 1);
+	}
+
+	@Test
+	public void testInvalidate() {
+		User user = createUser("someUserId", "someRole");
+		UserAuthorization authorization = userAuthorizations.getAuthorizationForUser(user);
+
+		userAuthorizations.invalidate("someUserId");
+
+		assertEquals(userAuthorizations.onlyForTestGetCache().size(), 0);
+		assertNotSame(userAuthorizations.getAuthorizationForUser(user), authorization);
+	}
+
+	@Test
+	public void testInvalidateAll() {
+		userAuthorizations.getAuthorizationForUser(createUser("userId1", "someRole"));
+		userAuthorizations.getAuthorizationForUser(createUser("userId2", "someRole"));
+
+		userAuthorizations.invalidateAll();
+
+		assertEquals(userAuthorizations.onlyForTestGetCache().size(), 0);
+	}
+
+	private User createUser(String userId, String roleId) {
+		User user = new User(userId);
+		user.roles = Set.of(roleId);
+		return user;
+	}
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.data.spies.DataRecordGroupSpy;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.logger.spies.LoggerFactorySpy;
+import se.uu.ub.cora.logger.spies.LoggerSpy;
+import se.uu.ub.cora.storage.Filter;
+import se.uu.ub.cora.storage.StorageReadResult;
+import se.uu.ub.cora.storage.spies.RecordStorageSpy;
+import se.uu.ub.cora.userstorage.BackgroundWorker;
+import se.uu.ub.cora.userstorage.convert.AuthorizationDictionary;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUser;
+import se.uu.ub.cora.userstorage.convert.UserProjection;
+
+public class UserCachePreloaderTest {
+	private static final int PAGE_SIZE = 2;
+	private LoggerFactorySpy loggerFactorySpy;
+	private RecordStorageSpy recordStorage;
+	private Map<DataRecordGroup, User> usersForRecords;
+	private DataGroupToUser dataGroupToUser;
+	private UserStorageCaches caches;
+	private UserCachePreloader preloader;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		recordStorage = new RecordStorageSpy();
+		usersForRecords = new IdentityHashMap<>();
+		dataGroupToUser = this::convertUsingPreparedUsers;
+		caches = createCachesWithUserCacheMaxSize(10);
+		preloader = createPreloader();
+	}
+
+	private User convertUsingPreparedUsers(DataRecordGroup userRecord,
+			UserProjection projection) {
+		User user = usersForRecords.get(userRecord);
+		if (user == null) {
+			throw new IllegalArgumentException("conversion error");
+		}
+		return user;
+	}
+
+	private UserStorageCaches createCachesWithUserCacheMaxSize(int maxSize) {
+		return createCachesWithUserCacheMaxSizeAndSnapshot(maxSize, UserSnapshot.empty());
+	}
+
+	private UserStorageCaches createCachesWithUserCacheMaxSizeAndSnapshot(int maxSize,
+			UserSnapshot userSnapshot) {
+		return createCaches(maxSize, KnownLoginIds.disabled(), userSnapshot);
+	}
+
+	private UserStorageCaches createCaches(int maxSize, KnownLoginIds knownLoginIds,
+			UserSnapshot userSnapshot) {
+		return new UserStorageCaches(
+				BoundedTtlCache.usingMaxSizeAndTimeToLive(maxSize, Duration.ofMinutes(1)),
+				LoginIdIndex.usingMaxSizeAndTimeToLive(100, Duration.ofMinutes(1)),
+				BoundedTtlCache.usingMaxSizeAndTimeToLive(10, Duration.ofSeconds(5)),
+				SecretCache.usingMaxSizeAndTimeToLive(10, Duration.ofSeconds(5)),
+				knownLoginIds, UserAuthorizations.usingDictionaryMaxSizeAndTimeToLive(
+						new AuthorizationDictionary(), maxSize, Duration.ofMinutes(1)),
+				userSnapshot, UserReplica.disabled());
+	}
+
+	private UserCachePreloader createPreloader() {
+		return UserCachePreloader.usingRecordStorageConverterCachesAndPageSize(recordStorage,
+				dataGroupToUser, caches, PAGE_SIZE);
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		preloader.stop();
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(preloader instanceof BackgroundWorker);
+		assertSame(preloader.onlyForTestGetRecordStorage(), recordStorage);
+		assertSame(preloader.onlyForTestGetDataGroupToUser(), dataGroupToUser);
+		assertSame(preloader.onlyForTestGetCaches(), caches);
+		assertEquals(preloader.onlyForTestGetPageSize(), PAGE_SIZE);
+		assertFalse(preloader.isReady());
+		loggerFactorySpy.MCR.assertParameters("factorForClass", 0, UserCachePreloader.class);
+	}
+
+	@Test
+	public void testPagesAreReadUntilAllUsersAreLoaded() throws Exception {
+		setUpStorageWithPages(5, page(activeUser("u1"), activeUser("u2")),
+				page(activeUser("u3"), activeUser("u4")), page(activeUser("u5")));
+
+		preloader.preload();
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 3);
+		assertPageRead(0, 1, 2);
+		assertPageRead(1, 3, 4);
+		assertPageRead(2, 5, 6);
+		assertEquals(preloader.getNumberOfCachedUsers(), 5);
+		assertTrue(preloader.isReady());
+	}
+
+	@SafeVarargs
+	private void setUpStorageWithPages(long totalNumberOfMatches,
+			List<DataRecordGroup>... pages) {
+		Iterator<List<DataRecordGroup>> pageIterator = List.of(pages).iterator();
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList", () -> {
+			StorageReadResult readResult = new StorageReadResult();
+			readResult.totalNumberOfMatches = totalNumberOfMatches;
+			readResult.listOfDataRecordGroups = pageIterator.hasNext() ? pageIterator.next()
+					: List.of();
+			return readResult;
+		});
+	}
+
+	private List<DataRecordGroup> page(DataRecordGroup... records) {
+		return List.of(records);
+	}
+
+	private DataRecordGroup activeUser(String userId) {
+		return userRecord(userId, true);
+	}
+
+	private DataRecordGroup userRecord(String userId, boolean active) {
+		DataRecordGroupSpy userRecord = new DataRecordGroupSpy();
+		User user = new User(userId);
+		user.loginId = "login_" + userId;
+		user.active = active;
+		usersForRecords.put(userRecord, user);
+		return userRecord;
+	}
+
+	private void assertPageRead(int callNumber, long fromNo, long toNo) {
+		recordStorage.MCR.assertParameter("readList", callNumber, "type", "user");
+		Filter filter = (Filter) recordStorage.MCR
+				.getValueForMethodNameAndCallNumberAndParameterName("readList", callNumber,
+						"filter");
+		assertEquals(filter.fromNo, fromNo);
+		assertEquals(filter.toNo, toNo);
+	}
+
+	@Test
+	public void testActiveUsersAreCachedAndAllUsersAreIndexed() throws Exception {
+		setUpStorageWithPages(2, page(activeUser("u1"), userRecord("u2", false)));
+
+		preloader.preload();
+
+		assertTrue(caches.userCache().get("u1").isPresent());
+		assertEquals(caches.loginIdIndex().findUserIdForLoginId("login_u1"), Optional.of("u1"));
+		assertTrue(caches.userCache().get("u2").isEmpty());
+		assertEquals(caches.loginIdIndex().findUserIdForLoginId("login_u2"), Optional.of("u2"));
+		assertEquals(preloader.getNumberOfCachedUsers(), 1);
+	}
+
+	@Test
+	public void testUsersOfPageReadWhileUserWasInvalidatedAreNotCached() throws Exception {
+		List<DataRecordGroup> firstPage = page(activeUser("u1"), activeUser("u2"));
+		List<DataRecordGroup> secondPage = page(activeUser("u3"));
+		Iterator<List<DataRecordGroup>> pageIterator = List.of(firstPage, secondPage).iterator();
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList", () -> {
+			List<DataRecordGroup> records = pageIterator.next();
+			if (records == firstPage) {
+				caches.generations().invalidate("u1");
+			}
+			StorageReadResult readResult = new StorageReadResult();
+			readResult.totalNumberOfMatches = 3;
+			readResult.listOfDataRecordGroups = records;
+			return readResult;
+		});
+
+		preloader.preload();
+
+		assertTrue(caches.userCache().get("u1").isEmpty());
+		assertTrue(caches.userCache().get("u2").isEmpty());
+		assertTrue(caches.loginIdIndex().findUserIdForLoginId("login_u1").isEmpty());
+		assertTrue(caches.userCache().get("u3").isPresent());
+		assertEquals(preloader.getNumberOfCachedUsers(), 1);
+	}
+
+	@Test
+	public void testLoginIdsOfAllUsersAreAddedToKnownLoginIds() throws Exception {
+		KnownLoginIds knownLoginIds = KnownLoginIds.usingExpectedLoginIdsAndFalsePositiveRate(100,
+				0.01);
+		knownLoginIds.finishRebuild(knownLoginIds.startRebuild(0));
+		caches = createCaches(10, knownLoginIds, UserSnapshot.empty());
+		preloader = createPreloader();
+		setUpStorageWithPages(2, page(activeUser("u1"), userRecord("u2", false)));
+		assertFalse(knownLoginIds.mightExist("login_u1"));
+
+		preloader.preload();
+
+		assertTrue(knownLoginIds.mightExist("login_u1"));
+		assertTrue(knownLoginIds.mightExist("login_u2"));
+	}
+
+	@Test
+	public void testPreloadedUsersGetAgesSpreadOverHalfTheTimeToLive() throws Exception {
+		BoundedTtlCache<String, User> userCache = (BoundedTtlCache<String, User>) caches
+				.userCache();
+		userCache.onlyForTestSetNanoTimeSource(() -> 0);
+		setUpStorageWithPages(4, page(activeUser("u1"), activeUser("u2")),
+				page(activeUser("u3"), activeUser("u4")));
+
+		preloader.preload();
+
+		Set<Long> ages = new HashSet<>();
+		for (String userId : List.of("u1", "u2", "u3", "u4")) {
+			long ageNanos = userCache.getCachedValue(userId).get().ageNanos();
+			assertTrue(ageNanos >= 0 && ageNanos <= Duration.ofSeconds(30).toNanos());
+			ages.add(ageNanos);
+		}
+		assertTrue(ages.size() > 1);
+	}
+
+	@Test
+	public void testLoginIdOfInactiveUserConflictsWithActiveUser() throws Exception {
+		DataRecordGroup inactiveUser = userRecord("u2", false);
+		usersForRecords.get(inactiveUser).loginId = "login_u1";
+		setUpStorageWithPages(2, page(activeUser("u1"), inactiveUser));
+
+		preloader.preload();
+
+		assertTrue(caches.loginIdIndex().findUserIdForLoginId("login_u1").isEmpty());
+		assertEquals(caches.loginIdIndex().getNumberOfConflicts(), 1);
+	}
+
+	@Test
+	public void testEmptyStorage() throws Exception {
+		setUpStorageWithPages(0, page());
+
+		preloader.preload();
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 1);
+		assertEquals(preloader.getNumberOfCachedUsers(), 0);
+		assertTrue(preloader.isReady());
+	}
+
+	@Test
+	public void testFullPageAtEndOfStorageDoesNotReadAnotherPage() throws Exception {
+		setUpStorageWithPages(2, page(activeUser("u1"), activeUser("u2")));
+
+		preloader.preload();
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 1);
+	}
+
+	@Test
+	public void testLoadingStopsWhenUserCacheIsFull() throws Exception {
+		caches = createCachesWithUserCacheMaxSize(2);
+		preloader = createPreloader();
+		setUpStorageWithPages(6, page(activeUser("u1"), activeUser("u2")),
+				page(activeUser("u3"), activeUser("u4")));
+
+		preloader.preload();
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 1);
+		assertEquals(caches.userCache().size(), 2);
+	}
+
+	@Test
+	public void testFailedConversionsAreCountedAndSkipped() throws Exception {
+		DataRecordGroupSpy brokenRecord = new DataRecordGroupSpy();
+		setUpStorageWithPages(2, page(brokenRecord, activeUser("u2")));
+
+		preloader.preload();
+
+		assertEquals(preloader.getNumberOfFailedConversions(), 1);
+		assertEquals(preloader.getNumberOfCachedUsers(), 1);
+	}
+
+	@Test
+	public void testProgressAndTimingIsLogged() throws Exception {
+		setUpStorageWithPages(3, page(activeUser("u1"), activeUser("u2")),
+				page(activeUser("u3")));
+
+		preloader.preload();
+
+		LoggerSpy loggerSpy = getLoggerSpy();
+		loggerSpy.MCR.assertNumberOfCallsToMethod("logInfoUsingMessage", 4);
+		loggerSpy.MCR.assertParameters("logInfoUsingMessage", 0, "Preloading users into cache.");
+		assertMessageStartsWith(loggerSpy, 1, "Preloaded page of users, total in storage: 3,"
+				+ " cached users: 2, failed conversions: 0, time: ");
+		assertMessageStartsWith(loggerSpy, 3,
+				"Preloading users finished, cached users: 3, failed conversions: 0, time: ");
+	}
+
+	private LoggerSpy getLoggerSpy() {
+		return (LoggerSpy) loggerFactorySpy.MCR.getReturnValue("factorForClass", 0);
+	}
+
+	private void assertMessageStartsWith(LoggerSpy loggerSpy, int callNumber, String start) {
+		String message = (String) loggerSpy.MCR.getValueForMethodNameAndCallNumberAndParameterName(
+				"logInfoUsingMessage", callNumber, "message");
+		assertTrue(message.startsWith(start), message);
+		assertTrue(message.endsWith(" ms."), message);
+	}
+
+	@Test
+	public void testFailingReadIsLoggedAndPreloaderIsReady() throws Exception {
+		RuntimeException error = new RuntimeException("error from storage");
+		recordStorage.MRV.setAlwaysThrowException("readList", error);
+
+		preloader.preload();
+
+		assertTrue(preloader.isReady());
+		LoggerSpy loggerSpy = getLoggerSpy();
+		String message = (String) loggerSpy.MCR.getValueForMethodNameAndCallNumberAndParameterName(
+				"logErrorUsingMessageAndException", 0, "message");
+		assertTrue(message.startsWith("Preloading users failed, cached users: 0"));
+		loggerSpy.MCR.assertParameter("logErrorUsingMessageAndException", 0, "exception", error);
+	}
+
+	@Test
+	public void testStartPreloadsInBackgroundAndBecomesReady() throws Exception {
+		List<DataRecordGroup> records = new ArrayList<>();
+		for (int i = 0; i < PAGE_SIZE; i++) {
+			records.add(activeUser("u" + i));
+		}
+		setUpStorageWithPages(PAGE_SIZE, records);
+
+		preloader.start();
+
+		assertTrue(preloader.awaitReady(5, TimeUnit.SECONDS));
+		assertEquals(preloader.getNumberOfCachedUsers(), PAGE_SIZE);
+	}
+
+	@Test
+	public void testOpenUserSnapshotMakesPreloaderReadyBeforePreload() throws Exception {
+		createPreloaderWithOpenUserSnapshot();
+
+		assertTrue(preloader.isReady());
+	}
+
+	private void createPreloaderWithOpenUserSnapshot() throws IOException {
+		User snapshotUser = new User("snapshotUserId");
+		snapshotUser.active = true;
+		UserSnapshot userSnapshot = openSnapshotWithUser(snapshotUser);
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		caches = createCachesWithUserCacheMaxSizeAndSnapshot(10, userSnapshot);
+		preloader = createPreloader();
+	}
+
+	private UserSnapshot openSnapshotWithUser(User user) throws IOException {
+		Path directory = Files.createTempDirectory("userCachePreloaderTest");
+		Path path = directory.resolve("users.snapshot");
+		try {
+			BoundedTtlCache<String, User> snapshotCache = BoundedTtlCache
+					.usingMaxSizeAndTimeToLive(10, Duration.ofMinutes(1));
+			snapshotCache.put(user.id, user);
+			UserSnapshotFile snapshotFile = UserSnapshotFile.usingPathAndMaxAge(path,
+					Duration.ofMinutes(1));
+			snapshotFile.write(snapshotCache);
+			return snapshotFile.open();
+		} finally {
+			Files.deleteIfExists(path);
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testUserSnapshotIsClosedWhenPreloadIsFinished() throws Exception {
+		createPreloaderWithOpenUserSnapshot();
+		setUpStorageWithPages(1, page(activeUser("u1")));
+		caches.userSnapshot().findUserById("snapshotUserId");
+
+		preloader.preload();
+
+		assertFalse(caches.userSnapshot().isOpen());
+		assertTrue(preloader.isReady());
+		assertLastInfoMessage("Closed user snapshot, lookups answered by it: 1.");
+	}
+
+	@Test
+	public void testUsersReadAreInvalidatedInUserSnapshotAlsoWhenInactive() throws Exception {
+		createPreloaderWithOpenUserSnapshot();
+		List<Boolean> foundInSnapshotWhenPageIsRead = new ArrayList<>();
+		Iterator<List<DataRecordGroup>> pages = List
+				.of(page(userRecord("snapshotUserId", false), activeUser("u2")),
+						page(activeUser("u3")))
+				.iterator();
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList", () -> {
+			foundInSnapshotWhenPageIsRead
+					.add(caches.userSnapshot().findUserById("snapshotUserId").isPresent());
+			StorageReadResult readResult = new StorageReadResult();
+			readResult.totalNumberOfMatches = 3;
+			readResult.listOfDataRecordGroups = pages.next();
+			return readResult;
+		});
+
+		preloader.preload();
+
+		assertEquals(foundInSnapshotWhenPageIsRead, List.of(true, false));
+	}
+
+	@Test
+	public void testUserSnapshotIsClosedWhenPreloadFails() throws Exception {
+		createPreloaderWithOpenUserSnapshot();
+		recordStorage.MRV.setAlwaysThrowException("readList", new RuntimeException("error"));
+
+		preloader.preload();
+
+		assertFalse(caches.userSnapshot().isOpen());
+		assertLastInfoMessage("Closed user snapshot, lookups answered by it: 0.");
+	}
+
+	private void assertLastInfoMessage(String message) {
+		LoggerSpy loggerSpy = getLoggerSpy();
+		int lastCall = loggerSpy.MCR.getNumberOfCallsToMethod("logInfoUsingMessage") - 1;
+		loggerSpy.MCR.assertParameters("logInfoUsingMessage", lastCall, message);
+	}
+}
@@ -0,0 +1,489 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.data.spies.DataRecordGroupSpy;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.logger.spies.LoggerFactorySpy;
+import se.uu.ub.cora.logger.spies.LoggerSpy;
+import se.uu.ub.cora.storage.Condition;
+import se.uu.ub.cora.storage.Filter;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+import se.uu.ub.cora.storage.RelationalOperator;
+import se.uu.ub.cora.storage.StorageReadResult;
+import se.uu.ub.cora.storage.spies.RecordStorageSpy;
+import se.uu.ub.cora.userstorage.convert.AuthorizationDictionary;
+import se.uu.ub.cora.userstorage.convert.DataGroupToUser;
+import se.uu.ub.cora.userstorage.convert.UserProjection;
+
+public class UserReplicaSynchronizerTest {
+	private static final int PAGE_SIZE = 2;
+	private static final Duration FULL_SYNC_INTERVAL = Duration.ofHours(1);
+	private LoggerFactorySpy loggerFactorySpy;
+	private RecordStorageSpy recordStorage;
+	private Map<DataRecordGroup, User> usersForRecords;
+	private DataGroupToUser dataGroupToUser;
+	private UserReplica userReplica;
+	private UserStorageCaches caches;
+	private UserReplicaSynchronizer synchronizer;
+	private long now;
+	private Long usersInStorage;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 0;
+		usersInStorage = null;
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		recordStorage = new RecordStorageSpy();
+		usersForRecords = new IdentityHashMap<>();
+		dataGroupToUser = this::convertUsingPreparedUsers;
+		userReplica = UserReplica.usingMaxStalenessAndFullSyncInterval(Duration.ofMinutes(2),
+				FULL_SYNC_INTERVAL);
+		userReplica.onlyForTestSetNanoTimeSource(() -> now);
+		caches = new UserStorageCaches(
+				BoundedTtlCache.usingMaxSizeAndTimeToLive(10, Duration.ofMinutes(1)),
+				LoginIdIndex.usingMaxSizeAndTimeToLive(10, Duration.ofMinutes(1)),
+				BoundedTtlCache.usingMaxSizeAndTimeToLive(10, Duration.ofSeconds(5)),
+				SecretCache.usingMaxSizeAndTimeToLive(10, Duration.ofSeconds(5)),
+				KnownLoginIds.disabled(), UserAuthorizations.usingDictionaryMaxSizeAndTimeToLive(
+						new AuthorizationDictionary(), 10, Duration.ofMinutes(1)),
+				UserSnapshot.empty(), userReplica);
+		synchronizer = UserReplicaSynchronizer.usingRecordStorageConverterCachesAndPageSize(
+				recordStorage, dataGroupToUser, caches, PAGE_SIZE);
+	}
+
+	private User convertUsingPreparedUsers(DataRecordGroup userRecord,
+			UserProjection projection) {
+		User user = usersForRecords.get(userRecord);
+		if (user == null) {
+			throw new IllegalArgumentException("conversion error");
+		}
+		return user;
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(synchronizer instanceof Runnable);
+		assertSame(synchronizer.onlyForTestGetRecordStorage(), recordStorage);
+		assertSame(synchronizer.onlyForTestGetDataGroupToUser(), dataGroupToUser);
+		assertSame(synchronizer.onlyForTestGetCaches(), caches);
+		assertEquals(synchronizer.onlyForTestGetPageSize(), PAGE_SIZE);
+		loggerFactorySpy.MCR.assertParameters("factorForClass", 0,
+				UserReplicaSynchronizer.class);
+	}
+
+	@Test
+	public void testFirstRunReadsAllUsers() throws Exception {
+		setUpStorageWithPages(3,
+				page(userRecord("u1", "login1", "2026-01-01T10:00:00.000000Z"),
+						userRecord("u2", "login2", "2026-01-03T10:00:00.000000Z")),
+				page(userRecord("u3", "login3", "2026-01-02T10:00:00.000000Z")));
+
+		synchronizer.run();
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 2);
+		assertPageRead(0, 1, 2);
+		assertPageRead(1, 3, 4);
+		assertTrue(getFilter(0).include.isEmpty());
+		assertTrue(userReplica.isFresh());
+		assertEquals(userReplica.getNumberOfUsers(), 3);
+		assertEquals(userReplica.findUserByLoginId("login3").get().id, "u3");
+		assertEquals(synchronizer.onlyForTestGetWatermark(), "2026-01-03T10:00:00.000000Z");
+	}
+
+	@SafeVarargs
+	private void setUpStorageWithPages(long totalNumberOfMatches,
+			List<DataRecordGroup>... pages) {
+		Iterator<List<DataRecordGroup>> pageIterator = List.of(pages).iterator();
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList", () -> {
+			StorageReadResult readResult = new StorageReadResult();
+			if (isCountOfUsers(getLatestFilter())) {
+				readResult.totalNumberOfMatches = countUsersInStorage();
+				return readResult;
+			}
+			readResult.totalNumberOfMatches = totalNumberOfMatches;
+			readResult.listOfDataRecordGroups = pageIterator.hasNext() ? pageIterator.next()
+					: List.of();
+			return readResult;
+		});
+	}
+
+	private Filter getLatestFilter() {
+		return getFilter(recordStorage.MCR.getNumberOfCallsToMethod("readList") - 1);
+	}
+
+	private boolean isCountOfUsers(Filter filter) {
+		return filter.include.isEmpty() && filter.fromNo == 1 && filter.toNo == 1;
+	}
+
+	private long countUsersInStorage() {
+		if (usersInStorage == null) {
+			return userReplica.getNumberOfUsers();
+		}
+		return usersInStorage;
+	}
+
+	private List<DataRecordGroup> page(DataRecordGroup... records) {
+		return List.of(records);
+	}
+
+	private DataRecordGroup userRecord(String userId, String loginId, String updated) {
+		DataRecordGroupSpy userRecord = recordWithIdAndUpdated(userId, updated);
+		User user = createUser(userId, loginId);
+		user.active = true;
+		usersForRecords.put(userRecord, user);
+		return userRecord;
+	}
+
+	private User createUser(String userId, String loginId) {
+		User user = new User(userId);
+		user.loginId = loginId;
+		return user;
+	}
+
+	private DataRecordGroupSpy recordWithIdAndUpdated(String userId, String updated) {
+		DataRecordGroupSpy userRecord = new DataRecordGroupSpy();
+		userRecord.MRV.setDefaultReturnValuesSupplier("getId", () -> userId);
+		userRecord.MRV.setDefaultReturnValuesSupplier("getLatestTsUpdated", () -> updated);
+		return userRecord;
+	}
+
+	private void assertPageRead(int callNumber, long fromNo, long toNo) {
+		recordStorage.MCR.assertParameter("readList", callNumber, "type", "user");
+		Filter filter = getFilter(callNumber);
+		assertEquals(filter.fromNo, fromNo);
+		assertEquals(filter.toNo, toNo);
+	}
+
+	private Filter getFilter(int callNumber) {
+		return (Filter) recordStorage.MCR
+				.getValueForMethodNameAndCallNumberAndParameterName("readList", callNumber,
+						"filter");
+	}
+
+	@Test
+	public void testFullSyncIsLogged() throws Exception {
+		setUpStorageWithPages(1, page(userRecord("u1", "login1", "2026-01-01T10:00:00Z")));
+
+		synchronizer.run();
+
+		getLoggerSpy().MCR.assertParameters("logInfoUsingMessage", 0,
+				"Read all users into replica, users: 1, failed conversions: 0, watermark: "
+						+ "2026-01-01T10:00:00Z, time: 0 ms.");
+	}
+
+	private LoggerSpy getLoggerSpy() {
+		return (LoggerSpy) loggerFactorySpy.MCR.getReturnValue("factorForClass", 0);
+	}
+
+	@Test
+	public void testNextRunReadsUsersUpdatedSinceWatermark() throws Exception {
+		runFullSyncWithUser("u1", "login1", "2026-01-01T10:00:00Z");
+		setUpStorageWithPages(1, page(userRecord("u2", "login2", "2026-01-02T10:00:00Z")));
+
+		synchronizer.run();
+
+		Filter filter = getFilter(1);
+		assertEquals(filter.include.size(), 1);
+		assertEquals(filter.include.get(0).conditions,
+				List.of(new Condition(UserReplicaSynchronizer.UPDATED,
+						RelationalOperator.GREATER_THAN_OR_EQUAL_TO,
+						"2026-01-01T09:59:00.000000Z")));
+		assertPageRead(1, 1, 2);
+		assertEquals(userReplica.getNumberOfUsers(), 2);
+		assertEquals(userReplica.findUserById("u2").get().loginId, "login2");
+		assertEquals(synchronizer.onlyForTestGetWatermark(), "2026-01-02T10:00:00Z");
+		getLoggerSpy().MCR.assertParameters("logInfoUsingMessage", 1,
+				"Applied changed users to replica, changed users: 1, failed conversions: 0, "
+						+ "watermark: 2026-01-02T10:00:00Z, time: 0 ms.");
+	}
+
+	@Test
+	public void testWatermarkThatCanNotBeParsedIsUsedWithoutOverlap() throws Exception {
+		runFullSyncWithUser("u1", "login1", "notATimestamp");
+		setUpStorageWithPages(0);
+
+		synchronizer.run();
+
+		assertEquals(getFilter(1).include.get(0).conditions,
+				List.of(new Condition(UserReplicaSynchronizer.UPDATED,
+						RelationalOperator.GREATER_THAN_OR_EQUAL_TO, "notATimestamp")));
+	}
+
+	private void runFullSyncWithUser(String userId, String loginId, String updated) {
+		setUpStorageWithPages(1, page(userRecord(userId, loginId, updated)));
+		synchronizer.run();
+	}
+
+	@Test
+	public void testRunWithoutChangesKeepsWatermarkAndIsNotLogged() throws Exception {
+		runFullSyncWithUser("u1", "login1", "2026-01-01T10:00:00Z");
+		setUpStorageWithPages(0);
+		now = Duration.ofMinutes(1).toNanos();
+
+		synchronizer.run();
+
+		assertEquals(synchronizer.onlyForTestGetWatermark(), "2026-01-01T10:00:00Z");
+		getLoggerSpy().MCR.assertNumberOfCallsToMethod("logInfoUsingMessage", 1);
+		now = Duration.ofMinutes(3).toNanos();
+		assertTrue(userReplica.isFresh());
+	}
+
+	@Test
+	public void testChangedUserReplacesOldUserAndLoginId() throws Exception {
+		runFullSyncWithUser("u1", "login1", "2026-01-01T10:00:00Z");
+		setUpStorageWithPages(1, page(userRecord("u1", "newLogin1", "2026-01-02T10:00:00Z")));
+
+		synchronizer.run();
+
+		assertEquals(userReplica.getNumberOfUsers(), 1);
+		assertTrue(userReplica.findUserByLoginId("login1").isEmpty());
+		assertEquals(userReplica.findUserByLoginId("newLogin1").get().id, "u1");
+	}
+
+	@Test
+	public void testChangedUserIsRemovedFromCaches() throws Exception {
+		runFullSyncWithUser("u1", "login1", "2026-01-01T10:00:00Z");
+		caches.userCache().put("u1", new User("u1"));
+		caches.loginIdIndex().indexUser(createUser("u1", "login1"));
+		caches.loginIdIndex().indexUser(createUser("u3", "login2"));
+		NotFound notFound = new NotFound("not found",
+				RecordNotFoundException.withMessage("not found"));
+		caches.notFoundCache().put(new NotFoundKey(NotFoundKey.USER, "u2"), notFound);
+		caches.notFoundCache().put(new NotFoundKey(NotFoundKey.LOGIN_ID, "login2"), notFound);
+		setUpStorageWithPages(2, page(userRecord("u1", "login1", "2026-01-02T10:00:00Z"),
+				userRecord("u2", "login2", "2026-01-02T10:00:00Z")));
+
+		synchronizer.run();
+
+		assertTrue(caches.userCache().get("u1").isEmpty());
+		assertEquals(caches.notFoundCache().size(), 0);
+		assertEquals(caches.loginIdIndex().size(), 0);
+	}
+
+	@Test
+	public void testChangedLoginIdIsAddedToKnownLoginIds() throws Exception {
+		KnownLoginIds knownLoginIds = KnownLoginIds
+				.usingExpectedLoginIdsAndFalsePositiveRate(100, 0.01);
+		knownLoginIds.finishRebuild(knownLoginIds.startRebuild(1));
+		caches = new UserStorageCaches(caches.userCache(), caches.loginIdIndex(),
+				caches.notFoundCache(), caches.secretCache(), knownLoginIds,
+				caches.userAuthorizations(), caches.userSnapshot(), userReplica);
+		synchronizer = UserReplicaSynchronizer.usingRecordStorageConverterCachesAndPageSize(
+				recordStorage, dataGroupToUser, caches, PAGE_SIZE);
+		runFullSyncWithUser("u1", "login1", "2026-01-01T10:00:00Z");
+		setUpStorageWithPages(1, page(userRecord("u2", "login2", "2026-01-02T10:00:00Z")));
+
+		synchronizer.run();
+
+		assertTrue(knownLoginIds.mightExist("login1"));
+		assertTrue(knownLoginIds.mightExist("login2"));
+		assertFalse(knownLoginIds.mightExist("login3"));
+	}
+
+	@Test
+	public void testChangedUserThatCanNotBeConvertedIsRemoved() throws Exception {
+		runFullSyncWithUser("u1", "login1", "2026-01-01T10:00:00Z");
+		caches.userCache().put("u1", new User("u1"));
+		caches.loginIdIndex().indexUser(userReplica.findUserById("u1").get());
+		setUpStorageWithPages(1, page(recordWithIdAndUpdated("u1", "2026-01-02T10:00:00Z")));
+
+		synchronizer.run();
+
+		assertTrue(userReplica.findUserById("u1").isEmpty());
+		assertTrue(userReplica.findUserByLoginId("login1").isEmpty());
+		assertTrue(caches.userCache().get("u1").isEmpty());
+		assertTrue(caches.loginIdIndex().findUserIdForLoginId("login1").isEmpty());
+		assertEquals(synchronizer.onlyForTestGetWatermark(), "2026-01-02T10:00:00Z");
+		getLoggerSpy().MCR.assertParameters("logInfoUsingMessage", 1,
+				"Applied changed users to replica, changed users: 1, failed conversions: 1, "
+						+ "watermark: 2026-01-02T10:00:00Z, time: 0 ms.");
+	}
+
+	@Test
+	public void testUserThatCanNotBeConvertedIsSkippedInFullSync() throws Exception {
+		setUpStorageWithPages(2, page(recordWithIdAndUpdated("u1", "2026-01-01T10:00:00Z"),
+				userRecord("u2", "login2", "2026-01-01T10:00:00Z")));
+
+		synchronizer.run();
+
+		assertEquals(userReplica.getNumberOfUsers(), 1);
+		assertTrue(userReplica.findUserById("u2").isPresent());
+	}
+
+	@Test
+	public void testFailingReadKeepsWatermarkAndReplicaBecomesStale() throws Exception {
+		runFullSyncWithUser("u1", "login1", "2026-01-01T10:00:00Z");
+		RuntimeException error = new RuntimeException("error from storage");
+		recordStorage.MRV.setAlwaysThrowException("readList", error);
+		now = Duration.ofMinutes(1).toNanos();
+
+		try {
+			synchronizer.run();
+			fail();
+		} catch (RuntimeException e) {
+			assertSame(e, error);
+		}
+
+		assertEquals(synchronizer.onlyForTestGetWatermark(), "2026-01-01T10:00:00Z");
+		now = Duration.ofMinutes(2).toNanos();
+		assertTrue(userReplica.isFresh());
+		now = Duration.ofMinutes(2).toNanos() + 1;
+		assertFalse(userReplica.isFresh());
+		assertTrue(userReplica.findUserById("u1").isEmpty());
+	}
+
+	@Test
+	public void testIncrementalRunEndsByCountingUsersInStorage() throws Exception {
+		runFullSyncWithUser("u1", "login1", "2026-01-01T10:00:00Z");
+		setUpStorageWithPages(0);
+
+		synchronizer.run();
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 3);
+		assertPageRead(2, 1, 1);
+		assertTrue(getFilter(2).include.isEmpty());
+		assertEquals(userReplica.getNumberOfUsers(), 1);
+	}
+
+	@Test
+	public void testUsersDeletedInStorageAreRemovedByReadingAllUsers() throws Exception {
+		setUpStorageWithPages(2, page(userRecord("u1", "login1", "2026-01-01T10:00:00Z"),
+				userRecord("u2", "login2", "2026-01-01T10:00:00Z")));
+		synchronizer.run();
+		usersInStorage = 1L;
+		setUpStorageWithPages(1, page(),
+				page(userRecord("u1", "login1", "2026-01-01T10:00:00Z")));
+		now = Duration.ofMinutes(1).toNanos();
+
+		synchronizer.run();
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 4);
+		assertTrue(getFilter(3).include.isEmpty());
+		assertPageRead(3, 1, 2);
+		assertEquals(userReplica.getNumberOfUsers(), 1);
+		assertTrue(userReplica.findUserById("u2").isEmpty());
+		getLoggerSpy().MCR.assertParameters("logInfoUsingMessage", 1,
+				"Users deleted from storage, users in storage: 1, expected users: 2.");
+		getLoggerSpy().MCR.assertParameters("logInfoUsingMessage", 2,
+				"Read all users into replica, users: 1, failed conversions: 0, watermark: "
+						+ "2026-01-01T10:00:00Z, time: 0 ms.");
+		now = Duration.ofMinutes(3).toNanos();
+		assertTrue(userReplica.isFresh());
+	}
+
+	@Test
+	public void testUsersThatCanNotBeConvertedAreNotTakenForDeletedUsers() throws Exception {
+		setUpStorageWithPages(2, page(recordWithIdAndUpdated("u1", "2026-01-01T10:00:00Z"),
+				userRecord("u2", "login2", "2026-01-01T10:00:00Z")));
+		synchronizer.run();
+		usersInStorage = 2L;
+		setUpStorageWithPages(0);
+
+		synchronizer.run();
+
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 3);
+		assertEquals(userReplica.getNumberOfUsers(), 1);
+	}
+
+	@Test
+	public void testChangedUserThatCanBeConvertedAgainIsExpectedInReplicaOnly() throws Exception {
+		setUpStorageWithPages(1, page(recordWithIdAndUpdated("u1", "2026-01-01T10:00:00Z")));
+		synchronizer.run();
+		usersInStorage = 1L;
+		setUpStorageWithPages(1, page(userRecord("u1", "login1", "2026-01-02T10:00:00Z")));
+		synchronizer.run();
+		usersInStorage = 0L;
+		setUpStorageWithPages(0);
+
+		synchronizer.run();
+
+		assertEquals(userReplica.getNumberOfUsers(), 0);
+		getLoggerSpy().MCR.assertParameters("logInfoUsingMessage", 2,
+				"Users deleted from storage, users in storage: 0, expected users: 1.");
+	}
+
+	@Test
+	public void testUserRemovedWhileAllUsersAreReadIsLeftOutAndNotTakenForDeleted()
+			throws Exception {
+		List<DataRecordGroup> allUsers = page(userRecord("u1", "login1", "2026-01-01T10:00:00Z"),
+				userRecord("u2", "login2", "2026-01-01T10:00:00Z"));
+		recordStorage.MRV.setDefaultReturnValuesSupplier("readList", () -> {
+			userReplica.removeUser("u1");
+			StorageReadResult readResult = new StorageReadResult();
+			readResult.totalNumberOfMatches = 2;
+			readResult.listOfDataRecordGroups = allUsers;
+			return readResult;
+		});
+
+		synchronizer.run();
+
+		assertTrue(userReplica.findUserById("u1").isEmpty());
+		assertTrue(userReplica.findUserById("u2").isPresent());
+		usersInStorage = 2L;
+		setUpStorageWithPages(0);
+		synchronizer.run();
+		recordStorage.MCR.assertNumberOfCallsToMethod("readList", 3);
+	}
+
+	@Test
+	public void testAllUsersAreReadAgainAfterFullSyncInterval() throws Exception {
+		runFullSyncWithUser("u1", "login1", "2026-01-01T10:00:00Z");
+		now = FULL_SYNC_INTERVAL.toNanos();
+		setUpStorageWithPages(1, page(userRecord("u2", "login2", "2026-01-01T09:00:00Z")));
+
+		synchronizer.run();
+
+		assertTrue(getFilter(1).include.isEmpty());
+		assertTrue(userReplica.findUserById("u1").isEmpty());
+		assertTrue(userReplica.findUserById("u2").isPresent());
+		assertEquals(synchronizer.onlyForTestGetWatermark(), "2026-01-01T10:00:00Z");
+	}
+
+	@Test
+	public void testEmptyStorageIsReadFullyAgain() throws Exception {
+		setUpStorageWithPages(0);
+		synchronizer.run();
+
+		synchronizer.run();
+
+		assertTrue(getFilter(1).include.isEmpty());
+		assertTrue(userReplica.isFresh());
+		assertEquals(userReplica.getNumberOfUsers(), 0);
+	}
+}
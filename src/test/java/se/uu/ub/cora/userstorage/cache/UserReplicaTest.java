@@ -0,0 +1,213 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+public class UserReplicaTest {
+	private static final Duration MAX_STALENESS = Duration.ofMinutes(2);
+	private UserReplica userReplica;
+	private long now;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 0;
+		userReplica = UserReplica.usingMaxStalenessAndFullSyncInterval(MAX_STALENESS,
+				Duration.ofHours(1));
+		userReplica.onlyForTestSetNanoTimeSource(() -> now);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(userReplica.isEnabled());
+		assertEquals(userReplica.getMaxStaleness(), MAX_STALENESS);
+		assertEquals(userReplica.getFullSyncInterval(), Duration.ofHours(1));
+		assertEquals(userReplica.getNumberOfUsers(), 0);
+		assertFalse(userReplica.isFresh());
+	}
+
+	@Test
+	public void testUsersAreNotFoundBeforeFirstSynchronization() throws Exception {
+		userReplica.replaceUsers(List.of(createUser("u1", "login1")));
+
+		assertTrue(userReplica.findUserById("u1").isEmpty());
+		assertTrue(userReplica.findUserByLoginId("login1").isEmpty());
+		assertEquals(userReplica.getNumberOfHits(), 0);
+	}
+
+	private User createUser(String userId, String loginId) {
+		User user = new User(userId);
+		user.loginId = loginId;
+		return user;
+	}
+
+	@Test
+	public void testFindUsersWhileFresh() throws Exception {
+		User user = createUser("u1", "login1");
+		userReplica.replaceUsers(List.of(user, createUser("u2", null)));
+		userReplica.markSynchronized(userReplica.nanoTime());
+
+		assertSame(userReplica.findUserById("u1").get(), user);
+		assertSame(userReplica.findUserByLoginId("login1").get(), user);
+		assertTrue(userReplica.findUserById("u2").isPresent());
+		assertTrue(userReplica.findUserById("u3").isEmpty());
+		assertTrue(userReplica.findUserByLoginId("login3").isEmpty());
+		assertEquals(userReplica.getNumberOfUsers(), 2);
+		assertEquals(userReplica.getNumberOfHits(), 3);
+	}
+
+	@Test
+	public void testReplicaIsFreshForMaxStalenessFromSynchronizationStart() throws Exception {
+		userReplica.replaceUsers(List.of(createUser("u1", "login1")));
+		now = 5;
+		userReplica.markSynchronized(1);
+
+		now = 1 + MAX_STALENESS.toNanos();
+		assertTrue(userReplica.isFresh());
+		assertTrue(userReplica.findUserById("u1").isPresent());
+
+		now = 2 + MAX_STALENESS.toNanos();
+		assertFalse(userReplica.isFresh());
+		assertTrue(userReplica.findUserById("u1").isEmpty());
+		assertTrue(userReplica.findUserByLoginId("login1").isEmpty());
+	}
+
+	@Test
+	public void testReplaceUsersRemovesOldUsers() throws Exception {
+		userReplica.replaceUsers(List.of(createUser("u1", "login1")));
+		userReplica.markSynchronized(0);
+
+		userReplica.replaceUsers(List.of(createUser("u2", "login2")));
+
+		assertTrue(userReplica.findUserById("u1").isEmpty());
+		assertTrue(userReplica.findUserByLoginId("login1").isEmpty());
+		assertTrue(userReplica.findUserByLoginId("login2").isPresent());
+	}
+
+	@Test
+	public void testUpdateUserWithNewLoginId() throws Exception {
+		userReplica.replaceUsers(List.of(createUser("u1", "login1")));
+		userReplica.markSynchronized(0);
+
+		userReplica.updateUser(createUser("u1", "newLogin1"));
+
+		assertEquals(userReplica.getNumberOfUsers(), 1);
+		assertTrue(userReplica.findUserByLoginId("login1").isEmpty());
+		assertEquals(userReplica.findUserByLoginId("newLogin1").get().id, "u1");
+	}
+
+	@Test
+	public void testLoginIdMovedToOtherUserIsKeptForNewUser() throws Exception {
+		userReplica.replaceUsers(List.of(createUser("u1", "login1")));
+		userReplica.markSynchronized(0);
+
+		userReplica.updateUser(createUser("u2", "login1"));
+		userReplica.updateUser(createUser("u1", "otherLogin"));
+
+		assertEquals(userReplica.findUserByLoginId("login1").get().id, "u2");
+	}
+
+	@Test
+	public void testLoginIdOfTwoUsersIsNotFound() throws Exception {
+		userReplica.replaceUsers(
+				List.of(createUser("u1", "login1"), createUser("u2", "login1")));
+		userReplica.markSynchronized(0);
+
+		assertTrue(userReplica.findUserByLoginId("login1").isEmpty());
+		assertTrue(userReplica.findUserById("u1").isPresent());
+		assertTrue(userReplica.findUserById("u2").isPresent());
+	}
+
+	@Test
+	public void testLoginIdIsFoundAgainWhenOnlyOneUserHasIt() throws Exception {
+		userReplica.replaceUsers(List.of(createUser("u1", "login1")));
+		userReplica.markSynchronized(0);
+
+		userReplica.updateUser(createUser("u2", "login1"));
+		assertTrue(userReplica.findUserByLoginId("login1").isEmpty());
+
+		userReplica.removeUser("u2");
+		assertEquals(userReplica.findUserByLoginId("login1").get().id, "u1");
+	}
+
+	@Test
+	public void testRemoveUser() throws Exception {
+		userReplica.replaceUsers(List.of(createUser("u1", "login1")));
+		userReplica.markSynchronized(0);
+
+		userReplica.removeUser("u1");
+		userReplica.removeUser("u2");
+
+		assertEquals(userReplica.getNumberOfUsers(), 0);
+		assertTrue(userReplica.findUserByLoginId("login1").isEmpty());
+	}
+
+	@Test
+	public void testUsersRemovedWhileReplacingAreLeftOut() throws Exception {
+		userReplica.replaceUsers(List.of(createUser("u1", "login1")));
+		userReplica.markSynchronized(0);
+		userReplica.startReplacingUsers();
+
+		userReplica.removeUser("u1");
+		userReplica.removeUser("u3");
+		Set<String> leftOutUserIds = userReplica.replaceUsers(
+				List.of(createUser("u1", "login1"), createUser("u2", "login2")));
+
+		assertEquals(leftOutUserIds, Set.of("u1"));
+		assertEquals(userReplica.getNumberOfUsers(), 1);
+		assertTrue(userReplica.findUserById("u2").isPresent());
+	}
+
+	@Test
+	public void testUsersRemovedAfterReplacingAreNotLeftOutNextTime() throws Exception {
+		userReplica.startReplacingUsers();
+		userReplica.replaceUsers(List.of());
+
+		userReplica.removeUser("u1");
+		Set<String> leftOutUserIds = userReplica
+				.replaceUsers(List.of(createUser("u1", "login1")));
+
+		assertTrue(leftOutUserIds.isEmpty());
+		assertEquals(userReplica.getNumberOfUsers(), 1);
+	}
+
+	@Test
+	public void testDisabledReplicaIsNeverFresh() throws Exception {
+		UserReplica disabledReplica = UserReplica.disabled();
+		disabledReplica.replaceUsers(List.of(createUser("u1", "login1")));
+
+		disabledReplica.markSynchronized(disabledReplica.nanoTime());
+
+		assertFalse(disabledReplica.isEnabled());
+		assertFalse(disabledReplica.isFresh());
+		assertTrue(disabledReplica.findUserById("u1").isEmpty());
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.logger.spies.LoggerFactorySpy;
+import se.uu.ub.cora.logger.spies.LoggerSpy;
+
+public class UserSnapshotFileTest {
+	private static final long CREATED_MILLIS = 1_700_000_000_000L;
+	private LoggerFactorySpy loggerFactorySpy;
+	private Path directory;
+	private Path path;
+	private long now;
+	private BoundedTtlCache<String, User> userCache;
+	private UserSnapshotFile snapshotFile;
+
+	@BeforeMethod
+	public void beforeMethod() throws IOException {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		directory = Files.createTempDirectory("userSnapshotFileTest");
+		path = directory.resolve("users.snapshot");
+		now = CREATED_MILLIS;
+		userCache = BoundedTtlCache.usingMaxSizeAndTimeToLive(2000, Duration.ofMinutes(1));
+		snapshotFile = UserSnapshotFile.usingPathAndMaxAge(path, Duration.ofHours(1));
+		snapshotFile.onlyForTestSetCurrentTimeMillis(() -> now);
+	}
+
+	@AfterMethod
+	public void afterMethod() throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	@Test
+	public void testSettings() {
+		assertSame(snapshotFile.getPath(), path);
+		assertEquals(snapshotFile.getMaxAge(), Duration.ofHours(1));
+	}
+
+	@Test
+	public void testOpenWithoutFileGivesClosedSnapshot() {
+		UserSnapshot snapshot = snapshotFile.open();
+
+		assertFalse(snapshot.isOpen());
+		getLoggerSpy().MCR.assertParameters("logInfoUsingMessage", 0,
+				"No user snapshot found at " + path + ".");
+	}
+
+	private LoggerSpy getLoggerSpy() {
+		return (LoggerSpy) loggerFactorySpy.MCR.getReturnValue("factorForClass", 0);
+	}
+
+	@Test
+	public void testWriteAndOpen() {
+		userCache.put("userId1", createUser("userId1", "loginId1", "someRole"));
+		userCache.put("userId2", createUser("userId2", "loginId2", "otherRole"));
+
+		snapshotFile.write(userCache);
+		UserSnapshot snapshot = snapshotFile.open();
+
+		assertTrue(snapshot.isOpen());
+		assertEquals(snapshot.getNumberOfUsers(), 2);
+		assertEquals(snapshot.getCreated(), Instant.ofEpochMilli(CREATED_MILLIS));
+		User user = snapshot.findUserById("userId2").get();
+		assertEquals(user.loginId, "loginId2");
+		assertEquals(user.roles, Set.of("otherRole"));
+		assertTrue(user.active);
+		assertEquals(snapshot.findUserByLoginId("loginId1").get().id, "userId1");
+	}
+
+	private User createUser(String userId, String loginId, String roleId) {
+		User user = new User(userId);
+		user.loginId = loginId;
+		user.active = true;
+		user.roles = Set.of(roleId);
+		user.passwordId = Optional.of(userId + "Password");
+		return user;
+	}
+
+	@Test
+	public void testWriteIsLogged() {
+		userCache.put("userId1", createUser("userId1", "loginId1", "someRole"));
+
+		snapshotFile.write(userCache);
+
+		String message = (String) getLoggerSpy().MCR
+				.getValueForMethodNameAndCallNumberAndParameterName("logInfoUsingMessage", 0,
+						"message");
+		assertTrue(message.startsWith("Wrote user snapshot " + path + ", users: 1, bytes: "),
+				message);
+		assertTrue(message.endsWith(" ms."), message);
+	}
+
+	@Test
+	public void testWriteReplacesOldSnapshotAndLeavesNoTemporaryFile() throws IOException {
+		userCache.put("userId1", createUser("userId1", "loginId1", "someRole"));
+		snapshotFile.write(userCache);
+		userCache.invalidateAll();
+		userCache.put("userId2", createUser("userId2", "loginId2", "someRole"));
+
+		snapshotFile.write(userCache);
+
+		UserSnapshot snapshot = snapshotFile.open();
+		assertTrue(snapshot.findUserById("userId1").isEmpty());
+		assertTrue(snapshot.findUserById("userId2").isPresent());
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(files.toList(), List.of(path));
+		}
+	}
+
+	@Test
+	public void testWriteEmptyCache() {
+		snapshotFile.write(userCache);
+
+		UserSnapshot snapshot = snapshotFile.open();
+
+		assertTrue(snapshot.isOpen());
+		assertEquals(snapshot.getNumberOfUsers(), 0);
+		assertTrue(snapshot.findUserById("userId1").isEmpty());
+	}
+
+	@Test
+	public void testExpiredUsersAreNotWritten() {
+		long[] cacheTime = { 0 };
+		userCache.onlyForTestSetNanoTimeSource(() -> cacheTime[0]);
+		userCache.put("userId1", createUser("userId1", "loginId1", "someRole"));
+		cacheTime[0] = Duration.ofMinutes(1).toNanos();
+		userCache.put("userId2", createUser("userId2", "loginId2", "someRole"));
+
+		snapshotFile.write(userCache);
+
+		UserSnapshot snapshot = snapshotFile.open();
+		assertEquals(snapshot.getNumberOfUsers(), 1);
+		assertTrue(snapshot.findUserById("userId1").isEmpty());
+	}
+
+	@Test
+	public void testManyUsersCanBeFound() {
+		for (int i = 0; i < 1000; i++) {
+			userCache.put("userId" + i, createUser("userId" + i, "loginId" + i, "role" + i % 7));
+		}
+
+		snapshotFile.write(userCache);
+		UserSnapshot snapshot = snapshotFile.open();
+
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(snapshot.findUserById("userId" + i).get().loginId, "loginId" + i);
+			assertEquals(snapshot.findUserByLoginId("loginId" + i).get().id, "userId" + i);
+		}
+		assertTrue(snapshot.findUserById("userId1000").isEmpty());
+		assertTrue(snapshot.findUserByLoginId("userId1").isEmpty());
+	}
+
+	@Test
+	public void testFailingWriteThrowsAndLeavesNoTemporaryFile() throws IOException {
+		snapshotFile = UserSnapshotFile.usingPathAndMaxAge(
+				directory.resolve("missing").resolve("users.snapshot"), Duration.ofHours(1));
+
+		try {
+			snapshotFile.write(userCache);
+			fail();
+		} catch (UncheckedIOException e) {
+			assertTrue(e.getMessage().startsWith("Could not write user snapshot "));
+		}
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(files.count(), 0);
+		}
+	}
+
+	@Test
+	public void testTooOldSnapshotIsDiscarded() {
+		writeOneUser();
+		now = CREATED_MILLIS + Duration.ofHours(1).toMillis() + 1;
+
+		assertDiscarded("snapshot is too old, created: " + Instant.ofEpochMilli(CREATED_MILLIS));
+	}
+
+	private void writeOneUser() {
+		userCache.put("userId1", createUser("userId1", "loginId1", "someRole"));
+		snapshotFile.write(userCache);
+	}
+
+	private void assertDiscarded(String reason) {
+		UserSnapshot snapshot = snapshotFile.open();
+
+		assertFalse(snapshot.isOpen());
+		assertFalse(Files.exists(path));
+		getLoggerSpy().MCR.assertParameters("logWarnUsingMessage", 0,
+				"Discarded user snapshot " + path + ": " + reason + ".");
+	}
+
+	@Test
+	public void testSnapshotFromTheFutureIsDiscarded() {
+		writeOneUser();
+		now = CREATED_MILLIS - 1;
+
+		assertDiscarded("snapshot is too old, created: " + Instant.ofEpochMilli(CREATED_MILLIS));
+	}
+
+	@Test
+	public void testSnapshotAtMaxAgeIsUsed() {
+		writeOneUser();
+		now = CREATED_MILLIS + Duration.ofHours(1).toMillis();
+
+		assertTrue(snapshotFile.open().isOpen());
+	}
+
+	@Test
+	public void testWrongMagicIsDiscarded() throws IOException {
+		writeOneUser();
+		changeIntAt(UserSnapshotFile.MAGIC_POSITION, 17);
+
+		assertDiscarded("not a user snapshot");
+	}
+
+	private void changeIntAt(int position, int value) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, value), position);
+		}
+	}
+
+	@Test
+	public void testOtherFormatVersionIsDiscarded() throws IOException {
+		writeOneUser();
+		changeIntAt(UserSnapshotFile.VERSION_POSITION, UserSnapshotFile.FORMAT_VERSION + 1);
+
+		assertDiscarded("unsupported format version: " + (UserSnapshotFile.FORMAT_VERSION + 1));
+	}
+
+	@Test
+	public void testChangedUserIsDiscarded() throws IOException {
+		writeOneUser();
+		changeIntAt(UserSnapshotFile.HEADER_SIZE + 8, 0x41414141);
+
+		assertDiscarded("wrong checksum");
+	}
+
+	@Test
+	public void testChangedHeaderIsDiscarded() throws IOException {
+		writeOneUser();
+		changeIntAt(UserSnapshotFile.NUMBER_OF_USERS_POSITION, 2);
+
+		assertDiscarded("wrong checksum");
+	}
+
+	@Test
+	public void testTruncatedFileIsDiscarded() throws IOException {
+		writeOneUser();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 1);
+		}
+
+		assertDiscarded("file is truncated");
+	}
+
+	@Test
+	public void testTooShortFileIsDiscarded() throws IOException {
+		Files.write(path, new byte[] { 1, 2, 3 });
+
+		assertDiscarded("wrong file size: 3");
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+public class UserSnapshotTest {
+
+	@Test
+	public void testEmpty() {
+		UserSnapshot snapshot = UserSnapshot.empty();
+
+		assertFalse(snapshot.isOpen());
+		assertEquals(snapshot.getNumberOfUsers(), 0);
+		assertEquals(snapshot.getCreated(), Instant.EPOCH);
+		assertTrue(snapshot.findUserById("someUserId").isEmpty());
+		assertTrue(snapshot.findUserByLoginId("someLoginId").isEmpty());
+		assertEquals(snapshot.getNumberOfHits(), 0);
+	}
+
+	@Test
+	public void testCloseStopsLookups() throws Exception {
+		UserSnapshot snapshot = openSnapshotWithUser("someUserId", "someLoginId");
+		assertTrue(snapshot.findUserById("someUserId").isPresent());
+
+		snapshot.close();
+
+		assertFalse(snapshot.isOpen());
+		assertEquals(snapshot.getNumberOfUsers(), 0);
+		assertEquals(snapshot.getCreated(), Instant.EPOCH);
+		assertTrue(snapshot.findUserById("someUserId").isEmpty());
+		assertTrue(snapshot.findUserByLoginId("someLoginId").isEmpty());
+		assertEquals(snapshot.getNumberOfHits(), 1);
+	}
+
+	private UserSnapshot openSnapshotWithUser(String userId, String loginId) throws IOException {
+		return openSnapshotWithUser(userId, loginId, true);
+	}
+
+	private UserSnapshot openSnapshotWithUser(String userId, String loginId, boolean active)
+			throws IOException {
+		return openSnapshotWithUsers(createUser(userId, loginId, active));
+	}
+
+	private User createUser(String userId, String loginId, boolean active) {
+		User user = new User(userId);
+		user.loginId = loginId;
+		user.active = active;
+		return user;
+	}
+
+	private UserSnapshot openSnapshotWithUsers(User... users) throws IOException {
+		Path directory = Files.createTempDirectory("userSnapshotTest");
+		Path path = directory.resolve("users.snapshot");
+		try {
+			BoundedTtlCache<String, User> userCache = BoundedTtlCache
+					.usingMaxSizeAndTimeToLive(10, Duration.ofMinutes(1));
+			for (User user : users) {
+				userCache.put(user.id, user);
+			}
+			UserSnapshotFile snapshotFile = UserSnapshotFile.usingPathAndMaxAge(path,
+					Duration.ofMinutes(1));
+			snapshotFile.write(userCache);
+			return snapshotFile.open();
+		} finally {
+			Files.deleteIfExists(path);
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testHitsAreCounted() throws Exception {
+		UserSnapshot snapshot = openSnapshotWithUser("someUserId", "someLoginId");
+
+		snapshot.findUserById("someUserId");
+		snapshot.findUserByLoginId("someLoginId");
+		snapshot.findUserById("otherUserId");
+
+		assertEquals(snapshot.getNumberOfHits(), 2);
+	}
+
+	@Test
+	public void testInactiveUserIsNotFound() throws Exception {
+		UserSnapshot snapshot = openSnapshotWithUser("someUserId", "someLoginId", false);
+
+		assertTrue(snapshot.findUserById("someUserId").isEmpty());
+		assertTrue(snapshot.findUserByLoginId("someLoginId").isEmpty());
+		assertEquals(snapshot.getNumberOfHits(), 0);
+	}
+
+	@Test
+	public void testInvalidatedUserIsNotFound() throws Exception {
+		UserSnapshot snapshot = openSnapshotWithUser("someUserId", "someLoginId");
+
+		snapshot.invalidateUser("someUserId");
+
+		assertTrue(snapshot.findUserById("someUserId").isEmpty());
+		assertTrue(snapshot.findUserByLoginId("someLoginId").isEmpty());
+		assertEquals(snapshot.getNumberOfHits(), 0);
+	}
+
+	@Test
+	public void testLoginIdOfTwoUsersIsNotFound() throws Exception {
+		UserSnapshot snapshot = openSnapshotWithUsers(createUser("u1", "someLoginId", true),
+				createUser("u2", "someLoginId", true), createUser("u3", "otherLoginId", true));
+
+		assertTrue(snapshot.findUserByLoginId("someLoginId").isEmpty());
+		assertEquals(snapshot.findUserByLoginId("otherLoginId").get().id, "u3");
+		assertTrue(snapshot.findUserById("u1").isPresent());
+		assertTrue(snapshot.findUserById("u2").isPresent());
+	}
+
+	@Test
+	public void testLoginIdAlsoHeldByInactiveUserIsNotFound() throws Exception {
+		UserSnapshot snapshot = openSnapshotWithUsers(createUser("u1", "someLoginId", true),
+				createUser("u2", "someLoginId", false));
+
+		assertTrue(snapshot.findUserByLoginId("someLoginId").isEmpty());
+		assertEquals(snapshot.getNumberOfHits(), 0);
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.circuit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CircuitBreakerTest {
+	private static final Duration SLOW_CALL = Duration.ofSeconds(2);
+	private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+	private CircuitBreaker circuitBreaker;
+	private long now;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 0;
+		circuitBreaker = CircuitBreaker.usingFailureThresholdSlowCallThresholdAndOpenDuration(3,
+				SLOW_CALL, OPEN_DURATION);
+		circuitBreaker.onlyForTestSetNanoTimeSource(() -> now);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(circuitBreaker.isEnabled());
+		assertEquals(circuitBreaker.getFailureThreshold(), 3);
+		assertEquals(circuitBreaker.getSlowCallThreshold(), SLOW_CALL);
+		assertEquals(circuitBreaker.getOpenDuration(), OPEN_DURATION);
+		assertEquals(circuitBreaker.getStatistics(),
+				new CircuitBreakerStatistics(CircuitState.CLOSED, 0, 0, 0));
+	}
+
+	@Test
+	public void testClosedCircuitPermitsCalls() throws Exception {
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertTrue(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	public void testOpensAfterFailureThresholdFailuresInARow() throws Exception {
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+		assertEquals(circuitBreaker.getState(), CircuitState.CLOSED);
+
+		circuitBreaker.recordFailure();
+
+		assertEquals(circuitBreaker.getState(), CircuitState.OPEN);
+		assertFalse(circuitBreaker.tryAcquirePermission());
+		assertEquals(circuitBreaker.getStatistics(),
+				new CircuitBreakerStatistics(CircuitState.OPEN, 1, 1, 0));
+	}
+
+	@Test
+	public void testSuccessResetsFailures() throws Exception {
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordSuccess(0);
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+
+		assertEquals(circuitBreaker.getState(), CircuitState.CLOSED);
+	}
+
+	@Test
+	public void testSlowCallsAreFailures() throws Exception {
+		circuitBreaker.recordSuccess(SLOW_CALL.toNanos() - 1);
+		circuitBreaker.recordSuccess(SLOW_CALL.toNanos());
+		circuitBreaker.recordSuccess(SLOW_CALL.toNanos());
+		assertEquals(circuitBreaker.getState(), CircuitState.CLOSED);
+
+		circuitBreaker.recordSuccess(SLOW_CALL.toNanos());
+
+		assertEquals(circuitBreaker.getState(), CircuitState.OPEN);
+	}
+
+	private void openCircuit() {
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+	}
+
+	@Test
+	public void testOneTrialCallIsPermittedAfterOpenDuration() throws Exception {
+		openCircuit();
+		now = OPEN_DURATION.toNanos() - 1;
+		assertFalse(circuitBreaker.tryAcquirePermission());
+
+		now = OPEN_DURATION.toNanos();
+
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertEquals(circuitBreaker.getState(), CircuitState.HALF_OPEN);
+		assertFalse(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	public void testSuccessfulTrialCallClosesCircuit() throws Exception {
+		openCircuit();
+		now = OPEN_DURATION.toNanos();
+		circuitBreaker.tryAcquirePermission();
+
+		circuitBreaker.recordSuccess(0);
+
+		assertEquals(circuitBreaker.getState(), CircuitState.CLOSED);
+		assertTrue(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	public void testFailedTrialCallOpensCircuitAgain() throws Exception {
+		openCircuit();
+		now = OPEN_DURATION.toNanos();
+		circuitBreaker.tryAcquirePermission();
+
+		circuitBreaker.recordFailure();
+
+		assertEquals(circuitBreaker.getState(), CircuitState.OPEN);
+		assertFalse(circuitBreaker.tryAcquirePermission());
+		now = 2 * OPEN_DURATION.toNanos();
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertEquals(circuitBreaker.getStatistics().timesOpened(), 2);
+	}
+
+	@Test
+	public void testInterruptedCallsAreNotFailures() throws Exception {
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+
+		circuitBreaker.recordInterruptedCall();
+		circuitBreaker.recordInterruptedCall();
+
+		assertEquals(circuitBreaker.getState(), CircuitState.CLOSED);
+		circuitBreaker.recordFailure();
+		assertEquals(circuitBreaker.getState(), CircuitState.OPEN);
+	}
+
+	@Test
+	public void testInterruptedTrialCallLetsNextCallBeTrialCall() throws Exception {
+		openCircuit();
+		now = OPEN_DURATION.toNanos();
+		circuitBreaker.tryAcquirePermission();
+
+		circuitBreaker.recordInterruptedCall();
+
+		assertEquals(circuitBreaker.getState(), CircuitState.OPEN);
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertEquals(circuitBreaker.getState(), CircuitState.HALF_OPEN);
+		assertEquals(circuitBreaker.getStatistics().timesOpened(), 1);
+	}
+
+	@Test
+	public void testResultsOfCallsStartedBeforeOpenAreIgnoredWhileOpen() throws Exception {
+		openCircuit();
+
+		circuitBreaker.recordSuccess(0);
+		circuitBreaker.recordFailure();
+
+		assertEquals(circuitBreaker.getState(), CircuitState.OPEN);
+		assertEquals(circuitBreaker.getStatistics().timesOpened(), 1);
+	}
+
+	@Test
+	public void testRecordFallback() throws Exception {
+		circuitBreaker.recordFallback();
+
+		assertEquals(circuitBreaker.getStatistics().fallbacks(), 1);
+	}
+
+	@Test
+	public void testDisabledNeverOpens() throws Exception {
+		circuitBreaker = CircuitBreaker.disabled();
+
+		for (int i = 0; i < 100; i++) {
+			circuitBreaker.recordFailure();
+		}
+
+		assertFalse(circuitBreaker.isEnabled());
+		assertEquals(circuitBreaker.getState(), CircuitState.CLOSED);
+		assertTrue(circuitBreaker.tryAcquirePermission());
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.circuit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+public class LastKnownGoodUsersTest {
+	private static final Duration MAX_AGE = Duration.ofMinutes(30);
+	private LastKnownGoodUsers lastKnownGoodUsers;
+	private long now;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 0;
+		lastKnownGoodUsers = LastKnownGoodUsers.usingMaxSizeAndMaxAge(10, MAX_AGE);
+		lastKnownGoodUsers.onlyForTestGetUsers().onlyForTestSetNanoTimeSource(() -> now);
+	}
+
+	private User createUser(String userId, String loginId) {
+		User user = new User(userId);
+		user.loginId = loginId;
+		return user;
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(lastKnownGoodUsers.isEnabled());
+		assertEquals(lastKnownGoodUsers.getMaxSize(), 10);
+		assertEquals(lastKnownGoodUsers.getMaxAge(), MAX_AGE);
+	}
+
+	@Test
+	public void testFindRememberedUser() throws Exception {
+		User user = createUser("someUserId", "someLoginId");
+
+		lastKnownGoodUsers.rememberUser(user);
+
+		assertSame(lastKnownGoodUsers.findUserById("someUserId").get(), user);
+		assertSame(lastKnownGoodUsers.findUserByLoginId("someLoginId").get(), user);
+	}
+
+	@Test
+	public void testUnknownUser() throws Exception {
+		assertTrue(lastKnownGoodUsers.findUserById("someUserId").isEmpty());
+		assertTrue(lastKnownGoodUsers.findUserByLoginId("someLoginId").isEmpty());
+	}
+
+	@Test
+	public void testUsersOlderThanMaxAgeAreNotFound() throws Exception {
+		lastKnownGoodUsers.rememberUser(createUser("someUserId", "someLoginId"));
+
+		now = MAX_AGE.toNanos();
+
+		assertTrue(lastKnownGoodUsers.findUserById("someUserId").isEmpty());
+		assertTrue(lastKnownGoodUsers.findUserByLoginId("someLoginId").isEmpty());
+	}
+
+	@Test
+	public void testForgetUser() throws Exception {
+		lastKnownGoodUsers.rememberUser(createUser("someUserId", "someLoginId"));
+
+		lastKnownGoodUsers.forgetUser("someUserId");
+
+		assertTrue(lastKnownGoodUsers.findUserById("someUserId").isEmpty());
+		assertTrue(lastKnownGoodUsers.findUserByLoginId("someLoginId").isEmpty());
+	}
+
+	@Test
+	public void testForgetLoginId() throws Exception {
+		lastKnownGoodUsers.rememberUser(createUser("someUserId", "someLoginId"));
+
+		lastKnownGoodUsers.forgetLoginId("someLoginId");
+
+		assertTrue(lastKnownGoodUsers.findUserById("someUserId").isPresent());
+		assertTrue(lastKnownGoodUsers.findUserByLoginId("someLoginId").isEmpty());
+	}
+
+	@Test
+	public void testUserWithChangedLoginIdIsNotFoundByOldLoginId() throws Exception {
+		lastKnownGoodUsers.rememberUser(createUser("someUserId", "someLoginId"));
+
+		lastKnownGoodUsers.rememberUser(createUser("someUserId", "otherLoginId"));
+
+		assertTrue(lastKnownGoodUsers.findUserByLoginId("someLoginId").isEmpty());
+		assertTrue(lastKnownGoodUsers.findUserByLoginId("otherLoginId").isPresent());
+	}
+
+	@Test
+	public void testDisabledRemembersNothing() throws Exception {
+		lastKnownGoodUsers = LastKnownGoodUsers.disabled();
+
+		lastKnownGoodUsers.rememberUser(createUser("someUserId", "someLoginId"));
+		lastKnownGoodUsers.forgetUser("someUserId");
+		lastKnownGoodUsers.forgetLoginId("someLoginId");
+
+		assertFalse(lastKnownGoodUsers.isEnabled());
+		assertTrue(lastKnownGoodUsers.findUserById("someUserId").isEmpty());
+		assertTrue(lastKnownGoodUsers.findUserByLoginId("someLoginId").isEmpty());
+		assertEquals(lastKnownGoodUsers.onlyForTestGetUsers().size(), 0);
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.coalesce;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.userstorage.metrics.CoalescingStatistics;
+
+public class RequestCoalescerTest {
+	private static final int NUMBER_OF_WAITING_CALLERS = 5;
+	private RequestCoalescer<String, Object> coalescer;
+	private ExecutorService executor;
+	private CountDownLatch lookupStarted;
+	private CountDownLatch releaseLookup;
+	private AtomicInteger numberOfLookups;
+	private CountDownLatch allCallersCoalesced;
+	private boolean interruptLookup;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		coalescer = RequestCoalescer
+				.usingExceptionCopier(error -> new RuntimeException(error.getMessage(), error));
+		executor = Executors.newFixedThreadPool(NUMBER_OF_WAITING_CALLERS + 1);
+		lookupStarted = new CountDownLatch(1);
+		releaseLookup = new CountDownLatch(1);
+		numberOfLookups = new AtomicInteger();
+		allCallersCoalesced = new CountDownLatch(NUMBER_OF_WAITING_CALLERS);
+		interruptLookup = false;
+		coalescer.onlyForTestSetCoalescedListener(allCallersCoalesced::countDown);
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testSingleCallRunsLookup() throws Exception {
+		Object value = new Object();
+
+		Object result = coalescer.coalesce("someKey", () -> value);
+
+		assertSame(result, value);
+		assertEquals(coalescer.getStatistics(), new CoalescingStatistics(1, 0));
+		assertEquals(coalescer.onlyForTestGetNumberOfLookupsInProgress(), 0);
+	}
+
+	@Test
+	public void testSequentialCallsRunOwnLookups() throws Exception {
+		coalescer.coalesce("someKey", Object::new);
+		coalescer.coalesce("someKey", Object::new);
+
+		assertEquals(coalescer.getStatistics(), new CoalescingStatistics(2, 0));
+	}
+
+	@Test
+	public void testErrorIsThrownAndLookupRemoved() throws Exception {
+		RuntimeException error = new RuntimeException("error from lookup");
+
+		try {
+			coalescer.coalesce("someKey", () -> {
+				throw error;
+			});
+			fail();
+		} catch (Exception e) {
+			assertSame(e, error);
+		}
+		assertEquals(coalescer.onlyForTestGetNumberOfLookupsInProgress(), 0);
+	}
+
+	@Test
+	public void testConcurrentCallsShareOneLookup() throws Exception {
+		Object value = new Object();
+		List<Future<Object>> results = startCallsWaitingOnBlockedLookup("someKey", value, null);
+
+		releaseLookup.countDown();
+
+		for (Future<Object> result : results) {
+			assertSame(result.get(5, TimeUnit.SECONDS), value);
+		}
+		assertEquals(numberOfLookups.get(), 1);
+		assertEquals(coalescer.getStatistics(),
+				new CoalescingStatistics(1, NUMBER_OF_WAITING_CALLERS));
+	}
+
+	private List<Future<Object>> startCallsWaitingOnBlockedLookup(String key, Object value,
+			RuntimeException error) throws Exception {
+		List<Future<Object>> results = new ArrayList<>();
+		results.add(executor.submit(() -> coalescer.coalesce(key,
+				() -> blockedLookup(value, error))));
+		assertTrue(lookupStarted.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < NUMBER_OF_WAITING_CALLERS; i++) {
+			results.add(executor.submit(() -> coalescer.coalesce(key, Object::new)));
+		}
+		assertTrue(allCallersCoalesced.await(5, TimeUnit.SECONDS));
+		return results;
+	}
+
+	private Object blockedLookup(Object value, RuntimeException error) {
+		numberOfLookups.incrementAndGet();
+		lookupStarted.countDown();
+		awaitRelease();
+		if (interruptLookup) {
+			Thread.currentThread().interrupt();
+		}
+		if (error != null) {
+			throw error;
+		}
+		return value;
+	}
+
+	private void awaitRelease() {
+		try {
+			releaseLookup.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void testConcurrentCallsShareError() throws Exception {
+		RuntimeException error = new RuntimeException("error from lookup");
+		List<Future<Object>> results = startCallsWaitingOnBlockedLookup("someKey", null, error);
+
+		releaseLookup.countDown();
+
+		assertSame(getError(results.get(0)), error);
+		for (Future<Object> result : results.subList(1, results.size())) {
+			Throwable copiedError = getError(result);
+			assertNotSame(copiedError, error);
+			assertEquals(copiedError.getMessage(), "error from lookup");
+			assertSame(copiedError.getCause(), error);
+		}
+		assertEquals(numberOfLookups.get(), 1);
+	}
+
+	@Test
+	public void testWaitingCallersRunLookupAgainIfLookupIsInterrupted() throws Exception {
+		interruptLookup = true;
+		RuntimeException error = new RuntimeException("lookup interrupted");
+		List<Future<Object>> results = startCallsWaitingOnBlockedLookup("someKey", null, error);
+
+		releaseLookup.countDown();
+
+		assertSame(getError(results.get(0)), error);
+		assertWaitingCallersGotOwnValues(results);
+	}
+
+	private void assertWaitingCallersGotOwnValues(List<Future<Object>> results)
+			throws Exception {
+		for (Future<Object> result : results.subList(1, results.size())) {
+			assertNotNull(result.get(5, TimeUnit.SECONDS));
+		}
+		assertTrue(coalescer.getStatistics().executed() > 1);
+		assertEquals(coalescer.onlyForTestGetNumberOfLookupsInProgress(), 0);
+	}
+
+	@Test
+	public void testWaitingCallersRunLookupAgainIfLookupIsCancelled() throws Exception {
+		CancellationException error = new CancellationException("lookup cancelled");
+		List<Future<Object>> results = startCallsWaitingOnBlockedLookup("someKey", null, error);
+
+		releaseLookup.countDown();
+
+		assertSame(getError(results.get(0)), error);
+		assertWaitingCallersGotOwnValues(results);
+	}
+
+	private Throwable getError(Future<Object> result) throws Exception {
+		try {
+			result.get(5, TimeUnit.SECONDS);
+			fail();
+			return null;
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+	}
+
+	@Test
+	public void testDifferentKeysAreNotCoalesced() throws Exception {
+		List<Future<Object>> results = startCallsWaitingOnBlockedLookup("someKey", new Object(),
+				null);
+
+		Object otherValue = coalescer.coalesce("someOtherKey", Object::new);
+
+		releaseLookup.countDown();
+		results.get(0).get(5, TimeUnit.SECONDS);
+		assertTrue(otherValue != null);
+		assertEquals(coalescer.getStatistics().executed(), 2);
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+public class AuthorizationDictionaryTest {
+	private AuthorizationDictionary dictionary;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		dictionary = new AuthorizationDictionary();
+	}
+
+	@Test
+	public void testRolesAndPermissionUnitsHaveSeparateIndexes() {
+		assertEquals(dictionary.roleIndexFor("someRole"), 0);
+		assertEquals(dictionary.permissionUnitIndexFor("someUnit"), 0);
+		assertEquals(dictionary.roleIndexFor("otherRole"), 1);
+
+		assertEquals(dictionary.roleIdAt(1), "otherRole");
+		assertEquals(dictionary.permissionUnitIdAt(0), "someUnit");
+		assertEquals(dictionary.getNumberOfRoles(), 2);
+		assertEquals(dictionary.getNumberOfPermissionUnits(), 1);
+	}
+
+	@Test
+	public void testFindIndexDoesNotAdd() {
+		assertEquals(dictionary.findRoleIndex("someRole"), IdDictionary.NOT_FOUND);
+		assertEquals(dictionary.findPermissionUnitIndex("someUnit"), IdDictionary.NOT_FOUND);
+
+		assertEquals(dictionary.getNumberOfRoles(), 0);
+		assertEquals(dictionary.getNumberOfPermissionUnits(), 0);
+	}
+
+	@Test
+	public void testRolesAsBits() {
+		dictionary.roleIndexFor("someRole");
+
+		BitSet bits = dictionary.rolesAsBits(List.of("otherRole", "someRole"));
+
+		assertEquals(bits.cardinality(), 2);
+		assertTrue(bits.get(0));
+		assertTrue(bits.get(1));
+	}
+
+	@Test
+	public void testPermissionUnitsAsBits() {
+		dictionary.permissionUnitIndexFor("someUnit");
+
+		BitSet bits = dictionary.permissionUnitsAsBits(List.of("otherUnit"));
+
+		assertEquals(bits.cardinality(), 1);
+		assertTrue(bits.get(1));
+	}
+
+	@Test
+	public void testCreateAuthorization() {
+		User user = createUser("someUserId", Set.of("someRole", "otherRole"), Set.of("someUnit"));
+
+		UserAuthorization authorization = dictionary.createAuthorization(user);
+
+		assertEquals(authorization.getUserId(), "someUserId");
+		assertTrue(authorization.isActive());
+		assertTrue(authorization.hasRole(dictionary.findRoleIndex("someRole")));
+		assertTrue(authorization.hasRole(dictionary.findRoleIndex("otherRole")));
+		assertTrue(authorization.hasPermissionUnit(dictionary.findPermissionUnitIndex("someUnit")));
+		assertEquals(authorization.getNumberOfRoles(), 2);
+		assertEquals(authorization.getNumberOfPermissionUnits(), 1);
+	}
+
+	@Test
+	public void testCreateAuthorizationForUserWithoutRoles() {
+		User user = new User("someUserId");
+
+		UserAuthorization authorization = dictionary.createAuthorization(user);
+
+		assertFalse(authorization.isActive());
+		assertEquals(authorization.getNumberOfRoles(), 0);
+		assertEquals(authorization.getNumberOfPermissionUnits(), 0);
+	}
+
+	@Test
+	public void testUseSharedIds() {
+		User user1 = createUser("userId1", Set.of(new String("someRole")),
+				Set.of(new String("someUnit")));
+		User user2 = createUser("userId2", Set.of(new String("someRole")),
+				Set.of(new String("someUnit")));
+		assertNotSame(user2.roles.iterator().next(), user1.roles.iterator().next());
+
+		dictionary.useSharedIds(user1);
+		dictionary.useSharedIds(user2);
+
+		assertSame(user2.roles.iterator().next(), user1.roles.iterator().next());
+		assertSame(user2.permissionUnitIds.iterator().next(),
+				user1.permissionUnitIds.iterator().next());
+	}
+
+	@Test
+	public void testUseSharedIdsKeepsOrderOfIds() {
+		User user = createUser("someUserId", new LinkedHashSet<>(List.of("b", "a", "c")),
+				Set.of());
+
+		dictionary.useSharedIds(user);
+
+		assertEquals(List.copyOf(user.roles), List.of("b", "a", "c"));
+		assertTrue(user.permissionUnitIds.isEmpty());
+	}
+
+	private User createUser(String userId, Set<String> roles, Set<String> permissionUnitIds) {
+		User user = new User(userId);
+		user.active = true;
+		user.roles = roles;
+		user.permissionUnitIds = permissionUnitIds;
+		return user;
+	}
+}
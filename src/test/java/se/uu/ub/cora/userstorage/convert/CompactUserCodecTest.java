@@ -0,0 +1,192 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.user.User;
+
+public class CompactUserCodecTest {
+	private AuthorizationDictionary dictionary;
+	private CompactUserCodec codec;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		dictionary = new AuthorizationDictionary();
+		codec = CompactUserCodec.usingDictionary(dictionary);
+	}
+
+	@Test
+	public void testGetDictionary() {
+		assertSame(codec.getDictionary(), dictionary);
+	}
+
+	@Test
+	public void testEncodeAndDecodeFullUser() {
+		User user = createFullUser();
+
+		User decoded = decode(codec.encode(user));
+
+		assertEquals(decoded.id, "someUserId");
+		assertEquals(decoded.loginId, "someLoginId");
+		assertEquals(decoded.firstName, "Åsa");
+		assertEquals(decoded.lastName, "Öberg");
+		assertTrue(decoded.active);
+		assertEquals(decoded.passwordId, Optional.of("somePasswordId"));
+		assertEquals(decoded.appTokenIds, List.of("appToken1", "appToken2"));
+		assertEquals(List.copyOf(decoded.roles), List.of("roleB", "roleA"));
+		assertEquals(List.copyOf(decoded.permissionUnitIds), List.of("unit1"));
+	}
+
+	private User createFullUser() {
+		User user = new User("someUserId");
+		user.loginId = "someLoginId";
+		user.firstName = "Åsa";
+		user.lastName = "Öberg";
+		user.active = true;
+		user.passwordId = Optional.of("somePasswordId");
+		user.appTokenIds = List.of("appToken1", "appToken2");
+		user.roles = new LinkedHashSet<>(List.of("roleB", "roleA"));
+		user.permissionUnitIds = Set.of("unit1");
+		return user;
+	}
+
+	private User decode(byte[] encoded) {
+		return codec.decode(ByteBuffer.wrap(encoded));
+	}
+
+	@Test
+	public void testEncodeAndDecodeEmptyUser() {
+		User decoded = decode(codec.encode(new User("someUserId")));
+
+		assertEquals(decoded.id, "someUserId");
+		assertNull(decoded.loginId);
+		assertNull(decoded.firstName);
+		assertNull(decoded.lastName);
+		assertFalse(decoded.active);
+		assertTrue(decoded.passwordId.isEmpty());
+		assertTrue(decoded.appTokenIds.isEmpty());
+		assertTrue(decoded.roles.isEmpty());
+		assertTrue(decoded.permissionUnitIds.isEmpty());
+	}
+
+	@Test
+	public void testEmptyStringIsNotNull() {
+		User user = new User("someUserId");
+		user.firstName = "";
+
+		assertEquals(decode(codec.encode(user)).firstName, "");
+	}
+
+	@Test
+	public void testRolesAndPermissionUnitsAreEncodedAsIndexes() {
+		String longRoleId = "aRoleWithAVeryLongIdThatWouldTakeManyBytesAsAString";
+		User user = new User("u");
+		user.roles = Set.of(longRoleId);
+
+		byte[] encoded = codec.encode(user);
+
+		assertEquals(encoded.length, 11);
+		assertEquals(dictionary.findRoleIndex(longRoleId), 0);
+	}
+
+	@Test
+	public void testDecodedRolesAreSharedInstances() {
+		User user = new User("someUserId");
+		user.roles = Set.of(new String("someRole"));
+		user.permissionUnitIds = Set.of(new String("someUnit"));
+
+		User decoded1 = decode(codec.encode(user));
+		User decoded2 = decode(codec.encode(user));
+
+		assertSame(decoded2.roles.iterator().next(), decoded1.roles.iterator().next());
+		assertSame(decoded2.permissionUnitIds.iterator().next(),
+				decoded1.permissionUnitIds.iterator().next());
+	}
+
+	@Test
+	public void testLargeIndexesAndManyRoles() {
+		User user = new User("someUserId");
+		user.roles = new LinkedHashSet<>();
+		for (int i = 0; i < 20000; i++) {
+			user.roles.add("role" + i);
+		}
+
+		User decoded = decode(codec.encode(user));
+
+		assertEquals(decoded.roles, user.roles);
+	}
+
+	@Test
+	public void testDecodeLeavesPositionAfterUser() {
+		byte[] first = codec.encode(new User("firstUserId"));
+		byte[] second = codec.encode(new User("secondUserId"));
+		ByteBuffer buffer = ByteBuffer.allocate(first.length + second.length);
+		buffer.put(first).put(second).flip();
+
+		assertEquals(codec.decode(buffer).id, "firstUserId");
+		assertEquals(codec.decode(buffer).id, "secondUserId");
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testDecodeTruncatedUser() {
+		byte[] encoded = codec.encode(createFullUser());
+
+		assertDecodeFails(ByteBuffer.wrap(encoded, 0, encoded.length - 1),
+				"Encoded user ended unexpectedly");
+	}
+
+	@Test
+	public void testDecodeTooLongVarint() {
+		byte[] encoded = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0 };
+
+		assertDecodeFails(ByteBuffer.wrap(encoded), "Varint is too long");
+	}
+
+	@Test
+	public void testDecodeLengthLongerThanBuffer() {
+		byte[] encoded = { 0, 100, 'a' };
+
+		assertDecodeFails(ByteBuffer.wrap(encoded), "Encoded user ended unexpectedly");
+	}
+
+	private void assertDecodeFails(ByteBuffer buffer, String message) {
+		try {
+			codec.decode(buffer);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(e.getMessage(), message);
+		}
+	}
+}
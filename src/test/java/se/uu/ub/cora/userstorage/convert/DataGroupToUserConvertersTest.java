@@ -0,0 +1,330 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataChild;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataMissingException;
+import se.uu.ub.cora.data.DataRecordLink;
+import se.uu.ub.cora.data.spies.DataAtomicSpy;
+import se.uu.ub.cora.data.spies.DataGroupSpy;
+import se.uu.ub.cora.data.spies.DataRecordGroupSpy;
+import se.uu.ub.cora.data.spies.DataRecordLinkSpy;
+import se.uu.ub.cora.gatekeeper.user.User;
+
+/**
+ * Runs the same conversions through {@link DataGroupToUserImp} and
+ * {@link DataGroupToUserSinglePass}. The user record answers both the lookups used by
+ * DataGroupToUserImp and the list of children walked by DataGroupToUserSinglePass, so both
+ * converters see the same record.
+ */
+public class DataGroupToUserConvertersTest {
+	private static final String USER_ID = "someId";
+	private DataRecordGroupSpy userRecordGroup;
+	private List<DataChild> children;
+	private List<DataGroup> roleGroups;
+	private List<DataRecordLink> permissionUnitLinks;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		children = new ArrayList<>();
+		roleGroups = new ArrayList<>();
+		permissionUnitLinks = new ArrayList<>();
+		userRecordGroup = new DataRecordGroupSpy();
+		userRecordGroup.MRV.setDefaultReturnValuesSupplier("getId", () -> USER_ID);
+		userRecordGroup.MRV.setDefaultReturnValuesSupplier("getChildren", () -> children);
+		setAtomicAsMissing("activeStatus");
+		setAtomicAsMissing("loginId");
+		userRecordGroup.MRV.setSpecificReturnValuesSupplier("getAllGroupsWithNameInData",
+				() -> roleGroups, "userRole");
+		userRecordGroup.MRV.setSpecificReturnValuesSupplier("containsChildWithNameInData",
+				() -> !permissionUnitLinks.isEmpty(), "permissionUnit");
+		userRecordGroup.MRV.setSpecificReturnValuesSupplier("getChildrenOfTypeAndName",
+				() -> permissionUnitLinks, DataRecordLink.class, "permissionUnit");
+	}
+
+	private void setAtomicAsMissing(String nameInData) {
+		userRecordGroup.MRV.setThrowException("getFirstAtomicValueWithNameInData",
+				createDataMissingException(nameInData), nameInData);
+	}
+
+	private DataMissingException createDataMissingException(String nameInData) {
+		return new DataMissingException("Atomic value not found for childNameInData:" + nameInData);
+	}
+
+	@DataProvider(name = "converters")
+	public Object[][] converters() {
+		return new Object[][] { { new DataGroupToUserImp() }, { new DataGroupToUserSinglePass() } };
+	}
+
+	@Test(dataProvider = "converters")
+	public void testMinimalUser(DataGroupToUser converter) {
+		addAtomic("activeStatus", "inactive");
+		addAtomic("loginId", "someLoginId");
+
+		User user = converter.groupToUser(userRecordGroup);
+
+		assertEquals(user.id, USER_ID);
+		assertFalse(user.active);
+		assertEquals(user.loginId, "someLoginId");
+		assertNull(user.firstName);
+		assertNull(user.lastName);
+		assertTrue(user.appTokenIds.isEmpty());
+		assertTrue(user.roles.isEmpty());
+		assertTrue(user.passwordId.isEmpty());
+		assertTrue(user.permissionUnitIds.isEmpty());
+	}
+
+	@Test(dataProvider = "converters")
+	public void testMissingActiveStatusThrowsSameException(DataGroupToUser converter) {
+		addAtomic("loginId", "someLoginId");
+
+		assertThrowsDataMissing(converter, UserProjection.FULL, "activeStatus");
+	}
+
+	@Test(dataProvider = "converters")
+	public void testMissingLoginIdThrowsSameException(DataGroupToUser converter) {
+		addAtomic("activeStatus", "active");
+
+		assertThrowsDataMissing(converter, UserProjection.FULL, "loginId");
+	}
+
+	@Test(dataProvider = "converters")
+	public void testMissingActiveStatusIsReportedBeforeMissingLoginId(
+			DataGroupToUser converter) {
+		assertThrowsDataMissing(converter, UserProjection.FULL, "activeStatus");
+	}
+
+	@Test(dataProvider = "converters")
+	public void testMissingLoginIdOutsideProjectionDoesNotThrow(DataGroupToUser converter) {
+		addAtomic("activeStatus", "active");
+
+		User user = converter.groupToUser(userRecordGroup, UserProjection.AUTHORIZATION);
+
+		assertTrue(user.active);
+		assertNull(user.loginId);
+	}
+
+	@Test(dataProvider = "converters")
+	public void testCredentialsProjectionFillsActiveStatusAndPasswordId(
+			DataGroupToUser converter) {
+		addAtomic("activeStatus", "active");
+		addAtomic("loginId", "someLoginId");
+		addRole("someRole");
+		addPasswordLink("somePasswordId");
+
+		User user = converter.groupToUser(userRecordGroup, UserProjection.CREDENTIALS);
+
+		assertTrue(user.active);
+		assertEquals(user.passwordId, Optional.of("somePasswordId"));
+		assertNull(user.loginId);
+		assertTrue(user.roles.isEmpty());
+	}
+
+	private void assertThrowsDataMissing(DataGroupToUser converter, UserProjection projection,
+			String nameInData) {
+		try {
+			converter.groupToUser(userRecordGroup, projection);
+			fail("DataMissingException should have been thrown");
+		} catch (DataMissingException e) {
+			assertEquals(e.getMessage(),
+					"Atomic value not found for childNameInData:" + nameInData);
+		}
+	}
+
+	@Test(dataProvider = "converters")
+	public void testActive(DataGroupToUser converter) {
+		addAtomic("activeStatus", "active");
+		addAtomic("loginId", "someLoginId");
+
+		User user = converter.groupToUser(userRecordGroup);
+
+		assertTrue(user.active);
+	}
+
+	@Test(dataProvider = "converters")
+	public void testNames(DataGroupToUser converter) {
+		addAtomic("activeStatus", "active");
+		addAtomic("loginId", "someLoginId");
+		addAtomic("userFirstname", "someFirstName");
+		addAtomic("userLastname", "someLastName");
+
+		User user = converter.groupToUser(userRecordGroup);
+
+		assertEquals(user.firstName, "someFirstName");
+		assertEquals(user.lastName, "someLastName");
+	}
+
+	@Test(dataProvider = "converters")
+	public void testAppTokenIds(DataGroupToUser converter) {
+		addAtomic("activeStatus", "active");
+		addAtomic("loginId", "someLoginId");
+		addAppTokens("someAppTokenId1", "someAppTokenId2");
+
+		User user = converter.groupToUser(userRecordGroup);
+
+		assertEquals(user.appTokenIds, List.of("someAppTokenId1", "someAppTokenId2"));
+	}
+
+	@Test(dataProvider = "converters")
+	public void testRoleIds(DataGroupToUser converter) {
+		addAtomic("activeStatus", "active");
+		addAtomic("loginId", "someLoginId");
+		addRole("someRoleId1");
+		addRole("someRoleId2");
+
+		User user = converter.groupToUser(userRecordGroup);
+
+		assertEquals(user.roles, Set.of("someRoleId1", "someRoleId2"));
+	}
+
+	@Test(dataProvider = "converters")
+	public void testPasswordLink(DataGroupToUser converter) {
+		addAtomic("activeStatus", "active");
+		addAtomic("loginId", "someLoginId");
+		addPasswordLink("someSystemSecretId");
+
+		User user = converter.groupToUser(userRecordGroup);
+
+		assertEquals(user.passwordId, Optional.of("someSystemSecretId"));
+	}
+
+	@Test(dataProvider = "converters")
+	public void testPermissionUnitIds(DataGroupToUser converter) {
+		addAtomic("activeStatus", "active");
+		addAtomic("loginId", "someLoginId");
+		addPermissionUnit("someUnitId");
+		addPermissionUnit("someUnitId2");
+
+		User user = converter.groupToUser(userRecordGroup);
+
+		assertEquals(user.permissionUnitIds, Set.of("someUnitId", "someUnitId2"));
+	}
+
+	@Test(dataProvider = "converters")
+	public void testAuthorizationProjection(DataGroupToUser converter) {
+		addAtomic("activeStatus", "active");
+		addAtomic("loginId", "someLoginId");
+		addRole("someRoleId1");
+		addPasswordLink("someSystemSecretId");
+		addPermissionUnit("someUnitId");
+
+		User user = converter.groupToUser(userRecordGroup, UserProjection.AUTHORIZATION);
+
+		assertTrue(user.active);
+		assertEquals(user.roles, Set.of("someRoleId1"));
+		assertEquals(user.permissionUnitIds, Set.of("someUnitId"));
+		assertNull(user.loginId);
+		assertTrue(user.passwordId.isEmpty());
+	}
+
+	@Test(dataProvider = "converters")
+	public void testProjectionWithoutFieldsOnlySetsId(DataGroupToUser converter) {
+		User user = converter.groupToUser(userRecordGroup, UserProjection.withFields());
+
+		assertEquals(user.id, USER_ID);
+		assertFalse(user.active);
+		assertNull(user.loginId);
+	}
+
+	private void addAtomic(String nameInData, String value) {
+		DataAtomicSpy atomic = new DataAtomicSpy();
+		atomic.MRV.setDefaultReturnValuesSupplier("getNameInData", () -> nameInData);
+		atomic.MRV.setDefaultReturnValuesSupplier("getValue", () -> value);
+		children.add(atomic);
+		userRecordGroup.MRV.setSpecificReturnValuesSupplier("containsChildWithNameInData",
+				() -> true, nameInData);
+		userRecordGroup.MRV.setSpecificReturnValuesSupplier("getFirstAtomicValueWithNameInData",
+				() -> value, nameInData);
+	}
+
+	private void addAppTokens(String... tokenIds) {
+		List<DataChild> appTokenChildren = new ArrayList<>();
+		for (String tokenId : tokenIds) {
+			appTokenChildren.add(createGroupWithLink("appToken", "appTokenLink", tokenId));
+		}
+		DataGroupSpy appTokensGroup = createGroup("appTokens");
+		appTokensGroup.MRV.setDefaultReturnValuesSupplier("getChildren", () -> appTokenChildren);
+		appTokensGroup.MRV.setSpecificReturnValuesSupplier("getAllGroupsWithNameInData",
+				() -> appTokenChildren, "appToken");
+		children.add(appTokensGroup);
+		userRecordGroup.MRV.setSpecificReturnValuesSupplier("containsChildWithNameInData",
+				() -> true, "appTokens");
+		userRecordGroup.MRV.setSpecificReturnValuesSupplier("getFirstGroupWithNameInData",
+				() -> appTokensGroup, "appTokens");
+	}
+
+	private void addRole(String roleId) {
+		DataGroupSpy roleGroup = createGroupWithLink("userRole", "userRole", roleId);
+		children.add(roleGroup);
+		roleGroups.add(roleGroup);
+	}
+
+	private DataGroupSpy createGroupWithLink(String groupName, String linkName,
+			String linkedRecordId) {
+		DataGroupSpy group = createGroup(groupName);
+		DataRecordLinkSpy link = createLink(linkName, linkedRecordId);
+		group.MRV.setSpecificReturnValuesSupplier("getFirstChildOfTypeAndName", () -> link,
+				DataRecordLink.class, linkName);
+		return group;
+	}
+
+	private void addPasswordLink(String systemSecretId) {
+		DataRecordLinkSpy passwordLink = createLink("passwordLink", systemSecretId);
+		children.add(passwordLink);
+		userRecordGroup.MRV.setSpecificReturnValuesSupplier("containsChildOfTypeAndName",
+				() -> true, DataRecordLink.class, "passwordLink");
+		userRecordGroup.MRV.setSpecificReturnValuesSupplier("getFirstChildOfTypeAndName",
+				() -> passwordLink, DataRecordLink.class, "passwordLink");
+	}
+
+	private void addPermissionUnit(String unitId) {
+		DataRecordLinkSpy permissionUnitLink = createLink("permissionUnit", unitId);
+		children.add(permissionUnitLink);
+		permissionUnitLinks.add(permissionUnitLink);
+	}
+
+	private DataGroupSpy createGroup(String nameInData) {
+		DataGroupSpy group = new DataGroupSpy();
+		group.MRV.setDefaultReturnValuesSupplier("getNameInData", () -> nameInData);
+		return group;
+	}
+
+	private DataRecordLinkSpy createLink(String nameInData, String linkedRecordId) {
+		DataRecordLinkSpy link = new DataRecordLinkSpy();
+		link.MRV.setDefaultReturnValuesSupplier("getNameInData", () -> nameInData);
+		link.MRV.setDefaultReturnValuesSupplier("getLinkedRecordId", () -> linkedRecordId);
+		return link;
+	}
+}
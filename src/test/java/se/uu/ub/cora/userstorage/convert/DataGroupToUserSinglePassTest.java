@@ -0,0 +1,262 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataChild;
+import se.uu.ub.cora.data.DataRecordLink;
+import se.uu.ub.cora.data.spies.DataAtomicSpy;
+import se.uu.ub.cora.data.spies.DataGroupSpy;
+import se.uu.ub.cora.data.spies.DataRecordGroupSpy;
+import se.uu.ub.cora.data.spies.DataRecordLinkSpy;
+import se.uu.ub.cora.gatekeeper.user.User;
+
+public class DataGroupToUserSinglePassTest {
+	private static final String USER_ID = "someId";
+	private DataGroupToUser dataGroupToUser;
+	private DataRecordGroupSpy userDataRecordGroup;
+	private List<DataChild> children;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		dataGroupToUser = new DataGroupToUserSinglePass();
+		children = new ArrayList<>();
+		userDataRecordGroup = new DataRecordGroupSpy();
+		userDataRecordGroup.MRV.setDefaultReturnValuesSupplier("getId", () -> USER_ID);
+		userDataRecordGroup.MRV.setDefaultReturnValuesSupplier("getChildren", () -> children);
+	}
+
+	@Test
+	public void testChildrenAreReadOnlyOnce() {
+		children.add(createAtomic("activeStatus", "active"));
+		children.add(createAtomic("loginId", "someLoginId"));
+
+		dataGroupToUser.groupToUser(userDataRecordGroup);
+
+		userDataRecordGroup.MCR.assertNumberOfCallsToMethod("getChildren", 1);
+		userDataRecordGroup.MCR.assertMethodNotCalled("getFirstAtomicValueWithNameInData");
+		userDataRecordGroup.MCR.assertMethodNotCalled("containsChildWithNameInData");
+		userDataRecordGroup.MCR.assertMethodNotCalled("getAllGroupsWithNameInData");
+	}
+
+	@Test
+	public void testAtomicValues() {
+		children.add(createAtomic("activeStatus", "active"));
+		children.add(createAtomic("loginId", "someLoginId"));
+		children.add(createAtomic("userFirstname", "someFirstName"));
+		children.add(createAtomic("userLastname", "someLastName"));
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup);
+
+		assertTrue(user.active);
+		assertEquals(user.loginId, "someLoginId");
+		assertEquals(user.firstName, "someFirstName");
+		assertEquals(user.lastName, "someLastName");
+	}
+
+	@Test
+	public void testInactive() {
+		children.add(createAtomic("activeStatus", "inactive"));
+		children.add(createAtomic("loginId", "someLoginId"));
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup);
+
+		assertFalse(user.active);
+	}
+
+	@Test
+	public void testFirstChildWithNameIsUsed() {
+		children.add(createAtomic("activeStatus", "inactive"));
+		children.add(createAtomic("activeStatus", "active"));
+		children.add(createAtomic("loginId", "firstLoginId"));
+		children.add(createAtomic("loginId", "secondLoginId"));
+		children.add(createLink("passwordLink", "firstSecretId"));
+		children.add(createLink("passwordLink", "secondSecretId"));
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup);
+
+		assertFalse(user.active);
+		assertEquals(user.loginId, "firstLoginId");
+		assertEquals(user.passwordId, Optional.of("firstSecretId"));
+	}
+
+	@Test
+	public void testUnknownChildrenAreIgnored() {
+		addActiveStatusAndLoginId();
+		children.add(createAtomic("someOtherName", "someValue"));
+		children.add(createGroup("recordInfo"));
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup);
+
+		assertEquals(user.id, USER_ID);
+		assertEquals(user.loginId, "someLoginId");
+	}
+
+	@Test
+	public void testAppTokenIds() {
+		addActiveStatusAndLoginId();
+		DataGroupSpy appTokensGroup = createGroup("appTokens");
+		List<DataChild> appTokens = List.of(createAppTokenGroup("someAppTokenId1"),
+				createAtomic("appToken", "notAGroup"), createAppTokenGroup("someAppTokenId2"));
+		appTokensGroup.MRV.setDefaultReturnValuesSupplier("getChildren", () -> appTokens);
+		children.add(appTokensGroup);
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup);
+
+		assertEquals(user.appTokenIds, List.of("someAppTokenId1", "someAppTokenId2"));
+	}
+
+	private DataGroupSpy createAppTokenGroup(String tokenId) {
+		DataGroupSpy appTokenGroup = createGroup("appToken");
+		appTokenGroup.MRV.setSpecificReturnValuesSupplier("getFirstChildOfTypeAndName",
+				() -> createLink("appTokenLink", tokenId), DataRecordLink.class, "appTokenLink");
+		return appTokenGroup;
+	}
+
+	@Test
+	public void testRoleIds() {
+		addActiveStatusAndLoginId();
+		children.add(createRoleGroup("someRoleId1"));
+		children.add(createRoleGroup("someRoleId2"));
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup);
+
+		assertEquals(user.roles, Set.of("someRoleId1", "someRoleId2"));
+	}
+
+	private DataGroupSpy createRoleGroup(String roleId) {
+		DataGroupSpy roleGroup = createGroup("userRole");
+		roleGroup.MRV.setSpecificReturnValuesSupplier("getFirstChildOfTypeAndName",
+				() -> createLink("userRole", roleId), DataRecordLink.class, "userRole");
+		return roleGroup;
+	}
+
+	@Test
+	public void testPasswordLink() {
+		addActiveStatusAndLoginId();
+		children.add(createLink("passwordLink", "someSystemSecretId"));
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup);
+
+		assertEquals(user.passwordId, Optional.of("someSystemSecretId"));
+	}
+
+	@Test
+	public void testPasswordLinkThatIsNotALinkIsIgnored() {
+		addActiveStatusAndLoginId();
+		children.add(createAtomic("passwordLink", "someValue"));
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup);
+
+		assertTrue(user.passwordId.isEmpty());
+	}
+
+	@Test
+	public void testPermissionUnitIds() {
+		addActiveStatusAndLoginId();
+		children.add(createLink("permissionUnit", "someUnitId"));
+		children.add(createAtomic("permissionUnit", "notALink"));
+		children.add(createLink("permissionUnit", "someUnitId2"));
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup);
+
+		assertEquals(user.permissionUnitIds, Set.of("someUnitId", "someUnitId2"));
+	}
+
+	private void addActiveStatusAndLoginId() {
+		children.add(createAtomic("activeStatus", "active"));
+		children.add(createAtomic("loginId", "someLoginId"));
+	}
+
+	private DataAtomicSpy createAtomic(String nameInData, String value) {
+		DataAtomicSpy atomic = new DataAtomicSpy();
+		atomic.MRV.setDefaultReturnValuesSupplier("getNameInData", () -> nameInData);
+		atomic.MRV.setDefaultReturnValuesSupplier("getValue", () -> value);
+		return atomic;
+	}
+
+	private DataGroupSpy createGroup(String nameInData) {
+		DataGroupSpy group = new DataGroupSpy();
+		group.MRV.setDefaultReturnValuesSupplier("getNameInData", () -> nameInData);
+		return group;
+	}
+
+	private DataRecordLinkSpy createLink(String nameInData, String linkedRecordId) {
+		DataRecordLinkSpy link = new DataRecordLinkSpy();
+		link.MRV.setDefaultReturnValuesSupplier("getNameInData", () -> nameInData);
+		link.MRV.setDefaultReturnValuesSupplier("getLinkedRecordId", () -> linkedRecordId);
+		return link;
+	}
+
+	@Test
+	public void testChildrenOutsideProjectionAreNotConverted() {
+		DataAtomicSpy loginId = createAtomic("loginId", "someLoginId");
+		children.add(createAtomic("activeStatus", "active"));
+		children.add(loginId);
+		children.add(createRoleGroup("someRoleId1"));
+		children.add(createLink("permissionUnit", "someUnitId"));
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup,
+				UserProjection.ACTIVE_STATUS);
+
+		assertTrue(user.active);
+		assertNull(user.loginId);
+		assertTrue(user.roles.isEmpty());
+		assertTrue(user.permissionUnitIds.isEmpty());
+		loginId.MCR.assertMethodNotCalled("getValue");
+	}
+
+	@Test
+	public void testAuthorizationProjection() {
+		children.add(createAtomic("activeStatus", "active"));
+		children.add(createAtomic("loginId", "someLoginId"));
+		children.add(createRoleGroup("someRoleId1"));
+		children.add(createLink("passwordLink", "someSystemSecretId"));
+		children.add(createLink("permissionUnit", "someUnitId"));
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup,
+				UserProjection.AUTHORIZATION);
+
+		assertTrue(user.active);
+		assertEquals(user.roles, Set.of("someRoleId1"));
+		assertEquals(user.permissionUnitIds, Set.of("someUnitId"));
+		assertNull(user.loginId);
+		assertTrue(user.passwordId.isEmpty());
+	}
+
+	@Test
+	public void testProjectionWithoutFieldsDoesNotReadChildren() {
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup, UserProjection.withFields());
+
+		assertEquals(user.id, USER_ID);
+		userDataRecordGroup.MCR.assertMethodNotCalled("getChildren");
+	}
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2022, 2024, 2025 Uppsala University Library
+ * Copyright 2022, 2024, 2025, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -27,6 +27,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -279,4 +284,118 @@ public class DataGroupToUserTest {
 				() -> List.of(permissionUnitLink, permissionUnitLink2), DataRecordLink.class,
 				"permissionUnit");
 	}
+
+	@Test
+	public void testOneConverterCanBeUsedByManyThreadsAtOnce() throws Exception {
+		int numberOfThreads = 8;
+		int conversionsPerThread = 200;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		List<Future<Boolean>> results = new ArrayList<>();
+
+		for (int thread = 0; thread < numberOfThreads; thread++) {
+			results.add(executor.submit(
+					createConversionLoop("thread" + thread + "_", conversionsPerThread)));
+		}
+
+		for (Future<Boolean> result : results) {
+			assertTrue(result.get(30, TimeUnit.SECONDS));
+		}
+		executor.shutdown();
+	}
+
+	private Callable<Boolean> createConversionLoop(String idPrefix, int numberOfConversions) {
+		return () -> {
+			for (int i = 0; i < numberOfConversions; i++) {
+				String id = idPrefix + i;
+				User user = dataGroupToUser.groupToUser(createUniqueUserRecordGroup(id));
+				assertConvertedUserOnlyContainsDataFromOwnRecord(user, id);
+			}
+			return true;
+		};
+	}
+
+	private DataRecordGroupSpy createUniqueUserRecordGroup(String id) {
+		DataRecordGroupSpy recordGroup = new DataRecordGroupSpy();
+		recordGroup.MRV.setDefaultReturnValuesSupplier("getId", () -> id);
+		recordGroup.MRV.setSpecificReturnValuesSupplier("getFirstAtomicValueWithNameInData",
+				() -> "active", "activeStatus");
+		recordGroup.MRV.setSpecificReturnValuesSupplier("getFirstAtomicValueWithNameInData",
+				() -> "login_" + id, "loginId");
+		recordGroup.MRV.setSpecificReturnValuesSupplier("containsChildWithNameInData",
+				() -> true, "permissionUnit");
+		recordGroup.MRV.setSpecificReturnValuesSupplier("getChildrenOfTypeAndName",
+				() -> List.of(createLink("unit_" + id)), DataRecordLink.class, "permissionUnit");
+		return recordGroup;
+	}
+
+	private DataRecordLinkSpy createLink(String linkedRecordId) {
+		DataRecordLinkSpy link = new DataRecordLinkSpy();
+		link.MRV.setDefaultReturnValuesSupplier("getLinkedRecordId", () -> linkedRecordId);
+		return link;
+	}
+
+	private void assertConvertedUserOnlyContainsDataFromOwnRecord(User user, String id) {
+		assertEquals(user.id, id);
+		assertTrue(user.active);
+		assertEquals(user.loginId, "login_" + id);
+		assertEquals(user.permissionUnitIds, Set.of("unit_" + id));
+	}
+
+	@Test
+	public void testFullProjectionFillsAllFields() {
+		setUpUserWithRolesIds("someRoleId1");
+		setTwoPermissionUnits();
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup, UserProjection.FULL);
+
+		assertEquals(user.roles, Set.of("someRoleId1"));
+		assertEquals(user.permissionUnitIds, Set.of("someId", "someId2"));
+		userDataRecordGroup.MCR.assertParameters("getFirstAtomicValueWithNameInData", 1,
+				"loginId");
+	}
+
+	@Test
+	public void testActiveStatusProjectionOnlyReadsActiveStatus() {
+		userDataRecordGroup.MRV.setSpecificReturnValuesSupplier("getFirstAtomicValueWithNameInData",
+				() -> "active", "activeStatus");
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup,
+				UserProjection.ACTIVE_STATUS);
+
+		assertEquals(user.id, USER_ID);
+		assertTrue(user.active);
+		userDataRecordGroup.MCR.assertNumberOfCallsToMethod("getFirstAtomicValueWithNameInData",
+				1);
+		userDataRecordGroup.MCR.assertMethodNotCalled("containsChildWithNameInData");
+		userDataRecordGroup.MCR.assertMethodNotCalled("containsChildOfTypeAndName");
+		userDataRecordGroup.MCR.assertMethodNotCalled("getAllGroupsWithNameInData");
+	}
+
+	@Test
+	public void testAuthorizationProjection() {
+		setUpUserWithRolesIds("someRoleId1");
+		setTwoPermissionUnits();
+
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup,
+				UserProjection.AUTHORIZATION);
+
+		assertFalse(user.active);
+		assertEquals(user.roles, Set.of("someRoleId1"));
+		assertEquals(user.permissionUnitIds, Set.of("someId", "someId2"));
+		assertNull(user.loginId);
+		assertTrue(user.passwordId.isEmpty());
+		userDataRecordGroup.MCR.assertNumberOfCallsToMethod("getFirstAtomicValueWithNameInData",
+				1);
+		userDataRecordGroup.MCR.assertMethodNotCalled("containsChildOfTypeAndName");
+	}
+
+	@Test
+	public void testProjectionWithoutFieldsOnlySetsId() {
+		User user = dataGroupToUser.groupToUser(userDataRecordGroup, UserProjection.withFields());
+
+		assertEquals(user.id, USER_ID);
+		userDataRecordGroup.MCR.assertMethodNotCalled("getFirstAtomicValueWithNameInData");
+		userDataRecordGroup.MCR.assertMethodNotCalled("containsChildWithNameInData");
+		userDataRecordGroup.MCR.assertMethodNotCalled("getAllGroupsWithNameInData");
+	}
 }
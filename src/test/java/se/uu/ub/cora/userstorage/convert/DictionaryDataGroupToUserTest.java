@@ -0,0 +1,78 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import static org.testng.Assert.assertSame;
+
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataRecordGroup;
+import se.uu.ub.cora.data.spies.DataRecordGroupSpy;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.userstorage.spies.DataGroupToUserSpy;
+
+public class DictionaryDataGroupToUserTest {
+	private DataGroupToUserSpy dataGroupToUserSpy;
+	private AuthorizationDictionary dictionary;
+	private DictionaryDataGroupToUser converter;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		dataGroupToUserSpy = new DataGroupToUserSpy();
+		dictionary = new AuthorizationDictionary();
+		converter = DictionaryDataGroupToUser
+				.usingDataGroupToUserAndDictionary(dataGroupToUserSpy, dictionary);
+	}
+
+	@Test
+	public void testOnlyForTest() {
+		assertSame(converter.onlyForTestGetDataGroupToUser(), dataGroupToUserSpy);
+		assertSame(converter.getDictionary(), dictionary);
+	}
+
+	@Test
+	public void testGroupToUserDelegatesWithProjection() {
+		DataRecordGroup recordGroup = new DataRecordGroupSpy();
+
+		User user = converter.groupToUser(recordGroup, UserProjection.AUTHORIZATION);
+
+		dataGroupToUserSpy.MCR.assertParameters("groupToUser", 0, recordGroup,
+				UserProjection.AUTHORIZATION);
+		dataGroupToUserSpy.MCR.assertReturn("groupToUser", 0, user);
+	}
+
+	@Test
+	public void testGroupToUserUsesSharedIds() {
+		String sharedRole = dictionary.roleIdAt(dictionary.roleIndexFor("someRole"));
+		String sharedUnit = dictionary
+				.permissionUnitIdAt(dictionary.permissionUnitIndexFor("someUnit"));
+		User converted = new User("someUserId");
+		converted.roles = Set.of(new String("someRole"));
+		converted.permissionUnitIds = Set.of(new String("someUnit"));
+		dataGroupToUserSpy.MRV.setDefaultReturnValuesSupplier("groupToUser", () -> converted);
+
+		User user = converter.groupToUser(new DataRecordGroupSpy(), UserProjection.FULL);
+
+		assertSame(user.roles.iterator().next(), sharedRole);
+		assertSame(user.permissionUnitIds.iterator().next(), sharedUnit);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class IdDictionaryTest {
+	private IdDictionary dictionary;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		dictionary = new IdDictionary();
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(dictionary.size(), 0);
+		assertEquals(dictionary.findIndex("someId"), IdDictionary.NOT_FOUND);
+	}
+
+	@Test
+	public void testIndexForGivesIndexesInOrder() {
+		assertEquals(dictionary.indexFor("someId"), 0);
+		assertEquals(dictionary.indexFor("otherId"), 1);
+		assertEquals(dictionary.indexFor("someId"), 0);
+
+		assertEquals(dictionary.size(), 2);
+		assertEquals(dictionary.findIndex("otherId"), 1);
+	}
+
+	@Test
+	public void testFindIndexDoesNotAdd() {
+		dictionary.findIndex("someId");
+
+		assertEquals(dictionary.size(), 0);
+	}
+
+	@Test
+	public void testIdAt() {
+		dictionary.indexFor("someId");
+		dictionary.indexFor("otherId");
+
+		assertEquals(dictionary.idAt(0), "someId");
+		assertEquals(dictionary.idAt(1), "otherId");
+	}
+
+	@Test
+	public void testIdAtUnknownIndex() {
+		dictionary.indexFor("someId");
+
+		assertIdAtThrows(1);
+		assertIdAtThrows(-1);
+		assertIdAtThrows(1000);
+	}
+
+	private void assertIdAtThrows(int index) {
+		try {
+			dictionary.idAt(index);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			assertEquals(e.getMessage(), "No id with index: " + index);
+		}
+	}
+
+	@Test
+	public void testSharedInstanceOf() {
+		String first = new String("someId");
+		String second = new String("someId");
+
+		assertSame(dictionary.sharedInstanceOf(first), first);
+		assertSame(dictionary.sharedInstanceOf(second), first);
+	}
+
+	@Test
+	public void testGrowsBeyondInitialCapacity() {
+		for (int i = 0; i < 200; i++) {
+			assertEquals(dictionary.indexFor("id" + i), i);
+		}
+
+		assertEquals(dictionary.size(), 200);
+		assertEquals(dictionary.idAt(199), "id199");
+		assertEquals(dictionary.idAt(0), "id0");
+	}
+}
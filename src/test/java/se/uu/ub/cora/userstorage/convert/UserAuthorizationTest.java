@@ -0,0 +1,102 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class UserAuthorizationTest {
+	private BitSet roles;
+	private BitSet permissionUnits;
+	private UserAuthorization authorization;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		roles = bits(1, 3);
+		permissionUnits = bits(0);
+		authorization = UserAuthorization.usingUserIdActiveRolesAndPermissionUnits("someUserId",
+				true, roles, permissionUnits);
+	}
+
+	private BitSet bits(int... indexes) {
+		BitSet bits = new BitSet();
+		for (int index : indexes) {
+			bits.set(index);
+		}
+		return bits;
+	}
+
+	@Test
+	public void testUserIdAndActive() {
+		assertEquals(authorization.getUserId(), "someUserId");
+		assertTrue(authorization.isActive());
+	}
+
+	@Test
+	public void testHasRole() {
+		assertTrue(authorization.hasRole(1));
+		assertTrue(authorization.hasRole(3));
+		assertFalse(authorization.hasRole(2));
+		assertFalse(authorization.hasRole(IdDictionary.NOT_FOUND));
+	}
+
+	@Test
+	public void testHasAnyRole() {
+		assertTrue(authorization.hasAnyRole(bits(0, 3)));
+		assertFalse(authorization.hasAnyRole(bits(0, 2)));
+		assertFalse(authorization.hasAnyRole(bits()));
+	}
+
+	@Test
+	public void testHasPermissionUnit() {
+		assertTrue(authorization.hasPermissionUnit(0));
+		assertFalse(authorization.hasPermissionUnit(1));
+		assertFalse(authorization.hasPermissionUnit(IdDictionary.NOT_FOUND));
+	}
+
+	@Test
+	public void testHasAnyPermissionUnit() {
+		assertTrue(authorization.hasAnyPermissionUnit(bits(0, 5)));
+		assertFalse(authorization.hasAnyPermissionUnit(bits(5)));
+	}
+
+	@Test
+	public void testIndexesAndNumbers() {
+		assertEquals(Arrays.toString(authorization.getRoleIndexes()), "[1, 3]");
+		assertEquals(Arrays.toString(authorization.getPermissionUnitIndexes()), "[0]");
+		assertEquals(authorization.getNumberOfRoles(), 2);
+		assertEquals(authorization.getNumberOfPermissionUnits(), 1);
+	}
+
+	@Test
+	public void testChangingBitsAfterCreationDoesNotChangeAuthorization() {
+		roles.set(2);
+		permissionUnits.clear();
+
+		assertFalse(authorization.hasRole(2));
+		assertTrue(authorization.hasPermissionUnit(0));
+	}
+}
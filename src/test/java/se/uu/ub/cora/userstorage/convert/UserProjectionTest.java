@@ -0,0 +1,78 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.convert;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+public class UserProjectionTest {
+
+	@Test
+	public void testFullIncludesAllFields() {
+		assertEquals(UserProjection.FULL.getFields(), EnumSet.allOf(UserField.class));
+		assertFalse(UserProjection.FULL.isEmpty());
+	}
+
+	@Test
+	public void testProfiles() {
+		assertEquals(UserProjection.ACTIVE_STATUS.getFields(), Set.of(UserField.ACTIVE_STATUS));
+		assertEquals(UserProjection.AUTHORIZATION.getFields(), Set.of(UserField.ACTIVE_STATUS,
+				UserField.ROLES, UserField.PERMISSION_UNIT_IDS));
+		assertEquals(UserProjection.CREDENTIALS.getFields(),
+				Set.of(UserField.ACTIVE_STATUS, UserField.PASSWORD_ID));
+	}
+
+	@Test
+	public void testWithFields() {
+		UserProjection projection = UserProjection.withFields(UserField.LOGIN_ID,
+				UserField.PASSWORD_ID, UserField.LOGIN_ID);
+
+		assertTrue(projection.includes(UserField.LOGIN_ID));
+		assertTrue(projection.includes(UserField.PASSWORD_ID));
+		assertFalse(projection.includes(UserField.ROLES));
+		assertEquals(projection.getFields().size(), 2);
+	}
+
+	@Test
+	public void testWithoutFieldsIsEmpty() {
+		assertTrue(UserProjection.withFields().isEmpty());
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void testFieldsCanNotBeChanged() {
+		UserProjection.ACTIVE_STATUS.getFields().add(UserField.ROLES);
+	}
+
+	@Test
+	public void testEquality() {
+		assertEquals(UserProjection.withFields(UserField.ACTIVE_STATUS),
+				UserProjection.ACTIVE_STATUS);
+		assertEquals(UserProjection.withFields(UserField.ACTIVE_STATUS).hashCode(),
+				UserProjection.ACTIVE_STATUS.hashCode());
+		assertNotEquals(UserProjection.AUTHORIZATION, UserProjection.ACTIVE_STATUS);
+		assertEquals(UserProjection.ACTIVE_STATUS.toString(), "UserProjection[ACTIVE_STATUS]");
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class LatencyHistogramTest {
+	private LatencyHistogram histogram;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		histogram = new LatencyHistogram();
+	}
+
+	@Test
+	public void testEmptyHistogram() {
+		assertEquals(histogram.createSnapshot(), new LatencySnapshot(0, 0, 0, 0, 0));
+	}
+
+	@Test
+	public void testOneDuration() {
+		histogram.record(1234);
+
+		assertEquals(histogram.createSnapshot(), new LatencySnapshot(1, 1234, 1234, 1234, 1234));
+	}
+
+	@Test
+	public void testNegativeDurationIsRecordedAsZero() {
+		histogram.record(-5);
+
+		assertEquals(histogram.createSnapshot(), new LatencySnapshot(1, 0, 0, 0, 0));
+	}
+
+	@Test
+	public void testSmallDurationsAreExact() {
+		for (int nanos = 1; nanos <= 10; nanos++) {
+			histogram.record(nanos);
+		}
+
+		LatencySnapshot snapshot = histogram.createSnapshot();
+		assertEquals(snapshot.count(), 10);
+		assertEquals(snapshot.p50Nanos(), 5);
+		assertEquals(snapshot.p99Nanos(), 10);
+		assertEquals(snapshot.maxNanos(), 10);
+	}
+
+	@Test
+	public void testPercentiles() {
+		recordTimes(1000, 988);
+		recordTimes(100_000, 10);
+		recordTimes(10_000_000, 2);
+
+		LatencySnapshot snapshot = histogram.createSnapshot();
+		assertEquals(snapshot.count(), 1000);
+		assertWithinOneSixteenthAbove(snapshot.p50Nanos(), 1000);
+		assertWithinOneSixteenthAbove(snapshot.p99Nanos(), 100_000);
+		assertEquals(snapshot.p999Nanos(), 10_000_000);
+		assertEquals(snapshot.maxNanos(), 10_000_000);
+	}
+
+	private void recordTimes(long nanos, int times) {
+		for (int i = 0; i < times; i++) {
+			histogram.record(nanos);
+		}
+	}
+
+	private void assertWithinOneSixteenthAbove(long reported, long recorded) {
+		assertTrue(reported >= recorded, reported + " is below " + recorded);
+		assertTrue(reported <= recorded + recorded / 16, reported + " is too far above " + recorded);
+	}
+
+	@Test
+	public void testBucketsCoverAllDurations() {
+		long[] durations = { 0, 15, 16, 17, 31, 32, 33, 1_000_000_007L, Long.MAX_VALUE };
+		for (long nanos : durations) {
+			int bucketIndex = LatencyHistogram.bucketIndexFor(nanos);
+			long highestValue = LatencyHistogram.highestValueInBucket(bucketIndex);
+			assertTrue(highestValue >= nanos, "bucket too low for " + nanos);
+			assertTrue(highestValue - nanos <= Math.max(0, nanos / LatencyHistogram.SUB_BUCKETS),
+					"bucket too wide for " + nanos);
+		}
+	}
+}
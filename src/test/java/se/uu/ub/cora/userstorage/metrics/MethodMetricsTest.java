@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+
+public class MethodMetricsTest {
+	private MethodMetrics methodMetrics;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		methodMetrics = new MethodMetrics();
+	}
+
+	@Test
+	public void testNoCalls() {
+		MethodMetricsSnapshot snapshot = methodMetrics.createSnapshot();
+
+		assertEquals(snapshot.calls(), 0);
+		assertEquals(snapshot.errors(), 0);
+		assertEquals(snapshot.errorsByCause(), Map.of());
+		assertEquals(snapshot.latency().count(), 0);
+	}
+
+	@Test
+	public void testRecordCall() {
+		methodMetrics.recordCall(100);
+		methodMetrics.recordCall(200);
+
+		MethodMetricsSnapshot snapshot = methodMetrics.createSnapshot();
+		assertEquals(snapshot.calls(), 2);
+		assertEquals(snapshot.errors(), 0);
+		assertEquals(snapshot.latency().count(), 2);
+		assertEquals(snapshot.latency().maxNanos(), 200);
+	}
+
+	@Test
+	public void testFailedCallsAreCountedByCause() {
+		methodMetrics.recordFailedCall(100, UserStorageViewException.usingMessageAndException(
+				"someMessage", RecordNotFoundException.withMessage("not found")));
+		methodMetrics.recordFailedCall(100, UserStorageViewException.usingMessageAndException(
+				"someMessage", RecordNotFoundException.withMessage("not found")));
+		methodMetrics.recordFailedCall(100, new IllegalStateException("no cause"));
+
+		MethodMetricsSnapshot snapshot = methodMetrics.createSnapshot();
+		assertEquals(snapshot.calls(), 3);
+		assertEquals(snapshot.errors(), 3);
+		assertEquals(snapshot.errorsByCause(),
+				Map.of("RecordNotFoundException", 2L, "IllegalStateException", 1L));
+	}
+
+	@Test
+	public void testStorageReadAndConversionAreRecordedSeparately() {
+		methodMetrics.recordStorageRead(300);
+		methodMetrics.recordStorageRead(300);
+		methodMetrics.recordConversion(20);
+
+		MethodMetricsSnapshot snapshot = methodMetrics.createSnapshot();
+		assertEquals(snapshot.calls(), 0);
+		assertEquals(snapshot.storageRead(), new LatencySnapshot(2, 300, 300, 300, 300));
+		assertEquals(snapshot.conversion(), new LatencySnapshot(1, 20, 20, 20, 20));
+	}
+}
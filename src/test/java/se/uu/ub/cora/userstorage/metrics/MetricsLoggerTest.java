@@ -0,0 +1,171 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.gatekeeper.storage.UserStorageViewException;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.logger.spies.LoggerFactorySpy;
+import se.uu.ub.cora.logger.spies.LoggerSpy;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+import se.uu.ub.cora.userstorage.circuit.CircuitBreaker;
+
+public class MetricsLoggerTest {
+	private LoggerFactorySpy loggerFactorySpy;
+	private UserStorageViewMetrics metrics;
+	private MetricsLogger metricsLogger;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		metrics = new UserStorageViewMetrics();
+		metricsLogger = MetricsLogger.usingMetricsAndInterval(metrics, Duration.ofMinutes(5));
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		metricsLogger.stop();
+	}
+
+	@Test
+	public void testInit() {
+		loggerFactorySpy.MCR.assertParameters("factorForClass", 0, MetricsLogger.class);
+		assertSame(metricsLogger.onlyForTestGetMetrics(), metrics);
+		assertEquals(metricsLogger.onlyForTestGetInterval(), Duration.ofMinutes(5));
+		assertFalse(metricsLogger.onlyForTestIsScheduled());
+	}
+
+	@Test
+	public void testStartAndStop() {
+		metricsLogger.start();
+		assertTrue(metricsLogger.onlyForTestIsScheduled());
+
+		metricsLogger.stop();
+		assertFalse(metricsLogger.onlyForTestIsScheduled());
+	}
+
+	@Test
+	public void testNothingIsLoggedForMethodsWithoutCalls() {
+		metricsLogger.logMetrics();
+
+		getLoggerSpy().MCR.assertMethodNotCalled("logInfoUsingMessage");
+	}
+
+	private LoggerSpy getLoggerSpy() {
+		return (LoggerSpy) loggerFactorySpy.MCR.getReturnValue("factorForClass", 0);
+	}
+
+	@Test
+	public void testLogOneLineForEachCalledMethod() {
+		MethodMetrics userById = metrics.forMethod(UserStorageViewMetrics.GET_USER_BY_ID);
+		userById.recordCall(2_000);
+		userById.recordStorageRead(1_000);
+		userById.recordConversion(500);
+
+		metricsLogger.logMetrics();
+
+		getLoggerSpy().MCR.assertNumberOfCallsToMethod("logInfoUsingMessage", 1);
+		getLoggerSpy().MCR.assertParameters("logInfoUsingMessage", 0,
+				"userstorage getUserById: calls=1 errors=0"
+						+ " latency[count=1 p50=2us p99=2us p999=2us max=2us]"
+						+ " storageRead[count=1 p50=1us p99=1us p999=1us max=1us]"
+						+ " conversion[count=1 p50=0us p99=0us p999=0us max=0us]");
+	}
+
+	@Test
+	public void testLogErrorsByCause() {
+		metrics.forMethod(UserStorageViewMetrics.GET_APP_TOKEN_BY_ID).recordFailedCall(1_000,
+				UserStorageViewException.usingMessageAndException("someMessage",
+						RecordNotFoundException.withMessage("not found")));
+
+		metricsLogger.logMetrics();
+
+		getLoggerSpy().MCR.assertParameters("logInfoUsingMessage", 0,
+				"userstorage getAppTokenById: calls=1 errors=1 {RecordNotFoundException=1}"
+						+ " latency[count=1 p50=1us p99=1us p999=1us max=1us]"
+						+ " storageRead[count=0 p50=0us p99=0us p999=0us max=0us]"
+						+ " conversion[count=0 p50=0us p99=0us p999=0us max=0us]");
+	}
+
+	@Test
+	public void testCircuitBreakerIsDisabledByDefault() {
+		assertFalse(metricsLogger.onlyForTestGetCircuitBreaker().isEnabled());
+	}
+
+	@Test
+	public void testLogCircuitBreakerState() {
+		CircuitBreaker circuitBreaker = CircuitBreaker
+				.usingFailureThresholdSlowCallThresholdAndOpenDuration(1, Duration.ofSeconds(2),
+						Duration.ofSeconds(10));
+		metricsLogger = MetricsLogger.usingMetricsCircuitBreakerAndInterval(metrics,
+				circuitBreaker, Duration.ofMinutes(5));
+		circuitBreaker.recordFailure();
+		circuitBreaker.tryAcquirePermission();
+
+		metricsLogger.logMetrics();
+
+		assertSame(metricsLogger.onlyForTestGetCircuitBreaker(), circuitBreaker);
+		LoggerSpy loggerSpy = (LoggerSpy) loggerFactorySpy.MCR.getReturnValue("factorForClass", 1);
+		loggerSpy.MCR.assertParameters("logInfoUsingMessage", 0,
+				"userstorage circuit: state=OPEN timesOpened=1 rejectedCalls=1 fallbacks=0");
+	}
+
+	@Test
+	public void testNoStatisticsSourcesByDefault() {
+		assertTrue(metricsLogger.onlyForTestGetStatisticsSources().isEmpty());
+	}
+
+	@Test
+	public void testLogStatisticsOfStatisticsSources() {
+		StatisticsSource cacheSource = () -> createStatistics("userCache",
+				new CacheStatistics(5, 2, 1, 0, 3));
+		StatisticsSource coalescingSource = () -> createStatistics("userIdCoalescing",
+				new CoalescingStatistics(4, 1));
+		List<StatisticsSource> statisticsSources = List.of(cacheSource, coalescingSource);
+		metricsLogger = MetricsLogger.usingMetricsCircuitBreakerStatisticsSourcesAndInterval(
+				metrics, CircuitBreaker.disabled(), statisticsSources, Duration.ofMinutes(5));
+
+		metricsLogger.logMetrics();
+
+		assertSame(metricsLogger.onlyForTestGetStatisticsSources(), statisticsSources);
+		LoggerSpy loggerSpy = (LoggerSpy) loggerFactorySpy.MCR.getReturnValue("factorForClass", 1);
+		loggerSpy.MCR.assertNumberOfCallsToMethod("logInfoUsingMessage", 2);
+		loggerSpy.MCR.assertParameters("logInfoUsingMessage", 0,
+				"userstorage userCache: hits=5 misses=2 evictions=1 expirations=0 size=3");
+		loggerSpy.MCR.assertParameters("logInfoUsingMessage", 1,
+				"userstorage userIdCoalescing: executed=4 coalesced=1");
+	}
+
+	private Map<String, Record> createStatistics(String name, Record statistics) {
+		return Map.of(name, statistics);
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class UserStorageViewMetricsTest {
+	private UserStorageViewMetrics metrics;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		metrics = new UserStorageViewMetrics();
+	}
+
+	@Test
+	public void testOneMetricsForEachMethod() {
+		MethodMetrics userById = metrics.forMethod(UserStorageViewMetrics.GET_USER_BY_ID);
+
+		assertSame(metrics.forMethod(UserStorageViewMetrics.GET_USER_BY_ID), userById);
+		assertNotSame(metrics.forMethod(UserStorageViewMetrics.GET_USER_BY_LOGIN_ID), userById);
+	}
+
+	@Test
+	public void testUnknownMethod() {
+		try {
+			metrics.forMethod("someUnknownMethod");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(e.getMessage(), "No metrics exists for method: someUnknownMethod");
+		}
+	}
+
+	@Test
+	public void testSnapshotContainsAllMethodsInStableOrder() {
+		metrics.forMethod(UserStorageViewMetrics.GET_APP_TOKEN_BY_ID).recordCall(10);
+
+		Map<String, MethodMetricsSnapshot> snapshot = metrics.createSnapshot();
+
+		assertEquals(List.copyOf(snapshot.keySet()),
+				List.of("getUserById", "getUserByLoginId", "getUsersByIds",
+						"getUserCredentialsByLoginId", "getAppTokenById", "getAppTokensByIds",
+						"getSystemSecretById"));
+		assertEquals(snapshot.get(UserStorageViewMetrics.GET_APP_TOKEN_BY_ID).calls(), 1);
+	}
+
+	@Test
+	public void testNanoTimeSource() {
+		metrics.onlyForTestSetNanoTimeSource(() -> 42);
+
+		assertEquals(metrics.nanoTime(), 42);
+	}
+}
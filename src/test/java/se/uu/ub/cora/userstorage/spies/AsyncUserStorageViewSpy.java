@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.spies;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.testutils.mcr.MethodCallRecorder;
+import se.uu.ub.cora.testutils.mrv.MethodReturnValues;
+import se.uu.ub.cora.userstorage.AsyncUserStorageView;
+
+public class AsyncUserStorageViewSpy implements AsyncUserStorageView {
+	public MethodCallRecorder MCR = new MethodCallRecorder();
+	public MethodReturnValues MRV = new MethodReturnValues();
+
+	public AsyncUserStorageViewSpy() {
+		MCR.useMRV(MRV);
+		MRV.setDefaultReturnValuesSupplier("getUserByIdAsync",
+				(Supplier<CompletableFuture<User>>) () -> CompletableFuture
+						.completedFuture(new User("someUserId")));
+		MRV.setDefaultReturnValuesSupplier("getUserByLoginIdAsync",
+				(Supplier<CompletableFuture<User>>) () -> CompletableFuture
+						.completedFuture(new User("someUserId")));
+		MRV.setDefaultReturnValuesSupplier("getAppTokenByIdAsync",
+				(Supplier<CompletableFuture<AppToken>>) () -> CompletableFuture
+						.completedFuture(new AppToken("someAppTokenId", "someTokenString")));
+		MRV.setDefaultReturnValuesSupplier("getSystemSecretByIdAsync",
+				(Supplier<CompletableFuture<String>>) () -> CompletableFuture
+						.completedFuture("someSecret"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public CompletableFuture<User> getUserByIdAsync(String userId) {
+		return (CompletableFuture<User>) MCR.addCallAndReturnFromMRV("userId", userId);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public CompletableFuture<User> getUserByLoginIdAsync(String loginId) {
+		return (CompletableFuture<User>) MCR.addCallAndReturnFromMRV("loginId", loginId);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public CompletableFuture<AppToken> getAppTokenByIdAsync(String appTokenId) {
+		return (CompletableFuture<AppToken>) MCR.addCallAndReturnFromMRV("appTokenId",
+				appTokenId);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public CompletableFuture<String> getSystemSecretByIdAsync(String systemSecretId) {
+		return (CompletableFuture<String>) MCR.addCallAndReturnFromMRV("systemSecretId",
+				systemSecretId);
+	}
+}
@@ -25,6 +25,7 @@ import se.uu.ub.cora.gatekeeper.user.User;
 import se.uu.ub.cora.testutils.mcr.MethodCallRecorder;
 import se.uu.ub.cora.testutils.mrv.MethodReturnValues;
 import se.uu.ub.cora.userstorage.convert.DataGroupToUser;
+import se.uu.ub.cora.userstorage.convert.UserProjection;
 
 public class DataGroupToUserSpy implements DataGroupToUser {
 	public MethodCallRecorder MCR = new MethodCallRecorder();
@@ -41,4 +42,10 @@ public class DataGroupToUserSpy implements DataGroupToUser {
 		return (User) MCR.addCallAndReturnFromMRV("dataRecordGroup", dataRecordGroup);
 	}
 
+	@Override
+	public User groupToUser(DataRecordGroup dataRecordGroup, UserProjection projection) {
+		return (User) MCR.addCallAndReturnFromMRV("dataRecordGroup", dataRecordGroup,
+				"projection", projection);
+	}
+
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.userstorage.spies;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import se.uu.ub.cora.gatekeeper.user.AppToken;
+import se.uu.ub.cora.gatekeeper.user.User;
+import se.uu.ub.cora.testutils.mcr.MethodCallRecorder;
+import se.uu.ub.cora.testutils.mrv.MethodReturnValues;
+import se.uu.ub.cora.userstorage.AppTokenBatchResult;
+import se.uu.ub.cora.userstorage.ExtendedUserStorageView;
+import se.uu.ub.cora.userstorage.UserBatchResult;
+import se.uu.ub.cora.userstorage.UserCredentials;
+
+public class UserStorageViewSpy implements ExtendedUserStorageView {
+	public MethodCallRecorder MCR = new MethodCallRecorder();
+	public MethodReturnValues MRV = new MethodReturnValues();
+
+	public UserStorageViewSpy() {
+		MCR.useMRV(MRV);
+		MRV.setDefaultReturnValuesSupplier("getUserById", (Supplier<User>) () -> {
+			User user = new User("someUserId");
+			user.loginId = "someLoginId";
+			return user;
+		});
+		MRV.setDefaultReturnValuesSupplier("getUserByLoginId", (Supplier<User>) () -> {
+			User user = new User("someUserId");
+			user.loginId = "someLoginId";
+			return user;
+		});
+		MRV.setDefaultReturnValuesSupplier("getUserCredentialsByLoginId",
+				(Supplier<UserCredentials>) () -> new UserCredentials("someUserId", true,
+						Optional.of("someSecret")));
+		MRV.setDefaultReturnValuesSupplier("getAppTokenById",
+				(Supplier<AppToken>) () -> new AppToken("someAppTokenId", "someTokenString"));
+		MRV.setDefaultReturnValuesSupplier("getAppTokensByIds",
+				(Supplier<AppTokenBatchResult>) () -> new AppTokenBatchResult(
+						Collections.emptyMap(), Collections.emptyMap()));
+		MRV.setDefaultReturnValuesSupplier("getSystemSecretById",
+				(Supplier<String>) () -> "someSecret");
+		MRV.setDefaultReturnValuesSupplier("getUsersByIds",
+				(Supplier<UserBatchResult>) () -> new UserBatchResult(Collections.emptyMap(),
+						Collections.emptySet()));
+	}
+
+	@Override
+	public User getUserById(String userId) {
+		return (User) MCR.addCallAndReturnFromMRV("userId", userId);
+	}
+
+	@Override
+	public UserBatchResult getUsersByIds(Collection<String> userIds) {
+		return (UserBatchResult) MCR.addCallAndReturnFromMRV("userIds", userIds);
+	}
+
+	@Override
+	public User getUserByLoginId(String loginId) {
+		return (User) MCR.addCallAndReturnFromMRV("loginId", loginId);
+	}
+
+	@Override
+	public UserCredentials getUserCredentialsByLoginId(String loginId) {
+		return (UserCredentials) MCR.addCallAndReturnFromMRV("loginId", loginId);
+	}
+
+	@Override
+	public AppToken getAppTokenById(String appTokenId) {
+		return (AppToken) MCR.addCallAndReturnFromMRV("appTokenId", appTokenId);
+	}
+
+	@Override
+	public AppTokenBatchResult getAppTokensByIds(Collection<String> appTokenIds) {
+		return (AppTokenBatchResult) MCR.addCallAndReturnFromMRV("appTokenIds", appTokenIds);
+	}
+
+	@Override
+	public String getSystemSecretById(String systemSecretId) {
+		return (String) MCR.addCallAndReturnFromMRV("systemSecretId", systemSecretId);
+	}
+
+	@Override
+	public void invalidateRecord(String recordType, String recordId) {
+		MCR.addCall("recordType", recordType, "recordId", recordId);
+	}
+}